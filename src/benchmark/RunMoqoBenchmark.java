@@ -93,7 +93,7 @@ public class RunMoqoBenchmark {
 		new OnePhase(new AnnealingPhaseSAIO(10)),
 		new TwoPhase(10, new ClimbingPhase(false, -1), new AnnealingPhaseSAIO(1, 0.1)),
 		//new GeneticAlgorithm(100, 0.9),
-		new NSGA2(200, 0.9),
+		new NSGA2(200, 0.9, 1),
 		//new GeneticAlgorithm(500, 0.9),
 		//new GeneticAlgorithmExtended(200, 0.9)
 		//new UCBpartialPlanSampling(),
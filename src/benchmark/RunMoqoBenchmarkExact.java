@@ -95,7 +95,7 @@ public class RunMoqoBenchmarkExact {
 		new OnePhase(new AnnealingPhaseSAIO(10)),
 		new TwoPhase(10, new ClimbingPhase(true, -1), new AnnealingPhaseSAIO(1, 0.1)),
 		//new GeneticAlgorithm(100, 0.9),
-		new NSGA2(200, 0.9),
+		new NSGA2(200, 0.9, 1),
 		//new GeneticAlgorithm(500, 0.9),
 		//new GeneticAlgorithmExtended(200, 0.9)
 		//new UCBpartialPlanSampling(),
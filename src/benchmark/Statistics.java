@@ -16,6 +16,8 @@ import java.util.TreeMap;
  * same feature, different counters are stored for different query sizes, algorithms, and 
  * optimization time periods. This allows to compare different algorithms and to study the
  * evolution of feature average values over different query sizes and optimization time periods.
+ * Methods updating or reading counters are synchronized such that optimizers running
+ * concurrently in the same JVM can collect statistics.
  * 
  * @author immanueltrummer
  *
@@ -75,7 +77,7 @@ public class Statistics {
 	 * @param nrPeriods			the number of time periods into which optimization is partitioned
 	 * @param nrQueriesPerSize	the number of test queries with the same query size
 	 */
-	public static void init(int nrAlgorithms, int nrQuerySizes, int nrPeriods, int nrQueriesPerSize) {
+	public static synchronized void init(int nrAlgorithms, int nrQuerySizes, int nrPeriods, int nrQueriesPerSize) {
 		Statistics.nrAlgorithms = nrAlgorithms;
 		Statistics.nrQuerySizes = nrQuerySizes;
 		Statistics.nrPeriods = nrPeriods;
@@ -112,7 +114,7 @@ public class Statistics {
 	 * @param queryIndex	query index in its query size class
 	 * @param added			the number by which to increase the feature counter
 	 */
-	public static void addToLongFeature(String featureName, int algIndex, int querySize, 
+	public static synchronized void addToLongFeature(String featureName, int algIndex, int querySize, 
 			int period, int queryIndex, long added) {
 		// Count addition only if enabled
 		if (enabled) {
@@ -138,7 +140,7 @@ public class Statistics {
 	 * @param queryIndex	query index in its query size class
 	 * @param added			the value by which to increase the feature counter
 	 */
-	public static void addToDoubleFeature(String featureName, int algIndex, int querySize, 
+	public static synchronized void addToDoubleFeature(String featureName, int algIndex, int querySize, 
 			int period, int queryIndex, double added) {
 		// Count addition only if enabled
 		if (enabled) {
@@ -371,7 +373,7 @@ public class Statistics {
 	 * 
 	 * @param useTabs	boolean flag indicating whether table entries are separated by tabs.
 	 */
-	public static void display(boolean useTabs) {
+	public static synchronized void display(boolean useTabs) {
 		// Display aggregate values
 		System.out.println();
 		System.out.println("Long features:");
@@ -409,7 +411,7 @@ public class Statistics {
 	 * @param fileName		the name of the file to create
 	 * @throws FileNotFoundException 
 	 */
-	public static void writeToFile(String featureName, AggregateFunction function, 
+	public static synchronized void writeToFile(String featureName, AggregateFunction function, 
 			int querySize, String fileName) throws FileNotFoundException {
 		// Create file
 		PrintWriter writer = new PrintWriter(fileName);
@@ -426,7 +428,7 @@ public class Statistics {
 	 * @param querySize		the query size index for which values are treated
 	 * @param fileName		the name of the file to create
 	 */
-	public static void write(String featureName, AggregateFunction function, 
+	public static synchronized void write(String featureName, AggregateFunction function, 
 			int querySize, PrintWriter writer) {	
 		// Obtain feature values
 		double[][][][] featureValues;
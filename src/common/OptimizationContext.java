@@ -0,0 +1,209 @@
+package common;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Bundles the settings and the mutable state of one optimizer run: the optimization time
+ * budget, the number of cost metrics, the random number generator, and several counters
+ * that optimizers use to produce statistics. Optimizing different queries with different
+ * contexts allows to run several optimizers concurrently within the same JVM.
+ *
+ * The context of an optimizer run is passed to the optimizer and activated for the thread
+ * executing it. Utility functions deep in the call hierarchy (e.g., plan construction or
+ * local search) obtain the context that is active for the current thread via the method
+ * <code>current</code>. If no context was activated then a default context is used that
+ * reflects the global settings in {@link Constants} and {@link RandomNumbers}; this keeps
+ * single-threaded code that relies on those settings working.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class OptimizationContext implements Serializable {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * How many milliseconds anytime optimizers can run.
+	 */
+	public final long timeoutMillis;
+	/**
+	 * The number of cost metrics for query plans.
+	 */
+	public final int nrCostMetrics;
+	/**
+	 * Random number generator to use for randomized optimization - only used by the
+	 * thread executing the optimizer run (worker threads use split contexts).
+	 */
+	public final Random random;
+	/**
+	 * Counts the number of created partial plans.
+	 */
+	public long nrPlansCreated = 0;
+	/**
+	 * Counts the number of plan node evaluations by multi-metric cost models.
+	 */
+	public long nrRootCostEvaluations = 0;
+	/**
+	 * Counts the number of times exhaustive hill climbing was started.
+	 */
+	public long nrExhaustiveClimbs = 0;
+	/**
+	 * Counts the number of exhaustive climbing steps.
+	 */
+	public long nrExhaustiveSteps = 0;
+	/**
+	 * Accumulates epsilon improvements by all exhaustive climbing steps.
+	 */
+	public double accEpsilonImprovement = 0;
+	/**
+	 * Counts the number of partial plans discarded since their cost exceeds a cost bound.
+	 */
+	public long nrBoundedPlans = 0;
+	/**
+	 * Contains for each thread the context of the optimizer run it executes or null.
+	 */
+	static final ThreadLocal<OptimizationContext> activeContext =
+			new ThreadLocal<OptimizationContext>();
+	/**
+	 * Used for threads without active context; reflects the global settings.
+	 */
+	static volatile OptimizationContext globalContext = null;
+	/**
+	 * Initializes a context with the given settings and zero counters.
+	 *
+	 * @param timeoutMillis	the optimization time budget in milliseconds
+	 * @param nrCostMetrics	the number of cost metrics for query plans
+	 * @param random		the random number generator to use
+	 */
+	public OptimizationContext(long timeoutMillis, int nrCostMetrics, Random random) {
+		this.timeoutMillis = timeoutMillis;
+		this.nrCostMetrics = nrCostMetrics;
+		this.random = random;
+	}
+	/**
+	 * Initializes a context with the given settings whose random numbers are drawn from
+	 * a stream with the given seed: optimizer runs with the same seed are reproducible.
+	 *
+	 * @param timeoutMillis	the optimization time budget in milliseconds
+	 * @param nrCostMetrics	the number of cost metrics for query plans
+	 * @param seed			seed of the random number stream
+	 */
+	public OptimizationContext(long timeoutMillis, int nrCostMetrics, long seed) {
+		this(timeoutMillis, nrCostMetrics, new RandomStream(seed));
+	}
+	/**
+	 * Creates a new context using the global settings for time budget and number of
+	 * cost metrics whose random number stream is derived from a root seed and a task
+	 * index (e.g., the index of an optimizer run, a worker thread, or a partition).
+	 *
+	 * @param seed		root seed shared by all tasks
+	 * @param taskIndex	index of the task for which the context is created
+	 * @return			a new context with a task-specific random number stream
+	 */
+	public static OptimizationContext derive(long seed, long taskIndex) {
+		return new OptimizationContext(Constants.TIMEOUT_MILLIS,
+				Constants.NR_COST_METRICS, RandomStream.derive(seed, taskIndex));
+	}
+	/**
+	 * Creates a context for a worker thread that helps with the optimizer run described
+	 * by this context. The new context has the same settings, zero counters, and its own
+	 * random number stream split off the stream of this context. Splitting changes the
+	 * state of the random number stream of this context.
+	 *
+	 * @return	a new context for a worker thread
+	 */
+	public OptimizationContext split() {
+		RandomStream workerRandom = random instanceof RandomStream ?
+				((RandomStream)random).split() : new RandomStream(random.nextLong());
+		return new OptimizationContext(timeoutMillis, nrCostMetrics, workerRandom);
+	}
+	/**
+	 * Creates a new context using the global settings for time budget, number of cost
+	 * metrics, and random number generator.
+	 *
+	 * @return	a new context with zero counters
+	 */
+	public static OptimizationContext defaultContext() {
+		return new OptimizationContext(Constants.TIMEOUT_MILLIS,
+				Constants.NR_COST_METRICS, RandomNumbers.random);
+	}
+	/**
+	 * Returns the context that is active for the current thread. If no context is active,
+	 * a context reflecting the current global settings is returned.
+	 *
+	 * @return	the context to use for the current thread
+	 */
+	public static OptimizationContext current() {
+		OptimizationContext context = activeContext.get();
+		if (context != null) {
+			return context;
+		}
+		// Re-create global context if global settings changed since its creation
+		OptimizationContext global = globalContext;
+		if (global == null || global.timeoutMillis != Constants.TIMEOUT_MILLIS ||
+				global.nrCostMetrics != Constants.NR_COST_METRICS ||
+				global.random != RandomNumbers.random) {
+			global = defaultContext();
+			globalContext = global;
+		}
+		return global;
+	}
+	/**
+	 * Makes this context the active context of the current thread.
+	 *
+	 * @return	the context that was active before or null
+	 */
+	public OptimizationContext activate() {
+		OptimizationContext previous = activeContext.get();
+		activeContext.set(this);
+		return previous;
+	}
+	/**
+	 * Restores the context that was active for the current thread before the
+	 * last activation.
+	 *
+	 * @param previous	the context returned by the last call to <code>activate</code>
+	 */
+	public static void restore(OptimizationContext previous) {
+		if (previous == null) {
+			activeContext.remove();
+		} else {
+			activeContext.set(previous);
+		}
+	}
+	/**
+	 * Returns the length of one optimization time period in milliseconds.
+	 *
+	 * @return	the time budget divided by the number of time periods
+	 */
+	public long timePeriodMillis() {
+		return timeoutMillis / Constants.NR_TIME_PERIODS;
+	}
+	/**
+	 * Adds the counters of the given context (e.g., the context of a worker thread that
+	 * helped with this optimizer run) to the counters of this context.
+	 *
+	 * @param other	the context whose counters are added
+	 */
+	public void addCounters(OptimizationContext other) {
+		nrPlansCreated += other.nrPlansCreated;
+		nrRootCostEvaluations += other.nrRootCostEvaluations;
+		nrExhaustiveClimbs += other.nrExhaustiveClimbs;
+		nrExhaustiveSteps += other.nrExhaustiveSteps;
+		accEpsilonImprovement += other.accEpsilonImprovement;
+		nrBoundedPlans += other.nrBoundedPlans;
+	}
+	/**
+	 * Sets all counters back to zero.
+	 */
+	public void resetCounters() {
+		nrPlansCreated = 0;
+		nrRootCostEvaluations = 0;
+		nrExhaustiveClimbs = 0;
+		nrExhaustiveSteps = 0;
+		accEpsilonImprovement = 0;
+		nrBoundedPlans = 0;
+	}
+}
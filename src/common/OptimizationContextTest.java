@@ -0,0 +1,140 @@
+package common;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import cost.MultiCostModel;
+import cost.SingleCostModel;
+import cost.local.BufferCostModel;
+import cost.local.TimeCostModel;
+import optimizer.approximate.DPmoqo;
+import plans.JoinPlan;
+import plans.ParetoPlanSet;
+import plans.Plan;
+import plans.ScanPlan;
+import plans.operators.local.BNLjoin;
+import plans.operators.local.LocalScan;
+import plans.spaces.LocalPlanSpace;
+import plans.spaces.PlanSpace;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+
+import org.junit.Test;
+
+public class OptimizationContextTest {
+
+	@Test
+	public void test() {
+		// Without active context, the global settings are used
+		{
+			OptimizationContext global = OptimizationContext.current();
+			assertEquals(Constants.TIMEOUT_MILLIS, global.timeoutMillis);
+			assertEquals(Constants.NR_COST_METRICS, global.nrCostMetrics);
+			assertTrue(global.random == RandomNumbers.random);
+			assertTrue(global == OptimizationContext.current());
+		}
+		// Activated contexts determine the cost vector size and count created plans
+		{
+			Query query = new Query(1, new double[] {1}, new double[][]{{1}});
+			OptimizationContext outer = new OptimizationContext(100, 2, new Random(0));
+			OptimizationContext inner = new OptimizationContext(100, 4, new Random(0));
+			assertNull(outer.activate());
+			Plan outerPlan = new ScanPlan(query, 0, new LocalScan());
+			assertTrue(outer == inner.activate());
+			Plan innerPlan = new ScanPlan(query, 0, new LocalScan());
+			assertEquals(4, innerPlan.cost.length);
+			assertEquals(1, inner.nrPlansCreated);
+			OptimizationContext.restore(outer);
+			assertTrue(outer == OptimizationContext.current());
+			OptimizationContext.restore(null);
+			assertEquals(2, outerPlan.cost.length);
+			assertEquals(1, outer.nrPlansCreated);
+			// Cost evaluations are counted in the active context and merged on request
+			List<SingleCostModel> costModels = Arrays.asList(new SingleCostModel[] {
+					new TimeCostModel(0), new BufferCostModel(1)
+			});
+			MultiCostModel costModel = new MultiCostModel(costModels);
+			inner.activate();
+			costModel.updateRoot(outerPlan);
+			OptimizationContext.restore(null);
+			assertEquals(1, inner.nrRootCostEvaluations);
+			assertEquals(0, outer.nrRootCostEvaluations);
+			outer.addCounters(inner);
+			assertEquals(2, outer.nrPlansCreated);
+			assertEquals(1, outer.nrRootCostEvaluations);
+			outer.resetCounters();
+			assertEquals(0, outer.nrPlansCreated);
+			assertEquals(0, outer.nrRootCostEvaluations);
+			assertFalse(outer == OptimizationContext.current());
+			// Explicitly passed contexts are used instead of the active context
+			inner.resetCounters();
+			outer.activate();
+			Plan passedPlan = new ScanPlan(query, 0, new LocalScan(), inner);
+			costModel.updateRoot(passedPlan, inner);
+			Plan joinPlan = new JoinPlan(1, 1, passedPlan, passedPlan, 
+					new BNLjoin(100, false), inner);
+			Plan copiedPlan = joinPlan.deepMutableCopy();
+			costModel.updateRoot(copiedPlan);
+			assertEquals(1, costModel.nrRootCostEvaluations());
+			OptimizationContext.restore(null);
+			assertEquals(4, joinPlan.cost.length);
+			assertEquals(2, copiedPlan.cost.length);
+			assertEquals(2, inner.nrPlansCreated);
+			assertEquals(1, inner.nrRootCostEvaluations);
+			assertEquals(3, outer.nrPlansCreated);
+			assertEquals(1, outer.nrRootCostEvaluations);
+		}
+		// Concurrent optimizer runs with separate contexts produce the same results
+		// as a sequential run.
+		{
+			final PlanSpace planSpace = new LocalPlanSpace();
+			List<SingleCostModel> costModels = Arrays.asList(new SingleCostModel[] {
+					new TimeCostModel(0), new BufferCostModel(1)
+			});
+			final MultiCostModel costModel = new MultiCostModel(costModels);
+			final boolean[] consideredMetrics = new boolean[] {true, true};
+			final Query[] queries = new Query[4];
+			for (int queryCtr=0; queryCtr<4; ++queryCtr) {
+				queries[queryCtr] = QueryFactory.produceSteinbrunn(
+						JoinGraphType.STAR, 6, JoinType.RANDOM);
+			}
+			final DPmoqo optimizer = new DPmoqo(1);
+			int[] sequentialSizes = new int[4];
+			for (int queryCtr=0; queryCtr<4; ++queryCtr) {
+				ParetoPlanSet result = optimizer.approximateParetoSet(queries[queryCtr],
+						consideredMetrics, planSpace, costModel, null, 0, 0, 0,
+						new OptimizationContext(60000, 2, new Random(queryCtr)));
+				sequentialSizes[queryCtr] = result.plans.size();
+			}
+			final int[] concurrentSizes = new int[4];
+			Thread[] threads = new Thread[4];
+			for (int queryCtr=0; queryCtr<4; ++queryCtr) {
+				final int threadQuery = queryCtr;
+				threads[queryCtr] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						ParetoPlanSet result = optimizer.approximateParetoSet(queries[threadQuery],
+								consideredMetrics, planSpace, costModel, null, 0, 0, 0,
+								new OptimizationContext(60000, 2, new Random(threadQuery)));
+						concurrentSizes[threadQuery] = result.plans.size();
+					}
+				});
+				threads[queryCtr].start();
+			}
+			for (Thread thread : threads) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					fail();
+				}
+			}
+			assertArrayEquals(sequentialSizes, concurrentSizes);
+		}
+	}
+
+}
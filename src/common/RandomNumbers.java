@@ -2,6 +2,14 @@ package common;
 
 import java.util.Random;
 
+/**
+ * Global random number generator used by code that is executed without an active
+ * optimization context (see {@link OptimizationContext}). Optimizer runs that are
+ * executed concurrently should use their own seeded streams (see {@link RandomStream}).
+ * 
+ * @author immanueltrummer
+ *
+ */
 public class RandomNumbers {
 	// using only one random generator in the entire code is useful since we can fix the seed for testing
 	public static Random random = new Random();
@@ -0,0 +1,173 @@
+package common;
+
+import java.util.Random;
+
+/**
+ * A seedable stream of random numbers that can be split into statistically independent
+ * child streams. Each optimizer run, worker thread, or cluster partition should use its
+ * own stream: streams are not shared between threads and therefore not contended, and
+ * runs are reproducible for a fixed root seed independently of thread scheduling.
+ *
+ * Numbers are generated by the SplitMix64 algorithm (the algorithm behind
+ * {@link java.util.SplittableRandom}), implemented here such that streams are
+ * serializable and can be shipped to worker nodes. This class extends {@link Random}
+ * so that it can be used wherever a random number generator is expected (e.g., for
+ * shuffling collections). Unlike {@link Random}, instances are not thread-safe.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class RandomStream extends Random {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Default increment between consecutive seeds (odd and irregular bit pattern).
+	 */
+	final static long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	/**
+	 * The current seed - advanced by the gamma value for each generated number.
+	 */
+	long seed;
+	/**
+	 * The increment added to the seed for each generated number (always odd).
+	 */
+	long gamma;
+	/**
+	 * Initializes a stream with a seed derived from the current time.
+	 */
+	public RandomStream() {
+		this(mix64(System.nanoTime()) ^ mix64(System.currentTimeMillis()));
+	}
+	/**
+	 * Initializes a stream with the given seed. Streams with the same seed produce
+	 * the same sequence of random numbers.
+	 *
+	 * @param seed	seed of the stream
+	 */
+	public RandomStream(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+	/**
+	 * Initializes a stream with the given seed and seed increment.
+	 *
+	 * @param seed	seed of the stream
+	 * @param gamma	odd increment added to the seed for each generated number
+	 */
+	RandomStream(long seed, long gamma) {
+		this.seed = seed;
+		this.gamma = gamma;
+	}
+	/**
+	 * Derives the stream for the given task from a root seed. The result only depends on
+	 * the seed and the task index: tasks that are executed in parallel (e.g., in different
+	 * cluster partitions) obtain the same streams regardless of their execution order.
+	 *
+	 * @param seed		root seed shared by all tasks
+	 * @param taskIndex	index of the task (e.g., partition or thread index)
+	 * @return			a stream that is specific to the task
+	 */
+	public static RandomStream derive(long seed, long taskIndex) {
+		long taskSeed = seed + (taskIndex + 1) * GOLDEN_GAMMA;
+		return new RandomStream(mix64(taskSeed), mixGamma(taskSeed + GOLDEN_GAMMA));
+	}
+	/**
+	 * Creates a new child stream whose numbers are statistically independent from the
+	 * numbers of this stream. Splitting advances the state of this stream.
+	 *
+	 * @return	a new stream that can be used by another task
+	 */
+	public RandomStream split() {
+		return new RandomStream(nextLong(), mixGamma(nextSeed()));
+	}
+	/**
+	 * Advances the seed to the next position.
+	 *
+	 * @return	the new seed
+	 */
+	long nextSeed() {
+		return seed += gamma;
+	}
+	/**
+	 * Scrambles the bits of the given value into a 64 bit random number.
+	 *
+	 * @param z	the value to scramble
+	 * @return	a well-mixed 64 bit value
+	 */
+	static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	/**
+	 * Scrambles the bits of the given value into a 32 bit random number.
+	 *
+	 * @param z	the value to scramble
+	 * @return	a well-mixed 32 bit value
+	 */
+	static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int)(((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+	/**
+	 * Derives a seed increment for a child stream from the given value. Increments
+	 * must be odd and should contain enough bit transitions to mix well.
+	 *
+	 * @param z	the value from which to derive the increment
+	 * @return	an odd seed increment
+	 */
+	static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int nrTransitions = Long.bitCount(z ^ (z >>> 1));
+		return nrTransitions < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+	/**
+	 * Resets the stream to the given seed. This method is also called by the constructor
+	 * of the super class; the seed set then is overwritten by our own constructors.
+	 */
+	@Override
+	public void setSeed(long seed) {
+		this.seed = seed;
+		this.gamma = GOLDEN_GAMMA;
+	}
+	@Override
+	protected int next(int bits) {
+		return mix32(nextSeed()) >>> (32 - bits);
+	}
+	@Override
+	public int nextInt() {
+		return mix32(nextSeed());
+	}
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("Bound must be positive: " + bound);
+		}
+		int result = mix32(nextSeed());
+		int mask = bound - 1;
+		if ((bound & mask) == 0) {
+			// Bound is a power of two
+			result &= mask;
+		} else {
+			// Reject values from the incomplete last interval to avoid bias
+			for (int u = result >>> 1; u + mask - (result = u % bound) < 0;
+					u = mix32(nextSeed()) >>> 1);
+		}
+		return result;
+	}
+	@Override
+	public long nextLong() {
+		return mix64(nextSeed());
+	}
+	@Override
+	public double nextDouble() {
+		return (mix64(nextSeed()) >>> 11) * 0x1.0p-53;
+	}
+	@Override
+	public boolean nextBoolean() {
+		return mix32(nextSeed()) < 0;
+	}
+}
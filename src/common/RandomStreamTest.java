@@ -0,0 +1,141 @@
+package common;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+
+import org.junit.Test;
+
+public class RandomStreamTest {
+	/**
+	 * Draws the given number of random long values from the stream.
+	 *
+	 * @param stream	a random number stream
+	 * @param nrValues	the number of values to draw
+	 * @return			the drawn values
+	 */
+	static long[] draw(RandomStream stream, int nrValues) {
+		long[] values = new long[nrValues];
+		for (int i=0; i<nrValues; ++i) {
+			values[i] = stream.nextLong();
+		}
+		return values;
+	}
+
+	@Test
+	public void test() throws Exception {
+		// Streams with the same seed produce the same numbers
+		{
+			assertArrayEquals(draw(new RandomStream(7), 20), draw(new RandomStream(7), 20));
+			assertFalse(Arrays.equals(
+					draw(new RandomStream(7), 20), draw(new RandomStream(8), 20)));
+			RandomStream stream = new RandomStream(7);
+			stream.nextLong();
+			stream.setSeed(7);
+			assertArrayEquals(draw(new RandomStream(7), 20), draw(stream, 20));
+		}
+		// Split streams are reproducible and differ from their parent stream
+		{
+			RandomStream parent1 = new RandomStream(3);
+			RandomStream parent2 = new RandomStream(3);
+			RandomStream child1 = parent1.split();
+			RandomStream child2 = parent2.split();
+			assertArrayEquals(draw(child1, 20), draw(child2, 20));
+			assertArrayEquals(draw(parent1, 20), draw(parent2, 20));
+			assertFalse(Arrays.equals(
+					draw(parent1.split(), 20), draw(parent1.split(), 20)));
+		}
+		// Derived streams only depend on seed and task index
+		{
+			RandomStream task2 = RandomStream.derive(11, 2);
+			RandomStream task1 = RandomStream.derive(11, 1);
+			assertArrayEquals(draw(RandomStream.derive(11, 1), 20), draw(task1, 20));
+			assertArrayEquals(draw(RandomStream.derive(11, 2), 20), draw(task2, 20));
+			assertFalse(Arrays.equals(
+					draw(RandomStream.derive(11, 1), 20), draw(RandomStream.derive(11, 2), 20)));
+		}
+		// Bounded values are within their bounds and cover the whole range
+		{
+			RandomStream stream = new RandomStream(5);
+			boolean[] seen = new boolean[7];
+			for (int i=0; i<1000; ++i) {
+				int value = stream.nextInt(7);
+				assertTrue(value >= 0 && value < 7);
+				seen[value] = true;
+				double doubleValue = stream.nextDouble();
+				assertTrue(doubleValue >= 0 && doubleValue < 1);
+			}
+			for (boolean valueSeen : seen) {
+				assertTrue(valueSeen);
+			}
+		}
+		// Non-positive bounds are rejected like by java.util.Random
+		{
+			RandomStream stream = new RandomStream(5);
+			for (int bound : new int[] {0, -1, Integer.MIN_VALUE}) {
+				try {
+					stream.nextInt(bound);
+					fail();
+				} catch (IllegalArgumentException e) {
+				}
+			}
+		}
+		// Streams can be used for shuffling and continue after serialization
+		{
+			List<Integer> list1 = new ArrayList<Integer>();
+			List<Integer> list2 = new ArrayList<Integer>();
+			for (int i=0; i<20; ++i) {
+				list1.add(i);
+				list2.add(i);
+			}
+			Collections.shuffle(list1, new RandomStream(9));
+			Collections.shuffle(list2, new RandomStream(9));
+			assertEquals(list1, list2);
+			RandomStream stream = new RandomStream(13);
+			stream.nextLong();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(stream);
+			out.close();
+			ObjectInputStream in = new ObjectInputStream(
+					new ByteArrayInputStream(bytes.toByteArray()));
+			RandomStream copy = (RandomStream)in.readObject();
+			assertArrayEquals(draw(stream, 20), draw(copy, 20));
+		}
+		// Seeded streams make query generation reproducible
+		{
+			Query query1 = QueryFactory.produceSteinbrunn(
+					JoinGraphType.CHAIN, 8, JoinType.RANDOM, new RandomStream(17));
+			Query query2 = QueryFactory.produceSteinbrunn(
+					JoinGraphType.CHAIN, 8, JoinType.RANDOM, new RandomStream(17));
+			assertArrayEquals(query1.tableCardinalities, query2.tableCardinalities, 1E-10);
+			for (int table=0; table<8; ++table) {
+				assertArrayEquals(query1.selectivities[table], query2.selectivities[table], 1E-10);
+			}
+		}
+		// Worker contexts use split streams
+		{
+			OptimizationContext context1 = new OptimizationContext(100, 2, 21);
+			OptimizationContext context2 = new OptimizationContext(100, 2, 21);
+			OptimizationContext worker1 = context1.split();
+			OptimizationContext worker2 = context2.split();
+			assertEquals(100, worker1.timeoutMillis);
+			assertEquals(2, worker1.nrCostMetrics);
+			assertEquals(worker1.random.nextLong(), worker2.random.nextLong());
+			assertEquals(context1.random.nextLong(), context2.random.nextLong());
+		}
+	}
+
+}
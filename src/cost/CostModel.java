@@ -2,6 +2,7 @@ package cost;
 
 import java.io.Serializable;
 
+import common.OptimizationContext;
 import plans.JoinPlan;
 import plans.Plan;
 import plans.ScanPlan;
@@ -24,6 +25,17 @@ public abstract class CostModel implements Serializable {
 	 * @param plan	the plan for whose root node the cost must be calculated
 	 */
 	public abstract void updateRoot(Plan plan);
+	/**
+	 * Updates the cost of the root of the plan tree and records statistics in the given
+	 * optimization context. Callers creating many plans pass the context they obtained
+	 * once instead of having it looked up for each plan.
+	 * 
+	 * @param plan		the plan for whose root node the cost must be calculated
+	 * @param context	the optimization context active for the current thread
+	 */
+	public void updateRoot(Plan plan, OptimizationContext context) {
+		updateRoot(plan);
+	}
 	/**
 	 * Update cost of plan root node based on cost of its children and update statistics
 	 * 
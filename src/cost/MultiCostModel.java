@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
+import common.OptimizationContext;
 import plans.Plan;
 
 /**
@@ -18,10 +19,6 @@ public class MultiCostModel extends CostModel {
 	 * Used to verify the class version.
 	 */
 	private static final long serialVersionUID = 1L;
-	/**
-	 * Counts the number of plan node evaluations.
-	 */
-	public long nrRootCostEvaluations = 0;
 	/**
 	 * Number of single cost metrics aggregated by this multi-cost model.
 	 */
@@ -45,13 +42,32 @@ public class MultiCostModel extends CostModel {
 		}
 	}
 
+	/**
+	 * Returns the number of plan node evaluations counted in the optimization context
+	 * of the current thread.
+	 * 
+	 * @return	the number of root cost evaluations in the current context
+	 * @deprecated	evaluations are counted per optimization context, use
+	 * 				{@link OptimizationContext#nrRootCostEvaluations} instead
+	 */
+	@Deprecated
+	public long nrRootCostEvaluations() {
+		return OptimizationContext.current().nrRootCostEvaluations;
+	}
+
 	@Override
 	public void updateRoot(Plan plan) {
+		updateRoot(plan, OptimizationContext.current());
+	}
+
+	@Override
+	public void updateRoot(Plan plan, OptimizationContext context) {
 		// Invoke component metrics
 		for (SingleCostModel model : models) {
 			model.updateRoot(plan);
 		}
-		++nrRootCostEvaluations;
+		// Count in the context of the current thread (merged after parallel runs)
+		++context.nrRootCostEvaluations;
 	}
 
 	@Override
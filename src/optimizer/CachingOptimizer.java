@@ -0,0 +1,349 @@
+package optimizer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import common.OptimizationContext;
+import cost.MultiCostModel;
+import plans.JoinPlan;
+import plans.ParetoPlanSet;
+import plans.Plan;
+import plans.ScanPlan;
+import plans.operators.JoinOperator;
+import plans.operators.ScanOperator;
+import plans.spaces.PlanSpace;
+import queries.Query;
+import queries.QueryFingerprint;
+
+/**
+ * Caches the plan sets generated by another optimizer across queries. Queries are looked
+ * up by their fingerprint which does not depend on table numbering; on a cache hit, the
+ * cached plans are translated to the table numbering of the new query and their cost is
+ * recalculated. Cache entries are specific to the considered metrics, plan space, and
+ * cost model of the optimizer run that generated them.
+ * <p>
+ * The size of the cache is bounded by the total number of cached plan nodes. Entries are
+ * evicted according to the GreedyDual-Size policy: each entry has a priority that is set
+ * to the current inflation value plus the optimization time that was spent to generate the
+ * entry divided by its size, whenever the entry is inserted or used. The entry with the
+ * lowest priority is evicted and its priority becomes the new inflation value. Hence, if
+ * all entries are equally expensive, entries are evicted in LRU order, while entries that
+ * were expensive to generate and consume little space are kept longer.
+ * <p>
+ * Optimizer runs on cache hits do not store statistics.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class CachingOptimizer extends Optimizer {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The optimizer that generates plans on cache misses.
+	 */
+	public final Optimizer optimizer;
+	/**
+	 * The maximal number of plan nodes in all cached plans.
+	 */
+	public final long maxCachedNodes;
+	/**
+	 * Cardinalities and selectivities that differ by less than that relative precision
+	 * may be mapped to the same fingerprint.
+	 */
+	public final double precision;
+	/**
+	 * Maps lookup keys to cache entries.
+	 */
+	final Map<CacheKey, CacheEntry> entries = new HashMap<CacheKey, CacheEntry>();
+	/**
+	 * Cache entries ordered by their priority for eviction.
+	 */
+	final TreeSet<CacheEntry> evictionOrder = new TreeSet<CacheEntry>();
+	/**
+	 * The priority of the last evicted entry; added to the priority of used entries.
+	 */
+	double inflation = 0;
+	/**
+	 * The number of plan nodes in all cached plans.
+	 */
+	long nrCachedNodes = 0;
+	/**
+	 * Counts the accesses to cache entries; used to break ties between priorities.
+	 */
+	long nrAccesses = 0;
+	/**
+	 * The number of optimizer runs answered from the cache.
+	 */
+	public long nrHits = 0;
+	/**
+	 * The number of optimizer runs that invoked the wrapped optimizer.
+	 */
+	public long nrMisses = 0;
+	/**
+	 * Identifies cached plan sets: equal keys belong to queries that are equivalent up to
+	 * table numbering and are optimized with the same settings.
+	 */
+	static class CacheKey implements Serializable {
+		/**
+		 * Used to verify the class version.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The fingerprint of the optimized query.
+		 */
+		final QueryFingerprint fingerprint;
+		/**
+		 * Boolean flags indicating which metrics were considered.
+		 */
+		final boolean[] consideredMetrics;
+		/**
+		 * The plan space used for optimization (compared by identity).
+		 */
+		final PlanSpace planSpace;
+		/**
+		 * The cost model used for optimization (compared by identity).
+		 */
+		final MultiCostModel costModel;
+		/**
+		 * Initializes the key fields.
+		 *
+		 * @param fingerprint		the fingerprint of the optimized query
+		 * @param consideredMetrics	Boolean flags indicating which metrics are considered
+		 * @param planSpace			the plan space used for optimization
+		 * @param costModel			the cost model used for optimization
+		 */
+		CacheKey(QueryFingerprint fingerprint, boolean[] consideredMetrics,
+				PlanSpace planSpace, MultiCostModel costModel) {
+			this.fingerprint = fingerprint;
+			this.consideredMetrics = Arrays.copyOf(consideredMetrics, consideredMetrics.length);
+			this.planSpace = planSpace;
+			this.costModel = costModel;
+		}
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey otherKey = (CacheKey)other;
+			return planSpace == otherKey.planSpace && costModel == otherKey.costModel &&
+					Arrays.equals(consideredMetrics, otherKey.consideredMetrics) &&
+					fingerprint.equals(otherKey.fingerprint);
+		}
+		@Override
+		public int hashCode() {
+			return 31 * fingerprint.hashCode() + Arrays.hashCode(consideredMetrics);
+		}
+	}
+	/**
+	 * A cached plan set together with the information required for eviction.
+	 */
+	static class CacheEntry implements Comparable<CacheEntry>, Serializable {
+		/**
+		 * Used to verify the class version.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The key under which the entry is stored.
+		 */
+		final CacheKey key;
+		/**
+		 * The cached plans; they refer to the table numbering of the key fingerprint.
+		 */
+		final List<Plan> plans;
+		/**
+		 * The number of plan nodes in all cached plans.
+		 */
+		final long nrNodes;
+		/**
+		 * The time in milliseconds that was spent to generate the plans.
+		 */
+		final double optimizationMillis;
+		/**
+		 * The eviction priority: entries with lower priority are evicted first.
+		 */
+		double priority;
+		/**
+		 * The access counter value at the last access to this entry.
+		 */
+		long lastAccess;
+		/**
+		 * Initializes the entry for the given plans.
+		 *
+		 * @param key					the key under which the entry is stored
+		 * @param plans					the plans generated for the query
+		 * @param nrNodes				the number of plan nodes in all plans
+		 * @param optimizationMillis	the time spent to generate the plans
+		 */
+		CacheEntry(CacheKey key, List<Plan> plans, long nrNodes, double optimizationMillis) {
+			this.key = key;
+			this.plans = plans;
+			this.nrNodes = nrNodes;
+			this.optimizationMillis = optimizationMillis;
+		}
+		@Override
+		public int compareTo(CacheEntry other) {
+			int comparison = Double.compare(priority, other.priority);
+			return comparison != 0 ? comparison : Long.compare(lastAccess, other.lastAccess);
+		}
+	}
+	/**
+	 * Initializes the cache.
+	 *
+	 * @param optimizer			the optimizer that generates plans on cache misses
+	 * @param maxCachedNodes	the maximal number of plan nodes in all cached plans
+	 * @param precision			relative precision at which query properties are compared
+	 */
+	public CachingOptimizer(Optimizer optimizer, long maxCachedNodes, double precision) {
+		assert(maxCachedNodes > 0);
+		assert(precision > 0);
+		this.optimizer = optimizer;
+		this.maxCachedNodes = maxCachedNodes;
+		this.precision = precision;
+	}
+	/**
+	 * Initializes the cache with a precision that only tolerates rounding differences.
+	 *
+	 * @param optimizer			the optimizer that generates plans on cache misses
+	 * @param maxCachedNodes	the maximal number of plan nodes in all cached plans
+	 */
+	public CachingOptimizer(Optimizer optimizer, long maxCachedNodes) {
+		this(optimizer, maxCachedNodes, 1E-9);
+	}
+	/**
+	 * Returns the translated plans of a cached equivalent query if available and invokes
+	 * the wrapped optimizer and caches its plans otherwise.
+	 */
+	@Override
+	protected ParetoPlanSet optimize(Query query, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel, ParetoPlanSet refPlanSet,
+			int algIndex, int sizeIndex, int queryIndex, OptimizationContext context) {
+		QueryFingerprint fingerprint = new QueryFingerprint(query, precision);
+		CacheKey key = new CacheKey(fingerprint, consideredMetrics, planSpace, costModel);
+		CacheEntry entry = lookup(key);
+		if (entry != null) {
+			// Translate table indices of cached plans
+			QueryFingerprint cachedFingerprint = entry.key.fingerprint;
+			int[] tableMapping = new int[query.nrTables];
+			for (int cachedTable=0; cachedTable<query.nrTables; ++cachedTable) {
+				tableMapping[cachedTable] = fingerprint.tableAt(
+						cachedFingerprint.positionOf(cachedTable));
+			}
+			List<Plan> plans = new ArrayList<Plan>(entry.plans.size());
+			for (Plan cachedPlan : entry.plans) {
+				Plan plan = remap(cachedPlan, tableMapping, query);
+				costModel.updateAll(plan);
+				plan.makeImmutable();
+				plans.add(plan);
+			}
+			return new ParetoPlanSet(plans);
+		}
+		long startMillis = System.currentTimeMillis();
+		ParetoPlanSet result = optimizer.approximateParetoSet(query, consideredMetrics,
+				planSpace, costModel, refPlanSet, algIndex, sizeIndex, queryIndex, context);
+		long optimizationMillis = System.currentTimeMillis() - startMillis;
+		// The wrapped optimizer may reuse the list of result plans later
+		List<Plan> plans = new ArrayList<Plan>(result.plans);
+		long nrNodes = plans.size() * (2L * query.nrTables - 1);
+		insert(new CacheEntry(key, plans, nrNodes, optimizationMillis));
+		return result;
+	}
+	/**
+	 * Returns the entry stored under the given key if any and updates its priority.
+	 *
+	 * @param key	the key to look up
+	 * @return		the cache entry or null
+	 */
+	synchronized CacheEntry lookup(CacheKey key) {
+		CacheEntry entry = entries.get(key);
+		if (entry == null) {
+			++nrMisses;
+			return null;
+		}
+		++nrHits;
+		evictionOrder.remove(entry);
+		prioritize(entry);
+		evictionOrder.add(entry);
+		return entry;
+	}
+	/**
+	 * Inserts a new entry into the cache and evicts entries with lowest priority until
+	 * the size bound is respected. Entries exceeding the size bound are not inserted.
+	 *
+	 * @param entry	a new cache entry
+	 */
+	synchronized void insert(CacheEntry entry) {
+		if (entry.nrNodes > maxCachedNodes) {
+			return;
+		}
+		// Another thread may have inserted an entry for the same key meanwhile
+		CacheEntry oldEntry = entries.remove(entry.key);
+		if (oldEntry != null) {
+			evictionOrder.remove(oldEntry);
+			nrCachedNodes -= oldEntry.nrNodes;
+		}
+		while (nrCachedNodes + entry.nrNodes > maxCachedNodes) {
+			CacheEntry evictedEntry = evictionOrder.pollFirst();
+			entries.remove(evictedEntry.key);
+			nrCachedNodes -= evictedEntry.nrNodes;
+			inflation = evictedEntry.priority;
+		}
+		prioritize(entry);
+		entries.put(entry.key, entry);
+		evictionOrder.add(entry);
+		nrCachedNodes += entry.nrNodes;
+	}
+	/**
+	 * Sets the priority of an entry that is inserted or used. The entry must not be
+	 * contained in the eviction order while its priority changes.
+	 *
+	 * @param entry	a cache entry
+	 */
+	void prioritize(CacheEntry entry) {
+		entry.priority = inflation + Math.max(entry.optimizationMillis, 1) / entry.nrNodes;
+		entry.lastAccess = nrAccesses;
+		++nrAccesses;
+	}
+	/**
+	 * Creates a mutable copy of the given plan for the given query where each scanned
+	 * table index is replaced according to the given mapping. Operators are copied and
+	 * cost is not calculated.
+	 *
+	 * @param plan			a plan for a query that is equivalent to the given one
+	 * @param tableMapping	maps table indices of the plan to table indices of the query
+	 * @param query			the query for which the plan is created
+	 * @return				a plan for the given query with the same structure and operators
+	 */
+	static Plan remap(Plan plan, int[] tableMapping, Query query) {
+		if (plan instanceof ScanPlan) {
+			ScanPlan scanPlan = (ScanPlan)plan;
+			return new ScanPlan(query, tableMapping[scanPlan.tableIndex],
+					(ScanOperator)scanPlan.scanOperator.deepCopy());
+		} else {
+			JoinPlan joinPlan = (JoinPlan)plan;
+			Plan leftPlan = remap(joinPlan.getLeftPlan(), tableMapping, query);
+			Plan rightPlan = remap(joinPlan.getRightPlan(), tableMapping, query);
+			return new JoinPlan(query, leftPlan, rightPlan,
+					(JoinOperator)joinPlan.getJoinOperator().deepCopy());
+		}
+	}
+	/**
+	 * Removes all cached entries.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		evictionOrder.clear();
+		nrCachedNodes = 0;
+		inflation = 0;
+	}
+	@Override
+	public String toString() {
+		return "Cached(" + optimizer.toString() + ")";
+	}
+}
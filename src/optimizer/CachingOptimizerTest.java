@@ -0,0 +1,106 @@
+package optimizer;
+
+import static org.junit.Assert.*;
+import static util.TestUtil.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import optimizer.approximate.DPmoqo;
+import plans.ParetoPlanSet;
+import plans.Plan;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import queries.QueryFingerprint;
+
+import org.junit.Test;
+
+public class CachingOptimizerTest {
+	/**
+	 * Returns the sorted cost values of all plans for one metric.
+	 *
+	 * @param plans		a list of plans
+	 * @param metric	index of a cost metric
+	 * @return			sorted cost values
+	 */
+	static List<Double> sortedCost(List<Plan> plans, int metric) {
+		List<Double> costValues = new ArrayList<Double>();
+		for (Plan plan : plans) {
+			costValues.add(plan.getCostValue(metric));
+		}
+		Collections.sort(costValues);
+		return costValues;
+	}
+
+	@Test
+	public void test() {
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		// Renumbered queries obtain translated plans with the same cost
+		{
+			CachingOptimizer cache = new CachingOptimizer(new DPmoqo(2), 1000000);
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 6, JoinType.MN);
+			ParetoPlanSet result = cache.approximateParetoSet(query, consideredMetrics,
+					planSpace, costModel, null, 0, 0, 0);
+			assertEquals(1, cache.nrMisses);
+			Query permutedQuery = permute(query, new int[] {3, 5, 0, 1, 4, 2});
+			ParetoPlanSet cachedResult = cache.approximateParetoSet(permutedQuery,
+					consideredMetrics, planSpace, costModel, null, 0, 0, 0);
+			assertEquals(1, cache.nrHits);
+			assertEquals(result.plans.size(), cachedResult.plans.size());
+			validatePlans(cachedResult.plans, planSpace, costModel, true);
+			for (int metric=0; metric<3; ++metric) {
+				List<Double> cost = sortedCost(result.plans, metric);
+				List<Double> cachedCost = sortedCost(cachedResult.plans, metric);
+				for (int planCtr=0; planCtr<cost.size(); ++planCtr) {
+					assertEquals(cost.get(planCtr), cachedCost.get(planCtr),
+							cost.get(planCtr) * LARGE_EPSILON);
+				}
+			}
+			// Other settings miss the cache
+			cache.approximateParetoSet(permutedQuery, new boolean[] {true, false, true},
+					planSpace, costModel, null, 0, 0, 0);
+			assertEquals(2, cache.nrMisses);
+		}
+		// Entries are evicted in LRU order if they are equally expensive
+		{
+			Query query1 = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 4, JoinType.MN);
+			Query query2 = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 4, JoinType.MN);
+			Query query3 = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 4, JoinType.MN);
+			List<CachingOptimizer.CacheKey> keys = new ArrayList<CachingOptimizer.CacheKey>();
+			for (Query query : new Query[] {query1, query2, query3}) {
+				keys.add(new CachingOptimizer.CacheKey(new QueryFingerprint(query, 1E-9),
+						consideredMetrics, planSpace, costModel));
+			}
+			CachingOptimizer smallCache = new CachingOptimizer(new DPmoqo(2), 20);
+			smallCache.insert(new CachingOptimizer.CacheEntry(keys.get(0),
+					new ArrayList<Plan>(), 10, 10));
+			smallCache.insert(new CachingOptimizer.CacheEntry(keys.get(1),
+					new ArrayList<Plan>(), 10, 10));
+			assertNotNull(smallCache.lookup(keys.get(0)));
+			smallCache.insert(new CachingOptimizer.CacheEntry(keys.get(2),
+					new ArrayList<Plan>(), 10, 10));
+			assertNotNull(smallCache.lookup(keys.get(0)));
+			assertNull(smallCache.lookup(keys.get(1)));
+			assertNotNull(smallCache.lookup(keys.get(2)));
+			assertEquals(20, smallCache.nrCachedNodes);
+			// Expensive entries are kept longer than cheap ones
+			smallCache.clear();
+			smallCache.insert(new CachingOptimizer.CacheEntry(keys.get(0),
+					new ArrayList<Plan>(), 10, 1000));
+			smallCache.insert(new CachingOptimizer.CacheEntry(keys.get(1),
+					new ArrayList<Plan>(), 10, 10));
+			smallCache.insert(new CachingOptimizer.CacheEntry(keys.get(2),
+					new ArrayList<Plan>(), 10, 10));
+			assertNotNull(smallCache.lookup(keys.get(0)));
+			assertNull(smallCache.lookup(keys.get(1)));
+			// Entries exceeding the size bound are not cached
+			smallCache.insert(new CachingOptimizer.CacheEntry(keys.get(1),
+					new ArrayList<Plan>(), 30, 10));
+			assertNull(smallCache.lookup(keys.get(1)));
+		}
+	}
+
+}
@@ -2,6 +2,7 @@ package optimizer;
 
 import java.io.Serializable;
 
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import plans.ParetoPlanSet;
 import plans.spaces.PlanSpace;
@@ -20,7 +21,8 @@ public abstract class Optimizer implements Serializable {
 	 */
 	private static final long serialVersionUID = 1L;
 	/**
-	 * Approximate Pareto plan set for query and store corresponding statistics
+	 * Approximate Pareto plan set for query and store corresponding statistics, using
+	 * a default optimization context that reflects the global settings.
 	 * 
 	 * @param query				the query being optimized
 	 * @param consideredMetrics	Boolean flags indicating for each cost metric whether we consider it
@@ -32,7 +34,54 @@ public abstract class Optimizer implements Serializable {
 	 * @param queryIndex		the test case index under which statistics should be stored
 	 * @return					the set of Pareto-optimal query plans generated in this optimizer run
 	 */
-	public abstract ParetoPlanSet approximateParetoSet(Query query, boolean[] consideredMetrics, 
+	public ParetoPlanSet approximateParetoSet(Query query, boolean[] consideredMetrics, 
 			PlanSpace planSpace, MultiCostModel costModel, ParetoPlanSet refPlanSet,
-			int algIndex, int sizeIndex, int queryIndex);
+			int algIndex, int sizeIndex, int queryIndex) {
+		return approximateParetoSet(query, consideredMetrics, planSpace, costModel, 
+				refPlanSet, algIndex, sizeIndex, queryIndex, OptimizationContext.defaultContext());
+	}
+	/**
+	 * Approximate Pareto plan set for query and store corresponding statistics. The given
+	 * context is active for the current thread during optimization; optimizer runs with
+	 * different contexts can execute concurrently.
+	 * 
+	 * @param query				the query being optimized
+	 * @param consideredMetrics	Boolean flags indicating for each cost metric whether we consider it
+	 * @param planSpace			the plan space determines the set of admissible scan and join operators
+	 * @param costModel			cost model estimating plan cost according to different metrics
+	 * @param refPlanSet		set of Pareto-optimal reference plans against which the optimizers compare
+	 * @param algIndex			the algorithm index under which statistics should be stored
+	 * @param sizeIndex			the query size index under which statistics should be stored
+	 * @param queryIndex		the test case index under which statistics should be stored
+	 * @param context			time budget, number of metrics, random generator, and counters
+	 * @return					the set of Pareto-optimal query plans generated in this optimizer run
+	 */
+	public ParetoPlanSet approximateParetoSet(Query query, boolean[] consideredMetrics, 
+			PlanSpace planSpace, MultiCostModel costModel, ParetoPlanSet refPlanSet,
+			int algIndex, int sizeIndex, int queryIndex, OptimizationContext context) {
+		OptimizationContext previousContext = context.activate();
+		try {
+			return optimize(query, consideredMetrics, planSpace, costModel, 
+					refPlanSet, algIndex, sizeIndex, queryIndex, context);
+		} finally {
+			OptimizationContext.restore(previousContext);
+		}
+	}
+	/**
+	 * Implements the optimization algorithm; the given context is already active.
+	 * 
+	 * @param query				the query being optimized
+	 * @param consideredMetrics	Boolean flags indicating for each cost metric whether we consider it
+	 * @param planSpace			the plan space determines the set of admissible scan and join operators
+	 * @param costModel			cost model estimating plan cost according to different metrics
+	 * @param refPlanSet		set of Pareto-optimal reference plans against which the optimizers compare
+	 * @param algIndex			the algorithm index under which statistics should be stored
+	 * @param sizeIndex			the query size index under which statistics should be stored
+	 * @param queryIndex		the test case index under which statistics should be stored
+	 * @param context			time budget, number of metrics, random generator, and counters
+	 * @return					the set of Pareto-optimal query plans generated in this optimizer run
+	 */
+	protected abstract ParetoPlanSet optimize(Query query, boolean[] consideredMetrics, 
+			PlanSpace planSpace, MultiCostModel costModel, ParetoPlanSet refPlanSet,
+			int algIndex, int sizeIndex, int queryIndex, OptimizationContext context);
 }
@@ -0,0 +1,214 @@
+package optimizer.approximate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import common.OptimizationContext;
+import cost.CostModel;
+import plans.JoinPlan;
+import plans.Plan;
+import plans.ScanPlan;
+import plans.operators.JoinOperator;
+import plans.operators.ScanOperator;
+import plans.spaces.PlanSpace;
+import queries.JoinGraph;
+import queries.Query;
+import relations.Relation;
+import relations.RelationFactory;
+import util.PruningUtil;
+import util.TableSetUtil;
+
+/**
+ * Bounds the cost of relevant query plans by a set of complete plans that are generated
+ * cheaply before dynamic programming starts. As the cost of a plan is never lower than
+ * the cost of its sub-plans for any metric, a partial plan whose cost vector is weakly
+ * dominated by the cost vector of a bound plan can only be completed to plans that are
+ * dominated by that bound plan as well. Such partial plans can be discarded as long as
+ * the bound plans are inserted into the relation joining all tables at the end.
+ *
+ * The bound plans are left-deep and therefore admissible in linear and bushy join order
+ * spaces. Join orders are chosen greedily, starting once from each table and always
+ * adding the table that minimizes the cardinality of the next intermediate result. If
+ * a join graph is given then only tables connected to the joined tables are added. The
+ * operators along each join order are selected via exact Pareto pruning.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class CostBound implements Serializable {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Complete query plans whose cost vectors bound the cost of relevant plans.
+	 */
+	public final List<Plan> plans;
+	/**
+	 * Boolean flags indicating which plan cost metrics are considered.
+	 */
+	final boolean[] consideredMetrics;
+
+	/**
+	 * Initializes the bound plans and the considered metrics.
+	 *
+	 * @param plans				complete query plans
+	 * @param consideredMetrics	Boolean flags indicating which plan cost metrics are considered
+	 */
+	public CostBound(List<Plan> plans, boolean[] consideredMetrics) {
+		this.plans = plans;
+		this.consideredMetrics = consideredMetrics;
+	}
+	/**
+	 * Checks whether some bound plan is at least as good as the given plan for each
+	 * considered metric. If so, the discarded plan is counted in the active context.
+	 *
+	 * @param plan	a partial or complete query plan
+	 * @return		true iff the plan can be discarded
+	 */
+	public boolean exceeds(Plan plan) {
+		if (exceeds(plan.getCostValues())) {
+			++OptimizationContext.current().nrBoundedPlans;
+			return true;
+		}
+		return false;
+	}
+	/**
+	 * Checks whether some bound plan is at least as good as the given cost vector for
+	 * each considered metric.
+	 *
+	 * @param cost	a cost vector (e.g., a lower bound on the cost of a set of plans)
+	 * @return		true iff the cost vector is weakly dominated by some bound plan
+	 */
+	public boolean exceeds(double[] cost) {
+		for (Plan boundPlan : plans) {
+			if (PruningUtil.approximatelyDominates(boundPlan.getCostValues(),
+					cost, 1, consideredMetrics)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	/**
+	 * Tightens the bound by a complete query plan unless some bound plan is at least as
+	 * good. Bound plans that are dominated by the new plan are removed. Must not be
+	 * called while other threads use the bound.
+	 *
+	 * @param plan	a complete query plan
+	 * @return		true iff the plan was added to the bound plans
+	 */
+	public boolean add(Plan plan) {
+		if (exceeds(plan.getCostValues())) {
+			return false;
+		}
+		Iterator<Plan> boundIter = plans.iterator();
+		while (boundIter.hasNext()) {
+			if (PruningUtil.approximatelyDominates(plan, boundIter.next(), 1, consideredMetrics)) {
+				boundIter.remove();
+			}
+		}
+		plans.add(plan);
+		return true;
+	}
+	/**
+	 * Returns the index of the table that minimizes the cardinality of the join between
+	 * the given relation and that table, considering only tables that are not yet joined
+	 * and that are adjacent to the joined tables if a join graph is given.
+	 *
+	 * @param query			the query being optimized
+	 * @param rel			relation representing the joined tables
+	 * @param joinedTables	bit mask representing the joined tables
+	 * @param joinGraph		join graph restricting the added tables or null
+	 * @return				index of the next table or -1 if no table can be added
+	 */
+	static int nextTable(Query query, Relation rel, long joinedTables, JoinGraph joinGraph) {
+		long candidates = joinGraph != null ? joinGraph.neighbors(joinedTables) :
+			TableSetUtil.allTables(query.nrTables) & ~joinedTables;
+		int bestTable = -1;
+		double bestCardinality = Double.POSITIVE_INFINITY;
+		for (long remaining = candidates; remaining != 0; remaining &= remaining - 1) {
+			int table = TableSetUtil.firstTable(remaining);
+			double cardinality = rel.cardinality * query.tableCardinalities[table];
+			for (long joined = joinedTables; joined != 0; joined &= joined - 1) {
+				cardinality *= query.selectivities[TableSetUtil.firstTable(joined)][table];
+			}
+			if (cardinality < bestCardinality) {
+				bestTable = table;
+				bestCardinality = cardinality;
+			}
+		}
+		return bestTable;
+	}
+	/**
+	 * Generates bound plans along greedy left-deep join orders for queries with at most
+	 * 64 tables.
+	 *
+	 * @param query				the query being optimized
+	 * @param planSpace			determines the applicable scan and join operators
+	 * @param costModel			estimates the execution cost of the bound plans
+	 * @param consideredMetrics	Boolean flags indicating which plan cost metrics are considered
+	 * @param joinGraph			join graph used to avoid cross products or null if cross products are allowed
+	 * @return					a cost bound whose plans are mutually non-dominated
+	 */
+	public static CostBound greedy(Query query, PlanSpace planSpace, CostModel costModel,
+			boolean[] consideredMetrics, JoinGraph joinGraph) {
+		OptimizationContext context = OptimizationContext.current();
+		int nrTables = query.nrTables;
+		assert(TableSetUtil.fitsInWord(nrTables));
+		// generate Pareto-optimal scan plans for each table
+		Relation[] scanRels = new Relation[nrTables];
+		for (int tableIndex=0; tableIndex<nrTables; ++tableIndex) {
+			Relation rel = RelationFactory.createSingleTableRel(query, tableIndex);
+			for (ScanOperator scanOp : planSpace.scanOperatorsShuffled(rel)) {
+				Plan scanPlan = new ScanPlan(rel.cardinality, rel.pages, 
+						tableIndex, scanOp, context);
+				costModel.updateRoot(scanPlan, context);
+				PruningUtil.prune(query, rel, scanPlan, 1, consideredMetrics, false);
+			}
+			scanRels[tableIndex] = rel;
+		}
+		// collects Pareto-optimal plans over all join orders
+		Relation boundRel = null;
+		for (int startTable=0; startTable<nrTables; ++startTable) {
+			Relation rel = scanRels[startTable];
+			long joinedTables = TableSetUtil.singleton(startTable);
+			for (int step=1; step<nrTables; ++step) {
+				int table = nextTable(query, rel, joinedTables, joinGraph);
+				if (table < 0) {
+					break;
+				}
+				Relation tableRel = scanRels[table];
+				Relation joinRel = RelationFactory.createJoinRel(query, rel, tableRel);
+				for (Plan leftPlan : rel.ParetoPlans) {
+					for (Plan rightPlan : tableRel.ParetoPlans) {
+						for (JoinOperator joinOperator : planSpace.applicableJoinOperators(
+								leftPlan, rightPlan)) {
+							Plan newPlan = new JoinPlan(joinRel.cardinality,
+									joinRel.pages, leftPlan, rightPlan, joinOperator, context);
+							costModel.updateRoot(newPlan, context);
+							PruningUtil.prune(query, joinRel, newPlan, 1, consideredMetrics, false);
+						}
+					}
+				}
+				rel = joinRel;
+				joinedTables |= TableSetUtil.singleton(table);
+			}
+			// join orders that could not be completed do not yield bound plans
+			if (joinedTables != TableSetUtil.allTables(nrTables)) {
+				continue;
+			}
+			if (boundRel == null) {
+				boundRel = rel;
+			} else {
+				for (Plan plan : rel.ParetoPlans) {
+					PruningUtil.prune(query, boundRel, plan, 1, consideredMetrics, false);
+				}
+			}
+		}
+		List<Plan> boundPlans = boundRel != null ?
+				new ArrayList<Plan>(boundRel.ParetoPlans) : new ArrayList<Plan>();
+		return new CostBound(boundPlans, consideredMetrics);
+	}
+}
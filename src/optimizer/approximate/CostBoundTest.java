@@ -0,0 +1,68 @@
+package optimizer.approximate;
+
+import static org.junit.Assert.*;
+import static util.TestUtil.*;
+
+import java.util.List;
+
+import common.OptimizationContext;
+import plans.JoinOrderSpace;
+import plans.Plan;
+import queries.JoinGraph;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import util.ParetoUtil;
+import util.TableSetUtil;
+
+import org.junit.Test;
+
+public class CostBoundTest {
+
+	@Test
+	public void test() {
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		// Bound plans join all tables and avoid cross products if a join graph is given
+		for (JoinGraphType graphType : JoinGraphType.values()) {
+			Query query = QueryFactory.produceSteinbrunn(graphType, 8, JoinType.RANDOM);
+			JoinGraph joinGraph = new JoinGraph(query);
+			CostBound bound = CostBound.greedy(query, planSpace, costModel, consideredMetrics, null);
+			assertFalse(bound.plans.isEmpty());
+			for (Plan plan : bound.plans) {
+				assertEquals(TableSetUtil.allTables(8), SubPlanMemoTest.joinedTables(plan));
+				assertTrue(bound.exceeds(plan));
+			}
+			CostBound connectedBound = CostBound.greedy(
+					query, planSpace, costModel, consideredMetrics, joinGraph);
+			assertFalse(connectedBound.plans.isEmpty());
+			for (Plan plan : connectedBound.plans) {
+				assertEquals(TableSetUtil.allTables(8),
+						DPmoqoTest.crossProductFreeTables(plan, joinGraph));
+			}
+		}
+		// Bounded dynamic programming yields the same frontier and discards plans
+		for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+			for (boolean avoidCrossProducts : new boolean[] {false, true}) {
+				long nrBoundedPlans = 0;
+				for (JoinGraphType graphType : JoinGraphType.values()) {
+					Query query = QueryFactory.produceSteinbrunn(graphType, 6, JoinType.RANDOM);
+					OptimizationContext context = new OptimizationContext(60000, 3, 0);
+					List<Plan> boundedPlans = new DPmoqo(1, joinOrderSpace, avoidCrossProducts,
+							null, true).approximateParetoSet(query, consideredMetrics, planSpace,
+									costModel, null, 0, 0, 0, context).plans;
+					List<Plan> plans = new DPmoqo(1, joinOrderSpace, avoidCrossProducts)
+							.approximateParetoSet(query, consideredMetrics, planSpace,
+									costModel, null, 0, 0, 0).plans;
+					assertEquals(0, ParetoUtil.epsilonError(
+							boundedPlans, plans, consideredMetrics), EPSILON);
+					assertEquals(0, ParetoUtil.epsilonError(
+							plans, boundedPlans, consideredMetrics), EPSILON);
+					nrBoundedPlans += context.nrBoundedPlans;
+				}
+				assertTrue(nrBoundedPlans > 0);
+			}
+		}
+	}
+
+}
@@ -3,12 +3,11 @@ package optimizer.approximate;
 import static common.Constants.*;
 
 import java.util.BitSet;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import benchmark.Statistics;
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import optimizer.Optimizer;
 import plans.JoinOrderSpace;
@@ -18,16 +17,26 @@ import plans.JoinPlan;
 import plans.ScanPlan;
 import plans.spaces.PlanSpace;
 import plans.operators.*;
+import queries.JoinGraph;
 import queries.Query;
+import relations.DenseRelationTable;
 import relations.Relation;
 import relations.RelationFactory;
-import util.ParetoUtil;
+import relations.RelationMap;
+import relations.RelationStore;
 import util.PruningUtil;
+import util.TableSetUtil;
 import util.TestUtil;
  
 /**
  * MOQO algorithm by Trummer and Koch (SIGMOD 2014) based on dynamic programming.
  * The algorithm formally guarantees to return an alpha-approximate Pareto frontier.
+ * If a sub-plan memo is shared between several optimizer instances or runs, relations
+ * of queries with at most 64 tables are seeded with the plans stored for equivalent
+ * sub-queries instead of combining the plans of their sub-relations, and the plans of
+ * the other relations are stored after each run that was not interrupted by a timeout.
+ * Optionally, the cost of partial plans is bounded by greedily generated complete plans
+ * (see {@link CostBound}) before the join phase; plans are then not stored in the memo.
  * 
  * @author immanueltrummer
  *
@@ -39,16 +48,79 @@ public class DPmoqo extends Optimizer {
 	 * guaranteed not to be higher than optimal by more than that factor for each plan
 	 * cost metric.
 	 */
-	private final double globalAlpha;
+	final double globalAlpha;
 	/**
 	 * Join order space to be searched: either the optimizer considers only linear plan
 	 * or it considers all possible join trees (bushy).
 	 */
-	private final JoinOrderSpace joinOrderSpace;
+	final JoinOrderSpace joinOrderSpace;
+	/**
+	 * Whether the optimizer avoids cross products: if set, only pairs of connected table
+	 * sets that are connected to each other in the join graph are joined (following the
+	 * DPccp algorithm). This reduces optimization time for sparse join graphs such as
+	 * chains or stars while the approximation guarantees hold for the space of plans
+	 * without cross products.
+	 */
+	final boolean avoidCrossProducts;
+	/**
+	 * Stores plans of relations across queries and optimizer runs or null if plans
+	 * are not reused.
+	 */
+	final SubPlanMemo memo;
+	/**
+	 * Whether complete plans are generated greedily before the join phase in order to
+	 * discard partial plans whose cost is dominated by the cost of a complete plan. This
+	 * is only done for queries with at most 64 tables.
+	 */
+	final boolean useCostBound;
 	
-	public DPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace) {
+	/**
+	 * Initializes global alpha, join order space, whether cross products are avoided,
+	 * the memo for reusing plans of equivalent sub-queries, and whether partial plans
+	 * are pruned using a cost bound.
+	 * 
+	 * @param globalAlpha			The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace		whether linear or bushy plans are considered
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 * @param memo					memo shared with other optimizer runs or null
+	 * @param useCostBound			whether partial plans exceeding a greedy cost bound are discarded
+	 */
+	public DPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace, 
+			boolean avoidCrossProducts, SubPlanMemo memo, boolean useCostBound) {
 		this.globalAlpha = globalAlpha;
 		this.joinOrderSpace = joinOrderSpace;
+		this.avoidCrossProducts = avoidCrossProducts;
+		this.memo = memo;
+		this.useCostBound = useCostBound;
+	}
+	
+	/**
+	 * Initializes global alpha, join order space, whether cross products are avoided,
+	 * and the memo for reusing plans of equivalent sub-queries.
+	 * 
+	 * @param globalAlpha			The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace		whether linear or bushy plans are considered
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 * @param memo					memo shared with other optimizer runs or null
+	 */
+	public DPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace, 
+			boolean avoidCrossProducts, SubPlanMemo memo) {
+		this(globalAlpha, joinOrderSpace, avoidCrossProducts, memo, false);
+	}
+	
+	/**
+	 * Initializes global alpha, join order space, and whether cross products are avoided.
+	 * 
+	 * @param globalAlpha			The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace		whether linear or bushy plans are considered
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 */
+	public DPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace, boolean avoidCrossProducts) {
+		this(globalAlpha, joinOrderSpace, avoidCrossProducts, null);
+	}
+	
+	public DPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace) {
+		this(globalAlpha, joinOrderSpace, false);
 	}
 	
 	/**
@@ -66,72 +138,275 @@ public class DPmoqo extends Optimizer {
 		Statistics.addToLongFeature(featureName, algIndex, sizeIndex, 0, queryIndex, 1);
 	}
 	
-	// create relation as join of two relations that are already in the relations list
-	private Relation createRel(Query query, Map<BitSet, Relation> relations, 
-			BitSet resultSet, int algIndex, int sizeIndex, int queryIndex) {
-		// left join operand consists of only one table
-		int firstTableIndex = resultSet.nextSetBit(0);
-		BitSet leftSet = new BitSet();
-		leftSet.set(firstTableIndex);
-		// right join operand consists of remaining result tables
-		BitSet rightSet = (BitSet)resultSet.clone();
-		rightSet.clear(firstTableIndex);
-		// look up corresponding relations - they must have been created before
-		Relation leftRel = relations.get(leftSet);
-		Relation rightRel = relations.get(rightSet);
-		// form result relation as join between those two
+	// create relation as join of two relations that are already in the relations map
+	Relation createRel(Query query, Relation leftRel, Relation rightRel, 
+			int algIndex, int sizeIndex, int queryIndex) {
 		Relation resultRel = RelationFactory.createJoinRel(query, leftRel, rightRel);
 		countResultCreation(algIndex, sizeIndex, queryIndex);
 		return resultRel;
 	}
 	
-	// Returns approximate Pareto plan set for given query with given approximation precision
-	// and potentially considering a subset of cost metrics.
-	@Override
-	public ParetoPlanSet approximateParetoSet(Query query, boolean[] consideredMetrics,
-			PlanSpace planSpace, MultiCostModel costModel, ParetoPlanSet refPlanSet, 
+	/**
+	 * Creates the relation representing a single table and generates its scan plans.
+	 * 
+	 * @param query				the query being optimized
+	 * @param tableIndex		the index of the scanned table
+	 * @param consideredMetrics	Boolean flags indicating which plan cost metrics are considered
+	 * @param planSpace			determines the applicable scan operators
+	 * @param costModel			estimates the execution cost of the new plans
+	 * @param localAlpha		approximation factor used for pruning
+	 * @return					a relation with (near-)Pareto-optimal scan plans
+	 */
+	Relation createScanRel(Query query, int tableIndex, boolean[] consideredMetrics, 
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, 
 			int algIndex, int sizeIndex, int queryIndex) {
-		// Register start time to check for timeouts
-		long startMillis = System.currentTimeMillis();
-		boolean timeout = false;
-		// initialize variables
-		int nrTables = query.nrTables;
-		// Calculate local alpha from global alpha
-		double localAlpha = Math.pow(globalAlpha, 1.0/nrTables);
-		// initialize index of full query table set
-		BitSet allTablesSet = new BitSet();
-		for (int tableIndex=0; tableIndex<nrTables; ++tableIndex) {
-			allTablesSet.set(tableIndex);
+		Relation rel = RelationFactory.createSingleTableRel(query, tableIndex);
+		countResultCreation(algIndex, sizeIndex, queryIndex);
+		OptimizationContext context = OptimizationContext.current();
+		// iterate over scan operators
+		for (ScanOperator scanOp : planSpace.scanOperatorsShuffled(rel)) {
+			Plan scanPlan = new ScanPlan(rel.cardinality, rel.pages, tableIndex, scanOp, context);
+			costModel.updateRoot(scanPlan, context);
+			PruningUtil.prune(query, rel, scanPlan, localAlpha, consideredMetrics, false);
 		}
-		// maps table sets to corresponding relations
-		Map<BitSet, Relation> relations = new HashMap<BitSet, Relation>();
-		// treat single table relations
-		for (int tableIndex=0; tableIndex<nrTables; ++tableIndex) {
-			// create relation
-			Relation rel = RelationFactory.createSingleTableRel(query, tableIndex);
-			countResultCreation(algIndex, sizeIndex, queryIndex);
-			// iterate over scan operators
-			for (ScanOperator scanOp : planSpace.scanOperatorsShuffled(rel)) {
-				Plan scanPlan = new ScanPlan(rel.cardinality, rel.pages, tableIndex, scanOp);
-				costModel.updateRoot(scanPlan);
-				PruningUtil.prune(query, rel, scanPlan, localAlpha, consideredMetrics, false);
+		return rel;
+	}
+	
+	/**
+	 * Combines all (near-)Pareto-optimal plans of the two operand relations with all
+	 * applicable join operators and prunes the resulting plans within the result relation.
+	 * 
+	 * @param query				the query being optimized
+	 * @param leftRel			the outer join operand
+	 * @param rightRel			the inner join operand
+	 * @param resultRel			the relation representing the join result
+	 * @param planSpace			determines the applicable join operators
+	 * @param costModel			estimates the execution cost of the new plans
+	 * @param localAlpha		approximation factor used for pruning
+	 * @param consideredMetrics	Boolean flags indicating which plan cost metrics are considered
+	 * @param bound				new plans exceeding that cost bound are discarded (may be null)
+	 */
+	void tryJoins(Query query, Relation leftRel, Relation rightRel, Relation resultRel, 
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, 
+			boolean[] consideredMetrics, CostBound bound) {
+		// all plans of an operand may have been discarded due to the bound
+		if (leftRel.ParetoPlans == null || rightRel.ParetoPlans == null) {
+			return;
+		}
+		// look up the context once for all plans generated below
+		OptimizationContext context = OptimizationContext.current();
+		// iterate over (near-)Pareto-optimal plans for left and right relation
+		for (Plan leftPlan : leftRel.ParetoPlans) {
+			for (Plan rightPlan : rightRel.ParetoPlans) {
+				// iterate over all possible join methods
+				for (JoinOperator joinOperator : planSpace.applicableJoinOperators(
+						leftPlan, rightPlan)) {
+					Plan newPlan = new JoinPlan(resultRel.cardinality, 
+							resultRel.pages, leftPlan, rightPlan, joinOperator, context);
+					costModel.updateRoot(newPlan, context);
+					if (bound != null && bound.exceeds(newPlan)) {
+						continue;
+					}
+					PruningUtil.prune(query, resultRel, newPlan, 
+							localAlpha, consideredMetrics, false);
+				} // over join operators
+			} // over right plan
+		} // over left plan
+	}
+	
+	/**
+	 * Combines the plans of all admissible splits of the given table set into a left and
+	 * a right operand and prunes the resulting plans within the result relation. All plans
+	 * for strict subsets of the result table set must have been generated before.
+	 * 
+	 * @param query				the query being optimized
+	 * @param relations			contains the relations of all strict subsets of the result set
+	 * @param resultSet			bit mask representing the result table set
+	 * @param resultRel			the relation representing the result table set
+	 * @param consideredMetrics	Boolean flags indicating which plan cost metrics are considered
+	 * @param planSpace			determines the applicable join operators
+	 * @param costModel			estimates the execution cost of the new plans
+	 * @param localAlpha		approximation factor used for pruning
+	 * @param startMillis		start time of the optimizer run in milliseconds
+	 * @param timeoutMillis		time budget of the optimizer run in milliseconds
+	 * @param bound				new plans exceeding that cost bound are discarded (may be null)
+	 * @return					true iff the optimizer timed out before treating all splits
+	 */
+	boolean treatSplits(Query query, RelationStore relations, long resultSet, Relation resultRel, 
+			boolean[] consideredMetrics, PlanSpace planSpace, MultiCostModel costModel, 
+			double localAlpha, long startMillis, long timeoutMillis, CostBound bound) {
+		if (joinOrderSpace == JoinOrderSpace.LINEAR) {
+			// The right join operand is a single table for left-deep (linear) plans
+			for (long remaining = resultSet; remaining != 0; remaining &= remaining - 1) {
+				long rightSet = remaining & -remaining;
+				long leftSet = resultSet ^ rightSet;
+				tryJoins(query, relations.get(leftSet), relations.get(rightSet), 
+						resultRel, planSpace, costModel, localAlpha, consideredMetrics, bound);
+				// Check for timeouts
+				if (System.currentTimeMillis() - startMillis > timeoutMillis) {
+					return true;
+				}
 			}
-			// create relation index
-			BitSet tableSet = new BitSet();
-			tableSet.set(tableIndex);
-			// insert relation
-			relations.put(tableSet, rel);
+		} else {
+			// Iterate over all non-empty strict subsets forming the left operand
+			for (long leftSet = TableSetUtil.nextSubset(resultSet, resultSet); 
+					leftSet != 0; leftSet = TableSetUtil.nextSubset(leftSet, resultSet)) {
+				// right operand is complement of left operand in result table set
+				long rightSet = resultSet ^ leftSet;
+				tryJoins(query, relations.get(leftSet), relations.get(rightSet), 
+						resultRel, planSpace, costModel, localAlpha, consideredMetrics, bound);
+				// Check for timeouts
+				if (System.currentTimeMillis() - startMillis > timeoutMillis) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Combines the plans of two connected table sets that are connected to each other in
+	 * both join orders that are admissible in the join order space.
+	 * 
+	 * @param query				the query being optimized
+	 * @param tableSet1			bit mask representing the first operand table set
+	 * @param tableSet2			bit mask representing the second operand table set
+	 * @param rel1				the relation representing the first table set
+	 * @param rel2				the relation representing the second table set
+	 * @param resultRel			the relation representing the union of both table sets
+	 * @param consideredMetrics	Boolean flags indicating which plan cost metrics are considered
+	 * @param planSpace			determines the applicable join operators
+	 * @param costModel			estimates the execution cost of the new plans
+	 * @param localAlpha		approximation factor used for pruning
+	 * @param bound				new plans exceeding that cost bound are discarded (may be null)
+	 */
+	void treatConnectedPair(Query query, long tableSet1, long tableSet2, Relation rel1, 
+			Relation rel2, Relation resultRel, boolean[] consideredMetrics, 
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, CostBound bound) {
+		// The right join operand is a single table for left-deep (linear) plans
+		boolean linear = joinOrderSpace == JoinOrderSpace.LINEAR;
+		if (!linear || TableSetUtil.cardinality(tableSet2) == 1) {
+			tryJoins(query, rel1, rel2, resultRel, planSpace, 
+					costModel, localAlpha, consideredMetrics, bound);
 		}
+		if (!linear || TableSetUtil.cardinality(tableSet1) == 1) {
+			tryJoins(query, rel2, rel1, resultRel, planSpace, 
+					costModel, localAlpha, consideredMetrics, bound);
+		}
+	}
+	
+	/**
+	 * Treats all table sets with at least two tables for queries with at most 64 tables.
+	 * Table sets are represented as primitive bit masks such that enumerating result sets
+	 * and their splits and looking up the operand relations does not allocate. Lookups
+	 * are plain array accesses if relations are stored in a dense table. Relations seeded
+	 * from the memo session (if any) are not split.
+	 * 
+	 * @return	true iff the optimizer timed out before treating all table sets
+	 */
+	boolean treatJoinsNarrow(Query query, RelationStore relations, boolean[] consideredMetrics, 
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, long startMillis, 
+			long timeoutMillis, SubPlanMemo.Session memoSession, CostBound bound, 
+			int algIndex, int sizeIndex, int queryIndex) {
+		int nrTables = query.nrTables;
+		// treat larger table sets in ascending order of cardinality
+		for (int k=2; k<=nrTables; ++k) {
+			long firstSet = TableSetUtil.allTables(k);
+			long lastSet = firstSet << (nrTables - k);
+			// for all table sets of cardinality k
+			for (long resultSet = firstSet; ; 
+					resultSet = TableSetUtil.nextSameCardinality(resultSet)) {
+				// create and insert result relation by splitting off first table
+				long firstTable = resultSet & -resultSet;
+				Relation resultRel = createRel(query, relations.get(firstTable), 
+						relations.get(resultSet ^ firstTable), algIndex, sizeIndex, queryIndex);
+				relations.put(resultSet, resultRel);
+				boolean seeded = memoSession != null && memoSession.seed(resultSet, resultRel);
+				if (!seeded && treatSplits(query, relations, resultSet, resultRel, consideredMetrics, 
+						planSpace, costModel, localAlpha, startMillis, timeoutMillis, bound)) {
+					return true;
+				}
+				if (resultSet == lastSet) {
+					break;
+				}
+			} // over result table set
+		} // over result table set cardinality
+		return false;
+	}
+	
+	/**
+	 * Treats all connected table sets with at least two tables for queries with at most 64
+	 * tables and a connected join graph. Only splits into two connected operands that are
+	 * connected to each other are considered: the join graph enumerates those splits in an
+	 * order in which all plans for both operands are generated before the operands are
+	 * joined. Relations for table sets are created when they appear for the first time and
+	 * relations seeded from the memo session (if any) are not treated further.
+	 * 
+	 * @return	true iff the optimizer timed out before treating all table sets
+	 */
+	boolean treatJoinsConnected(final Query query, final RelationStore relations, 
+			JoinGraph joinGraph, final boolean[] consideredMetrics, final PlanSpace planSpace, 
+			final MultiCostModel costModel, final double localAlpha, final long startMillis, 
+			final long timeoutMillis, final SubPlanMemo.Session memoSession, 
+			final CostBound bound, final int algIndex, final int sizeIndex, final int queryIndex) {
+		boolean complete = joinGraph.enumerateConnectedPairs(new JoinGraph.PairHandler() {
+			@Override
+			public boolean treat(long tableSet1, long tableSet2) {
+				Relation rel1 = relations.get(tableSet1);
+				Relation rel2 = relations.get(tableSet2);
+				// create and insert result relation if not yet done
+				long resultSet = tableSet1 | tableSet2;
+				Relation resultRel = relations.get(resultSet);
+				if (resultRel == null) {
+					resultRel = createRel(query, rel1, rel2, algIndex, sizeIndex, queryIndex);
+					relations.put(resultSet, resultRel);
+					if (memoSession != null) {
+						memoSession.seed(resultSet, resultRel);
+					}
+				}
+				if (memoSession != null && memoSession.seeded(resultSet)) {
+					return true;
+				}
+				treatConnectedPair(query, tableSet1, tableSet2, rel1, rel2, resultRel, 
+						consideredMetrics, planSpace, costModel, localAlpha, bound);
+				// Check for timeouts
+				return System.currentTimeMillis() - startMillis <= timeoutMillis;
+			}
+		});
+		return !complete;
+	}
+	
+	/**
+	 * Treats all table sets with at least two tables for queries with more than 64 tables.
+	 * Table sets are enumerated as BitSets but relations are still looked up by their
+	 * two-word primitive keys.
+	 * 
+	 * @return	true iff the optimizer timed out before treating all table sets
+	 */
+	boolean treatJoinsWide(Query query, RelationMap relations, boolean[] consideredMetrics, 
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, long startMillis, 
+			long timeoutMillis, int algIndex, int sizeIndex, int queryIndex) {
+		int nrTables = query.nrTables;
+		// initialize index of full query table set
+		BitSet allTablesSet = new BitSet();
+		allTablesSet.set(0, nrTables);
 		// treat larger table sets in ascending order of cardinality
 		for (int k=2; k<=nrTables; ++k) {
 			BitSetIterator resultIter = new BitSetIterator(allTablesSet, k);
 			// for all table sets of cardinality k
 			while (resultIter.hasNext()) {
 				BitSet resultSet = resultIter.next();
-				// create and insert result relation
-				Relation resultRel = createRel(query, relations, 
-						resultSet, algIndex, sizeIndex, queryIndex);
-				relations.put(resultSet, resultRel);
+				long resultLow = TableSetUtil.word(resultSet, 0);
+				long resultHigh = TableSetUtil.word(resultSet, 1);
+				// create and insert result relation by splitting off first table
+				int firstTableIndex = resultSet.nextSetBit(0);
+				Relation firstRel = relations.get(TableSetUtil.singleton(firstTableIndex), 0);
+				resultSet.clear(firstTableIndex);
+				Relation otherRel = relations.get(resultSet);
+				resultSet.set(firstTableIndex);
+				Relation resultRel = createRel(query, firstRel, otherRel, 
+						algIndex, sizeIndex, queryIndex);
+				relations.put(resultLow, resultHigh, resultRel);
 				// If we consider only left-deep (linear) plans then the size of the left join
 				// operand must be one less than the result set size since the right join operand
 				// is a single table. No such restrictions apply for bushy plans.
@@ -142,46 +417,108 @@ public class DPmoqo extends Optimizer {
 					// for all possible left operands with given cardinality
 					while (leftIter.hasNext()) {
 						BitSet leftSet = leftIter.next();
+						long leftLow = TableSetUtil.word(leftSet, 0);
+						long leftHigh = TableSetUtil.word(leftSet, 1);
 						// right operand is complement of left operand in result table set
-						BitSet rightSet = (BitSet)resultSet.clone();
-						rightSet.andNot(leftSet); 
-						// get corresponding relations
-						Relation leftRel = relations.get(leftSet);
-						Relation rightRel = relations.get(rightSet);
-						// iterate over (near-)Pareto-optimal plans for left and right relation
-						for (Plan leftPlan : leftRel.ParetoPlans) {
-							for (Plan rightPlan : rightRel.ParetoPlans) {
-								// iterate over all possible join methods
-								for (JoinOperator joinOperator : planSpace.joinOperatorsShuffled(
-										leftPlan, rightPlan)) {
-									Plan newPlan = new JoinPlan(resultRel.cardinality, 
-											resultRel.pages, leftPlan, rightPlan, joinOperator);
-									costModel.updateRoot(newPlan);
-									PruningUtil.prune(query, resultRel, newPlan, 
-											localAlpha, consideredMetrics, false);
-								} // over join operators
-							} // over right plan
-						} // over left plan
+						Relation leftRel = relations.get(leftLow, leftHigh);
+						Relation rightRel = relations.get(
+								resultLow & ~leftLow, resultHigh & ~leftHigh);
+						tryJoins(query, leftRel, rightRel, resultRel, 
+								planSpace, costModel, localAlpha, consideredMetrics, null);
 						// Check for timeouts
-						if (System.currentTimeMillis() - startMillis > TIMEOUT_MILLIS) {
-							timeout = true;
-							break;
+						if (System.currentTimeMillis() - startMillis > timeoutMillis) {
+							return true;
 						}
 					} // over left table set
-					if (timeout) {
-						break;
-					}
 				} // over left table set cardinality
-				if (timeout) {
-					break;
-				}
 			} // over result table set
-			if (timeout) {
-				break;
-			}
 		} // over result table set cardinality
+		return false;
+	}
+	
+	/**
+	 * Called once the relations of an optimizer run have been treated. Does nothing by
+	 * default; subclasses may keep the relations with their plans to reuse them later.
+	 * 
+	 * @param query				the optimized query
+	 * @param relations			the relations of all treated table sets
+	 * @param joinGraph			the join graph if only connected pairs were joined or null
+	 * @param consideredMetrics	Boolean flags indicating which plan cost metrics are considered
+	 * @param planSpace			the plan space used for optimization
+	 * @param costModel			the cost model used for optimization
+	 * @param localAlpha		approximation factor used for pruning
+	 * @param timeout			whether the optimizer timed out before treating all table sets
+	 */
+	void relationsTreated(Query query, RelationStore relations, JoinGraph joinGraph, 
+			boolean[] consideredMetrics, PlanSpace planSpace, MultiCostModel costModel, 
+			double localAlpha, boolean timeout) {
+	}
+	
+	// Returns approximate Pareto plan set for given query with given approximation precision
+	// and potentially considering a subset of cost metrics.
+	@Override
+	protected ParetoPlanSet optimize(Query query, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel, ParetoPlanSet refPlanSet, 
+			int algIndex, int sizeIndex, int queryIndex, OptimizationContext context) {
+		// Register start time to check for timeouts
+		long startMillis = System.currentTimeMillis();
+		// initialize variables
+		int nrTables = query.nrTables;
+		// Calculate local alpha from global alpha
+		double localAlpha = Math.pow(globalAlpha, 1.0/nrTables);
+		// maps table sets to corresponding relations - small queries use a dense table
+		// with one slot per table subset while larger queries use a hash table.
+		RelationStore relations = DenseRelationTable.applicable(nrTables) ? 
+				new DenseRelationTable(nrTables) : new RelationMap();
+		// treat single table relations
+		for (int tableIndex=0; tableIndex<nrTables; ++tableIndex) {
+			relations.put(createScanRel(query, tableIndex, consideredMetrics, planSpace, 
+					costModel, localAlpha, algIndex, sizeIndex, queryIndex));
+		}
+		// treat larger table sets using primitive table sets of one or two words - cross
+		// products can only be avoided if the join graph is connected.
+		JoinGraph joinGraph = avoidCrossProducts && TableSetUtil.fitsInWord(nrTables) ? 
+				new JoinGraph(query) : null;
+		boolean crossProductFree = joinGraph != null && joinGraph.connected();
+		// complete plans bounding the cost of relevant partial plans (if enabled)
+		CostBound bound = useCostBound && TableSetUtil.fitsInWord(nrTables) ? 
+				CostBound.greedy(query, planSpace, costModel, consideredMetrics, 
+						crossProductFree ? joinGraph : null) : null;
+		// plans of equivalent sub-queries are reused for queries with at most 64 tables
+		SubPlanMemo.Session memoSession = memo != null && TableSetUtil.fitsInWord(nrTables) ?
+				memo.session(query, consideredMetrics, planSpace, costModel, 
+						joinOrderSpace, crossProductFree, localAlpha) : null;
+		boolean timeout;
+		if (crossProductFree) {
+			timeout = treatJoinsConnected(query, relations, joinGraph, consideredMetrics, 
+					planSpace, costModel, localAlpha, startMillis, context.timeoutMillis, 
+					memoSession, bound, algIndex, sizeIndex, queryIndex);
+		} else if (TableSetUtil.fitsInWord(nrTables)) {
+			timeout = treatJoinsNarrow(query, relations, consideredMetrics, planSpace, 
+					costModel, localAlpha, startMillis, context.timeoutMillis, 
+					memoSession, bound, algIndex, sizeIndex, queryIndex);
+		} else {
+			timeout = treatJoinsWide(query, (RelationMap)relations, consideredMetrics, 
+					planSpace, costModel, localAlpha, startMillis, context.timeoutMillis, 
+					algIndex, sizeIndex, queryIndex);
+		}
+		// store plans only if all relations were treated completely without bound
+		if (memoSession != null && !timeout && bound == null) {
+			memoSession.storePlans();
+		}
+		relationsTreated(query, relations, crossProductFree ? joinGraph : null, 
+				consideredMetrics, planSpace, costModel, localAlpha, timeout);
 		// return Pareto plans for joining all tables
+		BitSet allTablesSet = new BitSet();
+		allTablesSet.set(0, nrTables);
 		Relation resultRel = relations.get(allTablesSet);
+		// plans were only discarded if some bound plan is at least as good
+		if (bound != null && resultRel != null && nrTables > 1) {
+			for (Plan boundPlan : bound.plans) {
+				PruningUtil.prune(query, resultRel, boundPlan, 
+						localAlpha, consideredMetrics, false);
+			}
+		}
 		List<Plan> resultPlans = resultRel != null ? 
 				resultRel.ParetoPlans : new LinkedList<Plan>();
 		// Update statistics
@@ -192,13 +529,13 @@ public class DPmoqo extends Optimizer {
 					algIndex, sizeIndex, 0, queryIndex, nrParetoPlans);
 		}
 		// calculate current time period that we are in
-		long timePeriodMillis = TIMEOUT_MILLIS/NR_TIME_PERIODS;
+		long timePeriodMillis = context.timePeriodMillis();
 		long millisPassed = System.currentTimeMillis() - startMillis;
 		int curTimePeriod = (int)(millisPassed/timePeriodMillis);
 		// update Pareto epsilon statistic (for MOQO benchmarks)
 		if (refPlanSet != null){
-			double curEpsilon = ParetoUtil.epsilonError(
-					resultPlans, refPlanSet.plans, consideredMetrics);
+			double curEpsilon = refPlanSet.epsilonIndicator(
+					consideredMetrics).epsilonError(resultPlans);
 			for (int periodCtr=0; periodCtr<NR_TIME_PERIODS; ++periodCtr) {
 				String featureName = "Epsilon approximation after X-th time period";
 				double epsilon = periodCtr >= curTimePeriod ? curEpsilon : Double.POSITIVE_INFINITY;
@@ -223,7 +560,8 @@ public class DPmoqo extends Optimizer {
 	
 	@Override
 	public String toString() {
-		return "DP(alpha=" + globalAlpha + ")";
+		return avoidCrossProducts ? "DPccp(alpha=" + globalAlpha + ")" : 
+			"DP(alpha=" + globalAlpha + ")";
 	}
 
 }
@@ -16,18 +16,43 @@ import cost.local.DiscCostModel;
 import cost.local.TimeCostModel;
 import plans.spaces.LocalPlanSpace;
 import plans.spaces.PlanSpace;
+import queries.JoinGraph;
 import queries.JoinGraphType;
 import queries.JoinType;
 import queries.Query;
 import queries.QueryFactory;
 import util.LocalSearchUtil;
 import util.ParetoUtil;
+import util.TableSetUtil;
+import util.TestUtil;
+import plans.JoinOrderSpace;
+import plans.JoinPlan;
 import plans.ParetoPlanSet;
 import plans.Plan;
+import plans.ScanPlan;
 
 import org.junit.Test;
 
 public class DPmoqoTest {
+	/**
+	 * Returns the set of tables joined by the given plan and verifies that the plan does
+	 * not contain cross products.
+	 * 
+	 * @param plan		a query plan
+	 * @param joinGraph	the join graph of the query
+	 * @return			bit mask representing the tables joined by the plan
+	 */
+	static long crossProductFreeTables(Plan plan, JoinGraph joinGraph) {
+		if (plan instanceof ScanPlan) {
+			return TableSetUtil.singleton(((ScanPlan)plan).tableIndex);
+		} else {
+			JoinPlan joinPlan = (JoinPlan)plan;
+			long leftTables = crossProductFreeTables(joinPlan.getLeftPlan(), joinGraph);
+			long rightTables = crossProductFreeTables(joinPlan.getRightPlan(), joinGraph);
+			assertTrue(joinGraph.adjacent(leftTables, rightTables));
+			return leftTables | rightTables;
+		}
+	}
 
 	@Test
 	public void test() {
@@ -85,6 +110,35 @@ public class DPmoqoTest {
 			}
 			// Compare against hand-crafted plans
 		}
+		// Avoiding cross products yields plans without cross products whose cost is
+		// covered by the plans found in the full search space.
+		{
+			PlanSpace planSpace = new LocalPlanSpace();
+			List<SingleCostModel> costModels = Arrays.asList(new SingleCostModel[] {
+					new TimeCostModel(0), new BufferCostModel(1), new DiscCostModel(2)
+			});
+			MultiCostModel multiModel = new MultiCostModel(costModels);
+			boolean[] consideredMetrics = new boolean[] {true, true, true};
+			for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+				DPmoqo fullAlg = new DPmoqo(1, joinOrderSpace);
+				DPmoqo ccpAlg = new DPmoqo(1, joinOrderSpace, true);
+				for (JoinGraphType joinGraphType : JoinGraphType.values()) {
+					Query query = QueryFactory.produceSteinbrunn(joinGraphType, 6, JoinType.RANDOM);
+					JoinGraph joinGraph = new JoinGraph(query);
+					ParetoPlanSet fullResult = fullAlg.approximateParetoSet(
+							query, consideredMetrics, planSpace, multiModel, null, 0, 0, 0);
+					ParetoPlanSet ccpResult = ccpAlg.approximateParetoSet(
+							query, consideredMetrics, planSpace, multiModel, null, 0, 0, 0);
+					assertFalse(ccpResult.plans.isEmpty());
+					for (Plan plan : ccpResult.plans) {
+						assertEquals(TableSetUtil.allTables(6), 
+								crossProductFreeTables(plan, joinGraph));
+					}
+					assertEquals(0, ParetoUtil.epsilonError(fullResult.plans, 
+							ccpResult.plans, consideredMetrics), TestUtil.EPSILON);
+				}
+			}
+		}
 	}
 
 }
@@ -0,0 +1,498 @@
+package optimizer.approximate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import cost.MultiCostModel;
+import plans.JoinOrderSpace;
+import plans.Plan;
+import plans.spaces.PlanSpace;
+import queries.JoinGraph;
+import queries.Query;
+import relations.Relation;
+import relations.RelationMap;
+import relations.RelationStore;
+import util.TableSetUtil;
+
+/**
+ * Iterative dynamic programming (in the style of IDP-1 by Kossmann and Stocker) for
+ * queries that are too large for exact dynamic programming. The algorithm maintains a
+ * list of units, each unit representing a set of joined tables with its (near-)Pareto-
+ * optimal plans; initially, each table forms one unit. In each iteration, the DP-based
+ * MOQO algorithm generates plans for all sets of at most k units. If the set of all
+ * units was reached then its plans are returned. Otherwise, the best set of k units is
+ * selected and collapsed into a new unit whose plans are the Pareto plans of that set,
+ * and the next iteration starts. Relations are stored by their table set (of one or two
+ * words, see {@link TableSetUtil}) and each table set is optimized once over all
+ * iterations; hence, an iteration only treats sets of units that contain the unit added
+ * last unless the iteration joins more units than the previous one.
+ *
+ * Sets of k units are compared by their best plan where plans are compared by the
+ * maximal ratio between their cost and the minimal cost over all such sets, taken over
+ * all considered metrics. For left-deep (linear) plans, the right operand of each join
+ * must be a single table so the selected set must contain the unit with multiple tables
+ * (if any) as the latter cannot be joined with another unit of multiple tables later.
+ *
+ * Unless a fixed block size k is given, k is chosen from the remaining time budget: the
+ * DP levels within an iteration are treated one after the other and the next level is
+ * only treated if the time for the iteration so far plus the estimated time for that
+ * level (based on the measured time per split), multiplied by the number of iterations
+ * required for the resulting block size, does not exceed the remaining budget. The first
+ * two levels are always treated so each run terminates with a complete plan, even if the
+ * time budget is exceeded.
+ *
+ * @author immanueltrummer
+ *
+ */
+@SuppressWarnings("serial")
+public class IDPmoqo extends DPmoqo {
+	/**
+	 * Fixed number of units joined by the plans of one iteration or zero if that number
+	 * is chosen from the time budget.
+	 */
+	final int blockSize;
+	/**
+	 * The block sizes that were used in the iterations of the last optimizer run.
+	 */
+	public final List<Integer> lastBlockSizes = new ArrayList<Integer>();
+
+	/**
+	 * Initializes global alpha, join order space, whether cross products are avoided,
+	 * and the block size.
+	 *
+	 * @param globalAlpha			The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace		whether linear or bushy plans are considered
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 * @param blockSize				the number of units joined per iteration (at least two) or zero to choose it from the time budget
+	 */
+	public IDPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace,
+			boolean avoidCrossProducts, int blockSize) {
+		super(globalAlpha, joinOrderSpace, avoidCrossProducts);
+		assert(blockSize == 0 || blockSize >= 2);
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Initializes global alpha, join order space, and whether cross products are avoided.
+	 * The block size is chosen from the time budget.
+	 *
+	 * @param globalAlpha			The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace		whether linear or bushy plans are considered
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 */
+	public IDPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace,
+			boolean avoidCrossProducts) {
+		this(globalAlpha, joinOrderSpace, avoidCrossProducts, 0);
+	}
+
+	/**
+	 * Initializes global alpha and sets join order space to bushy as default.
+	 *
+	 * @param globalAlpha	The cost of generated query plans is not higher than optimal by more than that.
+	 */
+	public IDPmoqo(double globalAlpha) {
+		this(globalAlpha, JoinOrderSpace.BUSHY, false);
+	}
+
+	/**
+	 * Returns the number of subsets with the given size of a set with the given size.
+	 *
+	 * @param nrElements	the number of elements in the set
+	 * @param subsetSize	the number of elements per subset
+	 * @return				the number of subsets (as floating point number to avoid overflows)
+	 */
+	static double nrSubsets(int nrElements, int subsetSize) {
+		double nrSubsets = 1;
+		for (int elementCtr=0; elementCtr<subsetSize; ++elementCtr) {
+			nrSubsets = nrSubsets * (nrElements - elementCtr) / (elementCtr + 1);
+		}
+		return nrSubsets;
+	}
+
+	/**
+	 * Returns the number of splits that are treated for a set of the given number of units.
+	 *
+	 * @param level				the number of units in the set
+	 * @param joinOrderSpace	whether linear or bushy plans are considered
+	 * @return					the number of splits
+	 */
+	static double nrSplits(int level, JoinOrderSpace joinOrderSpace) {
+		return joinOrderSpace == JoinOrderSpace.LINEAR ? level : Math.pow(2, level) - 2;
+	}
+
+	/**
+	 * Returns the number of iterations required to join the given number of units if each
+	 * iteration collapses a set of units with the given size.
+	 *
+	 * @param nrUnits	the number of units
+	 * @param size		the number of units joined per iteration
+	 * @return			the number of iterations
+	 */
+	static int nrIterations(int nrUnits, int size) {
+		return size >= nrUnits ? 1 : (int)Math.ceil((nrUnits - 1.0) / (size - 1));
+	}
+
+	/**
+	 * Selects the set of units whose best plan minimizes the maximal ratio between its
+	 * cost and the minimal cost over all candidate sets, taken over all considered metrics.
+	 * Ties are broken by the cardinality of the joined tables.
+	 *
+	 * @param candidates		relations representing candidate sets of units
+	 * @param consideredMetrics	Boolean flags indicating which plan cost metrics are considered
+	 * @return					the selected relation or null if no candidate has plans
+	 */
+	static Relation selectBlock(List<Relation> candidates, boolean[] consideredMetrics) {
+		double[] minCost = new double[consideredMetrics.length];
+		Arrays.fill(minCost, Double.POSITIVE_INFINITY);
+		for (Relation rel : candidates) {
+			for (Plan plan : rel.ParetoPlans) {
+				for (int metricCtr=0; metricCtr<minCost.length; ++metricCtr) {
+					minCost[metricCtr] = Math.min(minCost[metricCtr], plan.getCostValue(metricCtr));
+				}
+			}
+		}
+		Relation bestRel = null;
+		double bestScore = Double.POSITIVE_INFINITY;
+		for (Relation rel : candidates) {
+			for (Plan plan : rel.ParetoPlans) {
+				double score = 1;
+				for (int metricCtr=0; metricCtr<minCost.length; ++metricCtr) {
+					if (consideredMetrics[metricCtr]) {
+						double cost = plan.getCostValue(metricCtr);
+						double ratio = cost <= minCost[metricCtr] ? 1 :
+							minCost[metricCtr] > 0 ? cost / minCost[metricCtr] :
+								Double.POSITIVE_INFINITY;
+						score = Math.max(score, ratio);
+					}
+				}
+				if (bestRel == null || score < bestScore || score == bestScore &&
+						rel.cardinality < bestRel.cardinality) {
+					bestRel = rel;
+					bestScore = score;
+				}
+			}
+		}
+		return bestRel;
+	}
+
+	/**
+	 * Advances the given combination of element indices to the next combination with the
+	 * same number of elements in lexicographic order.
+	 *
+	 * @param combination	strictly ascending element indices (modified)
+	 * @param nrElements	the number of elements to choose from
+	 * @return				false iff the given combination was the last one
+	 */
+	static boolean nextCombination(int[] combination, int nrElements) {
+		return nextCombination(combination, combination.length, nrElements);
+	}
+
+	/**
+	 * Advances the first positions of the given combination of element indices to the next
+	 * combination with the same number of elements in lexicographic order. The following
+	 * positions are not changed.
+	 *
+	 * @param combination	element indices, strictly ascending in the first positions (modified)
+	 * @param size			the number of positions to advance
+	 * @param nrElements	the number of elements to choose from for those positions
+	 * @return				false iff the first positions formed the last combination
+	 */
+	static boolean nextCombination(int[] combination, int size, int nrElements) {
+		int pos = size - 1;
+		while (pos >= 0 && combination[pos] == nrElements - size + pos) {
+			--pos;
+		}
+		if (pos < 0) {
+			return false;
+		}
+		++combination[pos];
+		for (int nextPos=pos+1; nextPos<size; ++nextPos) {
+			combination[nextPos] = combination[nextPos - 1] + 1;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the first combination of the given size. Only combinations containing the
+	 * last element are enumerated if requested, i.e. the last element is fixed and the
+	 * others are advanced via <code>nextCombination(combination, size - 1, nrElements - 1)
+	 * </code>.
+	 *
+	 * @param size			the number of elements per combination
+	 * @param nrElements	the number of elements to choose from
+	 * @param withLast		whether the combination must contain the last element
+	 * @return				strictly ascending element indices
+	 */
+	static int[] firstCombination(int size, int nrElements, boolean withLast) {
+		int[] combination = new int[size];
+		for (int pos=0; pos<size; ++pos) {
+			combination[pos] = pos;
+		}
+		if (withLast) {
+			combination[size - 1] = nrElements - 1;
+		}
+		return combination;
+	}
+
+	/**
+	 * Advances the given combination to the next one, keeping the last element fixed if
+	 * only combinations containing the last element are enumerated.
+	 *
+	 * @param combination	strictly ascending element indices (modified)
+	 * @param nrElements	the number of elements to choose from
+	 * @param withLast		whether only combinations containing the last element are enumerated
+	 * @return				false iff the given combination was the last one
+	 */
+	static boolean nextCombination(int[] combination, int nrElements, boolean withLast) {
+		return withLast ? nextCombination(combination, combination.length - 1, nrElements - 1) :
+			nextCombination(combination, nrElements);
+	}
+
+	/**
+	 * Returns the relation representing the union of the given units.
+	 *
+	 * @param units			the current units
+	 * @param combination	indices of the selected units
+	 * @param treated		relations of treated table sets
+	 * @return				the relation or null if the union was not treated yet
+	 */
+	static Relation unionRel(List<Relation> units, int[] combination, RelationMap treated) {
+		long lowWord = 0;
+		long highWord = 0;
+		for (int unitIndex : combination) {
+			lowWord |= units.get(unitIndex).lowTableBits;
+			highWord |= units.get(unitIndex).highTableBits;
+		}
+		return treated.get(lowWord, highWord);
+	}
+
+	/**
+	 * Generates plans for the union of the given units unless it was treated before, trying
+	 * all splits of the units into two operands.
+	 *
+	 * @param units			the current units
+	 * @param combination	indices of the selected units
+	 * @param treated		relations of treated table sets, including all strict subsets of the selected units
+	 * @param joinGraph		join graph used to avoid cross products or null if cross products are allowed
+	 * @return				the number of treated splits
+	 */
+	long treatUnitSet(Query query, List<Relation> units, int[] combination,
+			RelationMap treated, JoinGraph joinGraph, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha,
+			int algIndex, int sizeIndex, int queryIndex) {
+		// table sets are treated once over all iterations
+		if (unionRel(units, combination, treated) != null) {
+			return 0;
+		}
+		int level = combination.length;
+		// table sets joined by each subset of the selected units
+		int nrSubsets = 1 << level;
+		long[] lowWords = new long[nrSubsets];
+		long[] highWords = new long[nrSubsets];
+		for (int subset=1; subset<nrSubsets; ++subset) {
+			Relation unit = units.get(combination[Integer.numberOfTrailingZeros(subset)]);
+			lowWords[subset] = lowWords[subset & (subset - 1)] | unit.lowTableBits;
+			highWords[subset] = highWords[subset & (subset - 1)] | unit.highTableBits;
+		}
+		int allUnits = nrSubsets - 1;
+		Relation resultRel = createRel(query, units.get(combination[0]),
+				treated.get(lowWords[allUnits ^ 1], highWords[allUnits ^ 1]),
+				algIndex, sizeIndex, queryIndex);
+		treated.put(resultRel);
+		// Iterate over all non-empty strict subsets forming the left operand
+		boolean linear = joinOrderSpace == JoinOrderSpace.LINEAR;
+		long nrSplits = 0;
+		for (int leftSet=1; leftSet<allUnits; ++leftSet) {
+			int rightSet = allUnits ^ leftSet;
+			++nrSplits;
+			// The right join operand is a single table for left-deep (linear) plans
+			if (linear && Long.bitCount(lowWords[rightSet]) +
+					Long.bitCount(highWords[rightSet]) != 1) {
+				continue;
+			}
+			if (joinGraph != null && !joinGraph.adjacent(lowWords[leftSet],
+					highWords[leftSet], lowWords[rightSet], highWords[rightSet])) {
+				continue;
+			}
+			tryJoins(query, treated.get(lowWords[leftSet], highWords[leftSet]),
+					treated.get(lowWords[rightSet], highWords[rightSet]), resultRel,
+					planSpace, costModel, localAlpha, consideredMetrics, null);
+		}
+		return nrSplits;
+	}
+
+	/**
+	 * Joins the units of the query by iterative dynamic programming and stores the plans
+	 * joining all tables in the relation store. Cross products are avoided if a join graph
+	 * is given.
+	 *
+	 * @return	always false as the optimizer completes its plans after a timeout
+	 */
+	boolean treatJoinsIteratively(Query query, RelationStore relations, JoinGraph joinGraph,
+			boolean[] consideredMetrics, PlanSpace planSpace, MultiCostModel costModel,
+			double localAlpha, long startMillis, long timeoutMillis,
+			int algIndex, int sizeIndex, int queryIndex) {
+		lastBlockSizes.clear();
+		int nrTables = query.nrTables;
+		boolean linear = joinOrderSpace == JoinOrderSpace.LINEAR;
+		// each unit is a relation whose plans join one or several tables
+		List<Relation> units = new ArrayList<Relation>();
+		// maps treated table sets to their relations
+		RelationMap treated = new RelationMap();
+		for (int tableIndex=0; tableIndex<nrTables; ++tableIndex) {
+			BitSet tableSet = new BitSet();
+			tableSet.set(tableIndex);
+			Relation rel = relations.get(tableSet);
+			units.add(rel);
+			treated.put(rel);
+		}
+		// time per split, measured on the last level with splits
+		double nanosPerSplit = 0;
+		int lastSize = 0;
+		// candidate sets of the last iteration that do not intersect the selected block
+		List<Relation> keptCandidates = new ArrayList<Relation>();
+		while (units.size() > 1) {
+			int nrUnits = units.size();
+			long iterationStartNanos = System.nanoTime();
+			double remainingNanos = (timeoutMillis -
+					(System.currentTimeMillis() - startMillis)) * 1E6;
+			// treat one level of unit sets after the other
+			int level = 2;
+			for (; level<=nrUnits; ++level) {
+				if (blockSize != 0 && level > blockSize) {
+					break;
+				}
+				if (blockSize == 0 && level > 2) {
+					// only sets containing the last added unit are new up to the last size
+					double nrNewSets = level <= lastSize ? nrSubsets(nrUnits - 1, level - 1) :
+						nrSubsets(nrUnits, level);
+					double iterationNanos = System.nanoTime() - iterationStartNanos;
+					double projectedNanos = (iterationNanos + nanosPerSplit * nrNewSets *
+							nrSplits(level, joinOrderSpace)) * nrIterations(nrUnits, level);
+					if (projectedNanos > remainingNanos) {
+						break;
+					}
+				}
+				long levelStartNanos = System.nanoTime();
+				long nrLevelSplits = 0;
+				// sets of old units were treated up to the last size
+				boolean withLast = level <= lastSize;
+				int[] combination = firstCombination(level, nrUnits, withLast);
+				do {
+					nrLevelSplits += treatUnitSet(query, units, combination, treated, joinGraph,
+							consideredMetrics, planSpace, costModel, localAlpha,
+							algIndex, sizeIndex, queryIndex);
+				} while (nextCombination(combination, nrUnits, withLast));
+				if (nrLevelSplits > 0) {
+					nanosPerSplit = (double)(System.nanoTime() - levelStartNanos) / nrLevelSplits;
+				}
+			}
+			int size = level - 1;
+			lastBlockSizes.add(size);
+			// candidates of old units are kept if the size did not change
+			boolean withLast = size == lastSize;
+			lastSize = size;
+			int[] combination = firstCombination(size, nrUnits, withLast);
+			if (size == nrUnits) {
+				relations.put(unionRel(units, combination, treated));
+				return false;
+			}
+			// a unit with multiple tables can only be joined as left operand of linear plans
+			int requiredUnit = -1;
+			if (linear) {
+				for (int unitCtr=0; unitCtr<nrUnits; ++unitCtr) {
+					if (units.get(unitCtr).tableSet.cardinality() > 1) {
+						requiredUnit = unitCtr;
+					}
+				}
+			}
+			List<Relation> candidates = withLast && requiredUnit < 0 ?
+					keptCandidates : new ArrayList<Relation>();
+			do {
+				Relation rel = unionRel(units, combination, treated);
+				boolean admissible = requiredUnit < 0 ||
+						Arrays.binarySearch(combination, requiredUnit) >= 0;
+				if (admissible && rel.ParetoPlans != null && !rel.ParetoPlans.isEmpty()) {
+					candidates.add(rel);
+				}
+			} while (nextCombination(combination, nrUnits, withLast));
+			Relation block = selectBlock(candidates, consideredMetrics);
+			assert(block != null);
+			keptCandidates = new ArrayList<Relation>();
+			for (Relation candidate : candidates) {
+				if (!candidate.tableSet.intersects(block.tableSet)) {
+					keptCandidates.add(candidate);
+				}
+			}
+			// replace the units of the selected set by one unit
+			List<Relation> newUnits = new ArrayList<Relation>();
+			for (Relation unit : units) {
+				if (!unit.tableSet.intersects(block.tableSet)) {
+					newUnits.add(unit);
+				}
+			}
+			newUnits.add(block);
+			units = newUnits;
+		}
+		return false;
+	}
+
+	/**
+	 * Joins the units of the query iteratively, allowing cross products.
+	 *
+	 * @return	always false as the optimizer completes its plans after a timeout
+	 */
+	@Override
+	boolean treatJoinsNarrow(Query query, RelationStore relations, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, long startMillis,
+			long timeoutMillis, SubPlanMemo.Session memoSession, CostBound bound,
+			int algIndex, int sizeIndex, int queryIndex) {
+		return treatJoinsIteratively(query, relations, null, consideredMetrics, planSpace,
+				costModel, localAlpha, startMillis, timeoutMillis,
+				algIndex, sizeIndex, queryIndex);
+	}
+
+	/**
+	 * Joins the units of the query iteratively, joining only connected units.
+	 *
+	 * @return	always false as the optimizer completes its plans after a timeout
+	 */
+	@Override
+	boolean treatJoinsConnected(Query query, RelationStore relations, JoinGraph joinGraph,
+			boolean[] consideredMetrics, PlanSpace planSpace, MultiCostModel costModel,
+			double localAlpha, long startMillis, long timeoutMillis,
+			SubPlanMemo.Session memoSession, CostBound bound,
+			int algIndex, int sizeIndex, int queryIndex) {
+		return treatJoinsIteratively(query, relations, joinGraph, consideredMetrics, planSpace,
+				costModel, localAlpha, startMillis, timeoutMillis,
+				algIndex, sizeIndex, queryIndex);
+	}
+
+	/**
+	 * Joins the units of queries with more than 64 tables iteratively, joining only
+	 * connected units if cross products are avoided and the join graph is connected.
+	 *
+	 * @return	always false as the optimizer completes its plans after a timeout
+	 */
+	@Override
+	boolean treatJoinsWide(Query query, RelationMap relations, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, long startMillis,
+			long timeoutMillis, int algIndex, int sizeIndex, int queryIndex) {
+		JoinGraph joinGraph = avoidCrossProducts ? new JoinGraph(query) : null;
+		if (joinGraph != null && !joinGraph.connected()) {
+			joinGraph = null;
+		}
+		return treatJoinsIteratively(query, relations, joinGraph, consideredMetrics, planSpace,
+				costModel, localAlpha, startMillis, timeoutMillis,
+				algIndex, sizeIndex, queryIndex);
+	}
+
+	@Override
+	public String toString() {
+		String blockDescription = blockSize == 0 ? "" : ",k=" + blockSize;
+		return avoidCrossProducts ? "IDPccp(alpha=" + globalAlpha + blockDescription + ")" :
+			"IDP(alpha=" + globalAlpha + blockDescription + ")";
+	}
+}
@@ -0,0 +1,158 @@
+package optimizer.approximate;
+
+import static org.junit.Assert.*;
+import static util.TestUtil.*;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import common.OptimizationContext;
+import plans.JoinOrderSpace;
+import plans.JoinPlan;
+import plans.Plan;
+import plans.ScanPlan;
+import queries.JoinGraph;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import util.ParetoUtil;
+import util.TableSetUtil;
+
+import org.junit.Test;
+
+public class IDPmoqoTest {
+	/**
+	 * Checks whether the right operand of each join in the given plan is a scan.
+	 *
+	 * @param plan	a query plan
+	 * @return		true iff the plan is left-deep
+	 */
+	static boolean leftDeep(Plan plan) {
+		if (plan instanceof ScanPlan) {
+			return true;
+		}
+		JoinPlan joinPlan = (JoinPlan)plan;
+		return joinPlan.getRightPlan() instanceof ScanPlan && leftDeep(joinPlan.getLeftPlan());
+	}
+
+	@Test
+	public void test() {
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		// Combinations containing the last element are enumerated once each
+		for (boolean withLast : new boolean[] {false, true}) {
+			int nrCombinations = 0;
+			int[] combination = IDPmoqo.firstCombination(3, 6, withLast);
+			do {
+				++nrCombinations;
+				for (int pos=1; pos<3; ++pos) {
+					assertTrue(combination[pos - 1] < combination[pos]);
+				}
+				assertTrue(!withLast || combination[2] == 5);
+			} while (IDPmoqo.nextCombination(combination, 6, withLast));
+			assertEquals(withLast ? 10 : 20, nrCombinations);
+		}
+		// Iterations with block size at least the number of tables yield the DP frontier
+		{
+			for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+				for (boolean avoidCrossProducts : new boolean[] {false, true}) {
+					Query query = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 5, JoinType.RANDOM);
+					IDPmoqo idp = new IDPmoqo(1, joinOrderSpace, avoidCrossProducts, 5);
+					List<Plan> idpPlans = idp.approximateParetoSet(query, consideredMetrics,
+							planSpace, costModel, null, 0, 0, 0,
+							new OptimizationContext(60000, 3, 0)).plans;
+					List<Plan> plans = new DPmoqo(1, joinOrderSpace, avoidCrossProducts)
+							.approximateParetoSet(query, consideredMetrics, planSpace,
+									costModel, null, 0, 0, 0,
+									new OptimizationContext(60000, 3, 0)).plans;
+					assertEquals(0, ParetoUtil.epsilonError(
+							idpPlans, plans, consideredMetrics), EPSILON);
+					assertEquals(0, ParetoUtil.epsilonError(
+							plans, idpPlans, consideredMetrics), EPSILON);
+					assertEquals(1, idp.lastBlockSizes.size());
+				}
+			}
+		}
+		// Small blocks yield complete plans in the join order space
+		for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+			for (boolean avoidCrossProducts : new boolean[] {false, true}) {
+				for (JoinGraphType graphType : JoinGraphType.values()) {
+					Query query = QueryFactory.produceSteinbrunn(graphType, 8, JoinType.RANDOM);
+					IDPmoqo idp = new IDPmoqo(1, joinOrderSpace, avoidCrossProducts, 3);
+					List<Plan> plans = idp.approximateParetoSet(query, consideredMetrics,
+							planSpace, costModel, null, 0, 0, 0,
+							new OptimizationContext(60000, 3, 0)).plans;
+					assertFalse(plans.isEmpty());
+					JoinGraph joinGraph = new JoinGraph(query);
+					for (Plan plan : plans) {
+						long joinedTables = avoidCrossProducts ?
+								DPmoqoTest.crossProductFreeTables(plan, joinGraph) :
+									SubPlanMemoTest.joinedTables(plan);
+						assertEquals(TableSetUtil.allTables(8), joinedTables);
+						if (joinOrderSpace == JoinOrderSpace.LINEAR) {
+							assertTrue(leftDeep(plan));
+						}
+					}
+					// 8 units are reduced by two per iteration until the last two units are joined
+					assertEquals(4, idp.lastBlockSizes.size());
+				}
+			}
+		}
+		// The block size is chosen from the time budget
+		{
+			consideredMetrics = new boolean[] {true, false, false};
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 30, JoinType.RANDOM);
+			IDPmoqo idp = new IDPmoqo(1, JoinOrderSpace.BUSHY, true);
+			long startMillis = System.currentTimeMillis();
+			List<Plan> plans = idp.approximateParetoSet(query, consideredMetrics,
+					planSpace, costModel, null, 0, 0, 0,
+					new OptimizationContext(500, 3, 0)).plans;
+			assertTrue(System.currentTimeMillis() - startMillis < 5000);
+			assertFalse(plans.isEmpty());
+			for (Plan plan : plans) {
+				assertEquals(TableSetUtil.allTables(30), DPmoqoTest.crossProductFreeTables(
+						plan, new JoinGraph(query)));
+			}
+			assertTrue(Collections.max(idp.lastBlockSizes) > 2);
+		}
+		// Queries with more than 64 tables are joined iteratively as well
+		{
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 70, JoinType.RANDOM);
+			IDPmoqo idp = new IDPmoqo(1, JoinOrderSpace.BUSHY, true);
+			List<Plan> plans = idp.approximateParetoSet(query, consideredMetrics,
+					planSpace, costModel, null, 0, 0, 0,
+					new OptimizationContext(1000, 3, 0)).plans;
+			assertFalse(plans.isEmpty());
+			JoinGraph joinGraph = new JoinGraph(query);
+			for (Plan plan : plans) {
+				assertEquals(70, joinedTables(plan, joinGraph).cardinality());
+			}
+		}
+	}
+	/**
+	 * Returns the tables joined by the given plan and checks that the plan contains no
+	 * cross products (also for queries with more than 64 tables).
+	 *
+	 * @param plan		a query plan
+	 * @param joinGraph	the join graph of the query
+	 * @return			the joined tables
+	 */
+	static BitSet joinedTables(Plan plan, JoinGraph joinGraph) {
+		BitSet tables = new BitSet();
+		if (plan instanceof ScanPlan) {
+			tables.set(((ScanPlan)plan).tableIndex);
+			return tables;
+		}
+		JoinPlan joinPlan = (JoinPlan)plan;
+		BitSet left = joinedTables(joinPlan.getLeftPlan(), joinGraph);
+		BitSet right = joinedTables(joinPlan.getRightPlan(), joinGraph);
+		assertFalse(left.intersects(right));
+		assertTrue(joinGraph.adjacent(TableSetUtil.word(left, 0), TableSetUtil.word(left, 1),
+				TableSetUtil.word(right, 0), TableSetUtil.word(right, 1)));
+		tables.or(left);
+		tables.or(right);
+		return tables;
+	}
+
+}
@@ -0,0 +1,400 @@
+package optimizer.approximate;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import common.OptimizationContext;
+import cost.MultiCostModel;
+import plans.JoinOrderSpace;
+import plans.ParetoPlanSet;
+import plans.Plan;
+import plans.spaces.PlanSpace;
+import queries.JoinGraph;
+import queries.Query;
+import relations.DenseRelationTable;
+import relations.Relation;
+import relations.RelationMap;
+import relations.RelationStore;
+import util.TableSetUtil;
+
+/**
+ * Variant of the DP-based MOQO algorithm that keeps the relations of its last optimizer
+ * run together with their (near-)Pareto-optimal plans. If table cardinalities or join
+ * selectivities of the optimized query change afterwards, the query can be re-optimized
+ * incrementally: the cardinality of a table set and the cost of its plans only depend on
+ * the cardinalities of the joined tables and on the selectivities between them. Hence,
+ * only relations joining a table whose cardinality changed or joining both tables of a
+ * predicate whose selectivity changed are recreated; their plans are generated again in
+ * ascending order of table set cardinality by combining the plans of their sub-relations,
+ * which are either kept from the last run or recreated before. All other relations are
+ * kept, such that the approximation guarantees of a full optimizer run hold.
+ * <p>
+ * Queries can also be re-optimized after adding a table as last table (see
+ * {@link Query#addTable(double, double[])}): in that case, only relations for the new
+ * table sets containing the added table are created and all previous relations are kept.
+ * <p>
+ * The optimizer falls back to a full optimizer run if the last run timed out, if the
+ * query has more than 64 tables, if more than one table was added or tables were removed,
+ * if a table was added while plans are approximated (the approximation factor per
+ * relation depends on the number of tables), or if cross products are avoided and the changes add or remove a join predicate
+ * between previous tables or make the join graph connected or disconnected.
+ *
+ * @author immanueltrummer
+ *
+ */
+@SuppressWarnings("serial")
+public class IncrementalDPmoqo extends DPmoqo {
+	/**
+	 * Boolean flags indicating which metrics were considered in the last optimizer run.
+	 */
+	boolean[] consideredMetrics;
+	/**
+	 * The plan space used in the last optimizer run.
+	 */
+	PlanSpace planSpace;
+	/**
+	 * The cost model used in the last optimizer run.
+	 */
+	MultiCostModel costModel;
+	/**
+	 * The approximation factor used for pruning the plans of each relation.
+	 */
+	double localAlpha;
+	/**
+	 * The relations of all treated table sets or null if they cannot be reused.
+	 */
+	RelationStore relations;
+	/**
+	 * The join graph if only connected pairs of table sets are joined or null.
+	 */
+	JoinGraph joinGraph;
+	/**
+	 * The table cardinalities for which the kept relations were generated.
+	 */
+	double[] cardinalities;
+	/**
+	 * The join selectivities for which the kept relations were generated.
+	 */
+	double[][] selectivities;
+	/**
+	 * The number of relations that were created by the last optimizer run or
+	 * re-optimization.
+	 */
+	public int nrCreatedRelations = 0;
+
+	/**
+	 * Initializes global alpha, join order space, and whether cross products are avoided.
+	 *
+	 * @param globalAlpha			The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace		whether linear or bushy plans are considered
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 */
+	public IncrementalDPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace,
+			boolean avoidCrossProducts) {
+		super(globalAlpha, joinOrderSpace, avoidCrossProducts);
+	}
+
+	/**
+	 * Initializes global alpha and sets join order space to bushy as default.
+	 *
+	 * @param globalAlpha	The cost of generated query plans is not higher than optimal by more than that.
+	 */
+	public IncrementalDPmoqo(double globalAlpha) {
+		super(globalAlpha);
+	}
+
+	/**
+	 * Keeps the relations of the last optimizer run and the query properties they are
+	 * based on if the run was complete and table sets were represented by one word.
+	 */
+	@Override
+	void relationsTreated(Query query, RelationStore relations, JoinGraph joinGraph,
+			boolean[] consideredMetrics, PlanSpace planSpace, MultiCostModel costModel,
+			double localAlpha, boolean timeout) {
+		this.consideredMetrics = Arrays.copyOf(consideredMetrics, consideredMetrics.length);
+		this.planSpace = planSpace;
+		this.costModel = costModel;
+		this.localAlpha = localAlpha;
+		boolean reusable = !timeout && TableSetUtil.fitsInWord(query.nrTables);
+		this.relations = reusable ? relations : null;
+		this.joinGraph = joinGraph;
+		this.nrCreatedRelations = relations.size();
+		keepStatistics(query);
+	}
+
+	/**
+	 * Keeps copies of the table cardinalities and join selectivities of the given query
+	 * to detect later changes.
+	 *
+	 * @param query	the query for which the kept relations were generated
+	 */
+	void keepStatistics(Query query) {
+		cardinalities = Arrays.copyOf(query.tableCardinalities, query.nrTables);
+		selectivities = new double[query.nrTables][];
+		for (int table=0; table<query.nrTables; ++table) {
+			selectivities[table] = Arrays.copyOf(query.selectivities[table], query.nrTables);
+		}
+	}
+
+	/**
+	 * Copies the kept relations into a new store that can hold the relations of all
+	 * table sets of a query with the given number of tables.
+	 *
+	 * @param nrTables	the number of query tables
+	 * @return			a store containing all kept relations
+	 */
+	RelationStore extendedStore(int nrTables) {
+		RelationStore store = DenseRelationTable.applicable(nrTables) ?
+				new DenseRelationTable(nrTables) : new RelationMap();
+		for (Relation relation : relations.values()) {
+			store.put(relation);
+		}
+		return store;
+	}
+
+	/**
+	 * Returns true iff the given table set joins a changed table or both tables of a
+	 * changed predicate. Such table sets have a different cardinality and different
+	 * plan cost than before the change.
+	 *
+	 * @param tableSet			bit mask representing a table set
+	 * @param changedTables		bit mask representing the tables with changed cardinality
+	 * @param changedPairs		bit masks representing pairs of tables with changed selectivity
+	 * @param nrChangedPairs	the number of changed pairs
+	 * @return					true iff the relation of that table set must be recreated
+	 */
+	static boolean affected(long tableSet, long changedTables,
+			long[] changedPairs, int nrChangedPairs) {
+		if ((tableSet & changedTables) != 0) {
+			return true;
+		}
+		for (int pairCtr=0; pairCtr<nrChangedPairs; ++pairCtr) {
+			long pair = changedPairs[pairCtr];
+			if ((tableSet & pair) == pair) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Re-optimizes the query after changes of table cardinalities or join selectivities
+	 * or after adding one table, using the settings of the last optimizer run. The given
+	 * context is active during re-optimization.
+	 *
+	 * @param query		the changed query (same tables as in the last run plus at most one)
+	 * @param context	time budget, number of metrics, random generator, and counters
+	 * @return			the set of Pareto-optimal query plans for the changed query
+	 */
+	public ParetoPlanSet reoptimize(Query query, OptimizationContext context) {
+		OptimizationContext previousContext = context.activate();
+		try {
+			return reoptimizeIncrementally(query, context);
+		} finally {
+			OptimizationContext.restore(previousContext);
+		}
+	}
+
+	/**
+	 * Re-optimizes the query after changes of table cardinalities or join selectivities
+	 * or after adding one table, using the settings of the last optimizer run and a default
+	 * optimization context.
+	 *
+	 * @param query	the changed query (same tables as in the last run plus at most one)
+	 * @return		the set of Pareto-optimal query plans for the changed query
+	 */
+	public ParetoPlanSet reoptimize(Query query) {
+		return reoptimize(query, OptimizationContext.defaultContext());
+	}
+
+	/**
+	 * Recreates the relations affected by changes since the last run if possible and
+	 * re-optimizes the query from scratch otherwise; the given context is already active.
+	 *
+	 * @param query		the changed query
+	 * @param context	time budget, number of metrics, random generator, and counters
+	 * @return			the set of Pareto-optimal query plans for the changed query
+	 */
+	ParetoPlanSet reoptimizeIncrementally(final Query query, OptimizationContext context) {
+		assert(consideredMetrics != null) : "No previous optimizer run";
+		int nrTables = query.nrTables;
+		int nrOldTables = cardinalities.length;
+		boolean tableAdded = nrTables == nrOldTables + 1;
+		// the approximation factor per relation depends on the number of tables
+		if (relations == null || nrTables != nrOldTables && !tableAdded ||
+				tableAdded && globalAlpha > 1 || !TableSetUtil.fitsInWord(nrTables)) {
+			return optimize(query, consideredMetrics, planSpace, costModel,
+					null, 0, 0, 0, context);
+		}
+		// Determine changed tables and predicates among the previous tables
+		long changedTables = 0;
+		for (int table=0; table<nrOldTables; ++table) {
+			if (query.tableCardinalities[table] != cardinalities[table]) {
+				changedTables |= TableSetUtil.singleton(table);
+			}
+		}
+		long[] changedPairs = new long[4];
+		int nrChangedPairs = 0;
+		for (int table1=0; table1<nrOldTables; ++table1) {
+			for (int table2=table1+1; table2<nrOldTables; ++table2) {
+				double selectivity12 = query.selectivities[table1][table2];
+				double selectivity21 = query.selectivities[table2][table1];
+				if (selectivity12 != selectivities[table1][table2] ||
+						selectivity21 != selectivities[table2][table1]) {
+					long pair = TableSetUtil.singleton(table1) | TableSetUtil.singleton(table2);
+					// connected table sets change if predicates are added or removed
+					boolean predicate = selectivity12 != 1 || selectivity21 != 1;
+					if (joinGraph != null && predicate != joinGraph.adjacent(
+							TableSetUtil.singleton(table1), TableSetUtil.singleton(table2))) {
+						return optimize(query, consideredMetrics, planSpace, costModel,
+								null, 0, 0, 0, context);
+					}
+					if (nrChangedPairs == changedPairs.length) {
+						changedPairs = Arrays.copyOf(changedPairs, 2 * nrChangedPairs);
+					}
+					changedPairs[nrChangedPairs++] = pair;
+				}
+			}
+		}
+		// New predicates may connect a join graph that was disconnected before
+		if (avoidCrossProducts && joinGraph == null && nrChangedPairs != 0 && !tableAdded &&
+				new JoinGraph(query).connected()) {
+			return optimize(query, consideredMetrics, planSpace, costModel,
+					null, 0, 0, 0, context);
+		}
+		// All table sets containing an added table are new
+		if (tableAdded) {
+			JoinGraph newJoinGraph = avoidCrossProducts ? new JoinGraph(query) : null;
+			boolean connected = newJoinGraph != null && newJoinGraph.connected();
+			if (connected != (joinGraph != null)) {
+				return optimize(query, consideredMetrics, planSpace, costModel,
+						null, 0, 0, 0, context);
+			}
+			joinGraph = connected ? newJoinGraph : null;
+			relations = extendedStore(nrTables);
+			changedTables |= TableSetUtil.singleton(nrOldTables);
+		}
+		keepStatistics(query);
+		nrCreatedRelations = 0;
+		long startMillis = System.currentTimeMillis();
+		boolean timeout = false;
+		// Recreate relations of changed tables
+		for (long remaining = changedTables; remaining != 0; remaining &= remaining - 1) {
+			int table = TableSetUtil.firstTable(remaining);
+			relations.put(createScanRel(query, table, consideredMetrics,
+					planSpace, costModel, localAlpha, 0, 0, 0));
+			++nrCreatedRelations;
+		}
+		// Recreate affected relations joining multiple tables
+		if (changedTables != 0 || nrChangedPairs != 0) {
+			if (joinGraph == null) {
+				timeout = retreatNarrow(query, changedTables, changedPairs,
+						nrChangedPairs, startMillis, context.timeoutMillis);
+			} else {
+				timeout = retreatConnected(query, changedTables, changedPairs,
+						nrChangedPairs, startMillis, context.timeoutMillis);
+			}
+		}
+		// return Pareto plans for joining all tables
+		Relation resultRel = relations.get(TableSetUtil.allTables(nrTables));
+		List<Plan> resultPlans = resultRel != null ?
+				resultRel.ParetoPlans : new LinkedList<Plan>();
+		// relations are inconsistent after a timeout
+		if (timeout) {
+			relations = null;
+		}
+		return new ParetoPlanSet(resultPlans);
+	}
+
+	/**
+	 * Recreates all affected relations, considering all splits into two operands.
+	 *
+	 * @param query				the changed query
+	 * @param changedTables		bit mask representing the tables with changed cardinality
+	 * @param changedPairs		bit masks representing pairs of tables with changed selectivity
+	 * @param nrChangedPairs	the number of changed pairs
+	 * @param startMillis		start time of re-optimization in milliseconds
+	 * @param timeoutMillis		time budget of re-optimization in milliseconds
+	 * @return					true iff re-optimization timed out
+	 */
+	boolean retreatNarrow(Query query, long changedTables, long[] changedPairs,
+			int nrChangedPairs, long startMillis, long timeoutMillis) {
+		int nrTables = query.nrTables;
+		// treat larger table sets in ascending order of cardinality
+		for (int k=2; k<=nrTables; ++k) {
+			long firstSet = TableSetUtil.allTables(k);
+			long lastSet = firstSet << (nrTables - k);
+			for (long resultSet = firstSet; ;
+					resultSet = TableSetUtil.nextSameCardinality(resultSet)) {
+				if (affected(resultSet, changedTables, changedPairs, nrChangedPairs)) {
+					long firstTable = resultSet & -resultSet;
+					Relation resultRel = createRel(query, relations.get(firstTable),
+							relations.get(resultSet ^ firstTable), 0, 0, 0);
+					relations.put(resultSet, resultRel);
+					++nrCreatedRelations;
+					if (treatSplits(query, relations, resultSet, resultRel, consideredMetrics,
+							planSpace, costModel, localAlpha, startMillis, timeoutMillis, null)) {
+						return true;
+					}
+				}
+				if (resultSet == lastSet) {
+					break;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Recreates all affected relations joining connected table sets, considering only
+	 * splits into connected operands that are connected to each other. Pairs are treated
+	 * in the order of the join graph enumeration such that affected operands are always
+	 * recreated before they are joined.
+	 *
+	 * @param query				the changed query
+	 * @param changedTables		bit mask representing the tables with changed cardinality
+	 * @param changedPairs		bit masks representing pairs of tables with changed selectivity
+	 * @param nrChangedPairs	the number of changed pairs
+	 * @param startMillis		start time of re-optimization in milliseconds
+	 * @param timeoutMillis		time budget of re-optimization in milliseconds
+	 * @return					true iff re-optimization timed out
+	 */
+	boolean retreatConnected(final Query query, final long changedTables,
+			final long[] changedPairs, final int nrChangedPairs,
+			final long startMillis, final long timeoutMillis) {
+		final Set<Long> recreatedSets = new HashSet<Long>();
+		boolean complete = joinGraph.enumerateConnectedPairs(new JoinGraph.PairHandler() {
+			@Override
+			public boolean treat(long tableSet1, long tableSet2) {
+				long resultSet = tableSet1 | tableSet2;
+				if (!affected(resultSet, changedTables, changedPairs, nrChangedPairs)) {
+					return true;
+				}
+				Relation rel1 = relations.get(tableSet1);
+				Relation rel2 = relations.get(tableSet2);
+				// replace result relation when it appears for the first time
+				Relation resultRel;
+				if (recreatedSets.add(resultSet)) {
+					resultRel = createRel(query, rel1, rel2, 0, 0, 0);
+					relations.put(resultSet, resultRel);
+					++nrCreatedRelations;
+				} else {
+					resultRel = relations.get(resultSet);
+				}
+				treatConnectedPair(query, tableSet1, tableSet2, rel1, rel2, resultRel,
+						consideredMetrics, planSpace, costModel, localAlpha, null);
+				// Check for timeouts
+				return System.currentTimeMillis() - startMillis <= timeoutMillis;
+			}
+		});
+		return !complete;
+	}
+
+	@Override
+	public String toString() {
+		return "IncrementalDP(alpha=" + globalAlpha + ")";
+	}
+}
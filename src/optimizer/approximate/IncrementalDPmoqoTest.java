@@ -0,0 +1,169 @@
+package optimizer.approximate;
+
+import static org.junit.Assert.*;
+import static util.TestUtil.*;
+
+import java.util.Arrays;
+
+import common.OptimizationContext;
+import plans.JoinOrderSpace;
+import plans.ParetoPlanSet;
+import queries.JoinGraph;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import util.ParetoUtil;
+import util.TableSetUtil;
+
+import org.junit.Test;
+
+public class IncrementalDPmoqoTest {
+	/**
+	 * Re-optimizes the query incrementally and verifies that the result is the same as
+	 * the result of a full optimizer run.
+	 *
+	 * @param optimizer				the incremental optimizer that optimized the query before
+	 * @param query					the changed query
+	 * @param consideredMetrics		Boolean flags indicating which metrics are considered
+	 * @param joinOrderSpace		whether linear or bushy plans are considered
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 */
+	static void compareWithFullRun(IncrementalDPmoqo optimizer, Query query,
+			boolean[] consideredMetrics, JoinOrderSpace joinOrderSpace,
+			boolean avoidCrossProducts) {
+		ParetoPlanSet result = optimizer.reoptimize(query, new OptimizationContext(60000, 3, 0));
+		ParetoPlanSet fullResult = new DPmoqo(1, joinOrderSpace, avoidCrossProducts)
+				.approximateParetoSet(query, consideredMetrics, planSpace, costModel,
+						null, 0, 0, 0, new OptimizationContext(60000, 3, 0));
+		assertEquals(0, ParetoUtil.epsilonError(result.plans,
+				fullResult.plans, consideredMetrics), EPSILON);
+		assertEquals(0, ParetoUtil.epsilonError(fullResult.plans,
+				result.plans, consideredMetrics), EPSILON);
+	}
+
+	@Test
+	public void test() {
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+			for (boolean avoidCrossProducts : new boolean[] {false, true}) {
+				for (JoinGraphType graphType : JoinGraphType.values()) {
+					int nrTables = 6;
+					Query query = QueryFactory.produceSteinbrunn(
+							graphType, nrTables, JoinType.RANDOM);
+					JoinGraph joinGraph = new JoinGraph(query);
+					IncrementalDPmoqo optimizer = new IncrementalDPmoqo(
+							1, joinOrderSpace, avoidCrossProducts);
+					optimizer.approximateParetoSet(query, consideredMetrics, planSpace,
+							costModel, null, 0, 0, 0, new OptimizationContext(60000, 3, 0));
+					int nrRelations = optimizer.nrCreatedRelations;
+					// Changed cardinalities only affect table sets joining the table
+					query.tableCardinalities[3] *= 2.5;
+					compareWithFullRun(optimizer, query, consideredMetrics,
+							joinOrderSpace, avoidCrossProducts);
+					assertTrue(optimizer.nrCreatedRelations > 0);
+					assertTrue(optimizer.nrCreatedRelations < nrRelations);
+					// Changed selectivities only affect table sets joining both tables
+					int table1 = 0;
+					int table2 = TableSetUtil.firstTable(
+							joinGraph.neighbors(TableSetUtil.singleton(table1)));
+					query.selectivities[table1][table2] *= 0.5;
+					query.selectivities[table2][table1] *= 0.5;
+					compareWithFullRun(optimizer, query, consideredMetrics,
+							joinOrderSpace, avoidCrossProducts);
+					assertTrue(optimizer.nrCreatedRelations > 0);
+					assertTrue(optimizer.nrCreatedRelations < nrRelations);
+					// Nothing is recreated if nothing changed
+					compareWithFullRun(optimizer, query, consideredMetrics,
+							joinOrderSpace, avoidCrossProducts);
+					assertEquals(0, optimizer.nrCreatedRelations);
+				}
+			}
+		}
+		// New join predicates change the connected table sets
+		{
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 6, JoinType.MN);
+			JoinGraph joinGraph = new JoinGraph(query);
+			IncrementalDPmoqo optimizer = new IncrementalDPmoqo(1, JoinOrderSpace.BUSHY, true);
+			optimizer.approximateParetoSet(query, consideredMetrics, planSpace,
+					costModel, null, 0, 0, 0, new OptimizationContext(60000, 3, 0));
+			int nrRelations = optimizer.nrCreatedRelations;
+			int table1 = 0;
+			long nonAdjacent = TableSetUtil.allTables(6) & ~TableSetUtil.singleton(table1) &
+					~joinGraph.neighbors(TableSetUtil.singleton(table1));
+			int table2 = TableSetUtil.firstTable(nonAdjacent);
+			query.selectivities[table1][table2] = 0.5;
+			query.selectivities[table2][table1] = 0.5;
+			compareWithFullRun(optimizer, query, consideredMetrics, JoinOrderSpace.BUSHY, true);
+			assertTrue(optimizer.nrCreatedRelations > nrRelations);
+		}
+		// New join predicates may connect a disconnected join graph
+		{
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 6, JoinType.MN);
+			int table1 = 0;
+			int table2 = TableSetUtil.firstTable(
+					new JoinGraph(query).neighbors(TableSetUtil.singleton(table1)));
+			double selectivity = query.selectivities[table1][table2];
+			query.selectivities[table1][table2] = 1;
+			query.selectivities[table2][table1] = 1;
+			assertFalse(new JoinGraph(query).connected());
+			IncrementalDPmoqo optimizer = new IncrementalDPmoqo(1, JoinOrderSpace.BUSHY, true);
+			optimizer.approximateParetoSet(query, consideredMetrics, planSpace,
+					costModel, null, 0, 0, 0, new OptimizationContext(60000, 3, 0));
+			assertNull(optimizer.joinGraph);
+			query.selectivities[table1][table2] = selectivity;
+			query.selectivities[table2][table1] = selectivity;
+			compareWithFullRun(optimizer, query, consideredMetrics, JoinOrderSpace.BUSHY, true);
+			assertNotNull(optimizer.joinGraph);
+		}
+		// Approximate plans keep the guarantees of a full run when tables are added
+		{
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 4, JoinType.MN);
+			IncrementalDPmoqo optimizer = new IncrementalDPmoqo(2, JoinOrderSpace.BUSHY, true);
+			optimizer.approximateParetoSet(query, consideredMetrics, planSpace,
+					costModel, null, 0, 0, 0, new OptimizationContext(60000, 3, 0));
+			for (int nrTables=4; nrTables<6; ++nrTables) {
+				double[] selectivities = new double[nrTables];
+				Arrays.fill(selectivities, 1);
+				selectivities[nrTables - 1] = 0.01;
+				query = query.addTable(1000 * (nrTables + 1), selectivities);
+				ParetoPlanSet result = optimizer.reoptimize(
+						query, new OptimizationContext(60000, 3, 0));
+				ParetoPlanSet exactResult = new DPmoqo(1, JoinOrderSpace.BUSHY, true)
+						.approximateParetoSet(query, consideredMetrics, planSpace, costModel,
+								null, 0, 0, 0, new OptimizationContext(60000, 3, 0));
+				assertTrue(ParetoUtil.epsilonError(result.plans,
+						exactResult.plans, consideredMetrics) <= 1 + EPSILON);
+				assertEquals(Math.pow(2, 1.0/(nrTables + 1)), optimizer.localAlpha, EPSILON);
+			}
+		}
+		// Tables added one at a time only require treating the new table sets
+		for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+			for (boolean avoidCrossProducts : new boolean[] {false, true}) {
+				Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 3, JoinType.MN);
+				IncrementalDPmoqo optimizer = new IncrementalDPmoqo(
+						1, joinOrderSpace, avoidCrossProducts);
+				optimizer.approximateParetoSet(query, consideredMetrics, planSpace,
+						costModel, null, 0, 0, 0, new OptimizationContext(60000, 3, 0));
+				for (int nrTables=3; nrTables<6; ++nrTables) {
+					// connect new table to the previous table and to the first table
+					double[] selectivities = new double[nrTables];
+					Arrays.fill(selectivities, 1);
+					selectivities[nrTables - 1] = 0.01;
+					selectivities[0] = 0.5;
+					query = query.addTable(1000 * (nrTables + 1), selectivities);
+					compareWithFullRun(optimizer, query, consideredMetrics,
+							joinOrderSpace, avoidCrossProducts);
+					if (avoidCrossProducts) {
+						// relations for previous table sets were kept
+						assertTrue(optimizer.nrCreatedRelations > 0);
+						assertTrue(optimizer.nrCreatedRelations < optimizer.relations.size());
+					} else {
+						assertEquals(1 << nrTables, optimizer.nrCreatedRelations);
+					}
+				}
+			}
+		}
+	}
+
+}
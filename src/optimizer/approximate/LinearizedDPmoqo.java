@@ -0,0 +1,313 @@
+package optimizer.approximate;
+
+import java.util.BitSet;
+
+import cost.MultiCostModel;
+import plans.JoinOrderSpace;
+import plans.spaces.PlanSpace;
+import queries.JoinGraph;
+import queries.Query;
+import relations.Relation;
+import relations.RelationMap;
+import relations.RelationStore;
+
+/**
+ * Linearized dynamic programming (in the style of LinDP by Neumann and Radke, SIGMOD 2018)
+ * for medium-sized to large queries. A linear table order is derived first: starting from
+ * each table once, tables are added greedily such that the cardinality of the next
+ * intermediate result is minimized, and the order minimizing the sum of intermediate
+ * result cardinalities is kept. If cross products are avoided (and the join graph is
+ * connected) then only tables that are connected to the ordered tables are added.
+ *
+ * Plans are then generated by dynamic programming over the intervals of that order: the
+ * plans for each interval are obtained by splitting it into two adjacent sub-intervals
+ * and joining their plans in both orders (if admissible in the join order space). Hence,
+ * the leaves of each sub-plan form an interval of the linear order, and the number of
+ * treated splits is cubic in the number of tables. Pruning and operator selection work
+ * as for the DP-based MOQO algorithm by Trummer and Koch (SIGMOD 2014).
+ *
+ * Queries with few tables are optimized by the DP-based MOQO algorithm over all table
+ * sets while queries with many tables are optimized by iterative dynamic programming.
+ * Both thresholds can be configured.
+ *
+ * @author immanueltrummer
+ *
+ */
+@SuppressWarnings("serial")
+public class LinearizedDPmoqo extends DPmoqo {
+	/**
+	 * Queries with at most that many tables are optimized by default over all table sets.
+	 */
+	public final static int DEFAULT_MAX_EXACT_TABLES = 10;
+	/**
+	 * Queries with more than that many tables are optimized by default via iterative
+	 * dynamic programming.
+	 */
+	public final static int DEFAULT_MAX_LINEARIZED_TABLES = 100;
+	/**
+	 * Queries with at most that many tables are optimized over all table sets.
+	 */
+	final int maxExactTables;
+	/**
+	 * Queries with more than that many tables are optimized via iterative dynamic programming.
+	 */
+	final int maxLinearizedTables;
+	/**
+	 * Optimizes queries with more than the maximal number of linearized tables.
+	 */
+	final IDPmoqo iterativeOptimizer;
+	/**
+	 * The linear table order used during the last optimizer run or null if no linear
+	 * order was derived.
+	 */
+	public int[] lastOrder;
+
+	/**
+	 * Initializes global alpha, join order space, whether cross products are avoided,
+	 * and the query sizes for which exact or iterative dynamic programming is used.
+	 *
+	 * @param globalAlpha			The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace		whether linear or bushy plans are considered
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 * @param maxExactTables		queries with at most that many tables are optimized over all table sets
+	 * @param maxLinearizedTables	queries with more than that many tables are optimized iteratively
+	 */
+	public LinearizedDPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace,
+			boolean avoidCrossProducts, int maxExactTables, int maxLinearizedTables) {
+		super(globalAlpha, joinOrderSpace, avoidCrossProducts);
+		assert(maxExactTables <= maxLinearizedTables);
+		this.maxExactTables = maxExactTables;
+		this.maxLinearizedTables = maxLinearizedTables;
+		this.iterativeOptimizer = new IDPmoqo(globalAlpha, joinOrderSpace, avoidCrossProducts);
+	}
+
+	/**
+	 * Initializes global alpha, join order space, and whether cross products are avoided.
+	 * Uses the default query sizes for exact and iterative dynamic programming.
+	 *
+	 * @param globalAlpha			The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace		whether linear or bushy plans are considered
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 */
+	public LinearizedDPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace,
+			boolean avoidCrossProducts) {
+		this(globalAlpha, joinOrderSpace, avoidCrossProducts,
+				DEFAULT_MAX_EXACT_TABLES, DEFAULT_MAX_LINEARIZED_TABLES);
+	}
+
+	/**
+	 * Initializes global alpha and sets join order space to bushy as default.
+	 *
+	 * @param globalAlpha	The cost of generated query plans is not higher than optimal by more than that.
+	 */
+	public LinearizedDPmoqo(double globalAlpha) {
+		this(globalAlpha, JoinOrderSpace.BUSHY, false);
+	}
+
+	/**
+	 * Derives a linear table order by adding tables greedily, starting once from each
+	 * table, and returns the order minimizing the sum of intermediate result cardinalities.
+	 *
+	 * @param query		the query whose tables are ordered
+	 * @param connected	whether each added table must be connected to the ordered tables
+	 * 					by a join predicate (requires a connected join graph)
+	 * @return			an array containing each table index once
+	 */
+	static int[] linearOrder(Query query, boolean connected) {
+		int nrTables = query.nrTables;
+		int[] bestOrder = null;
+		double bestCost = Double.POSITIVE_INFINITY;
+		for (int startTable=0; startTable<nrTables; ++startTable) {
+			int[] order = new int[nrTables];
+			boolean[] ordered = new boolean[nrTables];
+			// product of the selectivities between each table and the ordered tables
+			double[] selectivities = new double[nrTables];
+			// whether each table is connected to the ordered tables by a join predicate
+			boolean[] adjacent = new boolean[nrTables];
+			order[0] = startTable;
+			ordered[startTable] = true;
+			for (int table=0; table<nrTables; ++table) {
+				selectivities[table] = query.selectivities[startTable][table];
+				adjacent[table] = query.selectivities[startTable][table] != 1;
+			}
+			double cardinality = query.tableCardinalities[startTable];
+			double cost = 0;
+			for (int position=1; position<nrTables; ++position) {
+				int nextTable = -1;
+				double nextCardinality = Double.POSITIVE_INFINITY;
+				for (int table=0; table<nrTables; ++table) {
+					if (!ordered[table] && (!connected || adjacent[table])) {
+						double joinCardinality = cardinality *
+								query.tableCardinalities[table] * selectivities[table];
+						if (nextTable < 0 || joinCardinality < nextCardinality) {
+							nextTable = table;
+							nextCardinality = joinCardinality;
+						}
+					}
+				}
+				assert(nextTable >= 0);
+				order[position] = nextTable;
+				ordered[nextTable] = true;
+				cardinality = nextCardinality;
+				cost += cardinality;
+				for (int table=0; table<nrTables; ++table) {
+					selectivities[table] *= query.selectivities[nextTable][table];
+					adjacent[table] |= query.selectivities[nextTable][table] != 1;
+				}
+			}
+			if (bestOrder == null || cost < bestCost) {
+				bestOrder = order;
+				bestCost = cost;
+			}
+		}
+		return bestOrder;
+	}
+
+	/**
+	 * Generates plans for all intervals of a linear table order and stores the plans
+	 * joining all tables in the relation store. Cross products are avoided if a join graph
+	 * is given.
+	 *
+	 * @return	true iff the optimizer timed out before treating all intervals
+	 */
+	boolean treatJoinsLinearized(Query query, RelationStore relations, JoinGraph joinGraph,
+			boolean[] consideredMetrics, PlanSpace planSpace, MultiCostModel costModel,
+			double localAlpha, long startMillis, long timeoutMillis,
+			int algIndex, int sizeIndex, int queryIndex) {
+		int nrTables = query.nrTables;
+		int[] order = linearOrder(query, joinGraph != null);
+		lastOrder = order;
+		boolean linear = joinOrderSpace == JoinOrderSpace.LINEAR;
+		// relation representing the interval between two order positions (inclusive)
+		Relation[][] intervalRels = new Relation[nrTables][nrTables];
+		for (int position=0; position<nrTables; ++position) {
+			BitSet tableSet = new BitSet();
+			tableSet.set(order[position]);
+			intervalRels[position][position] = relations.get(tableSet);
+		}
+		// treat intervals in ascending order of length
+		for (int length=2; length<=nrTables; ++length) {
+			for (int first=0; first+length<=nrTables; ++first) {
+				int last = first + length - 1;
+				Relation resultRel = createRel(query, intervalRels[first][first],
+						intervalRels[first + 1][last], algIndex, sizeIndex, queryIndex);
+				intervalRels[first][last] = resultRel;
+				// iterate over the last positions of the first sub-interval
+				for (int split=first; split<last; ++split) {
+					Relation rel1 = intervalRels[first][split];
+					Relation rel2 = intervalRels[split + 1][last];
+					if (joinGraph != null && !joinGraph.adjacent(rel1.lowTableBits,
+							rel1.highTableBits, rel2.lowTableBits, rel2.highTableBits)) {
+						continue;
+					}
+					// The right join operand is a single table for left-deep (linear) plans
+					if (!linear || split + 1 == last) {
+						tryJoins(query, rel1, rel2, resultRel, planSpace,
+								costModel, localAlpha, consideredMetrics, null);
+					}
+					if (!linear || split == first) {
+						tryJoins(query, rel2, rel1, resultRel, planSpace,
+								costModel, localAlpha, consideredMetrics, null);
+					}
+				}
+				// Check for timeouts
+				if (System.currentTimeMillis() - startMillis > timeoutMillis) {
+					return true;
+				}
+			}
+		}
+		if (nrTables > 1) {
+			relations.put(intervalRels[0][nrTables - 1]);
+		}
+		return false;
+	}
+
+	/**
+	 * Treats table sets of queries with at most 64 tables, allowing cross products.
+	 *
+	 * @return	true iff the optimizer timed out
+	 */
+	@Override
+	boolean treatJoinsNarrow(Query query, RelationStore relations, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, long startMillis,
+			long timeoutMillis, SubPlanMemo.Session memoSession, CostBound bound,
+			int algIndex, int sizeIndex, int queryIndex) {
+		lastOrder = null;
+		if (query.nrTables <= maxExactTables) {
+			return super.treatJoinsNarrow(query, relations, consideredMetrics, planSpace,
+					costModel, localAlpha, startMillis, timeoutMillis, memoSession, bound,
+					algIndex, sizeIndex, queryIndex);
+		} else if (query.nrTables > maxLinearizedTables) {
+			return iterativeOptimizer.treatJoinsNarrow(query, relations, consideredMetrics,
+					planSpace, costModel, localAlpha, startMillis, timeoutMillis, memoSession,
+					bound, algIndex, sizeIndex, queryIndex);
+		} else {
+			return treatJoinsLinearized(query, relations, null, consideredMetrics, planSpace,
+					costModel, localAlpha, startMillis, timeoutMillis,
+					algIndex, sizeIndex, queryIndex);
+		}
+	}
+
+	/**
+	 * Treats table sets of queries with at most 64 tables, joining only connected tables.
+	 *
+	 * @return	true iff the optimizer timed out
+	 */
+	@Override
+	boolean treatJoinsConnected(Query query, RelationStore relations, JoinGraph joinGraph,
+			boolean[] consideredMetrics, PlanSpace planSpace, MultiCostModel costModel,
+			double localAlpha, long startMillis, long timeoutMillis,
+			SubPlanMemo.Session memoSession, CostBound bound,
+			int algIndex, int sizeIndex, int queryIndex) {
+		lastOrder = null;
+		if (query.nrTables <= maxExactTables) {
+			return super.treatJoinsConnected(query, relations, joinGraph, consideredMetrics,
+					planSpace, costModel, localAlpha, startMillis, timeoutMillis, memoSession,
+					bound, algIndex, sizeIndex, queryIndex);
+		} else if (query.nrTables > maxLinearizedTables) {
+			return iterativeOptimizer.treatJoinsConnected(query, relations, joinGraph,
+					consideredMetrics, planSpace, costModel, localAlpha, startMillis,
+					timeoutMillis, memoSession, bound, algIndex, sizeIndex, queryIndex);
+		} else {
+			return treatJoinsLinearized(query, relations, joinGraph, consideredMetrics,
+					planSpace, costModel, localAlpha, startMillis, timeoutMillis,
+					algIndex, sizeIndex, queryIndex);
+		}
+	}
+
+	/**
+	 * Treats table sets of queries with more than 64 tables, joining only connected tables
+	 * if cross products are avoided and the join graph is connected.
+	 *
+	 * @return	true iff the optimizer timed out
+	 */
+	@Override
+	boolean treatJoinsWide(Query query, RelationMap relations, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, long startMillis,
+			long timeoutMillis, int algIndex, int sizeIndex, int queryIndex) {
+		lastOrder = null;
+		if (query.nrTables <= maxExactTables) {
+			return super.treatJoinsWide(query, relations, consideredMetrics, planSpace,
+					costModel, localAlpha, startMillis, timeoutMillis,
+					algIndex, sizeIndex, queryIndex);
+		} else if (query.nrTables > maxLinearizedTables) {
+			return iterativeOptimizer.treatJoinsWide(query, relations, consideredMetrics,
+					planSpace, costModel, localAlpha, startMillis, timeoutMillis,
+					algIndex, sizeIndex, queryIndex);
+		} else {
+			JoinGraph joinGraph = avoidCrossProducts ? new JoinGraph(query) : null;
+			if (joinGraph != null && !joinGraph.connected()) {
+				joinGraph = null;
+			}
+			return treatJoinsLinearized(query, relations, joinGraph, consideredMetrics,
+					planSpace, costModel, localAlpha, startMillis, timeoutMillis,
+					algIndex, sizeIndex, queryIndex);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return avoidCrossProducts ? "LinDPccp(alpha=" + globalAlpha + ")" :
+			"LinDP(alpha=" + globalAlpha + ")";
+	}
+}
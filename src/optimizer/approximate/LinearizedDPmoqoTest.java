@@ -0,0 +1,129 @@
+package optimizer.approximate;
+
+import static org.junit.Assert.*;
+import static util.TestUtil.*;
+
+import java.util.BitSet;
+import java.util.List;
+
+import common.OptimizationContext;
+import plans.JoinOrderSpace;
+import plans.JoinPlan;
+import plans.Plan;
+import plans.ScanPlan;
+import queries.JoinGraph;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import util.ParetoUtil;
+import util.TableSetUtil;
+
+import org.junit.Test;
+
+public class LinearizedDPmoqoTest {
+	/**
+	 * Checks that the leaves of each sub-plan form an interval of the given table order
+	 * and returns the interval of the given plan.
+	 *
+	 * @param plan		a query plan
+	 * @param positions	the position of each table in the order
+	 * @return			the first and last position of the plan leaves
+	 */
+	static int[] interval(Plan plan, int[] positions) {
+		if (plan instanceof ScanPlan) {
+			int position = positions[((ScanPlan)plan).tableIndex];
+			return new int[] {position, position};
+		}
+		JoinPlan joinPlan = (JoinPlan)plan;
+		int[] left = interval(joinPlan.getLeftPlan(), positions);
+		int[] right = interval(joinPlan.getRightPlan(), positions);
+		assertTrue(left[1] + 1 == right[0] || right[1] + 1 == left[0]);
+		return new int[] {Math.min(left[0], right[0]), Math.max(left[1], right[1])};
+	}
+
+	@Test
+	public void test() {
+		// Linear orders contain each table once and connect each table to its predecessors
+		for (JoinGraphType graphType : JoinGraphType.values()) {
+			Query query = QueryFactory.produceSteinbrunn(graphType, 12, JoinType.RANDOM);
+			JoinGraph joinGraph = new JoinGraph(query);
+			int[] order = LinearizedDPmoqo.linearOrder(query, true);
+			long orderedTables = TableSetUtil.singleton(order[0]);
+			for (int position=1; position<12; ++position) {
+				long table = TableSetUtil.singleton(order[position]);
+				assertEquals(0, orderedTables & table);
+				assertTrue(joinGraph.adjacent(orderedTables, table));
+				orderedTables |= table;
+			}
+		}
+		// Linearized plans join all tables along intervals of the order and are covered by
+		// the frontier of exact dynamic programming
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+			for (boolean avoidCrossProducts : new boolean[] {false, true}) {
+				for (JoinGraphType graphType : JoinGraphType.values()) {
+					Query query = QueryFactory.produceSteinbrunn(graphType, 6, JoinType.RANDOM);
+					LinearizedDPmoqo linDP = new LinearizedDPmoqo(
+							1, joinOrderSpace, avoidCrossProducts, 1, 6);
+					List<Plan> linPlans = linDP.approximateParetoSet(query, consideredMetrics,
+							planSpace, costModel, null, 0, 0, 0,
+							new OptimizationContext(60000, 3, 0)).plans;
+					List<Plan> plans = new DPmoqo(1, joinOrderSpace, avoidCrossProducts)
+							.approximateParetoSet(query, consideredMetrics, planSpace,
+									costModel, null, 0, 0, 0,
+									new OptimizationContext(60000, 3, 0)).plans;
+					assertFalse(linPlans.isEmpty());
+					assertEquals(0, ParetoUtil.epsilonError(
+							plans, linPlans, consideredMetrics), EPSILON);
+					int[] positions = new int[6];
+					for (int position=0; position<6; ++position) {
+						positions[linDP.lastOrder[position]] = position;
+					}
+					JoinGraph joinGraph = new JoinGraph(query);
+					for (Plan plan : linPlans) {
+						long joinedTables = avoidCrossProducts ?
+								DPmoqoTest.crossProductFreeTables(plan, joinGraph) :
+									SubPlanMemoTest.joinedTables(plan);
+						assertEquals(TableSetUtil.allTables(6), joinedTables);
+						assertArrayEquals(new int[] {0, 5}, interval(plan, positions));
+						if (joinOrderSpace == JoinOrderSpace.LINEAR) {
+							assertTrue(IDPmoqoTest.leftDeep(plan));
+						}
+					}
+				}
+			}
+		}
+		// Small queries are optimized over all table sets
+		{
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 6, JoinType.RANDOM);
+			LinearizedDPmoqo linDP = new LinearizedDPmoqo(1, JoinOrderSpace.BUSHY, true);
+			List<Plan> linPlans = linDP.approximateParetoSet(query, consideredMetrics,
+					planSpace, costModel, null, 0, 0, 0,
+					new OptimizationContext(60000, 3, 0)).plans;
+			List<Plan> plans = new DPmoqo(1, JoinOrderSpace.BUSHY, true).approximateParetoSet(
+					query, consideredMetrics, planSpace, costModel, null, 0, 0, 0,
+					new OptimizationContext(60000, 3, 0)).plans;
+			assertEquals(0, ParetoUtil.epsilonError(linPlans, plans, consideredMetrics), EPSILON);
+			assertEquals(0, ParetoUtil.epsilonError(plans, linPlans, consideredMetrics), EPSILON);
+			assertNull(linDP.lastOrder);
+		}
+		// Large queries are optimized along a linear order or iteratively beyond 64 tables
+		consideredMetrics = new boolean[] {true, false, false};
+		for (int nrTables : new int[] {100, 110}) {
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, nrTables, JoinType.RANDOM);
+			LinearizedDPmoqo linDP = new LinearizedDPmoqo(1, JoinOrderSpace.BUSHY, true);
+			List<Plan> plans = linDP.approximateParetoSet(query, consideredMetrics,
+					planSpace, costModel, null, 0, 0, 0,
+					new OptimizationContext(3000, 3, 0)).plans;
+			assertFalse(plans.isEmpty());
+			assertEquals(nrTables <= 100, linDP.lastOrder != null);
+			JoinGraph joinGraph = new JoinGraph(query);
+			for (Plan plan : plans) {
+				BitSet joinedTables = IDPmoqoTest.joinedTables(plan, joinGraph);
+				assertEquals(nrTables, joinedTables.cardinality());
+			}
+		}
+	}
+
+}
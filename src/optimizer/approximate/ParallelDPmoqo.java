@@ -0,0 +1,426 @@
+package optimizer.approximate;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import common.OptimizationContext;
+import cost.MultiCostModel;
+import plans.JoinOrderSpace;
+import plans.Plan;
+import plans.spaces.PlanSpace;
+import queries.Query;
+import relations.Relation;
+import relations.RelationStore;
+import util.PruningUtil;
+import util.TableSetUtil;
+
+/**
+ * Multi-core variant of the DP-based MOQO algorithm by Trummer and Koch (SIGMOD 2014).
+ * All table sets of the same cardinality only depend on table sets of smaller cardinality
+ * and are therefore treated in parallel by the threads of a fork-join pool, with a barrier
+ * between consecutive cardinality levels. Result relations of one level are created by
+ * the coordinating thread before the level is processed in parallel; the pool then splits
+ * the result table sets recursively among its threads (work stealing).
+ *
+ * The splits of large result table sets are further divided into chunks of consecutive
+ * left operands that are treated in parallel as well. Each chunk prunes its plans within a
+ * private buffer relation using the local approximation factor. Afterwards, the buffered
+ * plans are merged into the result relation using exact Pareto dominance, such that the
+ * same approximation guarantees hold as for the sequential algorithm.
+ *
+ * The parallel algorithm is used for queries with at most 64 tables when cross products
+ * are allowed; larger queries are treated sequentially.
+ *
+ * @author immanueltrummer
+ *
+ */
+@SuppressWarnings("serial")
+public class ParallelDPmoqo extends DPmoqo {
+	/**
+	 * Result table sets with more splits than this are divided into chunks of splits.
+	 */
+	final static int SPLITS_PER_CHUNK = 64;
+	/**
+	 * The number of threads used for optimization.
+	 */
+	final int parallelism;
+	/**
+	 * Contains after each optimizer run for each table set cardinality the number of
+	 * milliseconds spent treating all table sets of that cardinality.
+	 */
+	public long[] lastRunLevelMillis;
+
+	/**
+	 * Initializes approximation factor, join order space, and the number of threads.
+	 *
+	 * @param globalAlpha		The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace	whether linear or bushy plans are considered
+	 * @param parallelism		the number of threads to use
+	 */
+	public ParallelDPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace, int parallelism) {
+		this(globalAlpha, joinOrderSpace, parallelism, null);
+	}
+
+	/**
+	 * Initializes approximation factor, join order space, the number of threads, and the
+	 * memo for reusing plans of equivalent sub-queries.
+	 *
+	 * @param globalAlpha		The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace	whether linear or bushy plans are considered
+	 * @param parallelism		the number of threads to use
+	 * @param memo				memo shared with other optimizer runs or null
+	 */
+	public ParallelDPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace,
+			int parallelism, SubPlanMemo memo) {
+		super(globalAlpha, joinOrderSpace, false, memo);
+		assert(parallelism > 0);
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Initializes approximation factor and join order space and uses one thread per core.
+	 *
+	 * @param globalAlpha		The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace	whether linear or bushy plans are considered
+	 */
+	public ParallelDPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace) {
+		this(globalAlpha, joinOrderSpace, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Describes one invocation of the parallel algorithm; shared by all tasks.
+	 */
+	class Run {
+		/**
+		 * The query being optimized.
+		 */
+		final Query query;
+		/**
+		 * Maps table sets to relations - only read while a level is processed.
+		 */
+		final RelationStore relations;
+		/**
+		 * Boolean flags indicating which plan cost metrics are considered.
+		 */
+		final boolean[] consideredMetrics;
+		/**
+		 * Determines the applicable join operators.
+		 */
+		final PlanSpace planSpace;
+		/**
+		 * Estimates the execution cost of the new plans.
+		 */
+		final MultiCostModel costModel;
+		/**
+		 * Approximation factor used for pruning.
+		 */
+		final double localAlpha;
+		/**
+		 * Start time of the optimizer run in milliseconds.
+		 */
+		final long startMillis;
+		/**
+		 * Optimization time budget in milliseconds.
+		 */
+		final long timeoutMillis;
+		/**
+		 * New plans exceeding that cost bound are discarded (may be null).
+		 */
+		final CostBound bound;
+		/**
+		 * Set by the first task that detects a timeout; other tasks stop when it is set.
+		 */
+		volatile boolean timedOut = false;
+
+		Run(Query query, RelationStore relations, boolean[] consideredMetrics,
+				PlanSpace planSpace, MultiCostModel costModel, double localAlpha,
+				long startMillis, long timeoutMillis, CostBound bound) {
+			this.query = query;
+			this.relations = relations;
+			this.consideredMetrics = consideredMetrics;
+			this.planSpace = planSpace;
+			this.costModel = costModel;
+			this.localAlpha = localAlpha;
+			this.startMillis = startMillis;
+			this.timeoutMillis = timeoutMillis;
+			this.bound = bound;
+		}
+		/**
+		 * Checks for timeouts and notifies other tasks if a timeout occurred.
+		 *
+		 * @return	true iff the optimizer run timed out
+		 */
+		boolean checkTimeout() {
+			if (!timedOut && System.currentTimeMillis() - startMillis > timeoutMillis) {
+				timedOut = true;
+			}
+			return timedOut;
+		}
+		/**
+		 * Returns the number of splits of the given result table set into two operands.
+		 *
+		 * @param resultSet	bit mask representing the result table set
+		 * @return			the number of splits in the join order space
+		 */
+		long nrSplits(long resultSet) {
+			int k = TableSetUtil.cardinality(resultSet);
+			return joinOrderSpace == JoinOrderSpace.LINEAR ? k : (1L << k) - 2;
+		}
+		/**
+		 * Returns the left operand of the split with the given index.
+		 *
+		 * @param resultSet		bit mask representing the result table set
+		 * @param splitIndex	index of a split between zero and the number of splits
+		 * @return				bit mask representing the left join operand
+		 */
+		long leftOperand(long resultSet, long splitIndex) {
+			if (joinOrderSpace == JoinOrderSpace.LINEAR) {
+				// The right join operand is a single table for left-deep (linear) plans
+				return resultSet ^ TableSetUtil.deposit(1L << splitIndex, resultSet);
+			} else {
+				return TableSetUtil.deposit(splitIndex + 1, resultSet);
+			}
+		}
+		/**
+		 * Tries the splits with indices in the given range and prunes the resulting plans
+		 * within the target relation.
+		 *
+		 * @param resultSet		bit mask representing the result table set
+		 * @param targetRel		relation or buffer storing the (near-)Pareto-optimal plans
+		 * @param firstSplit	index of the first split to try
+		 * @param lastSplit		index after the last split to try
+		 */
+		void trySplits(long resultSet, Relation targetRel, long firstSplit, long lastSplit) {
+			for (long splitIndex=firstSplit; splitIndex<lastSplit; ++splitIndex) {
+				long leftSet = leftOperand(resultSet, splitIndex);
+				long rightSet = resultSet ^ leftSet;
+				tryJoins(query, relations.get(leftSet), relations.get(rightSet),
+						targetRel, planSpace, costModel, localAlpha, consideredMetrics, bound);
+				// Check for timeouts
+				if (checkTimeout()) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Treats a range of result table sets of the same cardinality, dividing the range
+	 * recursively among the threads of the pool.
+	 */
+	class LevelTask extends RecursiveAction {
+		/**
+		 * The optimizer run this task belongs to.
+		 */
+		final Run run;
+		/**
+		 * Result table sets of the current level.
+		 */
+		final long[] resultSets;
+		/**
+		 * Index of first result table set to treat.
+		 */
+		final int first;
+		/**
+		 * Index after last result table set to treat.
+		 */
+		final int last;
+		/**
+		 * Context of this task - counts plans created by this task and its sub-tasks.
+		 */
+		final OptimizationContext context;
+
+		LevelTask(Run run, long[] resultSets, int first, int last, OptimizationContext context) {
+			this.run = run;
+			this.resultSets = resultSets;
+			this.first = first;
+			this.last = last;
+			this.context = context;
+		}
+
+		@Override
+		protected void compute() {
+			if (run.timedOut) {
+				return;
+			}
+			if (last - first > 1) {
+				// Divide range - child contexts are split off in this task deterministically
+				int middle = (first + last) / 2;
+				LevelTask left = new LevelTask(run, resultSets, first, middle, context.split());
+				LevelTask right = new LevelTask(run, resultSets, middle, last, context.split());
+				invokeAll(left, right);
+				context.addCounters(left.context);
+				context.addCounters(right.context);
+			} else if (last - first == 1) {
+				treatResultSet(resultSets[first]);
+			}
+		}
+		/**
+		 * Tries all splits of the given result table set, dividing them into chunks
+		 * that are treated in parallel if there are many splits.
+		 *
+		 * @param resultSet	bit mask representing the result table set
+		 */
+		void treatResultSet(long resultSet) {
+			Relation resultRel = run.relations.get(resultSet);
+			long nrSplits = run.nrSplits(resultSet);
+			if (nrSplits <= SPLITS_PER_CHUNK) {
+				// Few splits: prune directly within result relation
+				OptimizationContext previousContext = context.activate();
+				try {
+					run.trySplits(resultSet, resultRel, 0, nrSplits);
+				} finally {
+					OptimizationContext.restore(previousContext);
+				}
+			} else {
+				// Many splits: prune within one buffer per chunk of splits
+				int nrChunks = (int)Math.min(4 * parallelism,
+						(nrSplits + SPLITS_PER_CHUNK - 1) / SPLITS_PER_CHUNK);
+				ChunkTask[] chunks = new ChunkTask[nrChunks];
+				for (int chunkCtr=0; chunkCtr<nrChunks; ++chunkCtr) {
+					long firstSplit = nrSplits * chunkCtr / nrChunks;
+					long lastSplit = nrSplits * (chunkCtr + 1) / nrChunks;
+					Relation buffer = new Relation(resultRel.tableSet, resultRel.cardinality);
+					chunks[chunkCtr] = new ChunkTask(run, resultSet, buffer,
+							firstSplit, lastSplit, context.split());
+				}
+				invokeAll(chunks);
+				// Merge buffered plans using exact dominance to preserve guarantees
+				OptimizationContext previousContext = context.activate();
+				try {
+					for (ChunkTask chunk : chunks) {
+						context.addCounters(chunk.context);
+						if (chunk.buffer.ParetoPlans != null) {
+							for (Plan plan : chunk.buffer.ParetoPlans) {
+								PruningUtil.prune(run.query, resultRel, plan,
+										1, run.consideredMetrics, false);
+							}
+						}
+					}
+				} finally {
+					OptimizationContext.restore(previousContext);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tries a range of splits of one result table set and prunes the plans within a buffer.
+	 */
+	class ChunkTask extends RecursiveAction {
+		/**
+		 * The optimizer run this task belongs to.
+		 */
+		final Run run;
+		/**
+		 * Bit mask representing the result table set.
+		 */
+		final long resultSet;
+		/**
+		 * Buffer relation storing the (near-)Pareto-optimal plans of this chunk.
+		 */
+		final Relation buffer;
+		/**
+		 * Index of the first split to try.
+		 */
+		final long firstSplit;
+		/**
+		 * Index after the last split to try.
+		 */
+		final long lastSplit;
+		/**
+		 * Context of this task - counts plans created by this task.
+		 */
+		final OptimizationContext context;
+
+		ChunkTask(Run run, long resultSet, Relation buffer, long firstSplit,
+				long lastSplit, OptimizationContext context) {
+			this.run = run;
+			this.resultSet = resultSet;
+			this.buffer = buffer;
+			this.firstSplit = firstSplit;
+			this.lastSplit = lastSplit;
+			this.context = context;
+		}
+
+		@Override
+		protected void compute() {
+			if (run.timedOut) {
+				return;
+			}
+			OptimizationContext previousContext = context.activate();
+			try {
+				run.trySplits(resultSet, buffer, firstSplit, lastSplit);
+			} finally {
+				OptimizationContext.restore(previousContext);
+			}
+		}
+	}
+
+	/**
+	 * Treats all table sets with at least two tables level by level, treating all table
+	 * sets of the same cardinality in parallel. Table sets whose relation was seeded from
+	 * the memo session (if any) are not split.
+	 *
+	 * @return	true iff the optimizer timed out before treating all table sets
+	 */
+	@Override
+	boolean treatJoinsNarrow(Query query, RelationStore relations, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, long startMillis,
+			long timeoutMillis, SubPlanMemo.Session memoSession, CostBound bound,
+			int algIndex, int sizeIndex, int queryIndex) {
+		int nrTables = query.nrTables;
+		OptimizationContext context = OptimizationContext.current();
+		Run run = new Run(query, relations, consideredMetrics, planSpace,
+				costModel, localAlpha, startMillis, timeoutMillis, bound);
+		long[] levelMillis = new long[nrTables + 1];
+		lastRunLevelMillis = levelMillis;
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			// treat larger table sets in ascending order of cardinality
+			for (int k=2; k<=nrTables; ++k) {
+				long levelStartMillis = System.currentTimeMillis();
+				// create and insert result relations of this level
+				long firstSet = TableSetUtil.allTables(k);
+				long lastSet = firstSet << (nrTables - k);
+				long[] resultSets = new long[16];
+				int nrResultSets = 0;
+				for (long resultSet = firstSet; ;
+						resultSet = TableSetUtil.nextSameCardinality(resultSet)) {
+					long firstTable = resultSet & -resultSet;
+					Relation resultRel = createRel(query, relations.get(firstTable),
+							relations.get(resultSet ^ firstTable), algIndex, sizeIndex, queryIndex);
+					relations.put(resultSet, resultRel);
+					boolean seeded = memoSession != null && memoSession.seed(resultSet, resultRel);
+					if (!seeded) {
+						if (nrResultSets == resultSets.length) {
+							resultSets = Arrays.copyOf(resultSets, 2 * nrResultSets);
+						}
+						resultSets[nrResultSets++] = resultSet;
+					}
+					if (resultSet == lastSet) {
+						break;
+					}
+				}
+				// treat result sets in parallel and wait until all are treated
+				LevelTask levelTask = new LevelTask(
+						run, resultSets, 0, nrResultSets, context.split());
+				pool.invoke(levelTask);
+				context.addCounters(levelTask.context);
+				levelMillis[k] = System.currentTimeMillis() - levelStartMillis;
+				if (run.timedOut) {
+					return true;
+				}
+			} // over result table set cardinality
+		} finally {
+			pool.shutdown();
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "ParallelDP(alpha=" + globalAlpha + ", threads=" + parallelism + ")";
+	}
+}
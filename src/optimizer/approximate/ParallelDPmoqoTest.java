@@ -0,0 +1,78 @@
+package optimizer.approximate;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import common.OptimizationContext;
+import cost.MultiCostModel;
+import cost.SingleCostModel;
+import cost.local.BufferCostModel;
+import cost.local.DiscCostModel;
+import cost.local.TimeCostModel;
+import plans.JoinOrderSpace;
+import plans.ParetoPlanSet;
+import plans.spaces.LocalPlanSpace;
+import plans.spaces.PlanSpace;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import util.ParetoUtil;
+import util.TestUtil;
+
+import org.junit.Test;
+
+public class ParallelDPmoqoTest {
+
+	@Test
+	public void test() {
+		PlanSpace planSpace = new LocalPlanSpace();
+		List<SingleCostModel> costModels = Arrays.asList(new SingleCostModel[] {
+				new TimeCostModel(0), new BufferCostModel(1), new DiscCostModel(2)
+		});
+		MultiCostModel costModel = new MultiCostModel(costModels);
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		// Parallel and sequential algorithm produce the same Pareto frontier and the
+		// parallel algorithm respects the approximation guarantees.
+		for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+			DPmoqo sequentialAlg = new DPmoqo(1, joinOrderSpace);
+			ParallelDPmoqo exactAlg = new ParallelDPmoqo(1, joinOrderSpace, 4);
+			ParallelDPmoqo approximateAlg = new ParallelDPmoqo(2, joinOrderSpace, 4);
+			for (JoinGraphType joinGraphType : JoinGraphType.values()) {
+				// Bushy plan spaces with seven tables require dividing splits into chunks
+				Query query = QueryFactory.produceSteinbrunn(joinGraphType, 7, JoinType.RANDOM);
+				ParetoPlanSet sequentialResult = sequentialAlg.approximateParetoSet(
+						query, consideredMetrics, planSpace, costModel, null, 0, 0, 0, 
+						new OptimizationContext(60000, 3, 0));
+				OptimizationContext context = new OptimizationContext(60000, 3, 0);
+				ParetoPlanSet parallelResult = exactAlg.approximateParetoSet(
+						query, consideredMetrics, planSpace, costModel, null, 0, 0, 0, context);
+				assertEquals(0, ParetoUtil.epsilonError(parallelResult.plans,
+						sequentialResult.plans, consideredMetrics), TestUtil.EPSILON);
+				assertEquals(0, ParetoUtil.epsilonError(sequentialResult.plans,
+						parallelResult.plans, consideredMetrics), TestUtil.EPSILON);
+				// Plans created by worker threads are counted in the context of the run
+				assertTrue(context.nrPlansCreated > 0);
+				// Timings are reported for each level
+				assertEquals(8, exactAlg.lastRunLevelMillis.length);
+				ParetoPlanSet approximateResult = approximateAlg.approximateParetoSet(
+						query, consideredMetrics, planSpace, costModel, null, 0, 0, 0, 
+						new OptimizationContext(60000, 3, 0));
+				assertTrue(ParetoUtil.epsilonError(approximateResult.plans,
+						sequentialResult.plans, consideredMetrics) <= 2 + TestUtil.EPSILON);
+			}
+		}
+		// The parallel algorithm stops after a timeout
+		{
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 14, JoinType.RANDOM);
+			ParallelDPmoqo parallelAlg = new ParallelDPmoqo(1, JoinOrderSpace.BUSHY, 4);
+			long startMillis = System.currentTimeMillis();
+			parallelAlg.approximateParetoSet(query, consideredMetrics, planSpace, costModel,
+					null, 0, 0, 0, new OptimizationContext(100, 3, 0));
+			assertTrue(System.currentTimeMillis() - startMillis < 10000);
+		}
+	}
+
+}
@@ -0,0 +1,489 @@
+package optimizer.approximate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cost.MultiCostModel;
+import plans.JoinOrderSpace;
+import plans.JoinPlan;
+import plans.ParetoFrontier;
+import plans.Plan;
+import plans.ScanPlan;
+import plans.operators.JoinOperator;
+import plans.operators.ScanOperator;
+import plans.spaces.PlanSpace;
+import queries.Query;
+import queries.QueryFingerprint;
+import relations.Relation;
+import relations.RelationFactory;
+import util.PruningUtil;
+import util.TableSetUtil;
+
+/**
+ * Stores the (near-)Pareto-optimal plan lists that dynamic programming calculated for the
+ * relations of previously optimized queries such that they can be reused for other queries
+ * of the same batch. Plan lists are looked up by the fingerprint of the sub-query that is
+ * induced by the joined tables, i.e. by their cardinalities and the selectivities between
+ * them, which does not depend on the other query tables or on table numbering. Plan lists
+ * are specific to the settings of the optimizer run that generated them and are reused
+ * only if they were pruned with an approximation factor that is not coarser than the one
+ * of the current run, such that approximation guarantees are preserved. Since the
+ * fingerprints of sub-queries with slightly different properties may be equal, reused
+ * plans are re-costed for the cardinalities of the current query.
+ * <p>
+ * The size of the memo is bounded by the number of plan nodes in all stored plans (counting
+ * shared sub-plans once per plan). If the bound is exceeded, the least recently used plan
+ * lists are evicted.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class SubPlanMemo implements Serializable {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The maximal number of plan nodes in all stored plans.
+	 */
+	public final long maxStoredNodes;
+	/**
+	 * Cardinalities and selectivities that differ by less than that relative precision
+	 * may be mapped to the same fingerprint.
+	 */
+	public final double precision;
+	/**
+	 * Maps lookup keys to stored plan lists in access order (least recently used first).
+	 */
+	final LinkedHashMap<MemoKey, MemoEntry> entries =
+			new LinkedHashMap<MemoKey, MemoEntry>(16, 0.75f, true);
+	/**
+	 * The number of plan nodes in all stored plans.
+	 */
+	long nrStoredNodes = 0;
+	/**
+	 * The number of relations whose plans were obtained from the memo.
+	 */
+	public long nrHits = 0;
+	/**
+	 * The number of relations whose plans were not found in the memo.
+	 */
+	public long nrMisses = 0;
+	/**
+	 * Identifies stored plan lists: equal keys belong to equivalent sub-queries that were
+	 * optimized with the same settings.
+	 */
+	static class MemoKey implements Serializable {
+		/**
+		 * Used to verify the class version.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The fingerprint of the sub-query induced by the joined tables.
+		 */
+		final QueryFingerprint fingerprint;
+		/**
+		 * Boolean flags indicating which metrics were considered.
+		 */
+		final boolean[] consideredMetrics;
+		/**
+		 * The plan space used for optimization (compared by identity).
+		 */
+		final PlanSpace planSpace;
+		/**
+		 * The cost model used for optimization (compared by identity).
+		 */
+		final MultiCostModel costModel;
+		/**
+		 * Whether linear or bushy plans were considered.
+		 */
+		final JoinOrderSpace joinOrderSpace;
+		/**
+		 * Whether only plans without cross products were considered.
+		 */
+		final boolean crossProductFree;
+		/**
+		 * Initializes the key fields.
+		 *
+		 * @param fingerprint		the fingerprint of the induced sub-query
+		 * @param consideredMetrics	Boolean flags indicating which metrics are considered
+		 * @param planSpace			the plan space used for optimization
+		 * @param costModel			the cost model used for optimization
+		 * @param joinOrderSpace	whether linear or bushy plans are considered
+		 * @param crossProductFree	whether only plans without cross products are considered
+		 */
+		MemoKey(QueryFingerprint fingerprint, boolean[] consideredMetrics,
+				PlanSpace planSpace, MultiCostModel costModel,
+				JoinOrderSpace joinOrderSpace, boolean crossProductFree) {
+			this.fingerprint = fingerprint;
+			this.consideredMetrics = Arrays.copyOf(consideredMetrics, consideredMetrics.length);
+			this.planSpace = planSpace;
+			this.costModel = costModel;
+			this.joinOrderSpace = joinOrderSpace;
+			this.crossProductFree = crossProductFree;
+		}
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof MemoKey)) {
+				return false;
+			}
+			MemoKey otherKey = (MemoKey)other;
+			return planSpace == otherKey.planSpace && costModel == otherKey.costModel &&
+					joinOrderSpace == otherKey.joinOrderSpace &&
+					crossProductFree == otherKey.crossProductFree &&
+					Arrays.equals(consideredMetrics, otherKey.consideredMetrics) &&
+					fingerprint.equals(otherKey.fingerprint);
+		}
+		@Override
+		public int hashCode() {
+			return 31 * fingerprint.hashCode() + Arrays.hashCode(consideredMetrics);
+		}
+	}
+	/**
+	 * A stored plan list together with the information required to translate it.
+	 */
+	static class MemoEntry implements Serializable {
+		/**
+		 * Used to verify the class version.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The stored plans; they refer to the table numbering of the query they were
+		 * generated for.
+		 */
+		final List<Plan> plans;
+		/**
+		 * The canonical position of each joined table of the query the plans were generated
+		 * for (indexed by table index, minus one for tables that are not joined).
+		 */
+		final int[] positionOfTable;
+		/**
+		 * The approximation factor that was used to prune the plans.
+		 */
+		final double alpha;
+		/**
+		 * The number of plan nodes in all stored plans.
+		 */
+		final long nrNodes;
+		/**
+		 * Initializes the entry.
+		 *
+		 * @param plans				the stored plans
+		 * @param positionOfTable	the canonical position of each joined table
+		 * @param alpha				the approximation factor used for pruning
+		 * @param nrNodes			the number of plan nodes in all stored plans
+		 */
+		MemoEntry(List<Plan> plans, int[] positionOfTable, double alpha, long nrNodes) {
+			this.plans = plans;
+			this.positionOfTable = positionOfTable;
+			this.alpha = alpha;
+			this.nrNodes = nrNodes;
+		}
+	}
+	/**
+	 * Connects the memo with one run of dynamic programming: relations are seeded with
+	 * stored plans when they are created and the plans of the other relations are stored
+	 * once the run has finished.
+	 */
+	class Session {
+		/**
+		 * The query being optimized.
+		 */
+		final Query query;
+		/**
+		 * Boolean flags indicating which metrics are considered.
+		 */
+		final boolean[] consideredMetrics;
+		/**
+		 * The plan space used for optimization.
+		 */
+		final PlanSpace planSpace;
+		/**
+		 * The cost model used for optimization.
+		 */
+		final MultiCostModel costModel;
+		/**
+		 * Whether linear or bushy plans are considered.
+		 */
+		final JoinOrderSpace joinOrderSpace;
+		/**
+		 * Whether only plans without cross products are considered.
+		 */
+		final boolean crossProductFree;
+		/**
+		 * The approximation factor used for pruning plans of each relation.
+		 */
+		final double alpha;
+		/**
+		 * The table sets of relations that were seeded with stored plans.
+		 */
+		final Set<Long> seededSets = new HashSet<Long>();
+		/**
+		 * Keys of relations whose plans are generated by the optimizer.
+		 */
+		final List<MemoKey> pendingKeys = new ArrayList<MemoKey>();
+		/**
+		 * Joined tables of relations whose plans are generated by the optimizer.
+		 */
+		final List<int[]> pendingTables = new ArrayList<int[]>();
+		/**
+		 * Relations whose plans are generated by the optimizer.
+		 */
+		final List<Relation> pendingRelations = new ArrayList<Relation>();
+		/**
+		 * Initializes a session for one optimizer run.
+		 *
+		 * @param query				the query being optimized
+		 * @param consideredMetrics	Boolean flags indicating which metrics are considered
+		 * @param planSpace			the plan space used for optimization
+		 * @param costModel			the cost model used for optimization
+		 * @param joinOrderSpace	whether linear or bushy plans are considered
+		 * @param crossProductFree	whether only plans without cross products are considered
+		 * @param alpha				the approximation factor used for pruning
+		 */
+		Session(Query query, boolean[] consideredMetrics, PlanSpace planSpace,
+				MultiCostModel costModel, JoinOrderSpace joinOrderSpace,
+				boolean crossProductFree, double alpha) {
+			this.query = query;
+			this.consideredMetrics = consideredMetrics;
+			this.planSpace = planSpace;
+			this.costModel = costModel;
+			this.joinOrderSpace = joinOrderSpace;
+			this.crossProductFree = crossProductFree;
+			this.alpha = alpha;
+		}
+		/**
+		 * Seeds a newly created relation joining at least two tables with stored plans if
+		 * possible and otherwise registers it such that its plans are stored later.
+		 *
+		 * @param tableSet	bit mask representing the tables joined by the relation
+		 * @param relation	a new relation without plans
+		 * @return			true iff the relation was seeded
+		 */
+		boolean seed(long tableSet, Relation relation) {
+			int[] tables = TableSetUtil.tables(tableSet);
+			QueryFingerprint fingerprint = new QueryFingerprint(query, tables, precision);
+			MemoKey key = new MemoKey(fingerprint, consideredMetrics, planSpace,
+					costModel, joinOrderSpace, crossProductFree);
+			List<Plan> plans = lookup(key, query, tables, alpha);
+			if (plans == null) {
+				pendingKeys.add(key);
+				pendingTables.add(tables);
+				pendingRelations.add(relation);
+				return false;
+			}
+			// Re-costed plans may dominate each other if properties were rounded
+			relation.ParetoPlans = new ParetoFrontier();
+			for (Plan plan : plans) {
+				PruningUtil.prune(query, relation, plan, 1, consideredMetrics, false);
+			}
+			seededSets.add(tableSet);
+			return true;
+		}
+		/**
+		 * Returns true iff the relation joining the given tables was seeded.
+		 *
+		 * @param tableSet	bit mask representing a table set
+		 * @return			true iff the plans of that relation were obtained from the memo
+		 */
+		boolean seeded(long tableSet) {
+			return seededSets.contains(tableSet);
+		}
+		/**
+		 * Stores the plans generated for all relations that were not seeded. This must only
+		 * be called if all relations were treated completely.
+		 */
+		void storePlans() {
+			int nrPending = pendingRelations.size();
+			for (int pendingCtr=0; pendingCtr<nrPending; ++pendingCtr) {
+				Relation relation = pendingRelations.get(pendingCtr);
+				if (relation.ParetoPlans != null) {
+					store(pendingKeys.get(pendingCtr), query, pendingTables.get(pendingCtr),
+							relation.ParetoPlans, alpha);
+				}
+			}
+		}
+	}
+	/**
+	 * Initializes an empty memo.
+	 *
+	 * @param maxStoredNodes	the maximal number of plan nodes in all stored plans
+	 * @param precision			relative precision at which query properties are compared
+	 */
+	public SubPlanMemo(long maxStoredNodes, double precision) {
+		assert(maxStoredNodes > 0);
+		assert(precision > 0);
+		this.maxStoredNodes = maxStoredNodes;
+		this.precision = precision;
+	}
+	/**
+	 * Initializes an empty memo with a precision that only tolerates rounding differences.
+	 *
+	 * @param maxStoredNodes	the maximal number of plan nodes in all stored plans
+	 */
+	public SubPlanMemo(long maxStoredNodes) {
+		this(maxStoredNodes, 1E-9);
+	}
+	/**
+	 * Creates a session connecting the memo with one run of dynamic programming.
+	 *
+	 * @param query				the query being optimized
+	 * @param consideredMetrics	Boolean flags indicating which metrics are considered
+	 * @param planSpace			the plan space used for optimization
+	 * @param costModel			the cost model used for optimization
+	 * @param joinOrderSpace	whether linear or bushy plans are considered
+	 * @param crossProductFree	whether only plans without cross products are considered
+	 * @param alpha				the approximation factor used for pruning
+	 * @return					a new session
+	 */
+	Session session(Query query, boolean[] consideredMetrics, PlanSpace planSpace,
+			MultiCostModel costModel, JoinOrderSpace joinOrderSpace,
+			boolean crossProductFree, double alpha) {
+		return new Session(query, consideredMetrics, planSpace, costModel,
+				joinOrderSpace, crossProductFree, alpha);
+	}
+	/**
+	 * Returns the plans stored for an equivalent sub-query with the given settings if they
+	 * were pruned with an approximation factor that is not coarser than the given one.
+	 * The returned plans are translated to the numbering of the given query tables and
+	 * re-costed with the cost model of the key for the cardinalities of the given query.
+	 *
+	 * @param key		the key of the sub-query joining the given tables
+	 * @param query		the query containing the tables
+	 * @param tables	the joined tables (the fingerprint refers to indices in that array)
+	 * @param alpha		the approximation factor of the current optimizer run
+	 * @return			translated plans or null if no suitable plans are stored
+	 */
+	List<Plan> lookup(MemoKey key, Query query, int[] tables, double alpha) {
+		MemoEntry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry == null || entry.alpha > alpha) {
+				++nrMisses;
+				return null;
+			}
+			++nrHits;
+		}
+		// Map tables of stored plans to tables of the given query
+		int[] tableMapping = new int[entry.positionOfTable.length];
+		for (int storedTable=0; storedTable<tableMapping.length; ++storedTable) {
+			int position = entry.positionOfTable[storedTable];
+			tableMapping[storedTable] = position < 0 ? -1 :
+				tables[key.fingerprint.tableAt(position)];
+		}
+		// Plans of the same relation often share sub-plans - translate them once
+		Map<Plan, Plan> translated = new IdentityHashMap<Plan, Plan>();
+		Map<Plan, Relation> resultRels = new IdentityHashMap<Plan, Relation>();
+		List<Plan> plans = new ArrayList<Plan>(entry.plans.size());
+		for (Plan plan : entry.plans) {
+			plans.add(translate(plan, tableMapping, query, key.costModel,
+					translated, resultRels));
+		}
+		return plans;
+	}
+	/**
+	 * Stores the plans generated for a relation. Plans that were pruned with a coarser
+	 * approximation factor than plans already stored for the same key are not stored.
+	 *
+	 * @param key		the key of the sub-query joining the given tables
+	 * @param query		the query containing the tables
+	 * @param tables	the joined tables (the fingerprint refers to indices in that array)
+	 * @param plans		the (near-)Pareto-optimal plans generated for the joined tables
+	 * @param alpha		the approximation factor that was used for pruning
+	 */
+	synchronized void store(MemoKey key, Query query, int[] tables,
+			List<Plan> plans, double alpha) {
+		long nrNodes = plans.size() * (2L * tables.length - 1);
+		MemoEntry oldEntry = entries.get(key);
+		if (nrNodes > maxStoredNodes || oldEntry != null && oldEntry.alpha <= alpha) {
+			return;
+		}
+		if (oldEntry != null) {
+			entries.remove(key);
+			nrStoredNodes -= oldEntry.nrNodes;
+		}
+		// Evict least recently used plan lists
+		Iterator<MemoEntry> entryIter = entries.values().iterator();
+		while (nrStoredNodes + nrNodes > maxStoredNodes) {
+			MemoEntry evictedEntry = entryIter.next();
+			entryIter.remove();
+			nrStoredNodes -= evictedEntry.nrNodes;
+		}
+		int[] positionOfTable = new int[query.nrTables];
+		Arrays.fill(positionOfTable, -1);
+		for (int tableCtr=0; tableCtr<tables.length; ++tableCtr) {
+			positionOfTable[tables[tableCtr]] = key.fingerprint.positionOf(tableCtr);
+		}
+		entries.put(key, new MemoEntry(new ArrayList<Plan>(plans),
+				positionOfTable, alpha, nrNodes));
+		nrStoredNodes += nrNodes;
+	}
+	/**
+	 * Creates a copy of the given plan where each scanned table index is replaced according
+	 * to the given mapping. Plans must not store result relations, as the plans generated by
+	 * dynamic programming. Operators are copied while output sizes are calculated for the
+	 * given query and cost values by the given cost model, as dynamic programming does.
+	 *
+	 * @param plan			a stored plan
+	 * @param tableMapping	maps table indices of the stored plan to new table indices
+	 * @param query			the query containing the new tables
+	 * @param costModel		used to calculate the cost of the translated plan nodes
+	 * @param translated	maps already translated plans to their translation
+	 * @param resultRels	maps translated plans to the relation they produce
+	 * @return				a plan with the same structure and operators
+	 */
+	static Plan translate(Plan plan, int[] tableMapping, Query query, MultiCostModel costModel,
+			Map<Plan, Plan> translated, Map<Plan, Relation> resultRels) {
+		Plan translation = translated.get(plan);
+		if (translation != null) {
+			return translation;
+		}
+		assert(plan.resultRel == null);
+		Relation resultRel;
+		if (plan instanceof ScanPlan) {
+			ScanPlan scanPlan = (ScanPlan)plan;
+			int tableIndex = tableMapping[scanPlan.tableIndex];
+			resultRel = RelationFactory.createSingleTableRel(query, tableIndex);
+			translation = new ScanPlan(resultRel.cardinality, resultRel.pages, tableIndex,
+					(ScanOperator)scanPlan.scanOperator.deepCopy());
+		} else {
+			JoinPlan joinPlan = (JoinPlan)plan;
+			Plan leftPlan = translate(joinPlan.getLeftPlan(), tableMapping,
+					query, costModel, translated, resultRels);
+			Plan rightPlan = translate(joinPlan.getRightPlan(), tableMapping,
+					query, costModel, translated, resultRels);
+			resultRel = RelationFactory.createJoinRel(query,
+					resultRels.get(leftPlan), resultRels.get(rightPlan));
+			translation = new JoinPlan(resultRel.cardinality, resultRel.pages, leftPlan,
+					rightPlan, (JoinOperator)joinPlan.getJoinOperator().deepCopy());
+		}
+		// Sub-plans were translated and re-costed before
+		costModel.updateRoot(translation);
+		translated.put(plan, translation);
+		resultRels.put(translation, resultRel);
+		return translation;
+	}
+	/**
+	 * Removes all stored plans.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		nrStoredNodes = 0;
+	}
+	/**
+	 * Returns the number of stored plan lists.
+	 *
+	 * @return	the number of relations whose plans are stored
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+}
@@ -0,0 +1,190 @@
+package optimizer.approximate;
+
+import static org.junit.Assert.*;
+import static util.TestUtil.*;
+
+import java.util.List;
+
+import plans.JoinOrderSpace;
+import plans.JoinPlan;
+import plans.ParetoPlanSet;
+import plans.Plan;
+import plans.ScanPlan;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import queries.QueryFingerprint;
+import util.ParetoUtil;
+import util.TableSetUtil;
+
+import org.junit.Test;
+
+public class SubPlanMemoTest {
+	/**
+	 * Returns the set of tables scanned by the given plan and verifies that no table
+	 * is scanned twice.
+	 *
+	 * @param plan	a query plan
+	 * @return		bit mask representing the tables scanned by the plan
+	 */
+	static long joinedTables(Plan plan) {
+		if (plan instanceof ScanPlan) {
+			return TableSetUtil.singleton(((ScanPlan)plan).tableIndex);
+		} else {
+			JoinPlan joinPlan = (JoinPlan)plan;
+			long leftTables = joinedTables(joinPlan.getLeftPlan());
+			long rightTables = joinedTables(joinPlan.getRightPlan());
+			assertEquals(0, leftTables & rightTables);
+			return leftTables | rightTables;
+		}
+	}
+	/**
+	 * Creates a copy of the given plan whose output sizes are calculated for the given query
+	 * and whose cost is calculated by the default cost model.
+	 *
+	 * @param plan	a query plan
+	 * @param query	the query joining the scanned tables
+	 * @return		a plan with the same structure and operators
+	 */
+	static Plan rebuild(Plan plan, Query query) {
+		Plan rebuilt;
+		if (plan instanceof ScanPlan) {
+			ScanPlan scanPlan = (ScanPlan)plan;
+			rebuilt = new ScanPlan(query, scanPlan.tableIndex, scanPlan.scanOperator);
+		} else {
+			JoinPlan joinPlan = (JoinPlan)plan;
+			rebuilt = new JoinPlan(query, rebuild(joinPlan.getLeftPlan(), query),
+					rebuild(joinPlan.getRightPlan(), query), joinPlan.getJoinOperator());
+		}
+		costModel.updateRoot(rebuilt);
+		return rebuilt;
+	}
+	/**
+	 * Optimizes the given query with and without memo and verifies that both optimizer
+	 * runs produce the same Pareto frontier.
+	 *
+	 * @param query				the query to optimize
+	 * @param consideredMetrics	Boolean flags indicating which metrics are considered
+	 * @param joinOrderSpace	whether linear or bushy plans are considered
+	 * @param memo				the memo used by the first optimizer
+	 */
+	static void compareWithoutMemo(Query query, boolean[] consideredMetrics,
+			JoinOrderSpace joinOrderSpace, SubPlanMemo memo) {
+		List<Plan> memoPlans = new DPmoqo(1, joinOrderSpace, true, memo).approximateParetoSet(
+				query, consideredMetrics, planSpace, costModel, null, 0, 0, 0).plans;
+		List<Plan> plans = new DPmoqo(1, joinOrderSpace, true).approximateParetoSet(
+				query, consideredMetrics, planSpace, costModel, null, 0, 0, 0).plans;
+		assertEquals(0, ParetoUtil.epsilonError(memoPlans, plans, consideredMetrics), EPSILON);
+		assertEquals(0, ParetoUtil.epsilonError(plans, memoPlans, consideredMetrics), EPSILON);
+		for (Plan plan : memoPlans) {
+			assertEquals(TableSetUtil.allTables(query.nrTables), joinedTables(plan));
+		}
+	}
+
+	@Test
+	public void test() {
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		// Renumbered and overlapping queries reuse plans and obtain the same frontier
+		for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+			for (JoinGraphType graphType : JoinGraphType.values()) {
+				SubPlanMemo memo = new SubPlanMemo(Long.MAX_VALUE);
+				Query query = QueryFactory.produceSteinbrunn(graphType, 6, JoinType.RANDOM);
+				compareWithoutMemo(query, consideredMetrics, joinOrderSpace, memo);
+				assertEquals(0, memo.nrHits);
+				assertTrue(memo.size() > 0);
+				// All relations of a renumbered query are found
+				long nrMisses = memo.nrMisses;
+				Query permutedQuery = permute(query, new int[] {4, 2, 5, 0, 3, 1});
+				compareWithoutMemo(permutedQuery, consideredMetrics, joinOrderSpace, memo);
+				assertEquals(nrMisses, memo.nrMisses);
+				assertTrue(memo.nrHits > 0);
+				// Only relations joining the changed table are not found
+				long nrHits = memo.nrHits;
+				Query changedQuery = permute(query, new int[] {0, 1, 2, 3, 4, 5});
+				changedQuery.tableCardinalities[5] *= 3;
+				compareWithoutMemo(changedQuery, consideredMetrics, joinOrderSpace, memo);
+				assertTrue(memo.nrHits > nrHits);
+				assertTrue(memo.nrMisses > nrMisses);
+			}
+		}
+		// Plans reused for a query with slightly different cardinalities are re-costed
+		{
+			SubPlanMemo memo = new SubPlanMemo(Long.MAX_VALUE, 1);
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 5, JoinType.MN);
+			new DPmoqo(1, JoinOrderSpace.BUSHY, true, memo).approximateParetoSet(
+					query, consideredMetrics, planSpace, costModel, null, 0, 0, 0);
+			Query changedQuery = permute(query, new int[] {0, 1, 2, 3, 4});
+			changedQuery.tableCardinalities[0] *= 1.01;
+			if (!new QueryFingerprint(changedQuery, 1).equals(new QueryFingerprint(query, 1))) {
+				changedQuery.tableCardinalities[0] = query.tableCardinalities[0] / 1.01;
+			}
+			assertEquals(new QueryFingerprint(query, 1), new QueryFingerprint(changedQuery, 1));
+			long nrHits = memo.nrHits;
+			List<Plan> plans = new DPmoqo(1, JoinOrderSpace.BUSHY, true, memo).approximateParetoSet(
+					changedQuery, consideredMetrics, planSpace, costModel, null, 0, 0, 0).plans;
+			assertTrue(memo.nrHits > nrHits);
+			assertFalse(plans.isEmpty());
+			for (Plan plan : plans) {
+				Plan rebuilt = rebuild(plan, changedQuery);
+				assertEquals(rebuilt.outputRows, plan.outputRows, EPSILON * rebuilt.outputRows);
+				for (int metricCtr=0; metricCtr<3; ++metricCtr) {
+					double cost = rebuilt.getCostValues()[metricCtr];
+					assertEquals(cost, plan.getCostValues()[metricCtr], EPSILON * Math.max(1, cost));
+				}
+			}
+		}
+		// Plans pruned with a coarser approximation factor are not reused
+		{
+			SubPlanMemo memo = new SubPlanMemo(Long.MAX_VALUE);
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 5, JoinType.MN);
+			new DPmoqo(2, JoinOrderSpace.BUSHY, true, memo).approximateParetoSet(
+					query, consideredMetrics, planSpace, costModel, null, 0, 0, 0);
+			compareWithoutMemo(query, consideredMetrics, JoinOrderSpace.BUSHY, memo);
+			assertEquals(0, memo.nrHits);
+			// Exact plans replaced the approximate ones and are reused for coarse factors
+			new DPmoqo(2, JoinOrderSpace.BUSHY, true, memo).approximateParetoSet(
+					query, consideredMetrics, planSpace, costModel, null, 0, 0, 0);
+			assertTrue(memo.nrHits > 0);
+		}
+		// Least recently used plan lists are evicted if the memo is full
+		{
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 2, JoinType.MN);
+			ParetoPlanSet planSet = new DPmoqo(1).approximateParetoSet(
+					query, consideredMetrics, planSpace, costModel, null, 0, 0, 0);
+			long nrNodes = 3 * planSet.plans.size();
+			int[] tables = new int[] {0, 1};
+			SubPlanMemo.MemoKey[] keys = new SubPlanMemo.MemoKey[3];
+			for (int keyCtr=0; keyCtr<3; ++keyCtr) {
+				Query otherQuery = QueryFactory.produceSteinbrunn(
+						JoinGraphType.CHAIN, 2, JoinType.MN);
+				keys[keyCtr] = new SubPlanMemo.MemoKey(new QueryFingerprint(otherQuery, 1E-9),
+						consideredMetrics, planSpace, costModel, JoinOrderSpace.BUSHY, false);
+			}
+			SubPlanMemo memo = new SubPlanMemo(2 * nrNodes);
+			memo.store(keys[0], query, tables, planSet.plans, 1);
+			memo.store(keys[1], query, tables, planSet.plans, 1);
+			assertNotNull(memo.lookup(keys[0], query, tables, 1));
+			memo.store(keys[2], query, tables, planSet.plans, 1);
+			assertNotNull(memo.lookup(keys[0], query, tables, 1));
+			assertNull(memo.lookup(keys[1], query, tables, 1));
+			assertNotNull(memo.lookup(keys[2], query, tables, 1));
+			assertEquals(2 * nrNodes, memo.nrStoredNodes);
+			// Translated plans are copies with the same cost
+			List<Plan> translatedPlans = memo.lookup(keys[0], query, tables, 1);
+			assertEquals(planSet.plans.size(), translatedPlans.size());
+			for (int planCtr=0; planCtr<translatedPlans.size(); ++planCtr) {
+				Plan plan = planSet.plans.get(planCtr);
+				Plan translatedPlan = translatedPlans.get(planCtr);
+				assertTrue(plan != translatedPlan);
+				assertArrayEquals(plan.getCostValuesCopy(),
+						translatedPlan.getCostValuesCopy(), EPSILON);
+			}
+			// Plan lists exceeding the bound are not stored
+			SubPlanMemo smallMemo = new SubPlanMemo(nrNodes - 1);
+			smallMemo.store(keys[0], query, tables, planSet.plans, 1);
+			assertEquals(0, smallMemo.size());
+		}
+	}
+
+}
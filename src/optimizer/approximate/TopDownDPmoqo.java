@@ -0,0 +1,483 @@
+package optimizer.approximate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import cost.MultiCostModel;
+import plans.JoinOrderSpace;
+import plans.JoinPlan;
+import plans.Plan;
+import plans.ScanPlan;
+import plans.operators.JoinOperator;
+import plans.spaces.PlanSpace;
+import queries.JoinGraph;
+import queries.Query;
+import relations.Relation;
+import relations.RelationStore;
+import util.TableSetUtil;
+
+/**
+ * Top-down variant of the DP-based MOQO algorithm by Trummer and Koch (SIGMOD 2014) that
+ * searches memoized partitions of table sets (in the style of TDMinCut) for queries with
+ * at most 64 tables. Starting from the set of all tables, table sets are split into two
+ * operands whose relations are optimized recursively; each relation is optimized at most
+ * once. If cross products are avoided then only splits into two connected operands are
+ * considered, enumerated by growing connected subsets within the split table set.
+ *
+ * Before the operands of a split are optimized, a lower bound on the cost of all plans
+ * the split can produce is calculated: the cheapest applicable join operator is applied
+ * to placeholder operand plans that have the cardinality of the operands and a lower
+ * bound on their cost. If the lower bound is weakly dominated by a complete plan of the
+ * cost bound (see {@link CostBound}) then the split is skipped, and table sets that are
+ * only needed by skipped splits are never optimized. The cost bound is initialized with
+ * greedy plans and tightened by each plan found for the set of all tables. If only one
+ * metric is considered then this is branch and bound with the cheapest plan found so far
+ * as upper bound; otherwise, the bound is a Pareto frontier of complete plans.
+ *
+ * Lower bounds assume that the cost of a plan is, for each metric, monotone in the cost
+ * of its sub-plans (this holds for the local cost models). For optimized table sets, the
+ * lower bound is the minimal cost of their plans for each metric. For table sets that
+ * were not yet optimized, it is the maximal cost of the cheapest scan of their tables.
+ *
+ * @author immanueltrummer
+ *
+ */
+@SuppressWarnings("serial")
+public class TopDownDPmoqo extends DPmoqo {
+	/**
+	 * The number of splits that were skipped during the last optimizer run since the
+	 * lower bound on their cost exceeded the cost bound.
+	 */
+	public long nrSkippedSplits;
+	/**
+	 * The number of table sets with at least two tables that were optimized during the
+	 * last optimizer run.
+	 */
+	public long nrOptimizedSets;
+
+	/**
+	 * Initializes global alpha, join order space, and whether cross products are avoided.
+	 *
+	 * @param globalAlpha			The cost of generated query plans is not higher than optimal by more than that.
+	 * @param joinOrderSpace		whether linear or bushy plans are considered
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 */
+	public TopDownDPmoqo(double globalAlpha, JoinOrderSpace joinOrderSpace,
+			boolean avoidCrossProducts) {
+		super(globalAlpha, joinOrderSpace, avoidCrossProducts, null, true);
+	}
+
+	/**
+	 * Initializes global alpha and sets join order space to bushy as default.
+	 *
+	 * @param globalAlpha	The cost of generated query plans is not higher than optimal by more than that.
+	 */
+	public TopDownDPmoqo(double globalAlpha) {
+		this(globalAlpha, JoinOrderSpace.BUSHY, false);
+	}
+
+	/**
+	 * Describes one invocation of the top-down search.
+	 */
+	class Search {
+		/**
+		 * The query being optimized.
+		 */
+		final Query query;
+		/**
+		 * Maps table sets to relations, including relations that were not yet optimized.
+		 */
+		final RelationStore relations;
+		/**
+		 * Join graph used to avoid cross products or null if cross products are allowed.
+		 */
+		final JoinGraph joinGraph;
+		/**
+		 * Boolean flags indicating which plan cost metrics are considered.
+		 */
+		final boolean[] consideredMetrics;
+		/**
+		 * Determines the applicable join operators.
+		 */
+		final PlanSpace planSpace;
+		/**
+		 * Estimates the execution cost of the new plans.
+		 */
+		final MultiCostModel costModel;
+		/**
+		 * Approximation factor used for pruning.
+		 */
+		final double localAlpha;
+		/**
+		 * Start time of the optimizer run in milliseconds.
+		 */
+		final long startMillis;
+		/**
+		 * Optimization time budget in milliseconds.
+		 */
+		final long timeoutMillis;
+		/**
+		 * New plans and splits exceeding that cost bound are discarded (may be null).
+		 */
+		final CostBound bound;
+		/**
+		 * Index of the algorithm (used for statistics).
+		 */
+		final int algIndex;
+		/**
+		 * Index of the query size (used for statistics).
+		 */
+		final int sizeIndex;
+		/**
+		 * Index of the query (used for statistics).
+		 */
+		final int queryIndex;
+		/**
+		 * Bit mask representing all query tables.
+		 */
+		final long allTables;
+		/**
+		 * Maps optimized table sets to the minimal cost of their plans for each metric or
+		 * to null if all their plans were discarded.
+		 */
+		final Map<Long, double[]> lowerBounds = new HashMap<Long, double[]>();
+		/**
+		 * A join operator that does not materialize its result or null if the plan space
+		 * contains no such operator.
+		 */
+		final JoinOperator pipelinedJoin;
+
+		Search(Query query, RelationStore relations, JoinGraph joinGraph,
+				boolean[] consideredMetrics, PlanSpace planSpace, MultiCostModel costModel,
+				double localAlpha, long startMillis, long timeoutMillis, CostBound bound,
+				int algIndex, int sizeIndex, int queryIndex) {
+			this.query = query;
+			this.relations = relations;
+			this.joinGraph = joinGraph;
+			this.consideredMetrics = consideredMetrics;
+			this.planSpace = planSpace;
+			this.costModel = costModel;
+			this.localAlpha = localAlpha;
+			this.startMillis = startMillis;
+			this.timeoutMillis = timeoutMillis;
+			this.bound = bound;
+			this.algIndex = algIndex;
+			this.sizeIndex = sizeIndex;
+			this.queryIndex = queryIndex;
+			this.allTables = TableSetUtil.allTables(query.nrTables);
+			// single table relations have been optimized before
+			for (int tableIndex=0; tableIndex<query.nrTables; ++tableIndex) {
+				long tableSet = TableSetUtil.singleton(tableIndex);
+				lowerBounds.put(tableSet, minCost(relations.get(tableSet)));
+			}
+			JoinOperator pipelinedJoin = null;
+			for (JoinOperator joinOperator : planSpace.consideredJoinOps) {
+				if (!joinOperator.materializeResult) {
+					pipelinedJoin = joinOperator;
+				}
+			}
+			this.pipelinedJoin = pipelinedJoin;
+		}
+		/**
+		 * Returns the minimal cost of the plans of the given relation for each metric.
+		 *
+		 * @param rel	an optimized relation
+		 * @return		a cost vector or null if the relation has no plans
+		 */
+		double[] minCost(Relation rel) {
+			if (rel.ParetoPlans == null || rel.ParetoPlans.isEmpty()) {
+				return null;
+			}
+			double[] minCost = new double[consideredMetrics.length];
+			Arrays.fill(minCost, Double.POSITIVE_INFINITY);
+			for (Plan plan : rel.ParetoPlans) {
+				for (int metricCtr=0; metricCtr<minCost.length; ++metricCtr) {
+					minCost[metricCtr] = Math.min(minCost[metricCtr], plan.getCostValue(metricCtr));
+				}
+			}
+			return minCost;
+		}
+		/**
+		 * Returns the relation representing the given table set, creating it if necessary.
+		 *
+		 * @param tableSet	bit mask representing a non-empty table set
+		 * @return			a relation with the cardinality of the table set join
+		 */
+		Relation relation(long tableSet) {
+			Relation rel = relations.get(tableSet);
+			if (rel == null) {
+				long firstTable = tableSet & -tableSet;
+				rel = createRel(query, relations.get(firstTable),
+						relation(tableSet ^ firstTable), algIndex, sizeIndex, queryIndex);
+				relations.put(tableSet, rel);
+			}
+			return rel;
+		}
+		/**
+		 * Returns a lower bound on the cost of the plans for the given table set.
+		 *
+		 * @param tableSet	bit mask representing a non-empty table set
+		 * @return			a cost vector or null if the table set was optimized without plans
+		 */
+		double[] lowerBound(long tableSet) {
+			if (lowerBounds.containsKey(tableSet)) {
+				return lowerBounds.get(tableSet);
+			}
+			// each plan for the table set scans all of its tables
+			double[] lowerBound = new double[consideredMetrics.length];
+			for (long remaining = tableSet; remaining != 0; remaining &= remaining - 1) {
+				double[] scanBound = lowerBounds.get(remaining & -remaining);
+				if (scanBound == null) {
+					return null;
+				}
+				for (int metricCtr=0; metricCtr<lowerBound.length; ++metricCtr) {
+					lowerBound[metricCtr] = Math.max(lowerBound[metricCtr], scanBound[metricCtr]);
+				}
+			}
+			return lowerBound;
+		}
+		/**
+		 * Returns placeholder plans for the given table set that have the cardinality of
+		 * the table set and a lower bound on the cost of its plans. One plan materializes
+		 * its result and, for multiple tables, one plan may pipeline its result.
+		 *
+		 * @param tableSet		bit mask representing a non-empty table set
+		 * @param lowerBound	lower bound on the cost of plans for the table set
+		 * @return				an array of placeholder plans
+		 */
+		Plan[] placeholderPlans(long tableSet, double[] lowerBound) {
+			Relation rel = relation(tableSet);
+			Plan scanPlan = new ScanPlan(rel.cardinality, rel.pages,
+					TableSetUtil.firstTable(tableSet), planSpace.defaultScanOperator);
+			scanPlan.setCostValues(lowerBound);
+			if (pipelinedJoin == null || TableSetUtil.cardinality(tableSet) == 1) {
+				return new Plan[] {scanPlan};
+			}
+			Plan joinPlan = new JoinPlan(rel.cardinality, rel.pages,
+					scanPlan, scanPlan, pipelinedJoin);
+			joinPlan.setCostValues(lowerBound);
+			return new Plan[] {scanPlan, joinPlan};
+		}
+		/**
+		 * Checks whether joining the given operands may yield plans that do not exceed
+		 * the cost bound.
+		 *
+		 * @param leftSet	bit mask representing the left operand
+		 * @param rightSet	bit mask representing the right operand
+		 * @param resultRel	the relation representing the union of both operands
+		 * @return			false if the split can be skipped
+		 */
+		boolean promising(long leftSet, long rightSet, Relation resultRel) {
+			double[] leftBound = lowerBound(leftSet);
+			double[] rightBound = lowerBound(rightSet);
+			if (leftBound == null || rightBound == null) {
+				return false;
+			}
+			if (bound == null) {
+				return true;
+			}
+			// apply cheapest operator to operands with minimal cost for each metric
+			double[] splitBound = new double[consideredMetrics.length];
+			Arrays.fill(splitBound, Double.POSITIVE_INFINITY);
+			for (Plan leftPlan : placeholderPlans(leftSet, leftBound)) {
+				for (Plan rightPlan : placeholderPlans(rightSet, rightBound)) {
+					for (JoinOperator joinOperator : planSpace.applicableJoinOperators(
+							leftPlan, rightPlan)) {
+						Plan plan = new JoinPlan(resultRel.cardinality,
+								resultRel.pages, leftPlan, rightPlan, joinOperator);
+						costModel.updateRoot(plan);
+						for (int metricCtr=0; metricCtr<splitBound.length; ++metricCtr) {
+							splitBound[metricCtr] = Math.min(
+									splitBound[metricCtr], plan.getCostValue(metricCtr));
+						}
+					}
+				}
+			}
+			return !bound.exceeds(splitBound);
+		}
+		/**
+		 * Optimizes both operands of the given split if required and combines their plans
+		 * unless the split is skipped. Plans found for the set of all tables tighten the
+		 * cost bound.
+		 *
+		 * @param leftSet	bit mask representing the left operand
+		 * @param rightSet	bit mask representing the right operand
+		 * @param resultSet	bit mask representing the union of both operands
+		 * @param resultRel	the relation representing the union of both operands
+		 * @return			true iff the optimizer timed out
+		 */
+		boolean treatSplit(long leftSet, long rightSet, long resultSet, Relation resultRel) {
+			if (!promising(leftSet, rightSet, resultRel)) {
+				++nrSkippedSplits;
+				return false;
+			}
+			boolean optimizedOperands = false;
+			if (!lowerBounds.containsKey(leftSet)) {
+				if (optimize(leftSet)) {
+					return true;
+				}
+				optimizedOperands = true;
+			}
+			if (!lowerBounds.containsKey(rightSet)) {
+				if (optimize(rightSet)) {
+					return true;
+				}
+				optimizedOperands = true;
+			}
+			// bounds of newly optimized operands are tighter
+			if (optimizedOperands && !promising(leftSet, rightSet, resultRel)) {
+				++nrSkippedSplits;
+				return false;
+			}
+			tryJoins(query, relations.get(leftSet), relations.get(rightSet), resultRel,
+					planSpace, costModel, localAlpha, consideredMetrics, bound);
+			if (resultSet == allTables && bound != null && resultRel.ParetoPlans != null) {
+				for (Plan plan : resultRel.ParetoPlans) {
+					bound.add(plan);
+				}
+			}
+			// Check for timeouts
+			return System.currentTimeMillis() - startMillis > timeoutMillis;
+		}
+		/**
+		 * Treats a split into two connected table sets in both join orders that are
+		 * admissible in the join order space.
+		 *
+		 * @return	true iff the optimizer timed out
+		 */
+		boolean treatConnectedSplit(long tableSet1, long tableSet2,
+				long resultSet, Relation resultRel) {
+			// The right join operand is a single table for left-deep (linear) plans
+			boolean linear = joinOrderSpace == JoinOrderSpace.LINEAR;
+			if (!linear || TableSetUtil.cardinality(tableSet2) == 1) {
+				if (treatSplit(tableSet1, tableSet2, resultSet, resultRel)) {
+					return true;
+				}
+			}
+			if (!linear || TableSetUtil.cardinality(tableSet1) == 1) {
+				if (treatSplit(tableSet2, tableSet1, resultSet, resultRel)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		/**
+		 * Enumerates each connected strict subset of the result set that contains the given
+		 * component, excluding the given tables, exactly once and treats it as split if the
+		 * remaining tables of the result set are connected as well.
+		 *
+		 * @param resultSet	bit mask representing a connected table set
+		 * @param resultRel	the relation representing the result set
+		 * @param component	bit mask representing a connected subset of the result set
+		 * @param excluded	tables that must not be added to the component
+		 * @return			true iff the optimizer timed out
+		 */
+		boolean treatConnectedSplits(long resultSet, Relation resultRel,
+				long component, long excluded) {
+			long neighbors = joinGraph.neighbors(component) & resultSet & ~excluded;
+			for (long added = neighbors; added != 0; added = (added - 1) & neighbors) {
+				long tableSet1 = component | added;
+				long tableSet2 = resultSet ^ tableSet1;
+				if (tableSet2 != 0 && joinGraph.connected(tableSet2) &&
+						treatConnectedSplit(tableSet1, tableSet2, resultSet, resultRel)) {
+					return true;
+				}
+			}
+			for (long added = neighbors; added != 0; added = (added - 1) & neighbors) {
+				if (treatConnectedSplits(resultSet, resultRel,
+						component | added, excluded | neighbors)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		/**
+		 * Generates plans for the given table set with at least two tables by trying all
+		 * admissible splits.
+		 *
+		 * @param resultSet	bit mask representing the table set to optimize
+		 * @return			true iff the optimizer timed out
+		 */
+		boolean optimize(long resultSet) {
+			Relation resultRel = relation(resultSet);
+			if (joinGraph != null) {
+				long firstTable = resultSet & -resultSet;
+				long otherTables = resultSet ^ firstTable;
+				if (joinGraph.connected(otherTables) &&
+						treatConnectedSplit(firstTable, otherTables, resultSet, resultRel)) {
+					return true;
+				}
+				if (treatConnectedSplits(resultSet, resultRel, firstTable, firstTable)) {
+					return true;
+				}
+			} else if (joinOrderSpace == JoinOrderSpace.LINEAR) {
+				// The right join operand is a single table for left-deep (linear) plans
+				for (long remaining = resultSet; remaining != 0; remaining &= remaining - 1) {
+					long rightSet = remaining & -remaining;
+					if (treatSplit(resultSet ^ rightSet, rightSet, resultSet, resultRel)) {
+						return true;
+					}
+				}
+			} else {
+				// Iterate over all non-empty strict subsets forming the left operand
+				for (long leftSet = TableSetUtil.nextSubset(resultSet, resultSet);
+						leftSet != 0; leftSet = TableSetUtil.nextSubset(leftSet, resultSet)) {
+					if (treatSplit(leftSet, resultSet ^ leftSet, resultSet, resultRel)) {
+						return true;
+					}
+				}
+			}
+			lowerBounds.put(resultSet, minCost(resultRel));
+			++nrOptimizedSets;
+			return false;
+		}
+		/**
+		 * Generates plans for the set of all query tables.
+		 *
+		 * @return	true iff the optimizer timed out
+		 */
+		boolean run() {
+			nrSkippedSplits = 0;
+			nrOptimizedSets = 0;
+			return query.nrTables > 1 && optimize(allTables);
+		}
+	}
+
+	/**
+	 * Treats the set of all tables top-down, allowing cross products.
+	 *
+	 * @return	true iff the optimizer timed out
+	 */
+	@Override
+	boolean treatJoinsNarrow(Query query, RelationStore relations, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel, double localAlpha, long startMillis,
+			long timeoutMillis, SubPlanMemo.Session memoSession, CostBound bound,
+			int algIndex, int sizeIndex, int queryIndex) {
+		return new Search(query, relations, null, consideredMetrics, planSpace, costModel,
+				localAlpha, startMillis, timeoutMillis, bound,
+				algIndex, sizeIndex, queryIndex).run();
+	}
+
+	/**
+	 * Treats the set of all tables top-down, joining only connected table sets.
+	 *
+	 * @return	true iff the optimizer timed out
+	 */
+	@Override
+	boolean treatJoinsConnected(Query query, RelationStore relations, JoinGraph joinGraph,
+			boolean[] consideredMetrics, PlanSpace planSpace, MultiCostModel costModel,
+			double localAlpha, long startMillis, long timeoutMillis,
+			SubPlanMemo.Session memoSession, CostBound bound,
+			int algIndex, int sizeIndex, int queryIndex) {
+		return new Search(query, relations, joinGraph, consideredMetrics, planSpace, costModel,
+				localAlpha, startMillis, timeoutMillis, bound,
+				algIndex, sizeIndex, queryIndex).run();
+	}
+
+	@Override
+	public String toString() {
+		return avoidCrossProducts ? "TopDownDPccp(alpha=" + globalAlpha + ")" :
+			"TopDownDP(alpha=" + globalAlpha + ")";
+	}
+}
@@ -0,0 +1,78 @@
+package optimizer.approximate;
+
+import static org.junit.Assert.*;
+import static util.TestUtil.*;
+
+import java.util.List;
+
+import common.OptimizationContext;
+import plans.JoinOrderSpace;
+import plans.Plan;
+import queries.JoinGraph;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import util.ParetoUtil;
+import util.TableSetUtil;
+
+import org.junit.Test;
+
+public class TopDownDPmoqoTest {
+
+	@Test
+	public void test() {
+		// Top-down search yields the same frontier as bottom-up search for one or several
+		// metrics and skips splits whose lower bound exceeds the cost bound
+		long nrSkippedSplits = 0;
+		for (boolean[] consideredMetrics : new boolean[][] {
+			{true, true, true}, {true, false, false}}) {
+			for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+				for (boolean avoidCrossProducts : new boolean[] {false, true}) {
+					for (JoinGraphType graphType : JoinGraphType.values()) {
+						Query query = QueryFactory.produceSteinbrunn(graphType, 6, JoinType.RANDOM);
+						TopDownDPmoqo topDown = new TopDownDPmoqo(
+								1, joinOrderSpace, avoidCrossProducts);
+						List<Plan> topDownPlans = topDown.approximateParetoSet(query,
+								consideredMetrics, planSpace, costModel, null, 0, 0, 0,
+								new OptimizationContext(60000, 3, 0)).plans;
+						List<Plan> plans = new DPmoqo(1, joinOrderSpace, avoidCrossProducts)
+								.approximateParetoSet(query, consideredMetrics, planSpace,
+										costModel, null, 0, 0, 0,
+										new OptimizationContext(60000, 3, 0)).plans;
+						assertEquals(0, ParetoUtil.epsilonError(
+								topDownPlans, plans, consideredMetrics), EPSILON);
+						assertEquals(0, ParetoUtil.epsilonError(
+								plans, topDownPlans, consideredMetrics), EPSILON);
+						JoinGraph joinGraph = new JoinGraph(query);
+						for (Plan plan : topDownPlans) {
+							long joinedTables = avoidCrossProducts ?
+									DPmoqoTest.crossProductFreeTables(plan, joinGraph) :
+										SubPlanMemoTest.joinedTables(plan);
+							assertEquals(TableSetUtil.allTables(6), joinedTables);
+						}
+						assertTrue(topDown.nrOptimizedSets <= (1 << 6) - 7);
+						nrSkippedSplits += topDown.nrSkippedSplits;
+					}
+				}
+			}
+		}
+		assertTrue(nrSkippedSplits > 0);
+		// Table sets that are only needed by skipped splits are not optimized
+		{
+			boolean[] consideredMetrics = new boolean[] {true, false, false};
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 9, JoinType.MN);
+			TopDownDPmoqo topDown = new TopDownDPmoqo(1, JoinOrderSpace.LINEAR, false);
+			List<Plan> topDownPlans = topDown.approximateParetoSet(query,
+					consideredMetrics, planSpace, costModel, null, 0, 0, 0,
+					new OptimizationContext(60000, 3, 0)).plans;
+			List<Plan> plans = new DPmoqo(1, JoinOrderSpace.LINEAR, false).approximateParetoSet(
+					query, consideredMetrics, planSpace, costModel, null, 0, 0, 0,
+					new OptimizationContext(60000, 3, 0)).plans;
+			assertEquals(0, ParetoUtil.epsilonError(
+					topDownPlans, plans, consideredMetrics), EPSILON);
+			assertTrue(topDown.nrOptimizedSets < (1 << 9) - 10);
+		}
+	}
+
+}
@@ -1,12 +1,12 @@
 package optimizer.greedy;
 
 import static common.Constants.NR_TIME_PERIODS;
-import static common.Constants.TIMEOUT_MILLIS;
 
 import java.util.LinkedList;
 import java.util.List;
 
 import benchmark.Statistics;
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import optimizer.Optimizer;
 import plans.ParetoPlanSet;
@@ -15,7 +15,6 @@ import plans.spaces.PlanSpace;
 import queries.Query;
 import util.GreedyCriterion;
 import util.GreedyUtil;
-import util.ParetoUtil;
 
 /**
  * Simple heuristic that builds a query plan greedily by picking the next join
@@ -41,10 +40,10 @@ public class GreedyHeuristic extends Optimizer {
 		this.greedyCriterion = greedyCriterion;
 	}
 	@Override
-	public ParetoPlanSet approximateParetoSet(Query query,
+	protected ParetoPlanSet optimize(Query query,
 			boolean[] consideredMetrics, PlanSpace planSpace,
 			MultiCostModel costModel, ParetoPlanSet refPlanSet, int algIndex,
-			int sizeIndex, int queryIndex) {
+			int sizeIndex, int queryIndex, OptimizationContext context) {
 		// Take start time
 		long startMillis = System.currentTimeMillis();
 		// Greedily produce minSize plan
@@ -54,11 +53,11 @@ public class GreedyHeuristic extends Optimizer {
 		resultPlans.add(resultPlan);
 		// Update statistics
 		if (refPlanSet != null){
-			long timePeriodMillis = TIMEOUT_MILLIS/NR_TIME_PERIODS;
+			long timePeriodMillis = context.timePeriodMillis();
 			long millisPassed = System.currentTimeMillis() - startMillis;
 			int curTimePeriod = (int)(millisPassed/timePeriodMillis);
-			double curEpsilon = ParetoUtil.epsilonError(
-					resultPlans, refPlanSet.plans, consideredMetrics);
+			double curEpsilon = refPlanSet.epsilonIndicator(
+					consideredMetrics).epsilonError(resultPlans);
 			for (int periodCtr=0; periodCtr<NR_TIME_PERIODS; ++periodCtr) {
 				String featureName = "Epsilon approximation after X-th time period";
 				double epsilon = periodCtr >= curTimePeriod ? curEpsilon : Double.POSITIVE_INFINITY;
@@ -0,0 +1,138 @@
+package optimizer.parallelized.partitioning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.spark.api.java.JavaSparkContext;
+
+import cost.MultiCostModel;
+import plans.JoinOrderSpace;
+import plans.ParetoPlanSet;
+import plans.Plan;
+import plans.spaces.PlanSpace;
+import queries.Query;
+
+/**
+ * Partitions the plan space like the partitioning master but executes the slave tasks on
+ * a thread pool within the current process instead of a Spark cluster. This avoids the
+ * overhead of job scheduling and task serialization, which dominates optimization time
+ * for small degrees of parallelism on a single machine. Plans from different partitions
+ * are merged with the same pruning as by the partitioning master and the same performance
+ * statistics are reported (no bytes are sent over the network). The Spark context passed
+ * to this master is not used and may be null.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class LocalPartitioningMaster extends PartitioningMaster {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The maximal number of threads executing slave tasks concurrently.
+	 */
+	final int nrThreads;
+
+	public LocalPartitioningMaster(JoinOrderSpace joinOrderSpace, double alpha,
+			boolean avoidCrossProducts, int nrThreads) {
+		super(joinOrderSpace, alpha, avoidCrossProducts);
+		assert(nrThreads > 0);
+		this.nrThreads = nrThreads;
+	}
+
+	public LocalPartitioningMaster(JoinOrderSpace joinOrderSpace, double alpha) {
+		this(joinOrderSpace, alpha, false, Runtime.getRuntime().availableProcessors());
+	}
+	/**
+	 * Executes the given slave tasks on a thread pool and returns their results in the
+	 * order of the tasks. Tasks that fail are represented by results indicating an error.
+	 *
+	 * @param tasks	slave tasks, one for each plan space partition
+	 * @return		the results of the slave tasks
+	 */
+	List<PartitioningSlaveResult> executeTasks(List<PartitioningSlaveTask> tasks) {
+		int nrTasks = tasks.size();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(nrThreads, nrTasks));
+		try {
+			List<Callable<PartitioningSlaveResult>> callables =
+					new ArrayList<Callable<PartitioningSlaveResult>>(nrTasks);
+			for (final PartitioningSlaveTask task : tasks) {
+				callables.add(new Callable<PartitioningSlaveResult>() {
+					@Override
+					public PartitioningSlaveResult call() {
+						return PartitioningSlave.optimize(task);
+					}
+				});
+			}
+			List<PartitioningSlaveResult> results = new ArrayList<PartitioningSlaveResult>(nrTasks);
+			for (Future<PartitioningSlaveResult> future : executor.invokeAll(callables)) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					results.add(new PartitioningSlaveResult(null, Long.MAX_VALUE,
+							Long.MAX_VALUE, false, true, e.getCause().toString()));
+				}
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			List<PartitioningSlaveResult> results = new ArrayList<PartitioningSlaveResult>(1);
+			results.add(new PartitioningSlaveResult(null, 0, 0, true, false, "interrupted"));
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	/**
+	 * Partitions the query plan search space, finds the best plans in each partition
+	 * using a local thread pool, and determines the generally best plans by comparing
+	 * the best plans in different plan space partitions. Stores performance statistics
+	 * in the corresponding fields.
+	 */
+	@Override
+	protected void solveTestcase(Query query, boolean[] consideredMetrics, PlanSpace planSpace,
+			MultiCostModel costModel, double alpha, int degreeOfParallelism,
+			JavaSparkContext sparkContext, long timeoutMillis) {
+		long startMillis = System.currentTimeMillis();
+		initStatistics();
+		List<PartitioningSlaveTask> tasks = createTasks(query, consideredMetrics,
+				planSpace, costModel, alpha, degreeOfParallelism, timeoutMillis);
+		List<PartitioningSlaveResult> results = executeTasks(tasks);
+		collectResults(results, consideredMetrics, startMillis);
+	}
+	/**
+	 * Optimizes the given query once with the given degree of parallelism and returns the
+	 * best plans found. Performance statistics of the run are stored in the corresponding
+	 * fields. This method does not require a Spark context.
+	 *
+	 * @param query					the query being optimized
+	 * @param consideredMetrics		Boolean flags indicating whether specific cost metrics are considered
+	 * @param planSpace				determines the set of applicable scan and join operators
+	 * @param costModel				estimates the execution cost of query plans according to multiple metrics
+	 * @param degreeOfParallelism	the number of plan space partitions (a power of two)
+	 * @param timeoutMillis			number of milliseconds after which a timeout is registered
+	 * @return						the best plans or null if a slave timed out or failed
+	 */
+	public ParetoPlanSet optimize(Query query, boolean[] consideredMetrics, PlanSpace planSpace,
+			MultiCostModel costModel, int degreeOfParallelism, long timeoutMillis) {
+		solveTestcase(query, consideredMetrics, planSpace, costModel, alpha,
+				degreeOfParallelism, null, timeoutMillis);
+		List<Plan> bestPlans = lastRunBestPlanList;
+		return bestPlans == null ? null : new ParetoPlanSet(bestPlans);
+	}
+	/**
+	 * Class identifier for the master.
+	 *
+	 * @return	short String identifier for the master
+	 */
+	@Override
+	public String masterID() {
+		return "Local" + super.masterID();
+	}
+}
@@ -0,0 +1,62 @@
+package optimizer.parallelized.partitioning;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import cost.MultiCostModel;
+import cost.SingleCostModel;
+import cost.local.BufferCostModel;
+import cost.local.DiscCostModel;
+import cost.local.TimeCostModel;
+import optimizer.approximate.DPmoqo;
+import plans.JoinOrderSpace;
+import plans.ParetoPlanSet;
+import plans.spaces.LocalPlanSpace;
+import plans.spaces.PlanSpace;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import util.ParetoUtil;
+import util.TestUtil;
+
+import org.junit.Test;
+
+public class LocalPartitioningMasterTest {
+
+	@Test
+	public void test() {
+		PlanSpace planSpace = new LocalPlanSpace();
+		MultiCostModel costModel = new MultiCostModel(Arrays.asList(new SingleCostModel[] {
+				new TimeCostModel(0), new BufferCostModel(1), new DiscCostModel(2)
+		}));
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		// Results are consistent with the single-node optimizer
+		for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+			LocalPartitioningMaster master = new LocalPartitioningMaster(
+					joinOrderSpace, 1, false, 4);
+			assertEquals("LocalPartitioningMaster(" + joinOrderSpace + ")", master.masterID());
+			DPmoqo singleNodeDP = new DPmoqo(1, joinOrderSpace);
+			for (JoinGraphType joinGraphType : JoinGraphType.values()) {
+				Query query = QueryFactory.produceSteinbrunn(joinGraphType, 6, JoinType.MN);
+				ParetoPlanSet singleNodeResult = singleNodeDP.approximateParetoSet(
+						query, consideredMetrics, planSpace, costModel, null, 0, 0, 0);
+				ParetoPlanSet parallelResult = master.optimize(query, consideredMetrics,
+						planSpace, costModel, 4, Long.MAX_VALUE);
+				assertNotNull(parallelResult);
+				assertEquals(0, ParetoUtil.epsilonError(parallelResult.plans,
+						singleNodeResult.plans, consideredMetrics), TestUtil.EPSILON);
+				assertEquals(0, ParetoUtil.epsilonError(singleNodeResult.plans,
+						parallelResult.plans, consideredMetrics), TestUtil.EPSILON);
+			}
+		}
+		// Slave timeouts are reported by returning no plans
+		{
+			LocalPartitioningMaster master = new LocalPartitioningMaster(JoinOrderSpace.BUSHY, 1);
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 15, JoinType.MN);
+			assertNull(master.optimize(query, consideredMetrics, planSpace, costModel, 2, 10));
+		}
+	}
+
+}
@@ -7,6 +7,7 @@ import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.Function;
 
+import common.RandomNumbers;
 import cost.MultiCostModel;
 import optimizer.parallelized.Master;
 import plans.JoinOrderSpace;
@@ -27,26 +28,23 @@ public class PartitioningMaster extends Master {
 	 * Used to verify the class version.
 	 */
 	private static final long serialVersionUID = 1L;
+	/**
+	 * Whether slaves consider only plans without cross products.
+	 */
+	final boolean avoidCrossProducts;
 	
-	public PartitioningMaster(JoinOrderSpace joinOrderSpace, double alpha) {
+	public PartitioningMaster(JoinOrderSpace joinOrderSpace, double alpha, boolean avoidCrossProducts) {
 		super(joinOrderSpace, alpha);
+		this.avoidCrossProducts = avoidCrossProducts;
+	}
+	
+	public PartitioningMaster(JoinOrderSpace joinOrderSpace, double alpha) {
+		this(joinOrderSpace, alpha, false);
 	}
 	/**
-	 * Creates a Spark context, partitions the query plan search space and
-	 * generates tasks for finding the best plan in each plan space partition.
-	 * Those tasks are distributed over the worker nodes and the best plans
-	 * in each partition are collected from them as results. Then the master
-	 * determines the generally best plan by comparing the best plans in 
-	 * different plan space partitions. The master measure multiple 
-	 * performance statistics that are stored in the corresponding fields.
+	 * Resets the performance statistics before a new optimizer run.
 	 */
-	@Override
-	protected void solveTestcase(Query query, boolean[] consideredMetrics, PlanSpace planSpace, 
-			MultiCostModel costModel, double alpha, int degreeOfParallelism, 
-			JavaSparkContext sparkContext, long timeoutMillis) {
-		System.out.println("Solving new test case with partitioning and DOP=" + degreeOfParallelism);
-		// Initialize performance statistics
-		long startMillis = System.currentTimeMillis();
+	void initStatistics() {
 		lastRunBytesSent = 0;
 		lastRunMainMemory = 0;
 		lastRunMaxSlaveMillis = 0;
@@ -54,32 +52,44 @@ public class PartitioningMaster extends Master {
 		lastRunTimeouts = false;
 		lastRunMemoryouts = false;
 		lastRunNrParetoPlans = 0;
-	    // Create local collection containing task descriptions for the workers
+	}
+	/**
+	 * Generates one task per plan space partition - all tasks derive the random number
+	 * streams used by the slaves from the same root seed.
+	 * 
+	 * @param query					the query being optimized
+	 * @param consideredMetrics		Boolean flags indicating whether specific cost metrics are considered
+	 * @param planSpace				determines the set of applicable scan and join operators
+	 * @param costModel				estimates the execution cost of query plans according to multiple metrics
+	 * @param alpha					approximation factor to use during pruning
+	 * @param degreeOfParallelism	the number of plan space partitions
+	 * @param timeoutMillis			number of milliseconds after which a timeout is registered
+	 * @return						a list of slave tasks, one for each plan space partition
+	 */
+	List<PartitioningSlaveTask> createTasks(Query query, boolean[] consideredMetrics, 
+			PlanSpace planSpace, MultiCostModel costModel, double alpha, 
+			int degreeOfParallelism, long timeoutMillis) {
+	    long randomSeed = RandomNumbers.random.nextLong();
 	    List<PartitioningSlaveTask> tasksLocal = new LinkedList<PartitioningSlaveTask>();
 	    for (int partitionID = 0; partitionID<degreeOfParallelism; ++partitionID) {
 	    	PartitioningSlaveTask slaveTask = new PartitioningSlaveTask(query, joinOrderSpace, 
 	    			planSpace, costModel, consideredMetrics, alpha, partitionID, degreeOfParallelism,
-	    			timeoutMillis);
+	    			timeoutMillis, randomSeed, avoidCrossProducts);
 	    	tasksLocal.add(slaveTask);
 	    }
-	    System.out.println("Generated tasks");
-	    lastRunBytesSent += sizeof(tasksLocal);
-	    System.out.println("Counted byte size of tasks");
-	    // Parallelize collection and map each task to the best query plan in the corresponding partition
-	    JavaRDD<PartitioningSlaveTask> parallelizedTasks = 
-	    		sparkContext.parallelize(tasksLocal, degreeOfParallelism);
-	    System.out.println("Parallelized tasks");
-	    @SuppressWarnings("serial")
-		JavaRDD<PartitioningSlaveResult> results = parallelizedTasks.map(
-				new Function<PartitioningSlaveTask, PartitioningSlaveResult>() {
-					public PartitioningSlaveResult call(PartitioningSlaveTask t) {
-						return PartitioningSlave.optimize(t);}
-	    });
-	    System.out.println("Found best plans in each plan space partition");
-	    // Collect result plans from all workers
-	    List<PartitioningSlaveResult> resultsLocal = results.collect();
-	    System.out.println("Collected best plans in each plan space partition");
-	    // Determine the overall best plan by comparing best plans from different plan space partitions
+	    return tasksLocal;
+	}
+	/**
+	 * Determines the overall best plans by comparing the best plans from different plan
+	 * space partitions and updates the performance statistics based on the slave results.
+	 * If one of the slaves had a timeout then no plans are returned.
+	 * 
+	 * @param resultsLocal		the results of all slaves
+	 * @param consideredMetrics	Boolean flags indicating whether specific cost metrics are considered
+	 * @param startMillis		start time of the optimizer run in milliseconds
+	 */
+	void collectResults(List<PartitioningSlaveResult> resultsLocal, 
+			boolean[] consideredMetrics, long startMillis) {
 	    lastRunBestPlanList = new LinkedList<Plan>();
 	    for (PartitioningSlaveResult result : resultsLocal) {
 	    	// Update statistics based on results
@@ -103,9 +113,7 @@ public class PartitioningMaster extends Master {
 	    		System.out.println("ATTENTION: we do not integrate statistics from other slaves!");
 	    		lastRunMainMemory = Math.max(lastRunMainMemory, result.mainMemoryConsumption);
 	    		lastRunMillis = System.currentTimeMillis() - startMillis;
-	    		lastRunBytesSent += sizeof(resultsLocal);
 	    		lastRunBestPlanList = null;
-	    		System.out.println("Finished solving test case");
 	    		return;
 	    	}
 	    	for (Plan partitionParetoPlan : result.paretoPlans) {
@@ -116,6 +124,46 @@ public class PartitioningMaster extends Master {
 	    // Update performance statistics
 	    System.out.println("Collecting statistics");
 	    lastRunMillis = System.currentTimeMillis() - startMillis;
+	}
+	/**
+	 * Creates a Spark context, partitions the query plan search space and
+	 * generates tasks for finding the best plan in each plan space partition.
+	 * Those tasks are distributed over the worker nodes and the best plans
+	 * in each partition are collected from them as results. Then the master
+	 * determines the generally best plan by comparing the best plans in 
+	 * different plan space partitions. The master measure multiple 
+	 * performance statistics that are stored in the corresponding fields.
+	 */
+	@Override
+	protected void solveTestcase(Query query, boolean[] consideredMetrics, PlanSpace planSpace, 
+			MultiCostModel costModel, double alpha, int degreeOfParallelism, 
+			JavaSparkContext sparkContext, long timeoutMillis) {
+		System.out.println("Solving new test case with partitioning and DOP=" + degreeOfParallelism);
+		// Initialize performance statistics
+		long startMillis = System.currentTimeMillis();
+		initStatistics();
+	    // Create local collection containing task descriptions for the workers
+	    List<PartitioningSlaveTask> tasksLocal = createTasks(query, consideredMetrics, 
+	    		planSpace, costModel, alpha, degreeOfParallelism, timeoutMillis);
+	    System.out.println("Generated tasks");
+	    lastRunBytesSent += sizeof(tasksLocal);
+	    System.out.println("Counted byte size of tasks");
+	    // Parallelize collection and map each task to the best query plan in the corresponding partition
+	    JavaRDD<PartitioningSlaveTask> parallelizedTasks = 
+	    		sparkContext.parallelize(tasksLocal, degreeOfParallelism);
+	    System.out.println("Parallelized tasks");
+	    @SuppressWarnings("serial")
+		JavaRDD<PartitioningSlaveResult> results = parallelizedTasks.map(
+				new Function<PartitioningSlaveTask, PartitioningSlaveResult>() {
+					public PartitioningSlaveResult call(PartitioningSlaveTask t) {
+						return PartitioningSlave.optimize(t);}
+	    });
+	    System.out.println("Found best plans in each plan space partition");
+	    // Collect result plans from all workers
+	    List<PartitioningSlaveResult> resultsLocal = results.collect();
+	    System.out.println("Collected best plans in each plan space partition");
+	    // Determine the overall best plan by comparing best plans from different plan space partitions
+	    collectResults(resultsLocal, consideredMetrics, startMillis);
 	    lastRunBytesSent += sizeof(resultsLocal);
 	    System.out.println("Finished solving test case");
 	}
@@ -126,6 +174,7 @@ public class PartitioningMaster extends Master {
 	 */
 	@Override
 	public String masterID() {
-		return "PartitioningMaster(" + joinOrderSpace.toString() + ")"; 
+		return "PartitioningMaster(" + joinOrderSpace.toString() + 
+				(avoidCrossProducts ? ", no cross products" : "") + ")"; 
 	}
 }
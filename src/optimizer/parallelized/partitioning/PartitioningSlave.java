@@ -10,8 +10,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import common.Constants;
+import common.OptimizationContext;
+import common.RandomStream;
 import cost.CostModel;
 import optimizer.approximate.BitSetIterator;
+import optimizer.approximate.CostBound;
 import optimizer.parallelized.Slave;
 import plans.JoinOrderSpace;
 import plans.JoinPlan;
@@ -20,11 +24,14 @@ import plans.ScanPlan;
 import plans.operators.JoinOperator;
 import plans.operators.ScanOperator;
 import plans.spaces.PlanSpace;
+import queries.JoinGraph;
 import queries.Query;
 import relations.Relation;
 import relations.RelationFactory;
+import relations.RelationMap;
 import util.MathUtil;
 import util.PruningUtil;
+import util.TableSetUtil;
 
 /**
  * Each slave searches the best plan(s) in one specific plan space partition. 
@@ -238,27 +245,44 @@ public class PartitioningSlave extends Slave {
 	 * @param costModel				used for estimating plan execution costs for multiple metrics
 	 * @param localAlpha			approximation factor used for pruning
 	 * @param consideredMetrics		Boolean flags indicating which plan cost metrics are considered
+	 * @param joinGraph				join graph used to avoid cross products or null if cross products are allowed
+	 * @param bound					new plans exceeding that cost bound are discarded (may be null)
 	 */
-	static void tryPlansOperators(Query query, Map<BitSet, Relation> relations, BitSet leftTables, 
+	static void tryPlansOperators(Query query, RelationMap relations, BitSet leftTables, 
 			BitSet rightTables, BitSet resultTables, PlanSpace planSpace, CostModel costModel, 
-			double localAlpha, boolean[] consideredMetrics) {
-		// Operand relations must already exist
+			double localAlpha, boolean[] consideredMetrics, JoinGraph joinGraph, CostBound bound) {
+		OptimizationContext context = OptimizationContext.current();
 		Relation leftRel = relations.get(leftTables);
 		Relation rightRel = relations.get(rightTables);
+		// If cross products are avoided then relations exist only for connected table sets
+		// and operands must be connected to each other - otherwise operand relations must exist.
+		if (joinGraph != null && (leftRel == null || rightRel == null || 
+				!joinGraph.adjacent(leftRel.lowTableBits, leftRel.highTableBits, 
+						rightRel.lowTableBits, rightRel.highTableBits))) {
+			return;
+		}
 		// Generate result relation if it does not yet exist
-		if (!relations.containsKey(resultTables)) {
-			Relation resultRel = RelationFactory.createJoinRel(query, leftRel, rightRel);
-			relations.put(resultTables, resultRel);
+		Relation resultRel = relations.get(leftRel.lowTableBits | rightRel.lowTableBits, 
+				leftRel.highTableBits | rightRel.highTableBits);
+		if (resultRel == null) {
+			resultRel = RelationFactory.createJoinRel(query, leftRel, rightRel);
+			relations.put(resultRel);
+		}
+		// All plans of an operand may have been discarded due to the bound
+		if (leftRel.ParetoPlans == null || rightRel.ParetoPlans == null) {
+			return;
 		}
-		Relation resultRel = relations.get(resultTables);
 		// iterate over (near-)Pareto-optimal plans for left and right relation
 		for (Plan leftPlan : leftRel.ParetoPlans) {
 			for (Plan rightPlan : rightRel.ParetoPlans) {
 				// iterate over all applicable join methods
-				for (JoinOperator joinOperator : planSpace.joinOperators(leftPlan, rightPlan)) {
+				for (JoinOperator joinOperator : planSpace.applicableJoinOperators(leftPlan, rightPlan)) {
 					Plan newPlan = new JoinPlan(resultRel.cardinality, 
-							resultRel.pages, leftPlan, rightPlan, joinOperator);
-					costModel.updateRoot(newPlan);
+							resultRel.pages, leftPlan, rightPlan, joinOperator, context);
+					costModel.updateRoot(newPlan, context);
+					if (bound != null && bound.exceeds(newPlan)) {
+						continue;
+					}
 					PruningUtil.prune(query, resultRel, newPlan, 
 							localAlpha, consideredMetrics, false);
 				} // over join operators
@@ -328,10 +352,12 @@ public class PartitioningSlave extends Slave {
 	 * @param costModel				used to estimate the execution cost of query plans for multiple metrics
 	 * @param localAlpha			approximation factor used during pruning
 	 * @param consideredMetrics		Boolean flags indicating which plan cost metrics are considered
+	 * @param joinGraph				join graph used to avoid cross products or null if cross products are allowed
+	 * @param bound					new plans exceeding that cost bound are discarded (may be null)
 	 */
-	static void trySplitsLinear(Query query, Map<BitSet, Relation> relations, BitSet resultTables, 
+	static void trySplitsLinear(Query query, RelationMap relations, BitSet resultTables, 
 			int partitionID, int nrPartitions, PlanSpace planSpace, CostModel costModel,  
-			double localAlpha, boolean[] consideredMetrics) {
+			double localAlpha, boolean[] consideredMetrics, JoinGraph joinGraph, CostBound bound) {
 		// Extract constraints
 		int nrConstraints = (int)MathUtil.logOfBase(2, nrPartitions);
 		boolean[] constraintVector = MathUtil.toBitVector(partitionID, nrConstraints);
@@ -346,7 +372,7 @@ public class PartitioningSlave extends Slave {
 				rightTables.set(q);
 				// Generate all plans that correspond to current result set split
 				tryPlansOperators(query, relations, leftTables, rightTables, resultTables, 
-						planSpace, costModel, localAlpha, consideredMetrics);
+						planSpace, costModel, localAlpha, consideredMetrics, joinGraph, bound);
 			}
 		}
 	}
@@ -530,16 +556,18 @@ public class PartitioningSlave extends Slave {
 	 * @param leftSet			tables that are already assigned to outer join operand
 	 * @param rightSet			tables that are already assigned to inner join operand
 	 * @param unassignedTables	tables that are currently unassigned
+	 * @param joinGraph			join graph used to avoid cross products or null if cross products are allowed
+	 * @param bound				new plans exceeding that cost bound are discarded (may be null)
 	 */
-	static void trySplitsBushyRec(Query query, Map<BitSet, Relation> relations, BitSet resultTables, 
+	static void trySplitsBushyRec(Query query, RelationMap relations, BitSet resultTables, 
 			int nrConstraints, boolean[] constraintVector, PlanSpace planSpace, CostModel costModel, 
 			double localAlpha, boolean[] consideredMetrics, BitSet leftSet, BitSet rightSet, 
-			BitSet unassignedTables) {
+			BitSet unassignedTables, JoinGraph joinGraph, CostBound bound) {
 		// If all tables are assigned then we try all plans for the given split
 		if (unassignedTables.isEmpty()) {
 			if (!leftSet.isEmpty() && !rightSet.isEmpty()) {
 				tryPlansOperators(query, relations, leftSet, rightSet, resultTables, 
-						planSpace, costModel, localAlpha, consideredMetrics);				
+						planSpace, costModel, localAlpha, consideredMetrics, joinGraph, bound);				
 			}
 		} else {
 			// Iterate over tables that are not yet assigned to either outer or inner join input
@@ -558,7 +586,7 @@ public class PartitioningSlave extends Slave {
 					// Recursive call
 					trySplitsBushyRec(query, relations, resultTables, nrConstraints, constraintVector, 
 							planSpace, costModel, localAlpha, consideredMetrics, 
-							newLeftSet, rightSet, newUnassigned);
+							newLeftSet, rightSet, newUnassigned, joinGraph, bound);
 				}
 				// Can we use current table in inner operand set?
 				if (okAsOuterOrInnerBushy(q, resultTables, leftSet, 
@@ -570,7 +598,7 @@ public class PartitioningSlave extends Slave {
 					// Recursive call
 					trySplitsBushyRec(query, relations, resultTables, nrConstraints, constraintVector,
 							planSpace, costModel, localAlpha, consideredMetrics, 
-							leftSet, newRightSet, newUnassigned);
+							leftSet, newRightSet, newUnassigned, joinGraph, bound);
 				}
 			}			
 		} // whether still tables to assign
@@ -603,10 +631,12 @@ public class PartitioningSlave extends Slave {
 	 * @param costModel				used to estimate the execution cost of query plans for multiple metrics
 	 * @param localAlpha			approximation factor used during pruning
 	 * @param consideredMetrics		Boolean flags indicating which plan cost metrics are considered
+	 * @param joinGraph				join graph used to avoid cross products or null if cross products are allowed
+	 * @param bound					new plans exceeding that cost bound are discarded (may be null)
 	 */
-	static void trySplitsBushy(Query query, Map<BitSet, Relation> relations, BitSet resultTables, 
+	static void trySplitsBushy(Query query, RelationMap relations, BitSet resultTables, 
 			int partitionID, int nrPartitions, PlanSpace planSpace, CostModel costModel,  
-			double localAlpha, boolean[] consideredMetrics) {
+			double localAlpha, boolean[] consideredMetrics, JoinGraph joinGraph, CostBound bound) {
 		// Get dimension values
 		int nrTables = query.nrTables;
 		int nrTriples = nrTables / 3;
@@ -721,13 +751,13 @@ public class PartitioningSlave extends Slave {
 			if (!operand.isEmpty() && !otherOperand.isEmpty()) {
 				tryPlansOperators(query, relations, operand, otherOperand, 
 						resultTables, planSpace, costModel, localAlpha, 
-						consideredMetrics);	
+						consideredMetrics, joinGraph, bound);	
 			}
 		}
 	}
 
 	/*
-	static void trySplitsBushy(Query query, Map<BitSet, Relation> relations, BitSet resultTables, 
+	static void trySplitsBushy(Query query, RelationMap relations, BitSet resultTables, 
 			int partitionID, int nrPartitions, PlanSpace planSpace, CostModel costModel,  
 			double localAlpha, boolean[] consideredMetrics) {
 		// Get dimension values
@@ -876,7 +906,7 @@ public class PartitioningSlave extends Slave {
 	}
 	*/
 	/*
-	static void trySplitsBushy(Query query, Map<BitSet, Relation> relations, BitSet resultTables, 
+	static void trySplitsBushy(Query query, RelationMap relations, BitSet resultTables, 
 			int partitionID, int nrPartitions, PlanSpace planSpace, CostModel costModel,  
 			double localAlpha, boolean[] consideredMetrics) {
 		// We consider all splits of the result tables into two subsets whose relations are included.
@@ -901,7 +931,7 @@ public class PartitioningSlave extends Slave {
 	}
 	*/
 	/*
-	static void trySplitsBushy(Query query, Map<BitSet, Relation> relations, BitSet resultTables, 
+	static void trySplitsBushy(Query query, RelationMap relations, BitSet resultTables, 
 			int partitionID, int nrPartitions, PlanSpace planSpace, CostModel costModel, 
 			double localAlpha, boolean[] consideredMetrics) {
 		// Extract constraints
@@ -929,6 +959,58 @@ public class PartitioningSlave extends Slave {
 	public static PartitioningSlaveResult optimize(Query query, JoinOrderSpace joinOrderSpace, 
 			PlanSpace planSpace, CostModel costModel, boolean[] consideredMetrics, 
 			double globalAlpha, int partitionID, int nrPartitions, long timeoutMillis) {
+		return optimize(query, joinOrderSpace, planSpace, costModel, consideredMetrics, 
+				globalAlpha, partitionID, nrPartitions, timeoutMillis, false);
+	}
+	/**
+	 * Returns best query plans in current search space partition, optionally considering
+	 * only plans without cross products. If cross products are avoided then only splits into
+	 * connected operands that are connected to each other are considered within the partition;
+	 * partitions that contain no plan without cross products return an empty plan list.
+	 * 
+	 * @param query					the query to optimize
+	 * @param joinOrderSpace		whether linear or bushy query plans are considered
+	 * @param planSpace				determines the set of applicable scan and join operators
+	 * @param costModel				estimates the execution cost of query plans for multiple metrics 
+	 * @param consideredMetrics		Boolean flags indicating which plan cost metrics are considered
+	 * @param globalAlpha			target approximation factor
+	 * @param partitionID			identifier of current search space partition
+	 * @param nrPartitions			total number of search space partitions
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 * @return						a set of Pareto-optimal plans within current search space partition
+	 * 								and the amount of main memory consumed during this invocation
+	 */
+	public static PartitioningSlaveResult optimize(Query query, JoinOrderSpace joinOrderSpace, 
+			PlanSpace planSpace, CostModel costModel, boolean[] consideredMetrics, 
+			double globalAlpha, int partitionID, int nrPartitions, long timeoutMillis, 
+			boolean avoidCrossProducts) {
+		return optimize(query, joinOrderSpace, planSpace, costModel, consideredMetrics, 
+				globalAlpha, partitionID, nrPartitions, timeoutMillis, avoidCrossProducts, false);
+	}
+	/**
+	 * Returns best query plans in current search space partition, optionally considering
+	 * only plans without cross products and optionally discarding partial plans whose cost
+	 * exceeds a bound. The bound consists of complete plans that are generated greedily
+	 * by each slave (see {@link CostBound}); those plans are added to the plans returned
+	 * for the partition.
+	 * 
+	 * @param query					the query to optimize
+	 * @param joinOrderSpace		whether linear or bushy query plans are considered
+	 * @param planSpace				determines the set of applicable scan and join operators
+	 * @param costModel				estimates the execution cost of query plans for multiple metrics 
+	 * @param consideredMetrics		Boolean flags indicating which plan cost metrics are considered
+	 * @param globalAlpha			target approximation factor
+	 * @param partitionID			identifier of current search space partition
+	 * @param nrPartitions			total number of search space partitions
+	 * @param avoidCrossProducts	whether only table sets connected by join predicates are joined
+	 * @param useCostBound			whether partial plans exceeding a greedy cost bound are discarded
+	 * @return						a set of Pareto-optimal plans within current search space partition
+	 * 								and the amount of main memory consumed during this invocation
+	 */
+	public static PartitioningSlaveResult optimize(Query query, JoinOrderSpace joinOrderSpace, 
+			PlanSpace planSpace, CostModel costModel, boolean[] consideredMetrics, 
+			double globalAlpha, int partitionID, int nrPartitions, long timeoutMillis, 
+			boolean avoidCrossProducts, boolean useCostBound) {
 		//System.out.println("Started optimization by partitioning slave");
 		//System.err.println("Started optimization by partitioning slave");
 		try{
@@ -946,23 +1028,33 @@ public class PartitioningSlave extends Slave {
 		for (int tableIndex=0; tableIndex<nrTables; ++tableIndex) {
 			allTablesSet.set(tableIndex);
 		}
+		// Cross products can only be avoided if the join graph is connected
+		JoinGraph joinGraph = null;
+		if (avoidCrossProducts) {
+			joinGraph = new JoinGraph(query);
+			if (!joinGraph.connected()) {
+				joinGraph = null;
+			}
+		}
+		// Complete plans bounding the cost of relevant partial plans (if enabled)
+		CostBound bound = useCostBound && TableSetUtil.fitsInWord(nrTables) ? CostBound.greedy(
+				query, planSpace, costModel, consideredMetrics, joinGraph) : null;
 		// maps table sets to corresponding relations
-		Map<BitSet, Relation> relations = new HashMap<BitSet, Relation>();
+		RelationMap relations = new RelationMap();
 		// treat single table relations
+		OptimizationContext context = OptimizationContext.current();
 		for (int tableIndex=0; tableIndex<nrTables; ++tableIndex) {
 			// create relation
 			Relation rel = RelationFactory.createSingleTableRel(query, tableIndex);
 			// iterate over scan operators
 			for (ScanOperator scanOp : planSpace.scanOperatorsShuffled(rel)) {
-				Plan scanPlan = new ScanPlan(rel.cardinality, rel.pages, tableIndex, scanOp);
-				costModel.updateRoot(scanPlan);
+				Plan scanPlan = new ScanPlan(rel.cardinality, rel.pages, 
+						tableIndex, scanOp, context);
+				costModel.updateRoot(scanPlan, context);
 				PruningUtil.prune(query, rel, scanPlan, localAlpha, consideredMetrics, false);
 			}
-			// create relation index
-			BitSet tableSet = new BitSet();
-			tableSet.set(tableIndex);
 			// insert relation
-			relations.put(tableSet, rel);
+			relations.put(rel);
 		}
 		// Obtain table result sets in current search space partition
 		List<List<BitSet>> resultTableSets = generateResultTableSets(
@@ -975,11 +1067,11 @@ public class PartitioningSlave extends Slave {
 				switch (joinOrderSpace) {
 				case LINEAR:
 					trySplitsLinear(query, relations, resultSet, partitionID, nrPartitions, 
-							planSpace, costModel, localAlpha, consideredMetrics);
+							planSpace, costModel, localAlpha, consideredMetrics, joinGraph, bound);
 					break;
 				case BUSHY:
 					trySplitsBushy(query, relations, resultSet, partitionID, nrPartitions, 
-							planSpace, costModel, localAlpha, consideredMetrics);
+							planSpace, costModel, localAlpha, consideredMetrics, joinGraph, bound);
 					break;
 				default:
 					assert(false);
@@ -995,7 +1087,13 @@ public class PartitioningSlave extends Slave {
 		} // over result table set cardinality
 		// return Pareto plans for joining all tables
 		Relation resultRel = relations.get(allTablesSet);
-		List<Plan> resultPlans = resultRel.ParetoPlans;
+		List<Plan> resultPlans = resultRel != null && resultRel.ParetoPlans != null ? 
+				resultRel.ParetoPlans : new LinkedList<Plan>();
+		// Plans were only discarded if some bound plan is at least as good
+		if (bound != null && nrTables > 1) {
+			resultPlans = new LinkedList<Plan>(resultPlans);
+			resultPlans.addAll(bound.plans);
+		}
 		// We measure the amount of main memory by the number of generated relations
 		int mainMemoryConsumed = relations.size();
 		long elapsedMillis = System.currentTimeMillis() - startMillis;
@@ -1015,15 +1113,26 @@ public class PartitioningSlave extends Slave {
 	}
 	/**
 	 * The following version of the optimization function facilitates the invocation
-	 * as a map operation over a Spark RDD.
+	 * as a map operation over a Spark RDD. The slave draws random numbers from a
+	 * stream that is derived from the root seed of the task and the partition ID: 
+	 * results do not depend on which worker executes which partition.
 	 * 
 	 * @param slaveTask	encapsulates a description of the optimization task to perform by the slave
 	 * @return						a set of Pareto-optimal plans within current search space partition
 	 * 								and the amount of main memory consumed during this invocation
 	 */
 	public static PartitioningSlaveResult optimize(PartitioningSlaveTask slaveTask) {
-		return optimize(slaveTask.query, slaveTask.joinOrderSpace, slaveTask.planSpace, 
-				slaveTask.costModel, slaveTask.consideredMetrics, slaveTask.alpha, 
-				slaveTask.partitionID, slaveTask.nrPartitions, slaveTask.timeoutMillis);
+		OptimizationContext context = new OptimizationContext(slaveTask.timeoutMillis, 
+				Constants.NR_COST_METRICS, RandomStream.derive(
+						slaveTask.randomSeed, slaveTask.partitionID));
+		OptimizationContext previousContext = context.activate();
+		try {
+			return optimize(slaveTask.query, slaveTask.joinOrderSpace, slaveTask.planSpace, 
+					slaveTask.costModel, slaveTask.consideredMetrics, slaveTask.alpha, 
+					slaveTask.partitionID, slaveTask.nrPartitions, slaveTask.timeoutMillis, 
+					slaveTask.avoidCrossProducts, slaveTask.useCostBound);
+		} finally {
+			OptimizationContext.restore(previousContext);
+		}
 	}
 }
@@ -1,5 +1,6 @@
 package optimizer.parallelized.partitioning;
 
+import common.RandomNumbers;
 import cost.CostModel;
 import optimizer.parallelized.SlaveTask;
 import plans.JoinOrderSpace;
@@ -25,12 +26,50 @@ public class PartitioningSlaveTask extends SlaveTask {
 	 * total number of search space partitions
 	 */
 	final int nrPartitions;
+	/**
+	 * root seed from which the random number stream of each partition is derived
+	 */
+	final long randomSeed;
+	/**
+	 * whether the slave considers only plans without cross products
+	 */
+	final boolean avoidCrossProducts;
+	/**
+	 * whether the slave discards partial plans exceeding a greedy cost bound
+	 */
+	final boolean useCostBound;
 	
 	public PartitioningSlaveTask(Query query, JoinOrderSpace joinOrderSpace,
 			PlanSpace planSpace, CostModel costModel, boolean[] consideredMetrics, 
 			double alpha, int partitionID, int nrPartitions, long timeoutMillis) {
+		this(query, joinOrderSpace, planSpace, costModel, consideredMetrics, alpha, 
+				partitionID, nrPartitions, timeoutMillis, RandomNumbers.random.nextLong());
+	}
+	
+	public PartitioningSlaveTask(Query query, JoinOrderSpace joinOrderSpace,
+			PlanSpace planSpace, CostModel costModel, boolean[] consideredMetrics, 
+			double alpha, int partitionID, int nrPartitions, long timeoutMillis, long randomSeed) {
+		this(query, joinOrderSpace, planSpace, costModel, consideredMetrics, alpha, 
+				partitionID, nrPartitions, timeoutMillis, randomSeed, false);
+	}
+	
+	public PartitioningSlaveTask(Query query, JoinOrderSpace joinOrderSpace,
+			PlanSpace planSpace, CostModel costModel, boolean[] consideredMetrics, 
+			double alpha, int partitionID, int nrPartitions, long timeoutMillis, long randomSeed, 
+			boolean avoidCrossProducts) {
+		this(query, joinOrderSpace, planSpace, costModel, consideredMetrics, alpha, 
+				partitionID, nrPartitions, timeoutMillis, randomSeed, avoidCrossProducts, false);
+	}
+	
+	public PartitioningSlaveTask(Query query, JoinOrderSpace joinOrderSpace,
+			PlanSpace planSpace, CostModel costModel, boolean[] consideredMetrics, 
+			double alpha, int partitionID, int nrPartitions, long timeoutMillis, long randomSeed, 
+			boolean avoidCrossProducts, boolean useCostBound) {
 		super(query, joinOrderSpace, planSpace, costModel, consideredMetrics, alpha, timeoutMillis);
 		this.partitionID = partitionID;
 		this.nrPartitions = nrPartitions;
+		this.randomSeed = randomSeed;
+		this.avoidCrossProducts = avoidCrossProducts;
+		this.useCostBound = useCostBound;
 	}
 }
@@ -547,7 +547,59 @@ public class PartitioningSlaveTest {
 				}
 				System.out.println("Single node and parallel optimizer consistent for " + joinOrderSpace);;
 			}
-
+			// Results must also be consistent if cross products are avoided
+			for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+				for (int queryCtr=0; queryCtr<20; ++queryCtr) {
+					JoinGraphType joinGraphType = JoinGraphType.values()[
+							queryCtr % JoinGraphType.values().length];
+					Query query = QueryFactory.produce(joinGraphType, 6, 1, JoinType.MN);
+					boolean[] consideredMetrics = new boolean[] {true, true};
+					DPmoqo singleNodeDP = new DPmoqo(1, joinOrderSpace, true);
+					ParetoPlanSet singleNodeParetoPlanSet = singleNodeDP.approximateParetoSet(
+							query, consideredMetrics, planSpace, costModel, null, 0, 0, 0);
+					List<Plan> parallelParetoPlans = new LinkedList<Plan>();
+					int nrPartitions = 4;
+					for (int partitionID=0; partitionID<nrPartitions; ++partitionID) {
+						PartitioningSlaveResult result = PartitioningSlave.optimize(query, 
+								joinOrderSpace, planSpace, costModel, consideredMetrics, 
+								1, partitionID, nrPartitions, Long.MAX_VALUE, true);
+						parallelParetoPlans.addAll(result.paretoPlans);
+					}
+					double epsilon1 = ParetoUtil.epsilonError(parallelParetoPlans, 
+							singleNodeParetoPlanSet.plans, consideredMetrics);
+					double epsilon2 = ParetoUtil.epsilonError(singleNodeParetoPlanSet.plans, 
+							parallelParetoPlans, consideredMetrics);
+					assertEquals(0, epsilon1, TestUtil.EPSILON);
+					assertEquals(0, epsilon2, TestUtil.EPSILON);
+				}
+			}
+			// Results must also be consistent if partial plans are pruned using a cost bound
+			for (JoinOrderSpace joinOrderSpace : JoinOrderSpace.values()) {
+				for (int queryCtr=0; queryCtr<6; ++queryCtr) {
+					JoinGraphType joinGraphType = JoinGraphType.values()[
+							queryCtr % JoinGraphType.values().length];
+					boolean avoidCrossProducts = queryCtr % 2 == 0;
+					Query query = QueryFactory.produce(joinGraphType, 6, 1, JoinType.MN);
+					boolean[] consideredMetrics = new boolean[] {true, true};
+					DPmoqo singleNodeDP = new DPmoqo(1, joinOrderSpace, avoidCrossProducts);
+					ParetoPlanSet singleNodeParetoPlanSet = singleNodeDP.approximateParetoSet(
+							query, consideredMetrics, planSpace, costModel, null, 0, 0, 0);
+					List<Plan> parallelParetoPlans = new LinkedList<Plan>();
+					int nrPartitions = 4;
+					for (int partitionID=0; partitionID<nrPartitions; ++partitionID) {
+						PartitioningSlaveResult result = PartitioningSlave.optimize(query,
+								joinOrderSpace, planSpace, costModel, consideredMetrics,
+								1, partitionID, nrPartitions, Long.MAX_VALUE, avoidCrossProducts, true);
+						parallelParetoPlans.addAll(result.paretoPlans);
+					}
+					double epsilon1 = ParetoUtil.epsilonError(parallelParetoPlans,
+							singleNodeParetoPlanSet.plans, consideredMetrics);
+					double epsilon2 = ParetoUtil.epsilonError(singleNodeParetoPlanSet.plans,
+							parallelParetoPlans, consideredMetrics);
+					assertEquals(0, epsilon1, TestUtil.EPSILON);
+					assertEquals(0, epsilon2, TestUtil.EPSILON);
+				}
+			}
 		}
 	}
 
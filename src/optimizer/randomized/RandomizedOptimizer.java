@@ -7,11 +7,11 @@ import java.util.LinkedList;
 import java.util.List;
 
 import queries.Query;
-import util.LocalSearchUtil;
-import util.ParetoUtil;
+import util.EpsilonIndicator;
 import util.PruningUtil;
 import util.TestUtil;
 import benchmark.Statistics;
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import optimizer.Optimizer;
 import plans.spaces.PlanSpace;
@@ -32,7 +32,9 @@ public abstract class RandomizedOptimizer extends Optimizer {
 	protected long startMillis;	
 	/**
 	 * Contains current approximation of Pareto frontier. 
-	 * Must be cleared before a new query is optimized.
+	 * Must be cleared before a new query is optimized. Parallel optimizers publish
+	 * plans from several threads concurrently; accesses during refinement are
+	 * therefore synchronized on this list.
 	 */
 	public List<Plan> currentApproximation = new LinkedList<Plan>();
 	/**
@@ -53,7 +55,8 @@ public abstract class RandomizedOptimizer extends Optimizer {
 			int algIndex, int sizeIndex, int queryIndex);
 	/**
 	 * Add one new plan to the frontier approximation and prune. The new plan is copied
-	 * to avoid inconsistencies if it is modified later.
+	 * to avoid inconsistencies if it is modified later. This method can be called by
+	 * several threads concurrently.
 	 * 
 	 * @param query				the query being optimized
 	 * @param plan				a new plan to consider for that query
@@ -64,7 +67,9 @@ public abstract class RandomizedOptimizer extends Optimizer {
 		// plan to build new plans.
 		Plan planCopy = plan.deepMutableCopy();
 		planCopy.makeImmutable();
-		PruningUtil.pruneCostBased(currentApproximation, planCopy, consideredMetric);
+		synchronized (currentApproximation) {
+			PruningUtil.pruneCostBased(currentApproximation, planCopy, consideredMetric);
+		}
 	}
 	/**
 	 * This function allows algorithms to store statistics about algorithm-specific features.
@@ -80,14 +85,10 @@ public abstract class RandomizedOptimizer extends Optimizer {
 	 * approximation quality and is calculated by comparison with a reference plan set.
 	 */
 	@Override
-	public ParetoPlanSet approximateParetoSet(Query query, boolean[] consideredMetrics, 
+	protected ParetoPlanSet optimize(Query query, boolean[] consideredMetrics, 
 			PlanSpace planSpace, MultiCostModel costModel, ParetoPlanSet refPlanSet,
-			int algIndex, int sizeIndex, int queryIndex) {
-		Plan.nrPlansCreated = 0;
-		costModel.nrRootCostEvaluations = 0;
-		LocalSearchUtil.nrExhaustiveClimbs = 0;
-		LocalSearchUtil.nrExhaustiveSteps = 0;
-		LocalSearchUtil.accEpsilonImprovement = 0;
+			int algIndex, int sizeIndex, int queryIndex, OptimizationContext context) {
+		context.resetCounters();
 		currentApproximation.clear();
 		// Register start time to check for timeouts
 		startMillis = System.currentTimeMillis();
@@ -95,6 +96,9 @@ public abstract class RandomizedOptimizer extends Optimizer {
 		double[] epsilonAfterTimePeriod = new double[NR_TIME_PERIODS];
 		Arrays.fill(epsilonAfterTimePeriod, Double.POSITIVE_INFINITY);
 		init(query, consideredMetrics, planSpace, costModel);
+		// Index reference plans once for all epsilon calculations
+		EpsilonIndicator epsilonIndicator = refPlanSet == null ? null :
+			refPlanSet.epsilonIndicator(consideredMetrics);
 		boolean timeout = false;
 		long millisBetweenEpsilonUpdates = 50;
 		long lastEpsilonUpdateMillis = 0;
@@ -106,8 +110,8 @@ public abstract class RandomizedOptimizer extends Optimizer {
 					costModel, algIndex, sizeIndex, queryIndex);
 			// Check timeout
 			long millisPassed = System.currentTimeMillis() - startMillis ;
-			int curTimePeriod = (int)(millisPassed/TIME_PERIOD_MILLIS);
-			if (millisPassed > TIMEOUT_MILLIS) {
+			int curTimePeriod = (int)(millisPassed/context.timePeriodMillis());
+			if (millisPassed > context.timeoutMillis) {
 				timeout = true;
 			}
 			// Make sure that we calculate epsilon value not too often to avoid performance impact
@@ -115,8 +119,10 @@ public abstract class RandomizedOptimizer extends Optimizer {
 					lastEpsilonUpdateMillis >= millisBetweenEpsilonUpdates) {
 				// Check approximation quality comparing with reference plan set
 				if (refPlanSet != null) {
-					double curEpsilon = ParetoUtil.epsilonError(
-							currentApproximation, refPlanSet.plans, consideredMetrics);
+					double curEpsilon;
+					synchronized (currentApproximation) {
+						curEpsilon = epsilonIndicator.epsilonError(currentApproximation);
+					}
 					for (int periodCtr=curTimePeriod; periodCtr<NR_TIME_PERIODS; ++periodCtr) {
 						epsilonAfterTimePeriod[periodCtr] = Math.min(
 								epsilonAfterTimePeriod[periodCtr], curEpsilon);
@@ -131,14 +137,16 @@ public abstract class RandomizedOptimizer extends Optimizer {
 				}				
 			}
 		}
+		// Wait until refinement by other threads has finished
+		finishRefinement(context);
 		// Calculate aggregate statistics
-		double nrSteps = LocalSearchUtil.nrExhaustiveSteps;
-		double nrClimbs = LocalSearchUtil.nrExhaustiveClimbs;
-		double climbImprovements = LocalSearchUtil.accEpsilonImprovement;
+		double nrSteps = context.nrExhaustiveSteps;
+		double nrClimbs = context.nrExhaustiveClimbs;
+		double climbImprovements = context.accEpsilonImprovement;
 		double avgSteps = nrClimbs == 0 ? 0 : nrSteps/nrClimbs;
 		double avgImprovement = nrSteps == 0 ? 0 : climbImprovements / nrSteps; 
 		double finalEpsilon = refPlanSet == null ? -1 :
-			ParetoUtil.epsilonError(currentApproximation, refPlanSet.plans, consideredMetrics);
+			epsilonIndicator.epsilonError(currentApproximation);
 		// Output statistics
 		System.out.println("Executed " + iterationCtr + " iterations");
 		System.out.println("Average climbing steps: " + avgSteps);
@@ -186,11 +194,11 @@ public abstract class RandomizedOptimizer extends Optimizer {
 		{
 			String featureName = "#Partial Plans Created";
 			Statistics.addToLongFeature(featureName, 
-					algIndex, sizeIndex, 0, queryIndex, Plan.nrPlansCreated);
+					algIndex, sizeIndex, 0, queryIndex, context.nrPlansCreated);
 		}
 		{
 			String featureName = "#Cost Evaluations for Plan Nodes";
-			long nrRootCostEvaluations = costModel.nrRootCostEvaluations;
+			long nrRootCostEvaluations = context.nrRootCostEvaluations;
 			Statistics.addToLongFeature(featureName, 
 					algIndex, sizeIndex, 0, queryIndex, nrRootCostEvaluations);
 		}
@@ -211,6 +219,15 @@ public abstract class RandomizedOptimizer extends Optimizer {
 	 */
 	protected abstract void init(Query query, boolean[] consideredMetrics, 
 			PlanSpace planSpace, MultiCostModel costModel);
+	/**
+	 * Called once the time budget is exhausted, before final statistics are calculated.
+	 * Optimizers that refine the approximation using additional threads must stop them
+	 * and add their counters to the given context. Does nothing by default.
+	 * 
+	 * @param context	the context of the optimizer run
+	 */
+	protected void finishRefinement(OptimizationContext context) {
+	}
 	/**
 	 * Can be used by sub-classes to clear algorithm-specific internal data structures.
 	 * This cannot free the current approximation however as it is returned as result!
@@ -0,0 +1,76 @@
+package optimizer.randomized.genetic;
+
+import java.util.List;
+
+import cost.MultiCostModel;
+import optimizer.randomized.RandomizedOptimizer;
+import plans.spaces.PlanSpace;
+import queries.Query;
+
+/**
+ * Common base class of genetic algorithms that evolve a population of individuals.
+ * Allows to exchange individuals between the populations of several algorithm
+ * instances, as done by the island model.
+ *
+ * @author immanueltrummer
+ *
+ */
+public abstract class GeneticOptimizer extends RandomizedOptimizer {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The population of individuals, each individual represents one query plan.
+	 */
+	List<Individual> population;
+	/**
+	 * Prepares the optimization of the given query without measuring approximation quality
+	 * or collecting statistics. This is used if the population is evolved as one island
+	 * of the island model.
+	 *
+	 * @param query				the query to optimize
+	 * @param consideredMetrics	Boolean flags indicating for each metric if it is considered
+	 * @param planSpace			determines the set of scan and join operators to optimize
+	 * @param costModel			used to calculate cost of query plans
+	 */
+	void initIsland(Query query, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel) {
+		currentApproximation.clear();
+		init(query, consideredMetrics, planSpace, costModel);
+	}
+	/**
+	 * Evolves the population by one generation and updates the frontier approximation.
+	 *
+	 * @param query				the query whose Pareto plan frontier should be approximated
+	 * @param consideredMetrics	Boolean flags indicating if certain metrics are considered
+	 * @param planSpace			determines applicable scan and join operators
+	 * @param costModel			used to calculate the cost of query plans
+	 * @param algIndex			statistics are collected for that algorithm index
+	 * @param sizeIndex			statistics are collected for that query size index
+	 * @param queryIndex		index of query within its query size group
+	 */
+	void evolve(Query query, boolean[] consideredMetrics, PlanSpace planSpace,
+			MultiCostModel costModel, int algIndex, int sizeIndex, int queryIndex) {
+		refineApproximation(query, consideredMetrics, planSpace,
+				costModel, algIndex, sizeIndex, queryIndex);
+	}
+	/**
+	 * Returns the best individuals in the current population according to the selection
+	 * criteria of the algorithm. The returned individuals are not copied.
+	 *
+	 * @param nrElites			the maximal number of individuals to return
+	 * @param consideredMetrics	Boolean flags indicating which metrics are considered
+	 * @return					at most the given number of individuals from the population
+	 */
+	abstract List<Individual> elites(int nrElites, boolean[] consideredMetrics);
+	/**
+	 * Adds grown individuals from another population to the current population. They
+	 * compete with the other individuals when parents for the next generation are selected.
+	 *
+	 * @param immigrants	grown individuals that are not contained in other populations
+	 */
+	void immigrate(List<Individual> immigrants) {
+		population.addAll(immigrants);
+	}
+}
@@ -1,7 +1,7 @@
 package optimizer.randomized.genetic;
 
-import static common.RandomNumbers.*;
 import static common.Constants.*;
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import plans.JoinPlan;
 import plans.Plan;
@@ -58,16 +58,6 @@ public class Individual {
 	 * which dominate this individual.
 	 */
 	public int rank;
-	/**
-	 * The number of individuals in the current generation that dominate this individual.
-	 * Only used by NSGA-2.
-	 */
-	public int nrDominating;
-	/**
-	 * A list of individuals in the current generation which dominate this individual.
-	 * Only used by NSGA-2.
-	 */
-	public List<Individual> dominatedIndividuals = new LinkedList<Individual>();
 	/**
 	 * The crowding distance is higher the less similar the cost vectors of other individuals
 	 * in the current generation are to the cost vector of this individual. Only used by NSGA-2.
@@ -123,10 +113,10 @@ public class Individual {
 		for (int i=0; i<nrOperands; ++i) {
 			operatorIndices.add(i);
 		}
-		int leftOperand = operatorIndices.remove(random.nextInt(nrOperands));
-		int rightOperand = operatorIndices.remove(random.nextInt(nrOperands-1));
+		int leftOperand = operatorIndices.remove(OptimizationContext.current().random.nextInt(nrOperands));
+		int rightOperand = operatorIndices.remove(OptimizationContext.current().random.nextInt(nrOperands-1));
 		int nrJoinOperators = planSpace.consideredJoinOps.size();
-		int preferredJoin = random.nextInt(nrJoinOperators);
+		int preferredJoin = OptimizationContext.current().random.nextInt(nrJoinOperators);
 		return new JoinPair(leftOperand, rightOperand, preferredJoin);
 	}
 	
@@ -144,7 +134,7 @@ public class Individual {
 		int geneLength = genes.length;
 		JoinPair[] genes1 = new JoinPair[geneLength];
 		JoinPair[] genes2 = new JoinPair[geneLength];
-		int crossoverPoint = random.nextInt(geneLength);
+		int crossoverPoint = OptimizationContext.current().random.nextInt(geneLength);
 		for (int geneCtr=0; geneCtr<geneLength; ++geneCtr) {
 			if (geneCtr<=crossoverPoint) {
 				genes1[geneCtr] = this.genes[geneCtr];
@@ -171,7 +161,7 @@ public class Individual {
 		int geneLength = genes.length;
 		JoinPair[] mutatedGenes = new JoinPair[geneLength];
 		for (int joinCtr=0; joinCtr<geneLength; ++joinCtr) {
-			if (random.nextDouble() > mutationProbability) {
+			if (OptimizationContext.current().random.nextDouble() > mutationProbability) {
 				// No mutation
 				mutatedGenes[joinCtr] = genes[joinCtr];
 			} else {
@@ -212,7 +202,7 @@ public class Individual {
 			int preferredJoinOpIndex = joinPair.preferredOperator;
 			List<JoinOperator> consideredJoins = planSpace.consideredJoinOps;
 			JoinOperator joinOp = consideredJoins.get(preferredJoinOpIndex);
-			if (!planSpace.joinOperatorApplicable(joinOp, leftPlan, rightPlan)) {
+			if (!planSpace.applicable(joinOp, leftPlan, rightPlan)) {
 				joinOp = planSpace.randomJoinOperator(leftPlan, rightPlan);
 			}
 			Plan newPartialPlan = new JoinPlan(query, leftPlan, rightPlan, joinOp);
@@ -228,6 +218,19 @@ public class Individual {
 		}
 		cost = plan.getCostValuesCopy();
 	}
+	/**
+	 * Creates a copy of this grown individual with the same genes, plan, and cost. The
+	 * plan is immutable and therefore shared with the copy.
+	 * 
+	 * @return	a grown individual representing the same plan
+	 */
+	public Individual copy() {
+		assert(plan != null);
+		Individual copy = new Individual(query, planSpace, costModel, genes);
+		copy.plan = plan;
+		copy.cost = cost;
+		return copy;
+	}
 	/**
 	 * Compares this individual against another individual based on rank and crowding distance.
 	 * This method is only used by NSGA-2.
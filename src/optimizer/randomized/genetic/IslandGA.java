@@ -0,0 +1,257 @@
+package optimizer.randomized.genetic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import common.OptimizationContext;
+import cost.MultiCostModel;
+import optimizer.randomized.RandomizedOptimizer;
+import plans.Plan;
+import plans.spaces.PlanSpace;
+import queries.Query;
+import util.PruningUtil;
+
+/**
+ * Island model for genetic algorithms: several independent populations (islands) are
+ * evolved by separate instances of a genetic algorithm on separate threads. After a fixed
+ * number of generations, each island sends copies of its elite individuals to another
+ * island, chosen either according to a ring topology or randomly. The frontier
+ * approximation is obtained by merging the frontier approximations of all islands.
+ * Each island draws random numbers from its own stream that is split off the stream of
+ * the optimizer run, the destination islands of random migration are chosen by the
+ * optimizer thread. Since each island already has its own thread, NSGA-2 islands must
+ * grow their offspring in a single thread.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class IslandGA extends RandomizedOptimizer {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The genetic algorithm instances evolving the island populations.
+	 */
+	final List<GeneticOptimizer> islands;
+	/**
+	 * The number of generations evolved on each island between two migrations.
+	 */
+	final int migrationInterval;
+	/**
+	 * The maximal number of individuals that each island sends per migration.
+	 */
+	final int nrMigrants;
+	/**
+	 * Whether island i sends migrants to island i+1 (ring topology) instead of sending
+	 * them to a randomly selected island.
+	 */
+	final boolean ringTopology;
+	/**
+	 * Evolves the islands in parallel during one optimizer run.
+	 */
+	transient ExecutorService executor;
+	/**
+	 * The context of each island during the current optimizer run.
+	 */
+	transient List<OptimizationContext> islandContexts;
+	/**
+	 * Whether the islands were initialized for the current optimizer run.
+	 */
+	boolean islandsInitialized;
+	/**
+	 * Initializes the islands and the migration policy.
+	 *
+	 * @param islands				genetic algorithm instances evolving one island each
+	 * @param migrationInterval		the number of generations between two migrations
+	 * @param nrMigrants			the maximal number of individuals sent per island and migration
+	 * @param ringTopology			whether migrants are sent along a ring instead of randomly
+	 */
+	public IslandGA(List<? extends GeneticOptimizer> islands, int migrationInterval,
+			int nrMigrants, boolean ringTopology) {
+		assert(!islands.isEmpty());
+		assert(migrationInterval > 0);
+		assert(nrMigrants >= 0);
+		for (GeneticOptimizer island : islands) {
+			assert(!(island instanceof NSGA2) || ((NSGA2)island).parallelism == 1);
+		}
+		this.islands = new ArrayList<GeneticOptimizer>(islands);
+		this.migrationInterval = migrationInterval;
+		this.nrMigrants = nrMigrants;
+		this.ringTopology = ringTopology;
+	}
+	/**
+	 * Initializes the given number of NSGA-2 islands, each growing offspring in a
+	 * single thread, and the migration policy.
+	 *
+	 * @param nrIslands				the number of islands
+	 * @param nrIndividuals			the number of individuals in the population of each island
+	 * @param crossoverProbability	the probability that two parents generate offspring by crossover
+	 * @param migrationInterval		the number of generations between two migrations
+	 * @param nrMigrants			the maximal number of individuals sent per island and migration
+	 * @param ringTopology			whether migrants are sent along a ring instead of randomly
+	 */
+	public IslandGA(int nrIslands, int nrIndividuals, double crossoverProbability,
+			int migrationInterval, int nrMigrants, boolean ringTopology) {
+		this(nsga2Islands(nrIslands, nrIndividuals, crossoverProbability),
+				migrationInterval, nrMigrants, ringTopology);
+	}
+	/**
+	 * Creates NSGA-2 instances that grow offspring in a single thread.
+	 *
+	 * @param nrIslands				the number of instances
+	 * @param nrIndividuals			the number of individuals in the population of each instance
+	 * @param crossoverProbability	the probability that two parents generate offspring by crossover
+	 * @return						a list of NSGA-2 instances
+	 */
+	static List<NSGA2> nsga2Islands(int nrIslands, int nrIndividuals,
+			double crossoverProbability) {
+		List<NSGA2> islands = new ArrayList<NSGA2>(nrIslands);
+		for (int islandCtr=0; islandCtr<nrIslands; ++islandCtr) {
+			islands.add(new NSGA2(nrIndividuals, crossoverProbability, 1));
+		}
+		return islands;
+	}
+	/**
+	 * Sends copies of the elite individuals of each island to its destination island.
+	 * Elites are selected on all islands before migrants are inserted.
+	 *
+	 * @param consideredMetrics	Boolean flags indicating which metrics are considered
+	 */
+	void migrate(boolean[] consideredMetrics) {
+		int nrIslands = islands.size();
+		if (nrIslands < 2 || nrMigrants == 0) {
+			return;
+		}
+		List<List<Individual>> migrants = new ArrayList<List<Individual>>(nrIslands);
+		for (GeneticOptimizer island : islands) {
+			List<Individual> islandMigrants = new ArrayList<Individual>(nrMigrants);
+			for (Individual elite : island.elites(nrMigrants, consideredMetrics)) {
+				islandMigrants.add(elite.copy());
+			}
+			migrants.add(islandMigrants);
+		}
+		for (int islandCtr=0; islandCtr<nrIslands; ++islandCtr) {
+			int destination = ringTopology ? islandCtr + 1 : islandCtr + 1 +
+					OptimizationContext.current().random.nextInt(nrIslands - 1);
+			islands.get(destination % nrIslands).immigrate(migrants.get(islandCtr));
+		}
+	}
+	/**
+	 * Evolves all islands in parallel for the number of generations between migrations
+	 * (initializing them at the first invocation), executes one migration, and merges
+	 * the frontier approximations of all islands.
+	 */
+	@Override
+	protected void refineApproximation(final Query query,
+			final boolean[] consideredMetrics, final PlanSpace planSpace,
+			final MultiCostModel costModel, final int algIndex, final int sizeIndex,
+			final int queryIndex) {
+		final boolean initialize = !islandsInitialized;
+		int nrIslands = islands.size();
+		List<Callable<Void>> islandTasks = new ArrayList<Callable<Void>>(nrIslands);
+		for (int islandCtr=0; islandCtr<nrIslands; ++islandCtr) {
+			final GeneticOptimizer island = islands.get(islandCtr);
+			final OptimizationContext islandContext = islandContexts.get(islandCtr);
+			islandTasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					OptimizationContext previousContext = islandContext.activate();
+					try {
+						if (initialize) {
+							island.initIsland(query, consideredMetrics, planSpace, costModel);
+						}
+						for (int generationCtr=0; generationCtr<migrationInterval &&
+								System.currentTimeMillis() - startMillis <=
+								islandContext.timeoutMillis; ++generationCtr) {
+							island.evolve(query, consideredMetrics, planSpace,
+									costModel, algIndex, sizeIndex, queryIndex);
+						}
+					} finally {
+						OptimizationContext.restore(previousContext);
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> islandResult : executor.invokeAll(islandTasks)) {
+				islandResult.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		islandsInitialized = true;
+		migrate(consideredMetrics);
+		// Merge frontier approximations of all islands
+		synchronized (currentApproximation) {
+			currentApproximation.clear();
+			for (GeneticOptimizer island : islands) {
+				for (Plan plan : island.currentApproximation) {
+					PruningUtil.pruneCostBased(currentApproximation, plan, consideredMetrics);
+				}
+			}
+		}
+	}
+	/**
+	 * Creates the thread pool and one context per island.
+	 */
+	@Override
+	protected void init(Query query, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel) {
+		int nrIslands = islands.size();
+		OptimizationContext context = OptimizationContext.current();
+		islandContexts = new ArrayList<OptimizationContext>(nrIslands);
+		for (int islandCtr=0; islandCtr<nrIslands; ++islandCtr) {
+			islandContexts.add(context.split());
+		}
+		islandsInitialized = false;
+		executor = Executors.newFixedThreadPool(nrIslands);
+	}
+	/**
+	 * Adds the counters of all islands to the context of the optimizer run.
+	 */
+	@Override
+	protected void finishRefinement(OptimizationContext context) {
+		for (OptimizationContext islandContext : islandContexts) {
+			context.addCounters(islandContext);
+		}
+	}
+	/**
+	 * No algorithm-specific features.
+	 */
+	@Override
+	protected void storeSpecificStatistics(int algIndex, int sizeIndex,
+			int queryIndex) {
+	}
+	/**
+	 * Discards the island populations and shuts down the thread pool.
+	 */
+	@Override
+	public void cleanUp() {
+		if (islandsInitialized) {
+			for (GeneticOptimizer island : islands) {
+				island.cleanUp();
+			}
+			islandsInitialized = false;
+		}
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+	@Override
+	public String toString() {
+		return "Islands(" + islands.size() + "x" + islands.get(0) + ", migrationInterval=" +
+				migrationInterval + ", nrMigrants=" + nrMigrants + ", " +
+				(ringTopology ? "ring" : "random") + ")";
+	}
+}
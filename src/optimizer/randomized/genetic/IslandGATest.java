@@ -0,0 +1,97 @@
+package optimizer.randomized.genetic;
+
+import static org.junit.Assert.*;
+import static util.TestUtil.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import benchmark.Statistics;
+import common.OptimizationContext;
+import plans.ParetoPlanSet;
+import plans.Plan;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import util.PruningUtil;
+
+import org.junit.Test;
+
+public class IslandGATest {
+
+	@Test
+	public void test() {
+		Statistics.init(1, 1, 1, 1);
+		Statistics.disable();
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 8, JoinType.MN);
+		// Migration sends copies of elite individuals to the destination islands
+		for (boolean ringTopology : new boolean[] {true, false}) {
+			List<NSGA2> islands = new ArrayList<NSGA2>();
+			for (int islandCtr=0; islandCtr<3; ++islandCtr) {
+				NSGA2 island = new NSGA2(10, 0.9, 1);
+				island.init(query, consideredMetrics, planSpace, costModel);
+				for (int individualCtr=0; individualCtr<20; ++individualCtr) {
+					Individual individual = new Individual(query, planSpace, costModel);
+					individual.grow();
+					island.population.add(individual);
+				}
+				islands.add(island);
+			}
+			IslandGA islandGA = new IslandGA(islands, 1, 2, ringTopology);
+			List<List<Individual>> elites = new ArrayList<List<Individual>>();
+			for (NSGA2 island : islands) {
+				elites.add(island.elites(2, consideredMetrics));
+			}
+			islandGA.migrate(consideredMetrics);
+			int nrImmigrants = 0;
+			for (int islandCtr=0; islandCtr<3; ++islandCtr) {
+				List<Individual> population = islands.get(islandCtr).population;
+				assertTrue(population.size() >= 20);
+				nrImmigrants += population.size() - 20;
+				for (Individual immigrant : population.subList(20, population.size())) {
+					// Immigrants are copies of elites from another island
+					boolean fromOtherIsland = false;
+					for (int sourceCtr=0; sourceCtr<3; ++sourceCtr) {
+						for (Individual elite : elites.get(sourceCtr)) {
+							assertTrue(elite != immigrant);
+							if (elite.plan == immigrant.plan && sourceCtr != islandCtr) {
+								fromOtherIsland = true;
+							}
+						}
+					}
+					assertTrue(fromOtherIsland);
+				}
+				if (ringTopology) {
+					int sourceCtr = (islandCtr + 2) % 3;
+					assertEquals(20 + elites.get(sourceCtr).size(), population.size());
+				}
+			}
+			assertEquals(elites.get(0).size() + elites.get(1).size() +
+					elites.get(2).size(), nrImmigrants);
+		}
+		// Islands produce a consistent and mutually non-dominated frontier
+		for (boolean ringTopology : new boolean[] {true, false}) {
+			IslandGA islandGA = new IslandGA(3, 20, 0.9, 2, 3, ringTopology);
+			assertEquals(3, islandGA.islands.size());
+			for (GeneticOptimizer island : islandGA.islands) {
+				assertEquals(1, ((NSGA2)island).parallelism);
+			}
+			OptimizationContext context = new OptimizationContext(200, 3, 0);
+			ParetoPlanSet result = islandGA.approximateParetoSet(query, consideredMetrics,
+					planSpace, costModel, null, 0, 0, 0, context);
+			assertFalse(result.plans.isEmpty());
+			validatePlans(result.plans, planSpace, costModel, true);
+			for (Plan plan1 : result.plans) {
+				for (Plan plan2 : result.plans) {
+					assertFalse(PruningUtil.ParetoDominates(plan1.cost, plan2.cost, consideredMetrics));
+				}
+			}
+			assertNull(islandGA.executor);
+			assertFalse(islandGA.islandsInitialized);
+		}
+		Statistics.enable();
+	}
+
+}
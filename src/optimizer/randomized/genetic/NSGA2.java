@@ -1,19 +1,25 @@
 package optimizer.randomized.genetic;
 
 import static common.Constants.*;
-import static common.RandomNumbers.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import common.OptimizationContext;
 import cost.MultiCostModel;
-import optimizer.randomized.RandomizedOptimizer;
 import plans.spaces.PlanSpace;
 import queries.Query;
+import util.MathUtil;
 import util.PruningUtil;
 
 /**
@@ -25,7 +31,7 @@ import util.PruningUtil;
  * @author immanueltrummer
  *
  */
-public class NSGA2 extends RandomizedOptimizer {
+public class NSGA2 extends GeneticOptimizer {
 	/**
 	 * The number of individuals (representing query plans) in the population.
 	 */
@@ -39,67 +45,198 @@ public class NSGA2 extends RandomizedOptimizer {
 	 */
 	double MUTATION_PROBABILITY = -1;
 	/**
-	 * Contains a set of query plans.
+	 * The number of threads used to grow new individuals.
 	 */
-	List<Individual> population;
+	final int parallelism;
+	/**
+	 * Grows new individuals in parallel during one optimizer run if several threads are used.
+	 */
+	transient ExecutorService executor;
 	
+	/**
+	 * Initializes population size and crossover probability. New individuals are grown
+	 * by the optimizer thread alone.
+	 * 
+	 * @param NR_INDIVIDUALS		the number of individuals in the population
+	 * @param CROSSOVER_PROBABILITY	the probability that two parents generate offspring by crossover
+	 */
 	public NSGA2(int NR_INDIVIDUALS, double CROSSOVER_PROBABILITY) {
+		this(NR_INDIVIDUALS, CROSSOVER_PROBABILITY, 1);
+	}
+	/**
+	 * Initializes population size, crossover probability, and the number of threads
+	 * used to grow new individuals.
+	 * 
+	 * @param NR_INDIVIDUALS		the number of individuals in the population
+	 * @param CROSSOVER_PROBABILITY	the probability that two parents generate offspring by crossover
+	 * @param parallelism			the number of threads growing new individuals
+	 */
+	public NSGA2(int NR_INDIVIDUALS, double CROSSOVER_PROBABILITY, int parallelism) {
+		assert(parallelism > 0);
 		this.NR_INDIVIDUALS = NR_INDIVIDUALS;
 		this.CROSSOVER_PROBABILITY = CROSSOVER_PROBABILITY;
+		this.parallelism = parallelism;
+	}
+	/**
+	 * Sorts the given indices in ascending order of the given keys where ties are broken
+	 * by comparing the keys at the following positions. Sorting is stable.
+	 * 
+	 * @param indices		the indices to sort (in place)
+	 * @param keys			contains for each index a vector of keys
+	 * @param keyPositions	the positions of the keys to compare, in order of priority
+	 */
+	static void sortIndices(int[] indices, double[][] keys, int[] keyPositions) {
+		int nrIndices = indices.length;
+		int[] source = indices;
+		int[] target = new int[nrIndices];
+		// Bottom-up merge sort on primitive arrays
+		for (int width=1; width<nrIndices; width*=2) {
+			for (int start=0; start<nrIndices; start+=2*width) {
+				int middle = Math.min(start + width, nrIndices);
+				int end = Math.min(start + 2*width, nrIndices);
+				int left = start;
+				int right = middle;
+				for (int targetPos=start; targetPos<end; ++targetPos) {
+					if (left < middle && (right >= end || compareKeys(
+							keys[source[left]], keys[source[right]], keyPositions) <= 0)) {
+						target[targetPos] = source[left++];
+					} else {
+						target[targetPos] = source[right++];
+					}
+				}
+			}
+			int[] tmp = source;
+			source = target;
+			target = tmp;
+		}
+		if (source != indices) {
+			System.arraycopy(source, 0, indices, 0, nrIndices);
+		}
 	}
 	/**
-	 * Performs an efficient non-dominated sorting on current population
-	 * as described in "A Fast and Elitist Multiobjective Genetic Algorithm:
-	 * NSGA II". Returns hash map partitioning individuals by rank.
+	 * Compares two key vectors lexicographically using the keys at the given positions.
+	 * 
+	 * @param keys1			the first key vector
+	 * @param keys2			the second key vector
+	 * @param keyPositions	the positions of the keys to compare, in order of priority
+	 * @return				a negative number, zero, or a positive number if the first vector
+	 * 						is smaller, equal, or greater than the second one
+	 */
+	static int compareKeys(double[] keys1, double[] keys2, int[] keyPositions) {
+		for (int keyPosition : keyPositions) {
+			int comparison = Double.compare(keys1[keyPosition], keys2[keyPosition]);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return 0;
+	}
+	/**
+	 * Performs an efficient non-dominated sorting on current population, following the
+	 * efficient non-dominated sort with binary search described by Zhang et al. in
+	 * "An efficient approach to non-dominated sorting for evolutionary multiobjective
+	 * optimization" (IEEE TEC 2015). Individuals are treated in lexicographic cost order
+	 * such that each individual can only be dominated by individuals treated before.
+	 * If an individual is dominated by some individual of one front then it is dominated
+	 * by some individual of each front with lower rank, therefore the front of each
+	 * individual is found by binary search.
+	 * Returns hash map partitioning individuals by rank.
 	 * 
 	 * @param consideredMetric	Boolean flags indicating which metrics are used
 	 * @return					A hash map mapping rank numbers to sets of individuals
 	 */
 	Map<Integer, ArrayList<Individual>> nonDominatedSort(boolean[] consideredMetric) {
-		// Maps rank to individuals with that rank
-		Map<Integer, ArrayList<Individual>> individualsByRank = 
-				new HashMap<Integer, ArrayList<Individual>>();
-		ArrayList<Individual> curRankIndividuals = new ArrayList<Individual>();
-		// Find non-dominated individuals
-		for (Individual p : population) {
-			// Initialize counters
-			p.dominatedIndividuals.clear();
-			p.nrDominating = 0;
-			// Compare cost against all other individuals
-			double[] pCost = p.cost;
-			for (Individual q : population) {
-				double[] qCost = q.cost;
-				if (PruningUtil.ParetoDominates(pCost, qCost, consideredMetric)) {
-					p.dominatedIndividuals.add(q);
-				} else if (PruningUtil.ParetoDominates(qCost, pCost, consideredMetric)) {
-					p.nrDominating += 1;
+		int nrIndividuals = population.size();
+		int[] metrics = new int[MathUtil.nrTrueValues(consideredMetric)];
+		int consideredCtr = 0;
+		for (int metricCtr=0; metricCtr<consideredMetric.length; ++metricCtr) {
+			if (consideredMetric[metricCtr]) {
+				metrics[consideredCtr++] = metricCtr;
+			}
+		}
+		// Sort individuals lexicographically by cost
+		double[][] costs = new double[nrIndividuals][];
+		int[] order = new int[nrIndividuals];
+		for (int individualCtr=0; individualCtr<nrIndividuals; ++individualCtr) {
+			costs[individualCtr] = population.get(individualCtr).cost;
+			order[individualCtr] = individualCtr;
+		}
+		sortIndices(order, costs, metrics);
+		// For at most two metrics, the last member of a front has minimal cost in the
+		// second metric and dominates each later individual dominated by that front.
+		boolean checkLastOnly = metrics.length <= 2;
+		// Contains the indices of the individuals in each front in insertion order
+		int[][] fronts = new int[1][];
+		int[] frontSizes = new int[1];
+		int nrFronts = 0;
+		for (int individualIndex : order) {
+			double[] cost = costs[individualIndex];
+			// Find first front that contains no dominating individual
+			int lowerFront = 0;
+			int upperFront = nrFronts;
+			while (lowerFront < upperFront) {
+				int front = (lowerFront + upperFront) >>> 1;
+				if (frontDominates(fronts[front], frontSizes[front], 
+						checkLastOnly, costs, cost, consideredMetric)) {
+					lowerFront = front + 1;
+				} else {
+					upperFront = front;
+				}
+			}
+			// Create new front if necessary
+			if (lowerFront == nrFronts) {
+				if (nrFronts == fronts.length) {
+					fronts = Arrays.copyOf(fronts, 2 * nrFronts);
+					frontSizes = Arrays.copyOf(frontSizes, 2 * nrFronts);
 				}
+				fronts[nrFronts] = new int[4];
+				++nrFronts;
 			}
-			// Assign first rank
-			if (p.nrDominating == 0) {
-				p.rank = 1;
-				curRankIndividuals.add(p);
+			int[] frontMembers = fronts[lowerFront];
+			if (frontSizes[lowerFront] == frontMembers.length) {
+				frontMembers = Arrays.copyOf(frontMembers, 2 * frontMembers.length);
+				fronts[lowerFront] = frontMembers;
 			}
+			frontMembers[frontSizes[lowerFront]++] = individualIndex;
 		}
-		// Assign remaining ranks
-		int i = 1;
-		while (!curRankIndividuals.isEmpty()) {
-			individualsByRank.put(i, curRankIndividuals);
-			ArrayList<Individual> Q = new ArrayList<Individual>();
-			for (Individual p : curRankIndividuals) {
-				for (Individual q : p.dominatedIndividuals) {
-					q.nrDominating -= 1;
-					if (q.nrDominating == 0) {
-						q.rank = i+1;
-						Q.add(q);
-					}
-				}
+		// Maps rank to individuals with that rank
+		Map<Integer, ArrayList<Individual>> individualsByRank = 
+				new HashMap<Integer, ArrayList<Individual>>();
+		for (int front=0; front<nrFronts; ++front) {
+			int frontSize = frontSizes[front];
+			ArrayList<Individual> curRankIndividuals = new ArrayList<Individual>(frontSize);
+			for (int memberCtr=0; memberCtr<frontSize; ++memberCtr) {
+				Individual individual = population.get(fronts[front][memberCtr]);
+				individual.rank = front + 1;
+				curRankIndividuals.add(individual);
 			}
-			i += 1;
-			curRankIndividuals = Q;
+			individualsByRank.put(front + 1, curRankIndividuals);
 		}
 		return individualsByRank;
 	}
+	/**
+	 * Checks whether some member of a front dominates the given cost vector, assuming
+	 * that all members precede the cost vector in lexicographic order. Members are
+	 * checked starting from the last inserted one.
+	 * 
+	 * @param frontMembers		indices of the individuals in the front
+	 * @param frontSize			the number of individuals in the front
+	 * @param checkLastOnly		whether only the last inserted member is checked
+	 * @param costs				the cost vectors of all individuals by index
+	 * @param cost				the cost vector to check
+	 * @param consideredMetric	Boolean flags indicating which metrics are used
+	 * @return					true iff some front member dominates the given cost
+	 */
+	static boolean frontDominates(int[] frontMembers, int frontSize, boolean checkLastOnly,
+			double[][] costs, double[] cost, boolean[] consideredMetric) {
+		int nrChecked = checkLastOnly ? 1 : frontSize;
+		for (int memberCtr=frontSize-1; memberCtr>=frontSize-nrChecked; --memberCtr) {
+			if (PruningUtil.ParetoDominates(costs[frontMembers[memberCtr]], cost, consideredMetric)) {
+				return true;
+			}
+		}
+		return false;
+	}
 	/**
 	 * Calculate crowding distance for a list of individuals. The crowding distance
 	 * is stored in the corresponding field of each individual.
@@ -109,39 +246,46 @@ public class NSGA2 extends RandomizedOptimizer {
 	 */
 	void calculateCrowdingDistance(ArrayList<Individual> individuals, 
 			boolean[] consideredMetrics) {
+		int nrIndividuals = individuals.size();
 		// Initialize crowding distance
-		for (Individual i : individuals) {
-			i.crowdingDistance = 0;
+		double[][] costs = new double[nrIndividuals][];
+		int[] order = new int[nrIndividuals];
+		for (int individualCtr=0; individualCtr<nrIndividuals; ++individualCtr) {
+			Individual individual = individuals.get(individualCtr);
+			individual.crowdingDistance = 0;
+			costs[individualCtr] = individual.cost;
+			order[individualCtr] = individualCtr;
 		}
-		int nrIndividuals = individuals.size();
-		// Calculate distance for each metric
-		for (int m=0; m<NR_COST_METRICS; ++m) {
+		// Calculate distance for each metric - individuals with equal cost keep the
+		// order they had after sorting by the previous metric.
+		for (int m=0; m<consideredMetrics.length; ++m) {
 			if (consideredMetrics[m]) {
-				Collections.sort(individuals, new IndividualCostComparator(m));
-				Individual firstIndividual = individuals.get(0);
-				Individual lastIndividual = individuals.get(nrIndividuals-1);
+				sortIndices(order, costs, new int[] {m});
+				Individual firstIndividual = individuals.get(order[0]);
+				Individual lastIndividual = individuals.get(order[nrIndividuals-1]);
 				firstIndividual.crowdingDistance = Double.POSITIVE_INFINITY;
 				lastIndividual.crowdingDistance = Double.POSITIVE_INFINITY;
 				double fMin = firstIndividual.cost[m];
 				double fMax = lastIndividual.cost[m];
 				assert(fMin <= fMax);
 				for (int i=1; i<nrIndividuals-1; ++i) {
+					Individual individual = individuals.get(order[i]);
+					double nextCost = costs[order[i+1]][m];
+					double previousCost = costs[order[i-1]][m];
 					// Add crowding distance for current cost metric
-					double newCrowdingDistance =
-							individuals.get(i).crowdingDistance +
-							(individuals.get(i+1).cost[m] - individuals.get(i-1).cost[m])/
-							(fMax-fMin);
+					double newCrowdingDistance = individual.crowdingDistance +
+							(nextCost - previousCost)/(fMax-fMin);
 					// Need to account for cases with infinite cost - set crowding distance
 					// to infinite in those cases.
 					if (Double.isNaN(newCrowdingDistance)) {
 						newCrowdingDistance = Double.POSITIVE_INFINITY;
 					}
 					// Update crowding distance
-					individuals.get(i).crowdingDistance = newCrowdingDistance;
-					assert(!Double.isNaN(individuals.get(i).crowdingDistance)) :
+					individual.crowdingDistance = newCrowdingDistance;
+					assert(!Double.isNaN(individual.crowdingDistance)) :
 						"fMax: " + fMax + "; fMin: " + fMin + 
-						"; next individual cost: " + individuals.get(i+1).cost[m] +
-						"; previous individual cost: "+ individuals.get(i-1).cost[m];
+						"; next individual cost: " + nextCost +
+						"; previous individual cost: "+ previousCost;
 				}
 			}
 		}
@@ -203,10 +347,10 @@ public class NSGA2 extends RandomizedOptimizer {
 	 */
 	Individual binaryTournamendIndividual() {
 		int curPopulationSize = population.size();
-		int individual1Index = random.nextInt(curPopulationSize);
+		int individual1Index = OptimizationContext.current().random.nextInt(curPopulationSize);
 		int individual2Index = individual1Index;
 		while (individual2Index == individual1Index) {
-			individual2Index = random.nextInt(curPopulationSize);
+			individual2Index = OptimizationContext.current().random.nextInt(curPopulationSize);
 		}
 		Individual individual1 = population.get(individual1Index);
 		Individual individual2 = population.get(individual2Index);
@@ -215,7 +359,7 @@ public class NSGA2 extends RandomizedOptimizer {
 		} else if (individual2.betterThan(individual1)) {
 			return individual2;
 		} else {
-			return random.nextBoolean() ? individual1 : individual2;
+			return OptimizationContext.current().random.nextBoolean() ? individual1 : individual2;
 		}
 	}
 	/**
@@ -232,7 +376,7 @@ public class NSGA2 extends RandomizedOptimizer {
 		for (int offspringCtr=0; offspringCtr<NR_INDIVIDUALS/2; ++offspringCtr) {
 			Individual parent1 = binaryTournamendIndividual();
 			Individual parent2 = binaryTournamendIndividual();
-			if (random.nextDouble()<=CROSSOVER_PROBABILITY) {
+			if (OptimizationContext.current().random.nextDouble()<=CROSSOVER_PROBABILITY) {
 				offspring.addAll(parent1.crossover(parent2));
 			} else {
 				Individual parent1Clone = new Individual(
@@ -251,6 +395,56 @@ public class NSGA2 extends RandomizedOptimizer {
 		}
 		return mutatedOffspring;
 	}
+	/**
+	 * Generates the query plans of the given individuals and calculates their cost. The
+	 * individuals are divided into consecutive chunks that are grown in parallel if several
+	 * threads are used. Each chunk uses a context that is split off the context of the
+	 * optimizer run, such that results only depend on the number of threads.
+	 * 
+	 * @param individuals	the individuals to grow
+	 */
+	void growAll(final List<Individual> individuals) {
+		int nrIndividuals = individuals.size();
+		int nrChunks = Math.min(parallelism, nrIndividuals);
+		if (executor == null || nrChunks <= 1) {
+			for (Individual individual : individuals) {
+				individual.grow();
+			}
+			return;
+		}
+		OptimizationContext context = OptimizationContext.current();
+		List<Callable<OptimizationContext>> chunkTasks = 
+				new ArrayList<Callable<OptimizationContext>>(nrChunks);
+		for (int chunkCtr=0; chunkCtr<nrChunks; ++chunkCtr) {
+			final int firstIndex = chunkCtr * nrIndividuals / nrChunks;
+			final int lastIndex = (chunkCtr + 1) * nrIndividuals / nrChunks;
+			final OptimizationContext chunkContext = context.split();
+			chunkTasks.add(new Callable<OptimizationContext>() {
+				@Override
+				public OptimizationContext call() {
+					OptimizationContext previousContext = chunkContext.activate();
+					try {
+						for (int index=firstIndex; index<lastIndex; ++index) {
+							individuals.get(index).grow();
+						}
+					} finally {
+						OptimizationContext.restore(previousContext);
+					}
+					return chunkContext;
+				}
+			});
+		}
+		try {
+			for (Future<OptimizationContext> chunkResult : executor.invokeAll(chunkTasks)) {
+				context.addCounters(chunkResult.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
 	/**
 	 * Clears current frontier approximation and empties population. Sets mutation
 	 * probability based on the number of genes.
@@ -261,6 +455,9 @@ public class NSGA2 extends RandomizedOptimizer {
 		population = new ArrayList<Individual>();
 		int nrGenes = query.nrTables - 1;
 		MUTATION_PROBABILITY = 1.0/nrGenes;
+		if (parallelism > 1) {
+			executor = Executors.newFixedThreadPool(parallelism);
+		}
 	}
 
 	@Override
@@ -271,9 +468,9 @@ public class NSGA2 extends RandomizedOptimizer {
 		if (population.isEmpty()) {
 			for (int individualCtr=0; individualCtr<2*NR_INDIVIDUALS; ++individualCtr) {
 				Individual newIndividual = new Individual(query, planSpace, costModel);
-				newIndividual.grow();
 				population.add(newIndividual);
 			}
+			growAll(population);
 		} else {
 			// Non-dominated sort
 			Map<Integer, ArrayList<Individual>> individualsByRank = 
@@ -282,9 +479,7 @@ public class NSGA2 extends RandomizedOptimizer {
 			List<Individual> P = fillParents(individualsByRank, consideredMetrics);
 			// Generate offspring and grow
 			List<Individual> Q = generateOffspring(P);
-			for (Individual child : Q) {
-				child.grow();
-			}
+			growAll(Q);
 			// Combine parent and offspring into population
 			population.clear();
 			population.addAll(P);
@@ -297,9 +492,30 @@ public class NSGA2 extends RandomizedOptimizer {
 		}
 	}
 
+	/**
+	 * Returns non-dominated individuals, preferring individuals with higher crowding
+	 * distance if there are more non-dominated individuals than requested.
+	 */
+	@Override
+	List<Individual> elites(int nrElites, boolean[] consideredMetrics) {
+		if (population.isEmpty()) {
+			return new ArrayList<Individual>();
+		}
+		ArrayList<Individual> nonDominated = new ArrayList<Individual>(
+				nonDominatedSort(consideredMetrics).get(1));
+		calculateCrowdingDistance(nonDominated, consideredMetrics);
+		Collections.sort(nonDominated, new IndividualRankComparator());
+		return new ArrayList<Individual>(nonDominated.subList(
+				0, Math.min(nrElites, nonDominated.size())));
+	}
+
 	@Override
 	public void cleanUp() {
 		population.clear();
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
 	}
 	
 	@Override
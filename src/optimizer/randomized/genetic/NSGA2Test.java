@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -14,10 +15,46 @@ import queries.JoinGraphType;
 import queries.JoinType;
 import queries.Query;
 import queries.QueryFactory;
+import util.PruningUtil;
 
 import org.junit.Test;
 
 public class NSGA2Test {
+	/**
+	 * Calculates the rank of each individual by repeatedly removing all individuals
+	 * that are not dominated by any remaining individual.
+	 * 
+	 * @param individuals		the individuals to rank
+	 * @param consideredMetric	Boolean flags indicating which metrics are used
+	 * @return					the rank of each individual, starting from one
+	 */
+	static int[] peelingRanks(List<Individual> individuals, boolean[] consideredMetric) {
+		int nrIndividuals = individuals.size();
+		int[] ranks = new int[nrIndividuals];
+		int nrRanked = 0;
+		for (int rank=1; nrRanked<nrIndividuals; ++rank) {
+			List<Integer> front = new ArrayList<Integer>();
+			for (int i=0; i<nrIndividuals; ++i) {
+				if (ranks[i] == 0) {
+					boolean dominated = false;
+					for (int j=0; j<nrIndividuals; ++j) {
+						if (ranks[j] == 0 && PruningUtil.ParetoDominates(individuals.get(j).cost, 
+								individuals.get(i).cost, consideredMetric)) {
+							dominated = true;
+						}
+					}
+					if (!dominated) {
+						front.add(i);
+					}
+				}
+			}
+			for (int i : front) {
+				ranks[i] = rank;
+			}
+			nrRanked += front.size();
+		}
+		return ranks;
+	}
 
 	@Test
 	public void test() {
@@ -59,6 +96,68 @@ public class NSGA2Test {
 			assertEquals(2, ga.population.get(3).rank);
 			assertEquals(3, ga.population.get(1).rank);
 		}
+		// Non-dominated sort is consistent with repeated removal of non-dominated individuals
+		{
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 6, JoinType.MN);
+			Random random = new Random(0);
+			boolean[][] metricSelections = new boolean[][] {
+				{true, false, false}, {true, false, true}, {true, true, true}};
+			for (boolean[] consideredMetric : metricSelections) {
+				for (int testCtr=0; testCtr<20; ++testCtr) {
+					NSGA2 ga = new NSGA2(100, 0.9);
+					ga.population = new ArrayList<Individual>();
+					for (int i=0; i<200; ++i) {
+						Individual individual = new Individual(query, planSpace, costModel);
+						// Few distinct cost values to obtain ties and duplicates
+						individual.cost = new double[] {random.nextInt(8), 
+								random.nextInt(8), random.nextInt(8)};
+						ga.population.add(individual);
+					}
+					Map<Integer, ArrayList<Individual>> byRank = 
+							ga.nonDominatedSort(consideredMetric);
+					int[] expectedRanks = peelingRanks(ga.population, consideredMetric);
+					int nrSorted = 0;
+					for (int i=0; i<200; ++i) {
+						Individual individual = ga.population.get(i);
+						assertEquals(expectedRanks[i], individual.rank);
+						assertTrue(byRank.get(individual.rank).contains(individual));
+					}
+					for (ArrayList<Individual> rankIndividuals : byRank.values()) {
+						nrSorted += rankIndividuals.size();
+					}
+					assertEquals(200, nrSorted);
+				}
+			}
+		}
+		// Sorting indices is stable
+		{
+			double[][] keys = new double[][] {{3, 1}, {1, 2}, {3, 0}, {1, 2}, {2, 5}};
+			int[] indices = new int[] {0, 1, 2, 3, 4};
+			NSGA2.sortIndices(indices, keys, new int[] {0});
+			assertArrayEquals(new int[] {1, 3, 4, 0, 2}, indices);
+			NSGA2.sortIndices(indices, keys, new int[] {1, 0});
+			assertArrayEquals(new int[] {2, 0, 1, 3, 4}, indices);
+		}
+		// Parallel growth yields the same individuals as sequential growth
+		{
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 8, JoinType.MN);
+			List<Individual> individuals = new ArrayList<Individual>();
+			for (int i=0; i<50; ++i) {
+				individuals.add(new Individual(query, planSpace, costModel));
+			}
+			NSGA2 ga = new NSGA2(25, 0.9, 4);
+			ga.init(query, new boolean[] {true, true, true}, planSpace, costModel);
+			ga.growAll(individuals);
+			for (Individual individual : individuals) {
+				assertNotNull(individual.plan);
+				Individual sequential = new Individual(query, planSpace, costModel, individual.genes);
+				sequential.grow();
+				assertEquals(sequential.plan.orderToString(), individual.plan.orderToString());
+				validatePlan(individual.plan, planSpace, costModel, true);
+			}
+			ga.cleanUp();
+			assertNull(ga.executor);
+		}
 		// Compare individuals based on cost
 		{
 			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 6, JoinType.MN);
@@ -5,9 +5,8 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
-import common.RandomNumbers;
+import common.OptimizationContext;
 import cost.MultiCostModel;
-import optimizer.randomized.RandomizedOptimizer;
 import plans.Plan;
 import plans.spaces.PlanSpace;
 import queries.Query;
@@ -20,11 +19,7 @@ import queries.Query;
  * @author immanueltrummer
  *
  */
-public class SoqoGA extends RandomizedOptimizer {
-	/**
-	 * The population of individuals, each individual represents one query plan.
-	 */
-	List<Individual> population;
+public class SoqoGA extends GeneticOptimizer {
 	/**
 	 * The number of individuals in the population (we use the number proposed by Steinbrunn et al.).
 	 */
@@ -49,7 +44,7 @@ public class SoqoGA extends RandomizedOptimizer {
 		// selection whose interval size is proportional to the individual's rank (the
 		// better the rank, the larger the interval).
 		int max = POPULATION_SIZE * (POPULATION_SIZE/2);
-		int rand = RandomNumbers.random.nextInt(max);
+		int rand = OptimizationContext.current().random.nextInt(max);
 		// Find out whose individual's interval we have hit
 		int sum = POPULATION_SIZE;
 		int intervalWidth = POPULATION_SIZE;
@@ -76,7 +71,7 @@ public class SoqoGA extends RandomizedOptimizer {
 		Individual parent1 = selectIndividual();
 		Individual parent2 = selectIndividual();
 		// Decide whether to copy or to use a crossover
-		if (RandomNumbers.random.nextDouble() <= CROSSOVER_RATE) {
+		if (OptimizationContext.current().random.nextDouble() <= CROSSOVER_RATE) {
 			// Add mutated offspring
 			List<Individual> offspring = parent1.crossover(parent2);
 			for (Individual singleOffspring : offspring) {
@@ -140,6 +135,15 @@ public class SoqoGA extends RandomizedOptimizer {
 			population.add(newIndividual);
 		}
 	}
+	/**
+	 * Returns the individuals with the lowest cost.
+	 */
+	@Override
+	List<Individual> elites(int nrElites, boolean[] consideredMetrics) {
+		List<Individual> elites = new ArrayList<Individual>(population);
+		Collections.sort(elites, new IndividualCostComparator(0));
+		return new ArrayList<Individual>(elites.subList(0, Math.min(nrElites, elites.size())));
+	}
 	/**
 	 * Discards current population.
 	 */
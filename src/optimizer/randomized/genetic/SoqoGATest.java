@@ -5,7 +5,9 @@ import static util.TestUtil.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import cost.MultiCostModel;
 import cost.SingleCostModel;
@@ -40,14 +42,15 @@ public class SoqoGATest {
 			SoqoGA ga = new SoqoGA();
 			ga.init(query, consideredMetrics, planSpace, costModel);
 			// Mark individuals in the population
+			Map<Individual, Integer> marks = new IdentityHashMap<Individual, Integer>();
 			for (int i=0; i<128; ++i) {
-				ga.population.get(i).nrDominating = i;
+				marks.put(ga.population.get(i), i);
 			}
 			// Execute many selections and verify that number of selections is proportional to the rank
 			int[] nrSelected = new int[128];
 			for (int i=0; i<1000000; ++i) {
 				Individual individual = ga.selectIndividual();
-				++nrSelected[individual.nrDominating];
+				++nrSelected[marks.get(individual)];
 			}
 			assertTrue(nrSelected[0] > nrSelected[127]);
 			assertTrue(nrSelected[1] > nrSelected[126]);
@@ -6,6 +6,7 @@ import plans.Plan;
 import plans.spaces.PlanSpace;
 import queries.Query;
 import util.LocalSearchUtil;
+import util.MoveEngine;
 
 /**
  * Implements a multi-objective generalization of the SAH variant of simulated annealing
@@ -69,15 +70,18 @@ public class AnnealingPhaseSAH extends Phase {
 			// The number of tries corresponds by default to the number of predicates 
 			// which is linear in the number of tables for chain and star graphs.
 			int nrTries = (query.nrTables - 1) * nrTriesScale;
+			MoveEngine moveEngine = new MoveEngine(query, currentPlan, planSpace, costModel);
 			for (int tryCtr=0; tryCtr<nrTries; ++tryCtr) {
-				Plan randomPlan = LocalSearchUtil.randomMove(
-						query, currentPlan, planSpace, costModel);
-				if (LocalSearchUtil.acceptMove(currentPlan.getCostValuesCopy(), 
-						randomPlan.getCostValuesCopy(), consideredMetrics, true, temperature)) {
+				moveEngine.randomMove();
+				Plan randomPlan = moveEngine.getPlan();
+				if (LocalSearchUtil.acceptMove(moveEngine.getPreviousCost(), 
+						randomPlan.getCostValues(), consideredMetrics, true, temperature)) {
+					moveEngine.commit();
 					currentPlan = randomPlan;
 					currentPlanReplaced = true;
 					break;
 				}
+				moveEngine.rollback();
 			}
 			if (!currentPlanReplaced) {
 				// Reduce temperature
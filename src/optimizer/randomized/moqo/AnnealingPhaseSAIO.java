@@ -5,6 +5,7 @@ import plans.Plan;
 import plans.spaces.PlanSpace;
 import queries.Query;
 import util.LocalSearchUtil;
+import util.MoveEngine;
 import util.MathUtil;
 
 /**
@@ -91,7 +92,7 @@ public class AnnealingPhaseSAIO extends Phase {
 		}
 		// Initialize temperature if necessary
 		if (temperature < 1) {
-			double avgCost = MathUtil.aggMean(currentPlan.getCostValuesCopy());
+			double avgCost = MathUtil.aggMean(currentPlan.getCostValues());
 			temperature = Math.max(initTemperatureScale * avgCost, 1);
 			nrMovesWithCurrentTemperature = 0;
 		}
@@ -102,15 +103,19 @@ public class AnnealingPhaseSAIO extends Phase {
 		}
 		// Try more random moves until either the temperature needs to be reduced
 		// or an improvement was reached.
+		// Moves are applied in place to one copy of the current plan and rolled back
+		// if they are not accepted.
+		MoveEngine moveEngine = new MoveEngine(query, currentPlan, planSpace, costModel);
 		while (nrMovesWithCurrentTemperature < chainLength) {
-			Plan randomPlan = LocalSearchUtil.randomMove(query, currentPlan, planSpace, costModel);
+			moveEngine.randomMove();
+			Plan randomPlan = moveEngine.getPlan();
 			++nrMovesWithCurrentTemperature;
-			double[] curCost = currentPlan.getCostValuesCopy();
-			double[] newCost = randomPlan.getCostValuesCopy();
-			if (LocalSearchUtil.acceptMove(
-					curCost, newCost, consideredMetrics, true, temperature)) {
+			if (LocalSearchUtil.acceptMove(moveEngine.getPreviousCost(), 
+					randomPlan.getCostValues(), consideredMetrics, true, temperature)) {
+				moveEngine.commit();
 				return randomPlan;
 			}
+			moveEngine.rollback();
 		}
 		// If we arrive here then the maximal number of moves for the current temperature
 		// has been executed.
@@ -2,6 +2,7 @@ package optimizer.randomized.moqo;
 
 import plans.Plan;
 import util.LocalSearchUtil;
+import util.MoveEngine;
 
 /**
  * Implements hill climbing to improve query plans. Either tries all possible moves to find
@@ -51,16 +52,17 @@ public class ClimbingPhase extends Phase {
 				*/
 			} else {
 				// Try a certain number of random moves to improve the plan
-				double[] curCost = currentPlan.getCostValuesCopy();
 				int nrTries = (query.nrTables - 1) * nrTriesScale;
+				MoveEngine moveEngine = new MoveEngine(query, currentPlan, planSpace, costModel);
 				for (int tryCtr=0; tryCtr<nrTries; ++tryCtr) {
-					Plan randomPlan = LocalSearchUtil.randomMove(
-							query, currentPlan, planSpace, costModel);
-					double[] newCost = randomPlan.getCostValuesCopy();
-					if (LocalSearchUtil.acceptMove(curCost, newCost,
-							consideredMetrics, false, -1)) {
+					moveEngine.randomMove();
+					Plan randomPlan = moveEngine.getPlan();
+					if (LocalSearchUtil.acceptMove(moveEngine.getPreviousCost(), 
+							randomPlan.getCostValues(), consideredMetrics, false, -1)) {
+						moveEngine.commit();
 						return randomPlan;
 					}
+					moveEngine.rollback();
 				}
 				// Current plan assumed to be local optimum - 
 				// force re-initialization by returning null pointer.
@@ -1,5 +1,6 @@
 package optimizer.randomized.moqo;
 
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import optimizer.randomized.RandomizedOptimizer;
 import plans.Plan;
@@ -35,6 +36,9 @@ public class OnePhase extends RandomizedOptimizer {
 		if (currentPlan != null) {
 			addToFrontier(query, currentPlan, consideredMetrics);
 		}
+		for (Plan plan : phase.additionalPlans()) {
+			addToFrontier(query, plan, consideredMetrics);
+		}
 	}
 
 	@Override
@@ -44,8 +48,14 @@ public class OnePhase extends RandomizedOptimizer {
 		phase.init(query, consideredMetrics, planSpace, costModel);
 	}
 
+	@Override
+	protected void finishRefinement(OptimizationContext context) {
+		phase.finish(context);
+	}
+
 	@Override
 	public void cleanUp() {
+		phase.cleanUp();
 	}
 
 	@Override
@@ -0,0 +1,196 @@
+package optimizer.randomized.moqo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import common.OptimizationContext;
+import cost.MultiCostModel;
+import optimizer.randomized.RandomizedOptimizer;
+import plans.Plan;
+import plans.spaces.PlanSpace;
+import queries.Query;
+import util.LocalSearchUtil;
+
+/**
+ * Multi-core variant of multi-start Pareto climbing. Several threads repeatedly generate
+ * random bushy plans, improve them until a local Pareto optimum is reached, and publish
+ * the resulting plans into the shared frontier approximation. The optimizer thread climbs
+ * as well and regularly measures approximation quality; the additional threads are started
+ * when a query is optimized and stopped once the time budget is exhausted. Each thread
+ * draws random numbers from its own stream that is split off the stream of the run.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class ParallelClimber extends RandomizedOptimizer {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The number of threads climbing in parallel, including the optimizer thread.
+	 */
+	final int nrThreads;
+	/**
+	 * Whether plans are improved via randomized hill climbing (as in iterative improvement)
+	 * instead of exhaustive Pareto climbing (as in the fast climber).
+	 */
+	final boolean randomizedClimbing;
+	/**
+	 * Executes the additional climbing threads of the current optimizer run.
+	 */
+	transient ExecutorService executor;
+	/**
+	 * Used to wait for the additional climbing threads of the current optimizer run.
+	 */
+	transient List<Future<?>> workerFutures;
+	/**
+	 * The contexts of the additional climbing threads of the current optimizer run.
+	 */
+	transient List<OptimizationContext> workerContexts;
+	/**
+	 * Set once the additional climbing threads should stop.
+	 */
+	volatile boolean stopped;
+	/**
+	 * Initializes the number of threads and the climbing variant.
+	 *
+	 * @param nrThreads				the number of threads climbing in parallel
+	 * @param randomizedClimbing	whether plans are improved via randomized hill climbing
+	 */
+	public ParallelClimber(int nrThreads, boolean randomizedClimbing) {
+		assert(nrThreads > 0);
+		this.nrThreads = nrThreads;
+		this.randomizedClimbing = randomizedClimbing;
+	}
+	/**
+	 * Initializes the climber to use one thread per core and Pareto climbing.
+	 */
+	public ParallelClimber() {
+		this(Runtime.getRuntime().availableProcessors(), false);
+	}
+	/**
+	 * Generates a random bushy plan and improves it until a local Pareto optimum is reached.
+	 *
+	 * @param query				the query being optimized
+	 * @param consideredMetrics	Boolean flags indicating if certain metrics are considered
+	 * @param planSpace			determines applicable scan and join operators
+	 * @param costModel			used to calculate the cost of query plans
+	 * @return					a locally Pareto-optimal plan
+	 */
+	Plan climb(Query query, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel) {
+		Plan plan = LocalSearchUtil.randomBushyPlan(query, planSpace);
+		costModel.updateAll(plan);
+		if (randomizedClimbing) {
+			return LocalSearchUtil.randomizedParetoClimb(
+					query, plan, planSpace, costModel, consideredMetrics);
+		} else {
+			return LocalSearchUtil.ParetoClimb(
+					query, plan, planSpace, costModel, consideredMetrics);
+		}
+	}
+	/**
+	 * The optimizer thread climbs from one random plan per iteration.
+	 */
+	@Override
+	protected void refineApproximation(Query query,
+			boolean[] consideredMetrics, PlanSpace planSpace,
+			MultiCostModel costModel, int algIndex, int sizeIndex,
+			int queryIndex) {
+		addToFrontier(query, climb(query, consideredMetrics,
+				planSpace, costModel), consideredMetrics);
+	}
+	/**
+	 * Starts the additional climbing threads which run until the time budget is
+	 * exhausted or until they are stopped.
+	 */
+	@Override
+	protected void init(final Query query, final boolean[] consideredMetrics,
+			final PlanSpace planSpace, final MultiCostModel costModel) {
+		stopped = false;
+		int nrWorkers = nrThreads - 1;
+		workerFutures = new ArrayList<Future<?>>(nrWorkers);
+		workerContexts = new ArrayList<OptimizationContext>(nrWorkers);
+		if (nrWorkers == 0) {
+			return;
+		}
+		OptimizationContext context = OptimizationContext.current();
+		executor = Executors.newFixedThreadPool(nrWorkers);
+		for (int workerCtr=0; workerCtr<nrWorkers; ++workerCtr) {
+			// Worker contexts are split off by the optimizer thread deterministically
+			final OptimizationContext workerContext = context.split();
+			workerContexts.add(workerContext);
+			workerFutures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					OptimizationContext previousContext = workerContext.activate();
+					try {
+						while (!stopped && System.currentTimeMillis() - startMillis <=
+								workerContext.timeoutMillis) {
+							addToFrontier(query, climb(query, consideredMetrics,
+									planSpace, costModel), consideredMetrics);
+						}
+					} finally {
+						OptimizationContext.restore(previousContext);
+					}
+				}
+			}));
+		}
+	}
+	/**
+	 * Stops the additional climbing threads, waits until they have published their
+	 * last plans, and adds their counters to the context of the optimizer run. Rethrows
+	 * the failure of a climbing thread, wrapped into a runtime exception.
+	 */
+	@Override
+	protected void finishRefinement(OptimizationContext context) {
+		stopped = true;
+		// Wait for all workers before reporting the first failure
+		Throwable failure = null;
+		for (Future<?> workerFuture : workerFutures) {
+			try {
+				workerFuture.get();
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (OptimizationContext workerContext : workerContexts) {
+			context.addCounters(workerContext);
+		}
+		if (failure != null) {
+			cleanUp();
+			throw new RuntimeException(failure);
+		}
+	}
+	/**
+	 * No algorithm-specific features.
+	 */
+	@Override
+	protected void storeSpecificStatistics(int algIndex, int sizeIndex,
+			int queryIndex) {
+	}
+	/**
+	 * Shuts down the thread pool of the last optimizer run.
+	 */
+	@Override
+	public void cleanUp() {
+		stopped = true;
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+	@Override
+	public String toString() {
+		return "ParallelClimber(" + nrThreads + ")";
+	}
+}
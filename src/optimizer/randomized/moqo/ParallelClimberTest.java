@@ -0,0 +1,96 @@
+package optimizer.randomized.moqo;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import benchmark.Statistics;
+import common.OptimizationContext;
+import cost.MultiCostModel;
+import cost.SingleCostModel;
+import cost.local.BufferCostModel;
+import cost.local.DiscCostModel;
+import cost.local.TimeCostModel;
+import plans.ParetoPlanSet;
+import plans.Plan;
+import plans.spaces.LocalPlanSpace;
+import plans.spaces.PlanSpace;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import util.PruningUtil;
+import util.TestUtil;
+
+import org.junit.Test;
+
+public class ParallelClimberTest {
+
+	@Test
+	public void test() {
+		Statistics.init(1, 1, 1, 1);
+		Statistics.disable();
+		PlanSpace planSpace = new LocalPlanSpace();
+		MultiCostModel costModel = new MultiCostModel(Arrays.asList(new SingleCostModel[] {
+				new TimeCostModel(0), new BufferCostModel(1), new DiscCostModel(2)
+		}));
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		Query query = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 8, JoinType.MN);
+		// Threads publish consistent and mutually non-dominated plans
+		for (int nrThreads : new int[] {1, 3}) {
+			for (boolean randomizedClimbing : new boolean[] {false, true}) {
+				ParallelClimber climber = new ParallelClimber(nrThreads, randomizedClimbing);
+				OptimizationContext context = new OptimizationContext(200, 3, 0);
+				ParetoPlanSet result = climber.approximateParetoSet(query, consideredMetrics,
+						planSpace, costModel, null, 0, 0, 0, context);
+				assertFalse(result.plans.isEmpty());
+				TestUtil.validatePlans(result.plans, planSpace, costModel, true);
+				for (Plan plan1 : result.plans) {
+					for (Plan plan2 : result.plans) {
+						if (plan1 != plan2) {
+							assertFalse(PruningUtil.ParetoDominates(
+									plan1.cost, plan2.cost, consideredMetrics));
+						}
+					}
+				}
+				// Threads are stopped once optimization finishes
+				assertTrue(climber.stopped);
+				assertNull(climber.executor);
+				assertEquals(nrThreads - 1, climber.workerContexts.size());
+				if (!randomizedClimbing) {
+					assertTrue(context.nrExhaustiveClimbs > 0);
+				}
+			}
+		}
+		// Failures of climbing threads are reported to the caller
+		{
+			final OptimizationContext context = new OptimizationContext(100, 3, 0);
+			final IllegalStateException failure = new IllegalStateException();
+			ParallelClimber climber = new ParallelClimber(2, false) {
+				/**
+				 * Used to verify the class version.
+				 */
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				Plan climb(Query query, boolean[] consideredMetrics,
+						PlanSpace planSpace, MultiCostModel costModel) {
+					if (OptimizationContext.current() != context) {
+						throw failure;
+					}
+					return super.climb(query, consideredMetrics, planSpace, costModel);
+				}
+			};
+			try {
+				climber.approximateParetoSet(query, consideredMetrics,
+						planSpace, costModel, null, 0, 0, 0, context);
+				fail();
+			} catch (RuntimeException e) {
+				assertTrue(e.getCause() == failure);
+			}
+			assertNull(climber.executor);
+		}
+		Statistics.enable();
+	}
+
+}
@@ -0,0 +1,359 @@
+package optimizer.randomized.moqo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import common.OptimizationContext;
+import cost.MultiCostModel;
+import plans.Plan;
+import plans.spaces.PlanSpace;
+import queries.Query;
+import util.LocalSearchUtil;
+import util.MathUtil;
+import util.MoveEngine;
+import util.PruningUtil;
+
+/**
+ * Implements parallel tempering (also called replica exchange) as a multi-objective
+ * generalization of simulated annealing. Several replicas, each one with its own current
+ * plan, execute random moves at fixed temperatures that form a geometric ladder between
+ * one (the temperature at which SAIO considers the system frozen) and a multiple of the
+ * average cost of the initial plans. The replicas execute moves in parallel threads; after
+ * each round of moves, plans are swapped between replicas with adjacent temperatures with
+ * a probability that favors moving cheap plans towards low temperatures. Instead of
+ * restarting from random plans once the system is frozen, low-temperature replicas obtain
+ * new plans from high-temperature replicas.
+ * <p>
+ * Each invocation executes one round of moves and one exchange step and returns the plan of
+ * the coldest replica. All plans accepted during the round that are not dominated by other
+ * plans accepted by the same replica are reported as additional plans. A run ends after as
+ * many rounds as SAIO needs to cool down from the highest temperature until the system is
+ * frozen, so the phase can precede other phases; the next run starts with new replicas.
+ * Each replica draws
+ * random numbers from its own stream that is split off the stream of the optimizer run,
+ * exchanges are decided by the optimizer thread.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class ParallelTemperingPhase extends Phase {
+	/**
+	 * The factor by which SAIO reduces the temperature after each stage of moves.
+	 */
+	final static double COOLING_FACTOR = 0.95;
+	/**
+	 * The number of replicas executing moves at different temperatures.
+	 */
+	final int nrReplicas;
+	/**
+	 * The default number of moves to try per replica between two exchanges is scaled up
+	 * by this factor.
+	 */
+	final int nrTriesScale;
+	/**
+	 * The highest temperature is set by scaling the average cost of the initial plans by
+	 * that factor.
+	 */
+	final double maxTemperatureScale;
+	/**
+	 * The temperature of each replica, ordered from the coldest to the hottest replica.
+	 */
+	double[] temperatures;
+	/**
+	 * The current plan of each replica, ordered as the temperatures.
+	 */
+	Plan[] replicaPlans;
+	/**
+	 * The number of moves that each replica tries between two exchanges.
+	 */
+	int nrMovesPerRound = -1;
+	/**
+	 * The number of rounds after which the current run ends.
+	 */
+	int nrRoundsPerRun = -1;
+	/**
+	 * The number of rounds executed in the current run.
+	 */
+	int nrRoundsInRun = 0;
+	/**
+	 * The number of exchange steps executed for the current query - pairs of replicas
+	 * starting with an even index are considered at even steps and the other pairs at
+	 * odd steps.
+	 */
+	long nrExchangeSteps = 0;
+	/**
+	 * The number of plan swaps between replicas for the current query.
+	 */
+	long nrSwaps = 0;
+	/**
+	 * Plans accepted during the last round that were not dominated by other plans
+	 * accepted by the same replica.
+	 */
+	List<Plan> acceptedPlans = new ArrayList<Plan>();
+	/**
+	 * The context of each replica during the current optimizer run.
+	 */
+	List<OptimizationContext> replicaContexts;
+	/**
+	 * Executes the moves of the replicas in parallel during one optimizer run.
+	 */
+	ExecutorService executor;
+	/**
+	 * Initializes the number of replicas and the move and temperature settings.
+	 *
+	 * @param nrReplicas			the number of replicas at different temperatures
+	 * @param nrTriesScale			the default number of moves per replica and round is
+	 * 								scaled by this factor
+	 * @param maxTemperatureScale	multiply average initial plan cost by that factor to
+	 * 								get the highest temperature
+	 */
+	public ParallelTemperingPhase(int nrReplicas, int nrTriesScale, double maxTemperatureScale) {
+		assert(nrReplicas >= 2);
+		assert(nrTriesScale > 0);
+		this.nrReplicas = nrReplicas;
+		this.nrTriesScale = nrTriesScale;
+		this.maxTemperatureScale = maxTemperatureScale;
+	}
+	/**
+	 * Initializes the phase to use one replica per core and the default temperature
+	 * scale of SAIO.
+	 *
+	 * @param nrTriesScale	the default number of moves per replica and round is
+	 * 						scaled by this factor
+	 */
+	public ParallelTemperingPhase(int nrTriesScale) {
+		this(Math.max(2, Runtime.getRuntime().availableProcessors()), nrTriesScale, 2.0);
+	}
+	/**
+	 * Calculates the number of moves per round, creates one context per replica,
+	 * and starts the thread pool.
+	 */
+	@Override
+	public void init(Query query, boolean[] consideredMetrics,
+			PlanSpace planSpace, MultiCostModel costModel) {
+		super.init(query, consideredMetrics, planSpace, costModel);
+		cleanUp();
+		int nrJoins = query.nrTables - 1;
+		nrMovesPerRound = Math.max(1, nrJoins * nrTriesScale);
+		temperatures = null;
+		replicaPlans = null;
+		nrRoundsInRun = 0;
+		nrExchangeSteps = 0;
+		nrSwaps = 0;
+		acceptedPlans = new ArrayList<Plan>();
+		// Replica contexts are split off by the optimizer thread deterministically
+		OptimizationContext context = OptimizationContext.current();
+		replicaContexts = new ArrayList<OptimizationContext>(nrReplicas);
+		for (int replicaCtr=0; replicaCtr<nrReplicas; ++replicaCtr) {
+			replicaContexts.add(context.split());
+		}
+		executor = Executors.newFixedThreadPool(nrReplicas);
+	}
+	/**
+	 * Initializes the replica plans, the temperature ladder, and the round budget of the
+	 * new run. All replicas start from the given plan if it is not null and from different
+	 * random plans otherwise.
+	 *
+	 * @param startPlan	the plan generated by the last phase or null
+	 */
+	void initReplicas(Plan startPlan) {
+		replicaPlans = new Plan[nrReplicas];
+		double accAvgCost = 0;
+		for (int replicaCtr=0; replicaCtr<nrReplicas; ++replicaCtr) {
+			Plan plan = startPlan;
+			if (plan == null) {
+				plan = LocalSearchUtil.randomBushyPlan(query, planSpace);
+				costModel.updateAll(plan);
+			}
+			replicaPlans[replicaCtr] = plan;
+			accAvgCost += MathUtil.aggMean(plan.getCostValues());
+		}
+		// Temperatures grow geometrically from one to the highest temperature
+		double maxTemperature = Math.max(maxTemperatureScale * accAvgCost / nrReplicas, 1);
+		temperatures = new double[nrReplicas];
+		for (int replicaCtr=0; replicaCtr<nrReplicas; ++replicaCtr) {
+			temperatures[replicaCtr] = Math.pow(maxTemperature,
+					(double)replicaCtr / (nrReplicas - 1));
+		}
+		// SAIO cools from the highest temperature below one within that many stages
+		nrRoundsPerRun = Math.max(1, (int)Math.ceil(
+				Math.log(maxTemperature) / -Math.log(COOLING_FACTOR)));
+		nrRoundsInRun = 0;
+	}
+	/**
+	 * Tries a fixed number of random moves from the current plan of one replica and
+	 * collects the accepted plans that are not dominated by each other.
+	 *
+	 * @param replicaCtr	the index of the replica
+	 * @return				copies of non-dominated accepted plans
+	 */
+	List<Plan> executeMoves(int replicaCtr) {
+		double temperature = temperatures[replicaCtr];
+		List<Plan> replicaAccepted = new ArrayList<Plan>();
+		MoveEngine moveEngine = new MoveEngine(
+				query, replicaPlans[replicaCtr], planSpace, costModel);
+		for (int moveCtr=0; moveCtr<nrMovesPerRound; ++moveCtr) {
+			moveEngine.randomMove();
+			Plan randomPlan = moveEngine.getPlan();
+			if (LocalSearchUtil.acceptMove(moveEngine.getPreviousCost(),
+					randomPlan.getCostValues(), consideredMetrics, true, temperature)) {
+				moveEngine.commit();
+				// Copy accepted plan only if it is not dominated
+				if (!dominated(replicaAccepted, randomPlan.getCostValues())) {
+					PruningUtil.pruneCostBased(replicaAccepted,
+							randomPlan.deepMutableCopy(), consideredMetrics);
+				}
+			} else {
+				moveEngine.rollback();
+			}
+		}
+		// The plan of the move engine is not changed after the last move
+		replicaPlans[replicaCtr] = moveEngine.getPlan();
+		return replicaAccepted;
+	}
+	/**
+	 * Checks whether the given cost vector is weakly dominated by the cost of one of the
+	 * given plans.
+	 *
+	 * @param plans	a list of plans
+	 * @param cost	a cost vector
+	 * @return		true if one of the plans has lower or equivalent cost
+	 */
+	boolean dominated(List<Plan> plans, double[] cost) {
+		for (Plan plan : plans) {
+			if (PruningUtil.approximatelyDominates(
+					plan.getCostValues(), cost, 1, consideredMetrics)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	/**
+	 * Calculates the energy of a plan that decides whether it is swapped between
+	 * temperatures: the average over the considered cost metrics.
+	 *
+	 * @param plan	a query plan whose cost was calculated
+	 * @return		the average cost value over considered metrics
+	 */
+	double energy(Plan plan) {
+		double[] cost = plan.getCostValues();
+		int nrMetrics = cost.length;
+		double accCost = 0;
+		int nrConsidered = 0;
+		for (int metricCtr=0; metricCtr<nrMetrics; ++metricCtr) {
+			if (consideredMetrics[metricCtr]) {
+				accCost += cost[metricCtr];
+				++nrConsidered;
+			}
+		}
+		return nrConsidered == 0 ? 0 : accCost / nrConsidered;
+	}
+	/**
+	 * Considers swapping the plans of adjacent replicas. Pairs starting at even and odd
+	 * indices are considered alternately. A swap is accepted with probability one if the
+	 * hotter replica has a plan with lower energy and with a probability that decreases
+	 * exponentially in the energy difference otherwise.
+	 */
+	void exchangePlans() {
+		int firstReplica = (int)(nrExchangeSteps % 2);
+		for (int replicaCtr=firstReplica; replicaCtr+1<nrReplicas; replicaCtr+=2) {
+			double coldEnergy = energy(replicaPlans[replicaCtr]);
+			double hotEnergy = energy(replicaPlans[replicaCtr+1]);
+			double exponent = (1.0/temperatures[replicaCtr] -
+					1.0/temperatures[replicaCtr+1]) * (coldEnergy - hotEnergy);
+			if (exponent >= 0 || OptimizationContext.current().random.nextDouble() <=
+					Math.exp(exponent)) {
+				Plan coldPlan = replicaPlans[replicaCtr];
+				replicaPlans[replicaCtr] = replicaPlans[replicaCtr+1];
+				replicaPlans[replicaCtr+1] = coldPlan;
+				++nrSwaps;
+			}
+		}
+		++nrExchangeSteps;
+	}
+	/**
+	 * Initializes the replicas at the first invocation of a run, using the given plan if it
+	 * is not null. Then executes one round of moves on all replicas in parallel, exchanges
+	 * plans between adjacent temperatures, and returns the plan of the coldest replica. Later
+	 * invocations of the same run continue from the replica plans and ignore the given plan.
+	 * Once the round budget of the run is exhausted, the run ends and null is returned.
+	 */
+	@Override
+	public Plan nextPlan(Plan currentPlan) {
+		assert(nrMovesPerRound > 0);
+		if (replicaPlans != null && nrRoundsInRun >= nrRoundsPerRun) {
+			replicaPlans = null;
+			acceptedPlans = new ArrayList<Plan>();
+			return null;
+		}
+		if (replicaPlans == null) {
+			initReplicas(currentPlan);
+		}
+		List<Callable<List<Plan>>> replicaTasks =
+				new ArrayList<Callable<List<Plan>>>(nrReplicas);
+		for (int replicaCtr=0; replicaCtr<nrReplicas; ++replicaCtr) {
+			final int replicaIndex = replicaCtr;
+			final OptimizationContext replicaContext = replicaContexts.get(replicaCtr);
+			replicaTasks.add(new Callable<List<Plan>>() {
+				@Override
+				public List<Plan> call() {
+					OptimizationContext previousContext = replicaContext.activate();
+					try {
+						return executeMoves(replicaIndex);
+					} finally {
+						OptimizationContext.restore(previousContext);
+					}
+				}
+			});
+		}
+		acceptedPlans = new ArrayList<Plan>();
+		try {
+			for (Future<List<Plan>> replicaResult : executor.invokeAll(replicaTasks)) {
+				acceptedPlans.addAll(replicaResult.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		exchangePlans();
+		++nrRoundsInRun;
+		return replicaPlans[0];
+	}
+	/**
+	 * Returns the plans accepted by the replicas during the last round.
+	 */
+	@Override
+	public List<Plan> additionalPlans() {
+		return acceptedPlans;
+	}
+	/**
+	 * Adds the counters of all replicas to the context of the optimizer run.
+	 */
+	@Override
+	public void finish(OptimizationContext context) {
+		for (OptimizationContext replicaContext : replicaContexts) {
+			context.addCounters(replicaContext);
+		}
+	}
+	/**
+	 * Shuts down the thread pool of the last optimizer run.
+	 */
+	@Override
+	public void cleanUp() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+	@Override
+	public String toString() {
+		return "PT(" + nrReplicas + ")";
+	}
+}
@@ -0,0 +1,139 @@
+package optimizer.randomized.moqo;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import benchmark.Statistics;
+import common.OptimizationContext;
+import cost.MultiCostModel;
+import cost.SingleCostModel;
+import cost.local.BufferCostModel;
+import cost.local.DiscCostModel;
+import cost.local.TimeCostModel;
+import optimizer.randomized.RandomizedOptimizer;
+import plans.ParetoPlanSet;
+import plans.Plan;
+import plans.spaces.LocalPlanSpace;
+import plans.spaces.PlanSpace;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+import util.PruningUtil;
+import util.TestUtil;
+
+import org.junit.Test;
+
+public class ParallelTemperingPhaseTest {
+
+	@Test
+	public void test() {
+		Statistics.init(1, 1, 1, 1);
+		Statistics.disable();
+		PlanSpace planSpace = new LocalPlanSpace();
+		MultiCostModel costModel = new MultiCostModel(Arrays.asList(new SingleCostModel[] {
+				new TimeCostModel(0), new BufferCostModel(1), new DiscCostModel(2)
+		}));
+		boolean[] consideredMetrics = new boolean[] {true, true, true};
+		Query query = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 8, JoinType.MN);
+		// Temperatures form a geometric ladder starting at one
+		{
+			ParallelTemperingPhase phase = new ParallelTemperingPhase(4, 1, 2.0);
+			OptimizationContext context = new OptimizationContext(200, 3, 0);
+			OptimizationContext previousContext = context.activate();
+			phase.init(query, consideredMetrics, planSpace, costModel);
+			Plan plan = phase.nextPlan(null);
+			OptimizationContext.restore(previousContext);
+			phase.cleanUp();
+			assertNotNull(plan);
+			assertEquals(1, phase.temperatures[0], 1E-9);
+			double ratio = phase.temperatures[1] / phase.temperatures[0];
+			for (int replicaCtr=1; replicaCtr<4; ++replicaCtr) {
+				assertTrue(phase.temperatures[replicaCtr] >= phase.temperatures[replicaCtr-1]);
+				assertEquals(ratio, phase.temperatures[replicaCtr] /
+						phase.temperatures[replicaCtr-1], 1E-6);
+			}
+			assertEquals(1, phase.nrExchangeSteps);
+			assertSame(phase.replicaPlans[0], plan);
+			TestUtil.validatePlan(plan, planSpace, costModel, true);
+			TestUtil.validatePlans(phase.additionalPlans(), planSpace, costModel, true);
+		}
+		Query smallQuery = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, 4, JoinType.MN);
+		// Runs end once SAIO would have cooled down from the highest temperature
+		{
+			ParallelTemperingPhase phase = new ParallelTemperingPhase(2, 1, 2.0);
+			OptimizationContext context = new OptimizationContext(200, 3, 0);
+			OptimizationContext previousContext = context.activate();
+			phase.init(smallQuery, consideredMetrics, planSpace, costModel);
+			assertNotNull(phase.nextPlan(null));
+			double maxTemperature = phase.temperatures[1];
+			assertTrue(Math.pow(0.95, phase.nrRoundsPerRun) * maxTemperature < 1);
+			assertTrue(Math.pow(0.95, phase.nrRoundsPerRun - 1) * maxTemperature >= 1);
+			for (int roundCtr=1; roundCtr<phase.nrRoundsPerRun; ++roundCtr) {
+				assertNotNull(phase.nextPlan(null));
+			}
+			assertNull(phase.nextPlan(null));
+			assertTrue(phase.additionalPlans().isEmpty());
+			assertNotNull(phase.nextPlan(null));
+			assertEquals(1, phase.nrRoundsInRun);
+			OptimizationContext.restore(previousContext);
+			phase.cleanUp();
+		}
+		// Swaps move cheaper plans towards the colder replica
+		{
+			ParallelTemperingPhase phase = new ParallelTemperingPhase(2, 1, 2.0);
+			phase.init(query, consideredMetrics, planSpace, costModel);
+			phase.cleanUp();
+			phase.initReplicas(null);
+			phase.temperatures[1] = 1E9;
+			Plan coldPlan = phase.replicaPlans[0];
+			Plan hotPlan = phase.replicaPlans[1];
+			boolean hotPlanCheaper = phase.energy(hotPlan) < phase.energy(coldPlan);
+			phase.exchangePlans();
+			assertSame(hotPlanCheaper ? hotPlan : coldPlan, phase.replicaPlans[0]);
+			assertSame(hotPlanCheaper ? coldPlan : hotPlan, phase.replicaPlans[1]);
+			assertEquals(hotPlanCheaper ? 1 : 0, phase.nrSwaps);
+		}
+		// Replicas publish consistent and mutually non-dominated plans
+		for (int nrReplicas : new int[] {2, 3}) {
+			for (boolean twoPhases : new boolean[] {false, true}) {
+				ParallelTemperingPhase phase = new ParallelTemperingPhase(nrReplicas, 1, 2.0);
+				RandomizedOptimizer optimizer = twoPhases ?
+						new TwoPhase(2, new ClimbingPhase(false, -1), phase) :
+							new OnePhase(phase);
+				OptimizationContext context = new OptimizationContext(200, 3, 0);
+				ParetoPlanSet result = optimizer.approximateParetoSet(query, consideredMetrics,
+						planSpace, costModel, null, 0, 0, 0, context);
+				assertFalse(result.plans.isEmpty());
+				TestUtil.validatePlans(result.plans, planSpace, costModel, true);
+				for (Plan plan1 : result.plans) {
+					for (Plan plan2 : result.plans) {
+						if (plan1 != plan2) {
+							assertFalse(PruningUtil.ParetoDominates(
+									plan1.cost, plan2.cost, consideredMetrics));
+						}
+					}
+				}
+				// Threads are stopped once optimization finishes
+				assertNull(phase.executor);
+				assertEquals(nrReplicas, phase.replicaContexts.size());
+				if (!twoPhases) {
+					assertTrue(phase.nrExchangeSteps > 0);
+				}
+			}
+		}
+		// Parallel tempering as first phase hands over to the second phase
+		{
+			TwoPhase optimizer = new TwoPhase(1, new ParallelTemperingPhase(2, 1, 2.0),
+					new ClimbingPhase(false, -1));
+			OptimizationContext context = new OptimizationContext(1500, 3, 0);
+			ParetoPlanSet result = optimizer.approximateParetoSet(smallQuery, consideredMetrics,
+					planSpace, costModel, null, 0, 0, 0, context);
+			assertFalse(result.plans.isEmpty());
+			assertEquals(1, optimizer.phase1RunCtr);
+		}
+		Statistics.enable();
+	}
+
+}
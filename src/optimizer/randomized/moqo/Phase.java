@@ -1,5 +1,9 @@
 package optimizer.randomized.moqo;
 
+import java.util.Collections;
+import java.util.List;
+
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import plans.Plan;
 import plans.spaces.PlanSpace;
@@ -10,7 +14,8 @@ import queries.Query;
  * might have several phases that are executed consecutively. Each phases is initialized once
  * per query and invoked until a public flag indicates that the phase is terminated. While
  * executing, each phase generates a series of query plans and obtains the last generated
- * plan as input parameter.
+ * plan as input parameter. Phases that explore several plans per invocation can report
+ * additional plans which are inserted into the frontier approximation as well.
  * 
  * @author immanueltrummer
  *
@@ -29,4 +34,29 @@ public abstract class Phase {
 		this.costModel = costModel;
 	}
 	public abstract Plan nextPlan(Plan currentPlan);
+	/**
+	 * Returns plans generated during the last invocation of <code>nextPlan</code> that
+	 * should be considered for the frontier approximation in addition to its result.
+	 * The returned plans are not changed by later invocations. By default, no additional
+	 * plans are generated.
+	 * 
+	 * @return	additional plans from the last invocation
+	 */
+	public List<Plan> additionalPlans() {
+		return Collections.emptyList();
+	}
+	/**
+	 * Called once the time budget is exhausted. Phases using additional threads add
+	 * their counters to the given context. Does nothing by default.
+	 * 
+	 * @param context	the context of the optimizer run
+	 */
+	public void finish(OptimizationContext context) {
+	}
+	/**
+	 * Releases resources held by the phase after a query was optimized.
+	 * Does nothing by default.
+	 */
+	public void cleanUp() {
+	}
 }
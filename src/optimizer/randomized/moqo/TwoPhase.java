@@ -1,5 +1,6 @@
 package optimizer.randomized.moqo;
 
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import optimizer.randomized.RandomizedOptimizer;
 import plans.Plan;
@@ -50,8 +51,10 @@ public class TwoPhase extends RandomizedOptimizer {
 			MultiCostModel costModel, 
 			int algIndex, int sizeIndex, int queryIndex) {
 		// Execute either phase 1 or phase 2 depending on run counter
+		Phase executedPhase;
 		if (phase1RunCtr<nrRunsPhase1) {
 			// Execute first phase step
+			executedPhase = phase1;
 			currentPlan = phase1.nextPlan(currentPlan);
 			// A run ends once the returned plan is null, 
 			// meaning that no improvements were possible.
@@ -64,12 +67,17 @@ public class TwoPhase extends RandomizedOptimizer {
 			}
 		} else {
 			// Execute second phase step
+			executedPhase = phase2;
 			currentPlan = phase2.nextPlan(currentPlan);
 		}
 		// Add plan to frontier if it is not null
 		if (currentPlan != null) {
 			addToFrontier(query, currentPlan, consideredMetrics);
 		}
+		// Add further plans generated by the executed phase
+		for (Plan plan : executedPhase.additionalPlans()) {
+			addToFrontier(query, plan, consideredMetrics);
+		}
 	}
 
 	@Override
@@ -81,8 +89,16 @@ public class TwoPhase extends RandomizedOptimizer {
 		currentPlan = null;
 	}
 
+	@Override
+	protected void finishRefinement(OptimizationContext context) {
+		phase1.finish(context);
+		phase2.finish(context);
+	}
+
 	@Override
 	public void cleanUp() {
+		phase1.cleanUp();
+		phase2.cleanUp();
 	}
 	
 	@Override
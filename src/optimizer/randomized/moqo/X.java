@@ -6,9 +6,9 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import benchmark.Statistics;
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import optimizer.randomized.RandomizedOptimizer;
 import plans.JoinPlan;
@@ -20,9 +20,11 @@ import plans.spaces.PlanSpace;
 import queries.Query;
 import relations.Relation;
 import relations.RelationFactory;
+import relations.RelationMap;
 import util.LocalSearchUtil;
 import util.ParetoUtil;
 import util.PruningUtil;
+import util.TableSetUtil;
 
 /**
  * Novel randomized algorithm for MOQO. This algorithm combines local search, typically
@@ -44,7 +46,16 @@ public class X extends RandomizedOptimizer {
 	 * plans. Also, each relation contains statistics that guides the selection of the next
 	 * relation to sample a partial plan for.
 	 */
-	Map<BitSet, Relation> relations = new HashMap<BitSet, Relation>();
+	RelationMap relations = new RelationMap();
+	/**
+	 * Maps table index sets to corresponding relations for queries whose table sets cannot
+	 * be represented by two words (replaces the relation map for such queries).
+	 */
+	Map<BitSet, Relation> wideRelations = new HashMap<BitSet, Relation>();
+	/**
+	 * Whether the current query has more tables than the relation map supports.
+	 */
+	boolean wideQuery;
 	/**
 	 * Indices of all query tables.
 	 */
@@ -149,6 +160,8 @@ public class X extends RandomizedOptimizer {
 		nrRefinements = 0;
 		// Clear current relations
 		relations.clear();
+		wideRelations.clear();
+		wideQuery = query.nrTables > TableSetUtil.MAX_TABLES;
 		// Store indices of all query tables as set
 		int nrTables = query.nrTables;
 		allTableIndices = new BitSet();
@@ -183,12 +196,24 @@ public class X extends RandomizedOptimizer {
 	 */
 	Relation getSingleTableRel(Query query, int tableIndex, 
 			int algIndex, int sizeIndex, int queryIndex) {
-		BitSet singleTableIndices = new BitSet();
-		singleTableIndices.set(tableIndex);
-		Relation rel = relations.get(singleTableIndices);
+		if (wideQuery) {
+			BitSet singleTableIndices = new BitSet();
+			singleTableIndices.set(tableIndex);
+			Relation rel = wideRelations.get(singleTableIndices);
+			if (rel == null) {
+				rel = RelationFactory.createSingleTableRel(query, tableIndex);
+				wideRelations.put(singleTableIndices, rel);
+				countIntermediateResultCreation(algIndex, sizeIndex, queryIndex);
+			}
+			return rel;
+		}
+		boolean inLowWord = tableIndex < TableSetUtil.WORD_SIZE;
+		long lowWord = inLowWord ? 1L << tableIndex : 0;
+		long highWord = inLowWord ? 0 : 1L << (tableIndex - TableSetUtil.WORD_SIZE);
+		Relation rel = relations.get(lowWord, highWord);
 		if (rel == null) {
 			rel = RelationFactory.createSingleTableRel(query, tableIndex);
-			relations.put(singleTableIndices, rel);
+			relations.put(rel);
 			countIntermediateResultCreation(algIndex, sizeIndex, queryIndex);
 		}
 		return rel;
@@ -207,13 +232,23 @@ public class X extends RandomizedOptimizer {
 	 */
 	Relation getJoinRel(Query query, Relation leftRel, 
 			Relation rightRel, int algIndex, int sizeIndex, int queryIndex) {
-		BitSet joinTableIndices = new BitSet();
-		joinTableIndices.or(leftRel.tableSet);
-		joinTableIndices.or(rightRel.tableSet);
-		Relation rel = relations.get(joinTableIndices);
+		if (wideQuery) {
+			BitSet joinTableIndices = new BitSet();
+			joinTableIndices.or(leftRel.tableSet);
+			joinTableIndices.or(rightRel.tableSet);
+			Relation rel = wideRelations.get(joinTableIndices);
+			if (rel == null) {
+				rel = RelationFactory.createJoinRel(query, leftRel, rightRel);
+				wideRelations.put(joinTableIndices, rel);
+				countIntermediateResultCreation(algIndex, sizeIndex, queryIndex);
+			}
+			return rel;
+		}
+		Relation rel = relations.get(leftRel.lowTableBits | rightRel.lowTableBits, 
+				leftRel.highTableBits | rightRel.highTableBits);
 		if (rel == null) {
 			rel = RelationFactory.createJoinRel(query, leftRel, rightRel);
-			relations.put(joinTableIndices, rel);
+			relations.put(rel);
 			countIntermediateResultCreation(algIndex, sizeIndex, queryIndex);
 		}
 		return rel;
@@ -231,13 +266,14 @@ public class X extends RandomizedOptimizer {
 	 */
 	Plan randomJoinOrder(Query query, PlanSpace planSpace,  
 			MultiCostModel costModel, int algIndex, int sizeIndex) {
+		OptimizationContext context = OptimizationContext.current();
 		int nrTables = query.nrTables;
 		// Iterate over table indices and create scan plans
 		List<Plan> partialPlans = new LinkedList<Plan>();
 		for (int tableIndex = 0; tableIndex<nrTables; ++tableIndex) {
 			ScanOperator scanOperator = planSpace.defaultScanOperator;
-			Plan scanPlan = new ScanPlan(query, tableIndex, scanOperator);
-			costModel.updateRoot(scanPlan);
+			Plan scanPlan = new ScanPlan(query, tableIndex, scanOperator, context);
+			costModel.updateRoot(scanPlan, context);
 			partialPlans.add(scanPlan);
 		}
 		// Combine partial plans until we obtain a complete plan.
@@ -245,8 +281,8 @@ public class X extends RandomizedOptimizer {
 			Plan leftPlan = LocalSearchUtil.popRandomPlan(partialPlans);
 			Plan rightPlan = LocalSearchUtil.popRandomPlan(partialPlans);
 			JoinOperator joinOperator = planSpace.defaultJoinOperator;
-			Plan joinPlan = new JoinPlan(query, leftPlan, rightPlan, joinOperator);
-			costModel.updateRoot(joinPlan);
+			Plan joinPlan = new JoinPlan(query, leftPlan, rightPlan, joinOperator, context);
+			costModel.updateRoot(joinPlan, context);
 			partialPlans.add(joinPlan);
 		}
 		return partialPlans.get(0);
@@ -321,11 +357,12 @@ public class X extends RandomizedOptimizer {
 	 */
 	void operatorSkyline(Query query, Plan plan, PlanSpace planSpace, 
 			MultiCostModel costModel, boolean[] consideredMetric, double alpha) {
+		OptimizationContext context = OptimizationContext.current();
 		Relation resultRel = plan.resultRel;
 		if (plan instanceof ScanPlan) {
 			for (ScanOperator scanOperator : planSpace.scanOperatorsShuffled(resultRel)) {
-				Plan newPlan = new ScanPlan(resultRel, scanOperator);
-				costModel.updateRoot(newPlan);
+				Plan newPlan = new ScanPlan(resultRel, scanOperator, context);
+				costModel.updateRoot(newPlan, context);
 				PruningUtil.prune(query, resultRel, newPlan, alpha, consideredMetric, false);
 			}
 		} else {
@@ -342,8 +379,8 @@ public class X extends RandomizedOptimizer {
 					for (JoinOperator joinOperator : 
 						planSpace.joinOperatorsShuffled(leftPlan, rightPlan)) {
 						Plan newPlan = new JoinPlan(leftRel, rightRel, resultRel, 
-								leftPlan, rightPlan, joinOperator);
-						costModel.updateRoot(newPlan);
+								leftPlan, rightPlan, joinOperator, context);
+						costModel.updateRoot(newPlan, context);
 						PruningUtil.prune(query, resultRel, newPlan, alpha, consideredMetric, false);
 					}
 				}
@@ -429,12 +466,16 @@ public class X extends RandomizedOptimizer {
 	 * that they produce).
 	 */
 	public void cleanUp() {
-		for (Entry<BitSet, Relation> entry : relations.entrySet()) {
-			Relation rel = entry.getValue();
+		for (Relation rel : relations.values()) {
 			if (rel.ParetoPlans != null) {
 				rel.ParetoPlans.clear();				
 			}
 		}
+		for (Relation rel : wideRelations.values()) {
+			if (rel.ParetoPlans != null) {
+				rel.ParetoPlans.clear();
+			}
+		}
 	}
 	
 	@Override
@@ -13,6 +13,7 @@ import org.jgap.impl.DefaultConfiguration;
 import org.jgap.impl.IntegerGene;
 
 import common.Constants;
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import optimizer.Optimizer;
 import plans.ParetoPlanSet;
@@ -42,10 +43,10 @@ public class JGAPsoqoGA extends Optimizer {
 	}
 	
 	@Override
-	public ParetoPlanSet approximateParetoSet(Query query,
+	protected ParetoPlanSet optimize(Query query,
 			boolean[] consideredMetrics, PlanSpace planSpace,
 			MultiCostModel costModel, ParetoPlanSet refPlanSet, int algIndex,
-			int sizeIndex, int queryIndex) {
+			int sizeIndex, int queryIndex, OptimizationContext context) {
 		try {
 			// Configure genetic algorithm
 			Configuration.reset();
@@ -69,7 +70,7 @@ public class JGAPsoqoGA extends Optimizer {
 			Genotype population = Genotype.randomInitialGenotype(gaConfiguration);
 			// Obtain timing parameters for this run
 			int nrPeriods = Constants.NR_TIME_PERIODS;
-			long periodMillis = Constants.TIME_PERIOD_MILLIS;
+			long periodMillis = context.timePeriodMillis();
 			// Evolve
 			IChromosome bestChromosome = null;
 			Plan bestPlan = null;
@@ -0,0 +1,451 @@
+package plans;
+
+import static common.Constants.*;
+
+import java.util.Arrays;
+
+/**
+ * A frontier of (near-)Pareto-optimal plans producing the same relation that accelerates
+ * approximate pruning by logarithmic grids over the cost space. Grid cells are hypercubes
+ * in the logarithmic cost space: for each considered cost metric, a cost value c falls into
+ * the cell with index floor(log(c) / w) for cell width w. The finest grid uses cells of
+ * width log(alpha), alpha being the approximation factor: a stored plan in the same cell as
+ * a new plan, or in a cell that is lower by one for some metrics, approximately dominates
+ * the new plan. Approximately dominating plans often lie far away in the cost space,
+ * however. The cell width therefore doubles from one grid level to the next. For each
+ * level, a stored plan in the cell that is lower by one for each metric than the cell of a
+ * new plan dominates the new plan. The frontier keeps a hash table counting the stored
+ * plans per grid cell on each level, such that searching dominating plans in those cells
+ * requires a number of hash table lookups that does not depend on the number of stored
+ * plans.
+ *
+ * The frontier also remembers the stored plan that was last found to approximately dominate
+ * a new plan: during dynamic programming, few cheap plans tend to dominate most new plans for
+ * the same relation. Only if no dominating plan is found that way, all stored plans are
+ * compared column-wise. Pruning decisions are therefore the same as for pruning with
+ * linear scans and the same approximation guarantees hold. Plans that are inserted into
+ * the frontier still require a linear scan to remove plans they dominate.
+ *
+ * Pruning with a different approximation factor or different considered metrics than the
+ * ones the grids were built for falls back to the linear scans of the super class.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class GridFrontier extends ParetoFrontier {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Grids are only built for frontiers with at least that many plans - smaller frontiers
+	 * are scanned faster than grid cells are calculated and require less memory.
+	 */
+	public final static int MIN_GRID_SIZE = 256;
+	/**
+	 * The cell width on the coarsest grid level is at least that large (in the
+	 * logarithmic cost space).
+	 */
+	final static double MAX_CELL_WIDTH = 64;
+	/**
+	 * Cell index for costs of zero.
+	 */
+	final static long MIN_CELL = Long.MIN_VALUE / 2;
+	/**
+	 * Cell index for infinite costs.
+	 */
+	final static long MAX_CELL = Long.MAX_VALUE / 2;
+	/**
+	 * The approximation factor determining the cell width on the finest grid level.
+	 */
+	final double alpha;
+	/**
+	 * Boolean flags indicating which cost metrics the grids were built for.
+	 */
+	final boolean[] consideredMetric;
+	/**
+	 * The indices of the cost metrics spanning the grids.
+	 */
+	final int[] gridMetrics;
+	/**
+	 * The cell width for each grid level (in the logarithmic cost space).
+	 */
+	final double[] cellWidths;
+	/**
+	 * Grid level of the cell counted in each hash table slot or minus one for empty slots
+	 * (null as long as no grids were built).
+	 */
+	int[] slotLevels;
+	/**
+	 * Output property of the plans counted in each hash table slot.
+	 */
+	boolean[] slotMaterializes;
+	/**
+	 * Contains for each grid metric the cell indices of the cells counted in each slot.
+	 */
+	long[][] slotCells;
+	/**
+	 * The number of stored plans in the cell of each slot. Slots whose count dropped to
+	 * zero remain assigned to their cell until the hash table is rebuilt.
+	 */
+	int[] slotCounts;
+	/**
+	 * The number of hash table slots assigned to a cell.
+	 */
+	int nrUsedSlots = 0;
+	/**
+	 * Bit mask used to map hash values to slot indices (number of slots minus one).
+	 */
+	int slotMask;
+	/**
+	 * Index of the stored plan that last approximately dominated a new plan or minus one.
+	 */
+	int lastDominator = -1;
+	/**
+	 * Scratch space containing the logarithmic cost of a plan for each grid metric.
+	 */
+	final double[] logCost;
+	/**
+	 * Scratch space containing the cell of a plan on the current grid level.
+	 */
+	final long[] cell;
+	/**
+	 * Initializes an empty frontier whose grids are built for the given approximation
+	 * factor and considered cost metrics.
+	 *
+	 * @param alpha				approximation factor (must be greater than one)
+	 * @param consideredMetric	Boolean flags indicating which metrics are considered
+	 */
+	public GridFrontier(double alpha, boolean[] consideredMetric) {
+		assert(alpha > 1);
+		this.alpha = alpha;
+		this.consideredMetric = Arrays.copyOf(consideredMetric, consideredMetric.length);
+		int nrGridMetrics = 0;
+		for (int metricCtr=0; metricCtr<nrMetrics; ++metricCtr) {
+			if (consideredMetric[metricCtr]) {
+				++nrGridMetrics;
+			}
+		}
+		this.gridMetrics = new int[nrGridMetrics];
+		int gridMetricCtr = 0;
+		for (int metricCtr=0; metricCtr<nrMetrics; ++metricCtr) {
+			if (consideredMetric[metricCtr]) {
+				gridMetrics[gridMetricCtr++] = metricCtr;
+			}
+		}
+		int nrLevels = 1;
+		double logAlpha = Math.log(alpha);
+		while (logAlpha * (1L << (nrLevels - 1)) < MAX_CELL_WIDTH) {
+			++nrLevels;
+		}
+		this.cellWidths = new double[nrLevels];
+		for (int level=0; level<nrLevels; ++level) {
+			cellWidths[level] = logAlpha * (1L << level);
+		}
+		this.logCost = new double[nrGridMetrics];
+		this.cell = new long[nrGridMetrics];
+	}
+	/**
+	 * Returns true iff the grids can be used for pruning with the given parameters.
+	 *
+	 * @param alpha				approximation factor used for pruning
+	 * @param consideredMetric	Boolean flags indicating which metrics to consider
+	 * @return					true iff the grids were built for those parameters
+	 */
+	public boolean gridApplicable(double alpha, boolean[] consideredMetric) {
+		return alpha == this.alpha && Arrays.equals(consideredMetric, this.consideredMetric);
+	}
+	/**
+	 * Stores the logarithm of the given cost values for all grid metrics in the
+	 * corresponding scratch space.
+	 *
+	 * @param cost	a cost vector
+	 * @return		false iff one of the cost values is negative or not a number
+	 */
+	boolean calculateLogCost(double[] cost) {
+		for (int gridMetricCtr=0; gridMetricCtr<gridMetrics.length; ++gridMetricCtr) {
+			double metricCost = cost[gridMetrics[gridMetricCtr]];
+			if (!(metricCost >= 0)) {
+				return false;
+			}
+			logCost[gridMetricCtr] = Math.log(metricCost);
+		}
+		return true;
+	}
+	/**
+	 * Stores the cell containing the cost vector whose logarithm was calculated last on the
+	 * given grid level in the corresponding scratch space.
+	 *
+	 * @param level	a grid level
+	 */
+	void calculateCell(int level) {
+		double cellWidth = cellWidths[level];
+		for (int gridMetricCtr=0; gridMetricCtr<gridMetrics.length; ++gridMetricCtr) {
+			double metricLogCost = logCost[gridMetricCtr];
+			if (metricLogCost == Double.NEGATIVE_INFINITY) {
+				cell[gridMetricCtr] = MIN_CELL;
+			} else if (metricLogCost == Double.POSITIVE_INFINITY) {
+				cell[gridMetricCtr] = MAX_CELL;
+			} else {
+				cell[gridMetricCtr] = (long)Math.floor(metricLogCost / cellWidth);
+			}
+		}
+	}
+	/**
+	 * Allocates an empty hash table and counts all stored plans in their grid cells. The
+	 * table is filled to at most one quarter afterwards.
+	 */
+	void allocateSlots() {
+		int nrSlots = Integer.highestOneBit(8 * size * cellWidths.length);
+		slotLevels = new int[nrSlots];
+		Arrays.fill(slotLevels, -1);
+		slotMaterializes = new boolean[nrSlots];
+		slotCells = new long[gridMetrics.length][nrSlots];
+		slotCounts = new int[nrSlots];
+		slotMask = nrSlots - 1;
+		nrUsedSlots = 0;
+		for (int i=0; i<size; ++i) {
+			updateCounts(i, 1);
+		}
+	}
+	/**
+	 * Calculates the hash value of the cell in the scratch space on the given level for
+	 * plans with the given output property.
+	 *
+	 * @param level			a grid level
+	 * @param materialized	output property
+	 * @return				a hash value
+	 */
+	int hash(int level, boolean materialized) {
+		long h = materialized ? level + 1 : -level - 1;
+		for (long cellIndex : cell) {
+			h = h * 0x9E3779B97F4A7C15L + cellIndex;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int)h;
+	}
+	/**
+	 * Returns the slot assigned to the cell in the scratch space on the given level for plans
+	 * with the given output property or the empty slot at which it would be inserted.
+	 *
+	 * @param level			a grid level
+	 * @param materialized	output property
+	 * @return				a slot index
+	 */
+	int findSlot(int level, boolean materialized) {
+		int slot = hash(level, materialized) & slotMask;
+		while (slotLevels[slot] >= 0) {
+			if (slotLevels[slot] == level && slotMaterializes[slot] == materialized) {
+				boolean sameCell = true;
+				for (int gridMetricCtr=0; gridMetricCtr<gridMetrics.length; ++gridMetricCtr) {
+					if (slotCells[gridMetricCtr][slot] != cell[gridMetricCtr]) {
+						sameCell = false;
+						break;
+					}
+				}
+				if (sameCell) {
+					return slot;
+				}
+			}
+			slot = (slot + 1) & slotMask;
+		}
+		return slot;
+	}
+	/**
+	 * Returns true iff a stored plan with the given output property lies in the cell in the
+	 * scratch space on the given level.
+	 *
+	 * @param level			a grid level
+	 * @param materialized	output property
+	 * @return				true iff the cell is occupied
+	 */
+	boolean occupied(int level, boolean materialized) {
+		return slotCounts[findSlot(level, materialized)] > 0;
+	}
+	/**
+	 * Adds the given value to the counters of all grid cells containing the stored plan
+	 * at the given position. Plans with negative or undefined cost values are not counted.
+	 *
+	 * @param index	position of a stored plan
+	 * @param delta	value to add to the counters
+	 */
+	void updateCounts(int index, int delta) {
+		if (slotLevels == null) {
+			return;
+		}
+		for (int gridMetricCtr=0; gridMetricCtr<gridMetrics.length; ++gridMetricCtr) {
+			double metricCost = costColumns[gridMetrics[gridMetricCtr]][index];
+			if (!(metricCost >= 0)) {
+				return;
+			}
+			logCost[gridMetricCtr] = Math.log(metricCost);
+		}
+		boolean materialized = materializes[index];
+		for (int level=0; level<cellWidths.length; ++level) {
+			calculateCell(level);
+			int slot = findSlot(level, materialized);
+			if (slotLevels[slot] < 0) {
+				slotLevels[slot] = level;
+				slotMaterializes[slot] = materialized;
+				for (int gridMetricCtr=0; gridMetricCtr<gridMetrics.length; ++gridMetricCtr) {
+					slotCells[gridMetricCtr][slot] = cell[gridMetricCtr];
+				}
+				++nrUsedSlots;
+			}
+			slotCounts[slot] += delta;
+		}
+	}
+	/**
+	 * Searches grid cells whose plans approximately dominate the given cost vector and
+	 * returns true if one of them is occupied by a plan with the given output property.
+	 *
+	 * @param cost			a cost vector
+	 * @param materialized	output property
+	 * @return				true if an approximately dominating plan was found
+	 */
+	boolean gridDominated(double[] cost, boolean materialized) {
+		if (!calculateLogCost(cost)) {
+			return false;
+		}
+		int nrGridMetrics = gridMetrics.length;
+		// On the finest level, plans in the same cell or in cells that are lower by one for
+		// a subset of metrics approximately dominate.
+		calculateCell(0);
+		int nrNeighbors = 1 << nrGridMetrics;
+		for (int neighbor=0; neighbor<nrNeighbors; ++neighbor) {
+			for (int gridMetricCtr=0; gridMetricCtr<nrGridMetrics; ++gridMetricCtr) {
+				cell[gridMetricCtr] -= (neighbor >>> gridMetricCtr) & 1;
+			}
+			boolean dominated = occupied(0, materialized);
+			for (int gridMetricCtr=0; gridMetricCtr<nrGridMetrics; ++gridMetricCtr) {
+				cell[gridMetricCtr] += (neighbor >>> gridMetricCtr) & 1;
+			}
+			if (dominated) {
+				return true;
+			}
+		}
+		// On all levels, plans in the cell that is lower by one for all metrics dominate
+		for (int level=1; level<cellWidths.length; ++level) {
+			calculateCell(level);
+			for (int gridMetricCtr=0; gridMetricCtr<nrGridMetrics; ++gridMetricCtr) {
+				cell[gridMetricCtr] -= 1;
+			}
+			if (occupied(level, materialized)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	/**
+	 * Checks whether the stored plan at the given position approximately dominates the
+	 * given cost vector for all grid metrics.
+	 *
+	 * @param index	position of a stored plan
+	 * @param cost	a cost vector
+	 * @return		true iff the stored plan approximately dominates the cost vector
+	 */
+	boolean approximatelyDominates(int index, double[] cost) {
+		for (int metric : gridMetrics) {
+			if (costColumns[metric][index] > cost[metric] * alpha) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Prunes a new plan: the new plan is discarded if a stored plan with the same output
+	 * property approximately dominates it. Otherwise, stored plans with the same output
+	 * property that are dominated by the new plan are removed and the new plan is inserted.
+	 * Compares with the plan that dominated last first, then searches the grids, and finally
+	 * compares with all stored plans.
+	 *
+	 * @param newPlan		a new plan
+	 * @param insertCopy	whether to insert the given plan or a copy of it
+	 * @return				true iff the new plan was inserted
+	 */
+	public boolean pruneGrid(Plan newPlan, boolean insertCopy) {
+		double[] newCost = newPlan.cost;
+		boolean materialized = newPlan.materializes;
+		// Try plan that dominated last
+		if (lastDominator >= 0 && materializes[lastDominator] == materialized &&
+				approximatelyDominates(lastDominator, newCost)) {
+			return false;
+		}
+		// Search grid cells if a scan over all plans is expensive
+		if (slotLevels != null && gridDominated(newCost, materialized)) {
+			return false;
+		}
+		// Fall back to comparing against all stored plans
+		int dominator = approximateDominator(newCost, materialized, alpha, consideredMetric);
+		if (dominator >= 0) {
+			lastDominator = dominator;
+			return false;
+		}
+		// New plan will be inserted - prune prior plans with precise comparisons
+		removeDominated(newCost, materialized, consideredMetric);
+		if (insertCopy) {
+			newPlan = newPlan.deepMutableCopy();
+		}
+		if (SAFE_MODE) {
+			newPlan.makeImmutable();
+		}
+		add(newPlan);
+		return true;
+	}
+	/**
+	 * Appends a plan to the frontier without pruning and counts it in its grid cells. Builds
+	 * the grids once the frontier is large enough.
+	 */
+	@Override
+	public boolean add(Plan plan) {
+		super.add(plan);
+		if (slotLevels == null) {
+			if (size >= MIN_GRID_SIZE) {
+				allocateSlots();
+			}
+		} else if (2 * (nrUsedSlots + cellWidths.length) > slotLevels.length) {
+			// Keep the load factor of the hash table below one half
+			allocateSlots();
+		} else {
+			updateCounts(size - 1, 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the plan from the counters of its grid cells.
+	 */
+	@Override
+	void entryRemoved(int index) {
+		updateCounts(index, -1);
+	}
+
+	@Override
+	public int removeDominated(double[] cost, boolean materialized, boolean[] consideredMetric) {
+		int nrRemoved = super.removeDominated(cost, materialized, consideredMetric);
+		if (nrRemoved > 0) {
+			lastDominator = -1;
+		}
+		return nrRemoved;
+	}
+
+	@Override
+	public Plan remove(int index) {
+		assert(index < size);
+		updateCounts(index, -1);
+		lastDominator = -1;
+		return super.remove(index);
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		lastDominator = -1;
+		slotLevels = null;
+		slotMaterializes = null;
+		slotCells = null;
+		slotCounts = null;
+	}
+}
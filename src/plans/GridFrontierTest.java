@@ -0,0 +1,129 @@
+package plans;
+
+import static org.junit.Assert.*;
+import static common.Constants.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import util.PruningUtil;
+
+public class GridFrontierTest {
+	/**
+	 * Creates a join plan with the given output property and random cost values such that
+	 * the product of all cost values is similar for different plans. Many of those plans
+	 * are Pareto-optimal.
+	 *
+	 * @param random		generates cost values
+	 * @param materializes	whether the join result is materialized
+	 * @return				a new join plan
+	 */
+	static Plan randomPlan(Random random, boolean materializes) {
+		Plan plan = ParetoFrontierTest.plan(1, materializes);
+		double[] costVector = new double[NR_COST_METRICS];
+		double noise = Math.exp(random.nextDouble());
+		double remainingLogCost = 10;
+		for (int metricCtr=0; metricCtr<NR_COST_METRICS; ++metricCtr) {
+			double logCost = metricCtr == NR_COST_METRICS - 1 ? remainingLogCost :
+				remainingLogCost * random.nextDouble();
+			remainingLogCost -= logCost;
+			costVector[metricCtr] = Math.exp(logCost) * noise;
+		}
+		plan.setCostValues(costVector);
+		return plan;
+	}
+	/**
+	 * Checks whether some plan in the given list with the same output property approximately
+	 * dominates the given plan.
+	 *
+	 * @param plans				a list of plans
+	 * @param plan				a plan to compare against
+	 * @param alpha				approximation factor
+	 * @param consideredMetrics	Boolean flags indicating which metrics to consider
+	 * @return					true iff the plan is approximately dominated
+	 */
+	static boolean covered(List<Plan> plans, Plan plan, double alpha, boolean[] consideredMetrics) {
+		for (Plan otherPlan : plans) {
+			if (otherPlan.materializes == plan.materializes && PruningUtil.approximatelyDominates(
+					otherPlan.cost, plan.cost, alpha, consideredMetrics)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void test() {
+		boolean[] consideredMetrics = new boolean[NR_COST_METRICS];
+		Arrays.fill(consideredMetrics, true);
+		{
+			// Approximately dominated plans are not inserted
+			GridFrontier frontier = new GridFrontier(2, consideredMetrics);
+			assertTrue(frontier.gridApplicable(2, consideredMetrics));
+			assertFalse(frontier.gridApplicable(1.5, consideredMetrics));
+			assertTrue(frontier.pruneGrid(ParetoFrontierTest.plan(10, false), false));
+			assertFalse(frontier.pruneGrid(ParetoFrontierTest.plan(12, false), false));
+			assertFalse(frontier.pruneGrid(ParetoFrontierTest.plan(17, false), false));
+			assertTrue(frontier.pruneGrid(ParetoFrontierTest.plan(12, true), false));
+			assertEquals(2, frontier.size());
+			// Dominated plans are removed
+			assertTrue(frontier.pruneGrid(ParetoFrontierTest.plan(4, false), false));
+			assertEquals(2, frontier.size());
+			assertFalse(frontier.pruneGrid(ParetoFrontierTest.plan(9, false), false));
+			// Dominance by distant plans is detected as well
+			assertFalse(frontier.pruneGrid(ParetoFrontierTest.plan(1000, false), false));
+			assertFalse(frontier.pruneGrid(ParetoFrontierTest.plan(1000, true), false));
+			// Special cost values
+			assertTrue(frontier.pruneGrid(ParetoFrontierTest.plan(0, false), false));
+			assertFalse(frontier.pruneGrid(ParetoFrontierTest.plan(0, false), false));
+			assertFalse(frontier.pruneGrid(ParetoFrontierTest.plan(
+					Double.POSITIVE_INFINITY, false), false));
+		}
+		// Grid-based pruning takes the same decisions as linear pruning
+		Random random = new Random(0);
+		for (double alpha : new double[] {1.001, 1.01, 1.1}) {
+			GridFrontier frontier = new GridFrontier(alpha, consideredMetrics);
+			ParetoFrontier linearFrontier = new ParetoFrontier();
+			List<Plan> allPlans = new ArrayList<Plan>();
+			for (int planCtr=0; planCtr<2000; ++planCtr) {
+				Plan plan = randomPlan(random, random.nextBoolean());
+				allPlans.add(plan);
+				assertEquals(PruningUtil.pruneFrontier(linearFrontier, plan, 
+						alpha, consideredMetrics, false), frontier.pruneGrid(plan, false));
+			}
+			assertEquals(linearFrontier, frontier);
+			assertTrue(frontier.size() >= GridFrontier.MIN_GRID_SIZE);
+			// Plans found via grid cells are dominated
+			int nrGridDominated = 0;
+			for (Plan plan : allPlans) {
+				if (frontier.gridDominated(plan.cost, plan.materializes)) {
+					assertTrue(covered(frontier, plan, alpha, consideredMetrics));
+					++nrGridDominated;
+				}
+			}
+			assertTrue(nrGridDominated > 0);
+			assertFalse(frontier.gridDominated(new double[NR_COST_METRICS], false));
+			for (Plan plan : allPlans) {
+				assertTrue(covered(frontier, plan, alpha, consideredMetrics));
+			}
+			// The index remains consistent after list operations
+			while (frontier.size() > 10) {
+				frontier.remove(frontier.size() / 2);
+			}
+			for (Plan plan : allPlans) {
+				frontier.pruneGrid(plan, false);
+			}
+			for (Plan plan : allPlans) {
+				assertTrue(covered(frontier, plan, alpha, consideredMetrics));
+			}
+			frontier.clear();
+			assertTrue(frontier.pruneGrid(allPlans.get(0), false));
+			assertEquals(1, frontier.size());
+		}
+	}
+
+}
@@ -2,6 +2,7 @@ package plans;
 
 import java.util.Arrays;
 
+import common.OptimizationContext;
 import plans.Plan;
 import plans.operators.JoinOperator;
 import queries.Query;
@@ -41,8 +42,26 @@ public class JoinPlan extends Plan {
 	 */
 	public JoinPlan(Relation leftRel, Relation rightRel, Relation resultRel, 
 			Plan leftPlan, Plan rightPlan, JoinOperator joinOperator) {
+		this(leftRel, rightRel, resultRel, leftPlan, rightPlan, joinOperator, 
+				OptimizationContext.current());
+	}
+	/**
+	 * This constructor stores a given relation as result relation and counts the plan
+	 * creation in the given optimization context.
+	 * 
+	 * @param leftRel		the relation that forms the outer operand of the final join
+	 * @param rightRel		the relation that forms the inner operand of the final join
+	 * @param resultRel		the relation resulting from executing this plan
+	 * @param leftPlan		the plan used to produce the left relation
+	 * @param rightPlan		the plan used to produce the right relation
+	 * @param joinOperator	the join operator implementation used for the final join
+	 * @param context		the optimization context active for the current thread
+	 */
+	public JoinPlan(Relation leftRel, Relation rightRel, Relation resultRel, 
+			Plan leftPlan, Plan rightPlan, JoinOperator joinOperator, 
+			OptimizationContext context) {
 		super(resultRel, joinOperator.materializeResult, 
-				1 + Math.max(leftPlan.height, rightPlan.height));
+				1 + Math.max(leftPlan.height, rightPlan.height), context);
 		this.leftPlan = leftPlan;
 		this.rightPlan = rightPlan;
 		this.joinOperator = joinOperator;
@@ -56,8 +75,23 @@ public class JoinPlan extends Plan {
 	 * @param joinOperator	the join operator implementation used for the final join
 	 */
 	public JoinPlan(Query query, Plan leftPlan, Plan rightPlan, JoinOperator joinOperator) {
+		this(query, leftPlan, rightPlan, joinOperator, OptimizationContext.current());
+	}
+	/**
+	 * This constructor generates and stores the result relation and counts the plan
+	 * creation in the given optimization context.
+	 * 
+	 * @param query			the query being optimized
+	 * @param leftPlan		the plan producing the outer operand for the final join
+	 * @param rightPlan		the plan producing the inner operand for the final join
+	 * @param joinOperator	the join operator implementation used for the final join
+	 * @param context		the optimization context active for the current thread
+	 */
+	public JoinPlan(Query query, Plan leftPlan, Plan rightPlan, JoinOperator joinOperator, 
+			OptimizationContext context) {
 		super(RelationFactory.createJoinRel(query, leftPlan.resultRel, rightPlan.resultRel), 
-				joinOperator.materializeResult, 1 + Math.max(leftPlan.height, rightPlan.height));
+				joinOperator.materializeResult, 1 + Math.max(leftPlan.height, rightPlan.height), 
+				context);
 		this.leftPlan = leftPlan;
 		this.rightPlan = rightPlan;
 		this.joinOperator = joinOperator;
@@ -73,8 +107,25 @@ public class JoinPlan extends Plan {
 	 */
 	public JoinPlan(double outputRows, double outputPages, 
 			Plan leftPlan, Plan rightPlan, JoinOperator joinOperator) {
+		this(outputRows, outputPages, leftPlan, rightPlan, joinOperator, 
+				OptimizationContext.current());
+	}
+	/**
+	 * This constructor stores a null pointer as result relation and counts the plan
+	 * creation in the given optimization context.
+	 * 
+	 * @param outputRows	cardinality of output generated by this plan
+	 * @param outputPages	number of disc pages generated by this plan
+	 * @param leftPlan		the plan producing the outer operand of the final join
+	 * @param rightPlan		the plan producing the inner operand of the final join
+	 * @param joinOperator	the join operator implementation used for the final join
+	 * @param context		the optimization context active for the current thread
+	 */
+	public JoinPlan(double outputRows, double outputPages, 
+			Plan leftPlan, Plan rightPlan, JoinOperator joinOperator, 
+			OptimizationContext context) {
 		super(outputRows, outputPages, joinOperator.materializeResult, 
-				1 + Math.max(leftPlan.height, rightPlan.height));
+				1 + Math.max(leftPlan.height, rightPlan.height), context);
 		this.leftPlan = leftPlan;
 		this.rightPlan = rightPlan;
 		this.joinOperator = joinOperator;
@@ -152,16 +203,21 @@ public class JoinPlan extends Plan {
 	}
 	@Override
 	public JoinPlan deepMutableCopy() {
+		return deepMutableCopy(OptimizationContext.current());
+	}
+	@Override
+	JoinPlan deepMutableCopy(OptimizationContext context) {
 		JoinPlan copy;
 		if (resultRel == null) {
-			copy = new JoinPlan(outputRows, outputPages, leftPlan.deepMutableCopy(), 
-					rightPlan.deepMutableCopy(), (JoinOperator)joinOperator.deepCopy());
+			copy = new JoinPlan(outputRows, outputPages, leftPlan.deepMutableCopy(context), 
+					rightPlan.deepMutableCopy(context), (JoinOperator)joinOperator.deepCopy(), 
+					context);
 		} else {
 			copy = new JoinPlan(leftPlan.resultRel, rightPlan.resultRel, resultRel, 
-					leftPlan.deepMutableCopy(), rightPlan.deepMutableCopy(), 
-					(JoinOperator)joinOperator.deepCopy());
+					leftPlan.deepMutableCopy(context), rightPlan.deepMutableCopy(context), 
+					(JoinOperator)joinOperator.deepCopy(), context);
 		}
-		copy.setCostValues(getCostValuesCopy());
+		copy.setCostValues(cost);
 		return copy;
 	}
 }
@@ -0,0 +1,267 @@
+package plans;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+import common.OptimizationContext;
+
+/**
+ * Stores a set of (near-)Pareto-optimal plans producing the same relation. Cost vectors are
+ * stored column-wise: for each cost metric, one primitive array holds the cost values of all
+ * stored plans for that metric. The plans themselves and their output properties are kept
+ * in parallel arrays. Dominance checks therefore scan contiguous primitive arrays instead
+ * of following references to plans and cost vectors, and insertions and deletions do not
+ * allocate unless the capacity needs to grow. The frontier can be used wherever a list of
+ * plans is expected; plans are kept in insertion order.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class ParetoFrontier extends AbstractList<Plan> implements Serializable {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Number of plans that can be stored before the arrays need to grow.
+	 */
+	final static int INITIAL_CAPACITY = 8;
+	/**
+	 * The number of cost metrics stored per plan.
+	 */
+	final int nrMetrics;
+	/**
+	 * The number of stored plans.
+	 */
+	int size = 0;
+	/**
+	 * Contains for each cost metric the cost values of all stored plans.
+	 */
+	double[][] costColumns;
+	/**
+	 * Contains the stored plans in insertion order.
+	 */
+	Plan[] plans;
+	/**
+	 * Contains for each stored plan whether it materializes its result.
+	 */
+	boolean[] materializes;
+	/**
+	 * Scratch space containing indices of plans that remain candidates during dominance checks.
+	 */
+	int[] candidates;
+	/**
+	 * Initializes an empty frontier for the number of cost metrics of the active context.
+	 */
+	public ParetoFrontier() {
+		this.nrMetrics = OptimizationContext.current().nrCostMetrics;
+		this.costColumns = new double[nrMetrics][INITIAL_CAPACITY];
+		this.plans = new Plan[INITIAL_CAPACITY];
+		this.materializes = new boolean[INITIAL_CAPACITY];
+		this.candidates = new int[INITIAL_CAPACITY];
+	}
+	/**
+	 * Makes sure that the given number of plans can be stored without reallocation.
+	 *
+	 * @param minCapacity	the required capacity
+	 */
+	void ensureCapacity(int minCapacity) {
+		int capacity = plans.length;
+		if (minCapacity > capacity) {
+			int newCapacity = Math.max(minCapacity, 2 * capacity);
+			for (int metricCtr=0; metricCtr<nrMetrics; ++metricCtr) {
+				costColumns[metricCtr] = Arrays.copyOf(costColumns[metricCtr], newCapacity);
+			}
+			plans = Arrays.copyOf(plans, newCapacity);
+			materializes = Arrays.copyOf(materializes, newCapacity);
+			candidates = new int[newCapacity];
+		}
+	}
+	/**
+	 * Returns the cost of a stored plan for the given metric without accessing the plan.
+	 *
+	 * @param index		the index of the plan in the frontier
+	 * @param metric	the index of the cost metric
+	 * @return			the cost value of that plan for that metric
+	 */
+	public double cost(int index, int metric) {
+		assert(index < size);
+		return costColumns[metric][index];
+	}
+	/**
+	 * Returns true iff the stored plan with the given index materializes its result.
+	 *
+	 * @param index	the index of the plan in the frontier
+	 * @return		the output property of that plan
+	 */
+	public boolean materializes(int index) {
+		assert(index < size);
+		return materializes[index];
+	}
+	/**
+	 * Checks whether a stored plan with the given output property approximately dominates the
+	 * given cost vector. The cost columns are scanned one after the other, each time keeping
+	 * only the plans that approximate the given cost for all metrics seen so far.
+	 *
+	 * @param cost				a cost vector
+	 * @param materialized		only plans with that output property are compared
+	 * @param alpha				approximation factor
+	 * @param consideredMetric	Boolean flags indicating which metrics to consider
+	 * @return					true iff one stored plan approximately dominates the cost vector
+	 */
+	public boolean approximatelyDominated(double[] cost, boolean materialized,
+			double alpha, boolean[] consideredMetric) {
+		return approximateDominator(cost, materialized, alpha, consideredMetric) >= 0;
+	}
+	/**
+	 * Returns the index of a stored plan with the given output property that approximately
+	 * dominates the given cost vector or minus one if there is no such plan.
+	 *
+	 * @param cost				a cost vector
+	 * @param materialized		only plans with that output property are compared
+	 * @param alpha				approximation factor
+	 * @param consideredMetric	Boolean flags indicating which metrics to consider
+	 * @return					index of an approximately dominating plan or minus one
+	 */
+	int approximateDominator(double[] cost, boolean materialized,
+			double alpha, boolean[] consideredMetric) {
+		assert(alpha >= 1);
+		// Collect plans with the same output properties
+		int nrCandidates = 0;
+		for (int i=0; i<size; ++i) {
+			if (materializes[i] == materialized) {
+				candidates[nrCandidates++] = i;
+			}
+		}
+		// Keep only candidates that approximate the cost for each metric
+		for (int metricCtr=0; metricCtr<nrMetrics && nrCandidates>0; ++metricCtr) {
+			if (consideredMetric[metricCtr]) {
+				double[] column = costColumns[metricCtr];
+				double bound = cost[metricCtr] * alpha;
+				int nrRemaining = 0;
+				for (int candidateCtr=0; candidateCtr<nrCandidates; ++candidateCtr) {
+					int i = candidates[candidateCtr];
+					if (column[i] <= bound) {
+						candidates[nrRemaining++] = i;
+					}
+				}
+				nrCandidates = nrRemaining;
+			}
+		}
+		return nrCandidates > 0 ? candidates[0] : -1;
+	}
+	/**
+	 * Removes all stored plans with the given output property whose cost is weakly dominated
+	 * by the given cost vector. Remaining plans keep their relative order.
+	 *
+	 * @param cost				a cost vector
+	 * @param materialized		only plans with that output property may be removed
+	 * @param consideredMetric	Boolean flags indicating which metrics to consider
+	 * @return					the number of removed plans
+	 */
+	public int removeDominated(double[] cost, boolean materialized, boolean[] consideredMetric) {
+		int nrKept = 0;
+		for (int i=0; i<size; ++i) {
+			boolean dominated = materializes[i] == materialized;
+			for (int metricCtr=0; metricCtr<nrMetrics && dominated; ++metricCtr) {
+				if (consideredMetric[metricCtr] && cost[metricCtr] > costColumns[metricCtr][i]) {
+					dominated = false;
+				}
+			}
+			if (dominated) {
+				entryRemoved(i);
+			} else {
+				moveEntry(i, nrKept);
+				++nrKept;
+			}
+		}
+		int nrRemoved = size - nrKept;
+		if (nrRemoved > 0) {
+			Arrays.fill(plans, nrKept, size, null);
+			size = nrKept;
+			++modCount;
+		}
+		return nrRemoved;
+	}
+	/**
+	 * Called for each stored plan before it is removed because it is dominated.
+	 *
+	 * @param index	position of the removed plan
+	 */
+	void entryRemoved(int index) {
+	}
+	/**
+	 * Copies the entry at the source index to the target index.
+	 *
+	 * @param source	index of the entry to copy
+	 * @param target	index of the overwritten entry
+	 */
+	void moveEntry(int source, int target) {
+		if (source != target) {
+			for (int metricCtr=0; metricCtr<nrMetrics; ++metricCtr) {
+				costColumns[metricCtr][target] = costColumns[metricCtr][source];
+			}
+			plans[target] = plans[source];
+			materializes[target] = materializes[source];
+		}
+	}
+	/**
+	 * Appends a plan to the frontier without pruning. The cost values of the plan are copied
+	 * into the cost columns: the plan cost must not change after insertion.
+	 *
+	 * @param plan	the plan to insert
+	 * @return		always true
+	 */
+	@Override
+	public boolean add(Plan plan) {
+		assert(plan.cost.length == nrMetrics);
+		ensureCapacity(size + 1);
+		for (int metricCtr=0; metricCtr<nrMetrics; ++metricCtr) {
+			costColumns[metricCtr][size] = plan.cost[metricCtr];
+		}
+		plans[size] = plan;
+		materializes[size] = plan.materializes;
+		++size;
+		++modCount;
+		return true;
+	}
+	/**
+	 * Removes the plan at the given position, shifting subsequent plans.
+	 *
+	 * @param index	position of the plan to remove
+	 * @return		the removed plan
+	 */
+	@Override
+	public Plan remove(int index) {
+		assert(index < size);
+		Plan removed = plans[index];
+		for (int i=index+1; i<size; ++i) {
+			moveEntry(i, i-1);
+		}
+		--size;
+		plans[size] = null;
+		++modCount;
+		return removed;
+	}
+	/**
+	 * Removes all plans from the frontier.
+	 */
+	@Override
+	public void clear() {
+		Arrays.fill(plans, 0, size, null);
+		size = 0;
+		++modCount;
+	}
+
+	@Override
+	public Plan get(int index) {
+		assert(index < size);
+		return plans[index];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,75 @@
+package plans;
+
+import static org.junit.Assert.*;
+import static common.Constants.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import plans.operators.local.BNLjoin;
+import plans.operators.local.LocalScan;
+import util.TestUtil;
+
+public class ParetoFrontierTest {
+	/**
+	 * Creates a join plan with the given output property and the same cost for each metric.
+	 * 
+	 * @param cost			cost value for all metrics
+	 * @param materializes	whether the join result is materialized
+	 * @return				a new join plan
+	 */
+	static Plan plan(double cost, boolean materializes) {
+		Plan scan = new ScanPlan(10, 1, 0, new LocalScan());
+		Plan plan = new JoinPlan(10, 1, scan, scan, new BNLjoin(10, materializes));
+		double[] costVector = new double[NR_COST_METRICS];
+		Arrays.fill(costVector, cost);
+		plan.setCostValues(costVector);
+		return plan;
+	}
+
+	@Test
+	public void test() {
+		boolean[] consideredMetrics = new boolean[NR_COST_METRICS];
+		Arrays.fill(consideredMetrics, true);
+		ParetoFrontier frontier = new ParetoFrontier();
+		// Insert plans with different output properties
+		Plan plan1 = plan(10, false);
+		Plan plan2 = plan(20, true);
+		frontier.add(plan1);
+		frontier.add(plan2);
+		assertEquals(2, frontier.size());
+		assertSame(plan2, frontier.get(1));
+		assertEquals(20, frontier.cost(1, 0), TestUtil.EPSILON);
+		assertTrue(frontier.materializes(1));
+		// Dominance only between plans with the same output properties
+		assertTrue(frontier.approximatelyDominated(plan(10, false).cost, false, 1, consideredMetrics));
+		assertFalse(frontier.approximatelyDominated(plan(9, false).cost, false, 1, consideredMetrics));
+		assertTrue(frontier.approximatelyDominated(plan(9, false).cost, false, 1.2, consideredMetrics));
+		assertFalse(frontier.approximatelyDominated(plan(15, true).cost, true, 1, consideredMetrics));
+		assertTrue(frontier.approximatelyDominated(plan(25, true).cost, true, 1, consideredMetrics));
+		// Removing dominated plans keeps the order of the remaining plans
+		Plan plan3 = plan(30, true);
+		frontier.add(plan3);
+		Plan plan4 = plan(40, false);
+		frontier.add(plan4);
+		assertEquals(1, frontier.removeDominated(plan(25, true).cost, true, consideredMetrics));
+		assertEquals(Arrays.asList(new Plan[] {plan1, plan2, plan4}), frontier);
+		// Growing beyond initial capacity
+		for (int planCtr=0; planCtr<100; ++planCtr) {
+			frontier.add(plan(100 + planCtr, false));
+		}
+		assertEquals(103, frontier.size());
+		assertEquals(150, frontier.cost(53, 0), TestUtil.EPSILON);
+		assertEquals(101, frontier.removeDominated(plan(20, false).cost, false, consideredMetrics));
+		assertEquals(Arrays.asList(new Plan[] {plan1, plan2}), frontier);
+		// List operations
+		assertSame(plan1, frontier.remove(0));
+		assertSame(plan2, frontier.get(0));
+		assertEquals(1, frontier.size());
+		frontier.add(plan1);
+		frontier.clear();
+		assertEquals(0, frontier.size());
+	}
+
+}
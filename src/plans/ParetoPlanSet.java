@@ -1,8 +1,11 @@
 package plans;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 
+import util.EpsilonIndicator;
+
 /**
  * Contains a set of (near-)Pareto-optimal plans.
  * 
@@ -18,8 +21,33 @@ public class ParetoPlanSet implements Serializable {
 	 * A list of Pareto-optimal plans.
 	 */
 	public final List<Plan> plans;
+	/**
+	 * Indexes the plans of this set as reference frontier for the considered metrics used
+	 * last (null as long as no indicator was requested).
+	 */
+	transient EpsilonIndicator epsilonIndicator;
+	/**
+	 * The considered metrics for which the cached epsilon indicator was built.
+	 */
+	transient boolean[] indicatorMetrics;
 	
 	public ParetoPlanSet(List<Plan> plans) {
 		this.plans = plans;
 	}
+	/**
+	 * Returns a new epsilon indicator without tested plans that uses the plans of this set
+	 * as reference frontier. The reference plans are indexed once and the index is shared
+	 * by all indicators requested for the same considered metrics, so callers comparing
+	 * repeatedly against this set do not rebuild it. The plans must not change afterwards.
+	 *
+	 * @param consideredMetrics	Boolean flags indicating for each cost metric if it is considered
+	 * @return					an epsilon indicator for this reference frontier
+	 */
+	public synchronized EpsilonIndicator epsilonIndicator(boolean[] consideredMetrics) {
+		if (epsilonIndicator == null || !Arrays.equals(indicatorMetrics, consideredMetrics)) {
+			indicatorMetrics = Arrays.copyOf(consideredMetrics, consideredMetrics.length);
+			epsilonIndicator = new EpsilonIndicator(plans, indicatorMetrics);
+		}
+		return new EpsilonIndicator(epsilonIndicator);
+	}
 }
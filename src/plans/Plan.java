@@ -1,11 +1,9 @@
 package plans;
 
-import static common.Constants.*;
-
 import java.io.Serializable;
 import java.util.Arrays;
 
-import common.Constants;
+import common.OptimizationContext;
 import relations.Relation;
 
 /**
@@ -19,10 +17,6 @@ public abstract class Plan implements Serializable {
 	 * Used to check the class version.
 	 */
 	private static final long serialVersionUID = 1L;
-	/**
-	 * Keeps track of the number of partial plans
-	 */
-	public static long nrPlansCreated = 0;
 	/**
 	 * Whether cost, sub-plans, etc. can be changed
 	 */
@@ -32,7 +26,7 @@ public abstract class Plan implements Serializable {
 	 * plan cost is represented as a vector where different components represent
 	 * cost according to different metrics.
 	 */
-	public double[] cost = new double[NR_COST_METRICS];
+	public double[] cost;
 	/**
 	 * Cardinality of plan output
 	 */
@@ -63,12 +57,26 @@ public abstract class Plan implements Serializable {
 	 * @param height		the height of the plan tree
 	 */
 	public Plan(double outputRows, double outputPages, boolean materializes, int height) {
+		this(outputRows, outputPages, materializes, height, OptimizationContext.current());
+	}
+	/**
+	 * This constructor is used if no result relations are used; the plan creation is
+	 * counted in the given optimization context.
+	 * 
+	 * @param outputRows	cardinality of relation produced by this plan
+	 * @param outputPages	the number of disc pages consumed by the plan result
+	 * @param materializes	whether the result of the plan is written to disc
+	 * @param height		the height of the plan tree
+	 * @param context		the optimization context active for the current thread
+	 */
+	public Plan(double outputRows, double outputPages, boolean materializes, int height, 
+			OptimizationContext context) {
 		this.outputRows = outputRows;
 		this.outputPages = outputPages;
 		this.materializes = materializes;
 		this.height = height;
 		this.resultRel = null;
-		++nrPlansCreated;
+		this.cost = newCostVector(context);
 	}
 	/**
 	 * This constructor automatically sets the result relation and extracts required fields.
@@ -78,12 +86,36 @@ public abstract class Plan implements Serializable {
 	 * @param height		the height of the query plan tree
 	 */
 	public Plan(Relation resultRel, boolean materializes, int height) {
+		this(resultRel, materializes, height, OptimizationContext.current());
+	}
+	/**
+	 * This constructor automatically sets the result relation and extracts required fields;
+	 * the plan creation is counted in the given optimization context.
+	 * 
+	 * @param resultRel		the result relation created by this plan
+	 * @param materializes	whether the result relation is written to disc
+	 * @param height		the height of the query plan tree
+	 * @param context		the optimization context active for the current thread
+	 */
+	public Plan(Relation resultRel, boolean materializes, int height, 
+			OptimizationContext context) {
 		this.outputRows = resultRel.cardinality;
 		this.outputPages = resultRel.pages;
 		this.materializes = materializes;
 		this.height = height;
 		this.resultRel = resultRel;
-		++nrPlansCreated;
+		this.cost = newCostVector(context);
+	}
+	/**
+	 * Creates a zero cost vector with one component per cost metric of the given
+	 * optimization context and counts the plan creation in that context.
+	 * 
+	 * @param context	the optimization context active for the current thread
+	 * @return			a new cost vector
+	 */
+	static double[] newCostVector(OptimizationContext context) {
+		++context.nrPlansCreated;
+		return new double[context.nrCostMetrics];
 	}
 	/**
 	 * Makes the plan (its cost, operators, sub-plans) immutable
@@ -106,7 +138,8 @@ public abstract class Plan implements Serializable {
 	 */
 	public void setCostValues(double[] newCost) {
 		assert(!immutable);
-		for (int metricCtr=0; metricCtr<Constants.NR_COST_METRICS; ++metricCtr) {
+		int nrMetrics = cost.length;
+		for (int metricCtr=0; metricCtr<nrMetrics; ++metricCtr) {
 			cost[metricCtr] = newCost[metricCtr];
 		}
 	}
@@ -119,13 +152,23 @@ public abstract class Plan implements Serializable {
 	public double getCostValue(int metric) {
 		return cost[metric];
 	}
+	/**
+	 * Obtain all cost values without copying them. The returned vector is the cost storage
+	 * of this plan and must not be modified by the caller; use this method for comparisons
+	 * in inner loops where copying the cost vector would be too expensive.
+	 *
+	 * @return	a vector of cost values (the original, not a copy)
+	 */
+	public double[] getCostValues() {
+		return cost;
+	}
 	/**
 	 * Obtain copy of all cost values
 	 * 
 	 * @return	a vector of cost values (a deep copy of the original)
 	 */
 	public double[] getCostValuesCopy() {
-		return Arrays.copyOf(cost, Constants.NR_COST_METRICS);
+		return Arrays.copyOf(cost, cost.length);
 	}
 	/**
 	 * Returns a deep but mutable copy of this plan
@@ -133,6 +176,14 @@ public abstract class Plan implements Serializable {
 	 * @return	a deep and mutable plan copy
 	 */
 	public abstract Plan deepMutableCopy();
+	/**
+	 * Returns a deep but mutable copy of this plan whose nodes are counted in the given
+	 * optimization context.
+	 * 
+	 * @param context	the optimization context active for the current thread
+	 * @return			a deep and mutable plan copy
+	 */
+	abstract Plan deepMutableCopy(OptimizationContext context);
 	/**
 	 * Output join order, operators, and cost.
 	 */
@@ -2,6 +2,7 @@ package plans;
 
 import java.util.Arrays;
 
+import common.OptimizationContext;
 import plans.Plan;
 import plans.operators.ScanOperator;
 import queries.Query;
@@ -34,7 +35,18 @@ public class ScanPlan extends Plan {
 	 * @param scanOperator	the operator implementation used for the scan
 	 */
 	public ScanPlan(Relation rel, ScanOperator scanOperator) {
-		super(rel, true, 1);
+		this(rel, scanOperator, OptimizationContext.current());
+	}
+	/**
+	 * This constructor stores a given result relation and counts the plan creation in
+	 * the given optimization context.
+	 * 
+	 * @param rel			the previously generated relation representing the result of the scan
+	 * @param scanOperator	the operator implementation used for the scan
+	 * @param context		the optimization context active for the current thread
+	 */
+	public ScanPlan(Relation rel, ScanOperator scanOperator, OptimizationContext context) {
+		super(rel, true, 1, context);
 		this.tableIndex = rel.tableSet.nextSetBit(0);
 		this.scanOperator = scanOperator;
 	}
@@ -46,7 +58,20 @@ public class ScanPlan extends Plan {
 	 * @param scanOperator	the operator implementation used for the scan
 	 */
 	public ScanPlan(Query query, int tableIndex, ScanOperator scanOperator) {
-		super(RelationFactory.createSingleTableRel(query, tableIndex), true, 1);
+		this(query, tableIndex, scanOperator, OptimizationContext.current());
+	}
+	/**
+	 * This constructor generates and stores the result relation and counts the plan
+	 * creation in the given optimization context.
+	 * 
+	 * @param query			the query being optimized
+	 * @param tableIndex	the index of the scanned table
+	 * @param scanOperator	the operator implementation used for the scan
+	 * @param context		the optimization context active for the current thread
+	 */
+	public ScanPlan(Query query, int tableIndex, ScanOperator scanOperator, 
+			OptimizationContext context) {
+		super(RelationFactory.createSingleTableRel(query, tableIndex), true, 1, context);
 		this.tableIndex = resultRel.tableSet.nextSetBit(0);
 		this.scanOperator = scanOperator;
 	}
@@ -60,7 +85,21 @@ public class ScanPlan extends Plan {
 	 */
 	public ScanPlan(double outputRows, double outputPages,  
 			int tableIndex, ScanOperator scanOperator) {
-		super(outputRows, outputPages, true, 1);
+		this(outputRows, outputPages, tableIndex, scanOperator, OptimizationContext.current());
+	}
+	/**
+	 * This constructor stores a null pointer for the result relation and counts the plan
+	 * creation in the given optimization context.
+	 * 
+	 * @param outputRows	the cardinality of the scanned relation
+	 * @param outputPages	the number of pages consumed by the scanned relation
+	 * @param tableIndex	the index of the scanned relation
+	 * @param scanOperator	the operator implementation used for the scan
+	 * @param context		the optimization context active for the current thread
+	 */
+	public ScanPlan(double outputRows, double outputPages,  
+			int tableIndex, ScanOperator scanOperator, OptimizationContext context) {
+		super(outputRows, outputPages, true, 1, context);
 		this.tableIndex = tableIndex;
 		this.scanOperator = scanOperator;
 	}
@@ -78,13 +117,18 @@ public class ScanPlan extends Plan {
 	}
 	@Override
 	public ScanPlan deepMutableCopy() {
+		return deepMutableCopy(OptimizationContext.current());
+	}
+	@Override
+	ScanPlan deepMutableCopy(OptimizationContext context) {
 		ScanPlan copy;
 		if (resultRel == null) {
-			copy = new ScanPlan(outputRows, outputPages, tableIndex, (ScanOperator)scanOperator.deepCopy());
+			copy = new ScanPlan(outputRows, outputPages, tableIndex, 
+					(ScanOperator)scanOperator.deepCopy(), context);
 		} else {
-			copy = new ScanPlan(resultRel, (ScanOperator)scanOperator.deepCopy());
+			copy = new ScanPlan(resultRel, (ScanOperator)scanOperator.deepCopy(), context);
 		}
-		copy.setCostValues(getCostValuesCopy());
+		copy.setCostValues(cost);
 		return copy;
 	}
 }
@@ -13,6 +13,12 @@ public abstract class Operator implements Serializable {
 	 * Used to check the class version.
 	 */
 	private static final long serialVersionUID = 1L;
+	/**
+	 * Identifier of this operator within the plan space that registered it (i.e., its index
+	 * in the list of considered scan or join operators) or -1 if the operator is not registered.
+	 * Copies of an operator keep its identifier.
+	 */
+	public int id = -1;
 	/**
 	 * Make deep copy of operator.
 	 * 
@@ -6,7 +6,9 @@ public class ClusterScan extends ScanOperator {
 
 	@Override
 	public ClusterScan deepCopy() {
-		return new ClusterScan();
+		ClusterScan copy = new ClusterScan();
+		copy.id = id;
+		return copy;
 	}
 
 }
@@ -20,6 +20,8 @@ public class ReduceSideJoin extends JoinOperator {
 
 	@Override
 	public ReduceSideJoin deepCopy() {
-		return new ReduceSideJoin(parallelized, nrMachines);
+		ReduceSideJoin copy = new ReduceSideJoin(parallelized, nrMachines);
+		copy.id = id;
+		return copy;
 	}
 }
@@ -26,6 +26,8 @@ public class BNLjoin extends LocalJoin {
 	}
 	@Override
 	public BNLjoin deepCopy() {
-		return new BNLjoin(buffer, materializeResult);
+		BNLjoin copy = new BNLjoin(buffer, materializeResult);
+		copy.id = id;
+		return copy;
 	}
 }
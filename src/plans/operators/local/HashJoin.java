@@ -23,6 +23,8 @@ public class HashJoin extends LocalJoin {
 	}
 	@Override
 	public HashJoin deepCopy() {
-		return new HashJoin(buffer, materializeResult);
+		HashJoin copy = new HashJoin(buffer, materializeResult);
+		copy.id = id;
+		return copy;
 	}
 }
@@ -21,6 +21,8 @@ public class LocalScan extends ScanOperator{
 
 	@Override
 	public LocalScan deepCopy() {
-		return new LocalScan();
+		LocalScan copy = new LocalScan();
+		copy.id = id;
+		return copy;
 	}
 }
@@ -22,6 +22,8 @@ public class SortMergeJoin extends LocalJoin {
 	}
 	@Override
 	public SortMergeJoin deepCopy() {
-		return new SortMergeJoin(buffer, materializeResult);
+		SortMergeJoin copy = new SortMergeJoin(buffer, materializeResult);
+		copy.id = id;
+		return copy;
 	}
 }
@@ -77,6 +77,8 @@ public class LocalPlanSpace extends PlanSpace {
 		defaultScanOperator = new LocalScan();
 		//defaultJoinOperator = new BNLjoin(100, true);
 		defaultJoinOperator = new BNLjoin(10000, true);
+		// assign operator identifiers and precompute operator properties
+		registerOperators();
 	}
 	/**
 	 * The local scan operator is applicable to each relation.
@@ -91,13 +93,21 @@ public class LocalPlanSpace extends PlanSpace {
 	 */
 	@Override
 	public boolean joinOperatorApplicable(JoinOperator joinOperator, Plan leftPlan, Plan rightPlan) {
+		return joinOperatorApplicable(joinOperator, leftPlan.materializes, rightPlan.materializes);
+	}
+	/**
+	 * Hash join and sort-merge join require both inputs to be materialized.
+	 */
+	@Override
+	public boolean joinOperatorApplicable(JoinOperator joinOperator, 
+			boolean leftMaterialized, boolean rightMaterialized) {
 		if (joinOperator instanceof BNLjoin) {
 			return true;
 		} else if (joinOperator instanceof HashJoin) {
-			return leftPlan.materializes && rightPlan.materializes;
+			return leftMaterialized && rightMaterialized;
 		} else {
 			assert(joinOperator instanceof SortMergeJoin);
-			return leftPlan.materializes && rightPlan.materializes;
+			return leftMaterialized && rightMaterialized;
 		}
 	}
 	/**
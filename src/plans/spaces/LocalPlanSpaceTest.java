@@ -60,6 +60,44 @@ public class LocalPlanSpaceTest {
 			assertTrue(localPlanSpace.joinOutputComptatible(materializingBNL, hashJoin));
 			assertTrue(localPlanSpace.joinOutputComptatible(materializingBNL, sortMerge));
 		}
+		// Test operator registry and precomputed operator properties
+		{
+			int nrJoinOps = localPlanSpace.consideredJoinOps.size();
+			for (int joinID=0; joinID<nrJoinOps; ++joinID) {
+				JoinOperator joinOperator = localPlanSpace.joinOperatorsById[joinID];
+				assertEquals(joinID, joinOperator.id);
+				assertEquals(joinID, joinOperator.deepCopy().id);
+			}
+			assertTrue(localPlanSpace.defaultJoinOperator.id >= 0);
+			assertEquals(10, localPlanSpace.applicableJoinOperators(join01pipelined, scan2).length);
+			assertEquals(30, localPlanSpace.applicableJoinOperators(join01materialized, scan2).length);
+			for (JoinOperator joinOperator : localPlanSpace.joinOperatorsById) {
+				assertEquals(localPlanSpace.joinOperatorApplicable(joinOperator, join01pipelined, scan2), 
+						localPlanSpace.applicable(joinOperator, join01pipelined, scan2));
+				for (JoinOperator nextJoinOperator : localPlanSpace.joinOperatorsById) {
+					assertEquals(localPlanSpace.joinOutputComptatible(joinOperator, nextJoinOperator), 
+							localPlanSpace.outputCompatible(joinOperator, nextJoinOperator));
+				}
+			}
+			// Unregistered operators are treated without precomputed properties
+			assertFalse(localPlanSpace.applicable(hashJoin, join01pipelined, scan2));
+			assertFalse(localPlanSpace.outputCompatible(pipeliningBNL, sortMerge));
+			// Operators carrying identifiers of other operators are not confused with them
+			JoinOperator registeredSortMerge = null;
+			for (JoinOperator joinOperator : localPlanSpace.joinOperatorsById) {
+				if (joinOperator instanceof SortMergeJoin) {
+					registeredSortMerge = joinOperator;
+				}
+			}
+			for (JoinOperator joinOperator : localPlanSpace.joinOperatorsById) {
+				if (joinOperator instanceof BNLjoin && joinOperator.materializeResult) {
+					pipeliningBNL.id = joinOperator.id;
+					assertFalse(localPlanSpace.outputCompatible(pipeliningBNL, registeredSortMerge));
+					assertTrue(localPlanSpace.outputCompatible(joinOperator, registeredSortMerge));
+				}
+			}
+			pipeliningBNL.id = -1;
+		}
 	}
 
 }
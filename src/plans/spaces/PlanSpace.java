@@ -1,8 +1,9 @@
 package plans.spaces;
 
-import common.RandomNumbers;
+import common.OptimizationContext;
 import plans.Plan;
 import plans.operators.JoinOperator;
+import plans.operators.Operator;
 import plans.operators.ScanOperator;
 import relations.Relation;
 
@@ -45,6 +46,38 @@ public abstract class PlanSpace implements Serializable {
 	 * The list of all join operators. The list is generated during object construction.
 	 */
 	public List<JoinOperator> consideredJoinOps;
+	/**
+	 * Number of different combinations of input properties for binary operators.
+	 */
+	final static int NR_INPUT_PROPERTIES = 4;
+	/**
+	 * The registered scan operators, indexed by their identifier. Initialized by 
+	 * {@link #registerOperators()} at the end of plan space construction.
+	 */
+	public ScanOperator[] scanOperatorsById;
+	/**
+	 * The registered join operators, indexed by their identifier.
+	 */
+	public JoinOperator[] joinOperatorsById;
+	/**
+	 * Contains for each combination of input properties the join operators that are applicable.
+	 */
+	JoinOperator[][] applicableJoinOps;
+	/**
+	 * Contains for each combination of input properties and each join operator identifier
+	 * whether the operator is applicable to inputs with those properties.
+	 */
+	boolean[][] joinApplicable;
+	/**
+	 * Contains for each pair of scan operator and join operator identifiers whether the output
+	 * of the scan is suitable as input for the join.
+	 */
+	boolean[][] scanOutputCompatibility;
+	/**
+	 * Contains for each pair of join operator identifiers whether the output of the first
+	 * join is suitable as input for the second join.
+	 */
+	boolean[][] joinOutputCompatibility;
 	/**
 	 * Returns true if the given scan operator is applicable for the given relation.
 	 * 
@@ -63,6 +96,17 @@ public abstract class PlanSpace implements Serializable {
 	 */
 	public abstract boolean joinOperatorApplicable(
 			JoinOperator joinOperator, Plan leftPlan, Plan rightPlan);
+	/**
+	 * Returns true if the given join operator is applicable to inputs with the given properties.
+	 * Join operator applicability must depend only on those input properties.
+	 * 
+	 * @param joinOperator			the join operator to test
+	 * @param leftMaterialized		whether the left (outer) join input is materialized
+	 * @param rightMaterialized		whether the right (inner) join input is materialized
+	 * @return						Boolean indicating whether the operator can be applied
+	 */
+	public abstract boolean joinOperatorApplicable(JoinOperator joinOperator, 
+			boolean leftMaterialized, boolean rightMaterialized);
 	/**
 	 * Returns true if the given scan operator produces output that is suitable as input
 	 * for the given join operator.
@@ -82,6 +126,168 @@ public abstract class PlanSpace implements Serializable {
 	 * 							for the next join operator
 	 */
 	public abstract boolean joinOutputComptatible(JoinOperator joinOperator, JoinOperator nextJoinOperator);
+	/**
+	 * Assigns identifiers to all considered scan and join operators, replaces the default
+	 * operators by equivalent considered operators, and precomputes operator applicability
+	 * and output compatibility. Must be called at the end of each plan space constructor.
+	 */
+	protected void registerOperators() {
+		// Assign identifiers
+		int nrScanOps = consideredScanOps.size();
+		int nrJoinOps = consideredJoinOps.size();
+		scanOperatorsById = consideredScanOps.toArray(new ScanOperator[nrScanOps]);
+		joinOperatorsById = consideredJoinOps.toArray(new JoinOperator[nrJoinOps]);
+		for (int scanID=0; scanID<nrScanOps; ++scanID) {
+			scanOperatorsById[scanID].id = scanID;
+		}
+		for (int joinID=0; joinID<nrJoinOps; ++joinID) {
+			joinOperatorsById[joinID].id = joinID;
+		}
+		// Intern default operators
+		for (ScanOperator scanOperator : scanOperatorsById) {
+			if (equivalent(scanOperator, defaultScanOperator)) {
+				defaultScanOperator = scanOperator;
+			}
+		}
+		for (JoinOperator joinOperator : joinOperatorsById) {
+			if (equivalent(joinOperator, defaultJoinOperator)) {
+				defaultJoinOperator = joinOperator;
+			}
+		}
+		// Precompute applicable join operators for each combination of input properties
+		applicableJoinOps = new JoinOperator[NR_INPUT_PROPERTIES][];
+		joinApplicable = new boolean[NR_INPUT_PROPERTIES][nrJoinOps];
+		for (int properties=0; properties<NR_INPUT_PROPERTIES; ++properties) {
+			boolean leftMaterialized = (properties & 2) != 0;
+			boolean rightMaterialized = (properties & 1) != 0;
+			List<JoinOperator> applicable = new LinkedList<JoinOperator>();
+			for (JoinOperator joinOperator : joinOperatorsById) {
+				if (joinOperatorApplicable(joinOperator, leftMaterialized, rightMaterialized)) {
+					joinApplicable[properties][joinOperator.id] = true;
+					applicable.add(joinOperator);
+				}
+			}
+			applicableJoinOps[properties] = applicable.toArray(new JoinOperator[applicable.size()]);
+		}
+		// Precompute output compatibility
+		scanOutputCompatibility = new boolean[nrScanOps][nrJoinOps];
+		for (ScanOperator scanOperator : scanOperatorsById) {
+			for (JoinOperator nextJoinOperator : joinOperatorsById) {
+				scanOutputCompatibility[scanOperator.id][nextJoinOperator.id] = 
+						scanOutputCompatible(scanOperator, nextJoinOperator);
+			}
+		}
+		joinOutputCompatibility = new boolean[nrJoinOps][nrJoinOps];
+		for (JoinOperator joinOperator : joinOperatorsById) {
+			for (JoinOperator nextJoinOperator : joinOperatorsById) {
+				joinOutputCompatibility[joinOperator.id][nextJoinOperator.id] = 
+						joinOutputComptatible(joinOperator, nextJoinOperator);
+			}
+		}
+	}
+	/**
+	 * Returns true if both operators are of the same type and have the same configuration.
+	 * 
+	 * @param operator1	first operator
+	 * @param operator2	second operator (may be null)
+	 * @return			true iff the second operator can be replaced by the first one
+	 */
+	static boolean equivalent(Operator operator1, Operator operator2) {
+		return operator2 != null && operator1.getClass().equals(operator2.getClass()) &&
+				operator1.toString().equals(operator2.toString());
+	}
+	/**
+	 * Returns true iff the given operator instance was registered by this plan space.
+	 * Copies of registered operators and operators registered by other plan spaces
+	 * are not recognized, even if they carry a valid identifier.
+	 * 
+	 * @param operator	a scan operator
+	 * @return			true iff precomputed properties of that operator can be used
+	 */
+	boolean registered(ScanOperator operator) {
+		return operator.id >= 0 && operator.id < scanOperatorsById.length &&
+				scanOperatorsById[operator.id] == operator;
+	}
+	/**
+	 * Returns true iff the given operator instance was registered by this plan space.
+	 * Copies of registered operators and operators registered by other plan spaces
+	 * are not recognized, even if they carry a valid identifier.
+	 * 
+	 * @param operator	a join operator
+	 * @return			true iff precomputed properties of that operator can be used
+	 */
+	boolean registered(JoinOperator operator) {
+		return operator.id >= 0 && operator.id < joinOperatorsById.length &&
+				joinOperatorsById[operator.id] == operator;
+	}
+	/**
+	 * Returns the index of the given combination of join input properties.
+	 * 
+	 * @param leftPlan	plan producing left (outer) join input
+	 * @param rightPlan	plan producing right (inner) join input
+	 * @return			an index between zero and three
+	 */
+	static int inputProperties(Plan leftPlan, Plan rightPlan) {
+		return (leftPlan.materializes ? 2 : 0) | (rightPlan.materializes ? 1 : 0);
+	}
+	/**
+	 * Returns the join operators that are applicable to the given inputs, using precomputed
+	 * results. The returned array is shared and must not be modified by the caller.
+	 * 
+	 * @param leftPlan	plan producing left (outer) join input
+	 * @param rightPlan	plan producing right (inner) join input
+	 * @return			an array of applicable join operators in fixed order
+	 */
+	public JoinOperator[] applicableJoinOperators(Plan leftPlan, Plan rightPlan) {
+		return applicableJoinOps[inputProperties(leftPlan, rightPlan)];
+	}
+	/**
+	 * Returns true if the given join operator is applicable to the given inputs. Uses
+	 * precomputed results for registered operators.
+	 * 
+	 * @param joinOperator	the join operator to test
+	 * @param leftPlan		the plan generating the left (outer) join input
+	 * @param rightPlan		the plan generating the right (inner) join input
+	 * @return				Boolean indicating whether the operator can be applied
+	 */
+	public boolean applicable(JoinOperator joinOperator, Plan leftPlan, Plan rightPlan) {
+		if (registered(joinOperator)) {
+			return joinApplicable[inputProperties(leftPlan, rightPlan)][joinOperator.id];
+		} else {
+			return joinOperatorApplicable(joinOperator, leftPlan, rightPlan);
+		}
+	}
+	/**
+	 * Returns true if the given scan operator produces output that is suitable as input
+	 * for the given join operator. Uses precomputed results for registered operators.
+	 * 
+	 * @param scanOperator		scan operator producing output
+	 * @param nextJoinOperator	join operator taking input
+	 * @return					Boolean indicating whether scan output suitable as join input
+	 */
+	public boolean outputCompatible(ScanOperator scanOperator, JoinOperator nextJoinOperator) {
+		if (registered(scanOperator) && registered(nextJoinOperator)) {
+			return scanOutputCompatibility[scanOperator.id][nextJoinOperator.id];
+		} else {
+			return scanOutputCompatible(scanOperator, nextJoinOperator);
+		}
+	}
+	/**
+	 * Returns true if the given join operator produces output that is suitable as input
+	 * for the given next join operator. Uses precomputed results for registered operators.
+	 * 
+	 * @param joinOperator		join operator producing output
+	 * @param nextJoinOperator	join operator taking input
+	 * @return					Boolean indicating whether current join output suitable as input
+	 * 							for the next join operator
+	 */
+	public boolean outputCompatible(JoinOperator joinOperator, JoinOperator nextJoinOperator) {
+		if (registered(joinOperator) && registered(nextJoinOperator)) {
+			return joinOutputCompatibility[joinOperator.id][nextJoinOperator.id];
+		} else {
+			return joinOutputComptatible(joinOperator, nextJoinOperator);
+		}
+	}
 	/**
 	 * Returns a list of applicable scan operators.
 	 * 
@@ -105,7 +311,7 @@ public abstract class PlanSpace implements Serializable {
 	 */
 	public List<ScanOperator> scanOperatorsShuffled(Relation rel) {
 		List<ScanOperator> applicableOperators = scanOperators(rel);
-		Collections.shuffle(applicableOperators);
+		Collections.shuffle(applicableOperators, OptimizationContext.current().random);
 		return applicableOperators;
 	}
 	/**
@@ -117,10 +323,8 @@ public abstract class PlanSpace implements Serializable {
 	 */
 	public List<JoinOperator> joinOperators(Plan leftPlan, Plan rightPlan) {
 		List<JoinOperator> applicableJoinOperators = new LinkedList<JoinOperator>();
-		for (JoinOperator joinOperator : consideredJoinOps) {
-			if (joinOperatorApplicable(joinOperator, leftPlan, rightPlan)) {
-				applicableJoinOperators.add(joinOperator);
-			}
+		for (JoinOperator joinOperator : applicableJoinOperators(leftPlan, rightPlan)) {
+			applicableJoinOperators.add(joinOperator);
 		}
 		return applicableJoinOperators;
 	}
@@ -133,7 +337,7 @@ public abstract class PlanSpace implements Serializable {
 	 */
 	public List<JoinOperator> joinOperatorsShuffled(Plan leftPlan, Plan rightPlan) {
 		List<JoinOperator> applicableJoinOperators = joinOperators(leftPlan, rightPlan);
-		Collections.shuffle(applicableJoinOperators);
+		Collections.shuffle(applicableJoinOperators, OptimizationContext.current().random);
 		return applicableJoinOperators;
 	}
 	/**
@@ -144,7 +348,7 @@ public abstract class PlanSpace implements Serializable {
 	 */
 	<T> T randomOperator(List<T> operators) {
 		int nrOperators = operators.size();
-		int randomIndex = RandomNumbers.random.nextInt(nrOperators);
+		int randomIndex = OptimizationContext.current().random.nextInt(nrOperators);
 		return (operators.get(randomIndex));
 	}
 	/**
@@ -165,8 +369,9 @@ public abstract class PlanSpace implements Serializable {
 	 * @return			a random join operator that can process the given inputs
 	 */
 	public JoinOperator randomJoinOperator(Plan leftPlan, Plan rightPlan) {
-		List<JoinOperator> applicableOperators = joinOperators(leftPlan, rightPlan);
-		return randomOperator(applicableOperators);
+		JoinOperator[] applicableOperators = applicableJoinOperators(leftPlan, rightPlan);
+		int randomIndex = OptimizationContext.current().random.nextInt(applicableOperators.length);
+		return applicableOperators[randomIndex];
 	}
 	/**
 	 * Returns random scan operator among the scan operators that can scan the given relation and 
@@ -184,7 +389,7 @@ public abstract class PlanSpace implements Serializable {
 			Iterator<ScanOperator> scanOperatorsIter = scanOperators.iterator();
 			while (scanOperatorsIter.hasNext()) {
 				ScanOperator scanOperator = scanOperatorsIter.next();
-				if (!scanOutputCompatible(scanOperator, nextJoinOperator)) {
+				if (!outputCompatible(scanOperator, nextJoinOperator)) {
 					scanOperatorsIter.remove();
 				}
 			}
@@ -204,15 +409,25 @@ public abstract class PlanSpace implements Serializable {
 		if (nextJoinOperator == null) {
 			return randomJoinOperator(leftPlan, rightPlan);
 		} else {
-			List<JoinOperator> joinOperators = joinOperatorsShuffled(leftPlan, rightPlan);
-			Iterator<JoinOperator> joinOperatorsIter = joinOperators.iterator();
-			while (joinOperatorsIter.hasNext()) {
-				JoinOperator joinOperator = joinOperatorsIter.next();
-				if (!joinOutputComptatible(joinOperator, nextJoinOperator)) {
-					joinOperatorsIter.remove();
+			// Count compatible operators and select one of them with uniform probability
+			JoinOperator[] joinOperators = applicableJoinOperators(leftPlan, rightPlan);
+			int nrCompatible = 0;
+			for (JoinOperator joinOperator : joinOperators) {
+				if (outputCompatible(joinOperator, nextJoinOperator)) {
+					++nrCompatible;
+				}
+			}
+			int selectedIndex = OptimizationContext.current().random.nextInt(nrCompatible);
+			for (JoinOperator joinOperator : joinOperators) {
+				if (outputCompatible(joinOperator, nextJoinOperator)) {
+					if (selectedIndex == 0) {
+						return joinOperator;
+					}
+					--selectedIndex;
 				}
 			}
-			return randomOperator(joinOperators);
+			assert(false);
+			return null;
 		}
 	}
 }
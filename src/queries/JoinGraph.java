@@ -0,0 +1,293 @@
+package queries;
+
+import java.io.Serializable;
+
+import util.TableSetUtil;
+
+/**
+ * Represents the join graph of a query: tables are nodes and two tables are connected by
+ * an edge if a join predicate (i.e., a selectivity value different from one) is defined
+ * between them. The join graph is used to avoid cross products: optimizers can restrict
+ * themselves to join operands that are connected in the join graph and connected to each
+ * other. The neighbors of each table are stored as bit masks of up to two words.
+ *
+ * For queries with at most 64 tables, the class enumerates all pairs of connected table
+ * sets that can be joined without cross product, following the DPccp algorithm by
+ * Moerkotte and Neumann (VLDB 2006). The number of enumerated pairs is often orders of
+ * magnitude lower than the number of all table set splits (e.g., cubic instead of
+ * exponential in the number of tables for chain queries).
+ *
+ * @author immanueltrummer
+ *
+ */
+public class JoinGraph implements Serializable {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The number of tables (nodes) in the join graph.
+	 */
+	public final int nrTables;
+	/**
+	 * Contains for each table the first word of the bit mask representing its neighbors.
+	 */
+	final long[] lowNeighbors;
+	/**
+	 * Contains for each table the second word of the bit mask representing its neighbors.
+	 */
+	final long[] highNeighbors;
+	/**
+	 * Handles pairs of table sets that are enumerated by the join graph.
+	 */
+	public interface PairHandler {
+		/**
+		 * Treats one pair of disjoint, connected table sets that are connected to each other.
+		 *
+		 * @param tableSet1	bit mask representing the first table set
+		 * @param tableSet2	bit mask representing the second table set
+		 * @return			false iff the enumeration should be aborted (e.g., due to a timeout)
+		 */
+		public boolean treat(long tableSet1, long tableSet2);
+	}
+	/**
+	 * Extracts the join graph from the selectivity matrix of the given query.
+	 *
+	 * @param query	the query whose join graph is extracted
+	 */
+	public JoinGraph(Query query) {
+		int nrTables = query.nrTables;
+		assert(nrTables <= TableSetUtil.MAX_TABLES);
+		this.nrTables = nrTables;
+		this.lowNeighbors = new long[nrTables];
+		this.highNeighbors = new long[nrTables];
+		for (int table1=0; table1<nrTables; ++table1) {
+			for (int table2=0; table2<nrTables; ++table2) {
+				if (table1 != table2 && query.selectivities[table1][table2] != 1) {
+					if (table2 < TableSetUtil.WORD_SIZE) {
+						lowNeighbors[table1] |= TableSetUtil.singleton(table2);
+					} else {
+						highNeighbors[table1] |= TableSetUtil.singleton(
+								table2 - TableSetUtil.WORD_SIZE);
+					}
+				}
+			}
+		}
+	}
+	/**
+	 * Returns the neighbors of the given table set that are not contained in the set itself.
+	 * This method can only be used for queries with at most 64 tables.
+	 *
+	 * @param tableSet	bit mask representing a set of tables
+	 * @return			bit mask representing the neighbors of that set
+	 */
+	public long neighbors(long tableSet) {
+		assert(TableSetUtil.fitsInWord(nrTables));
+		long neighbors = 0;
+		for (long remaining = tableSet; remaining != 0; remaining &= remaining - 1) {
+			neighbors |= lowNeighbors[Long.numberOfTrailingZeros(remaining)];
+		}
+		return neighbors & ~tableSet;
+	}
+	/**
+	 * Checks whether the two given table sets are connected by at least one join predicate.
+	 * This method can only be used for queries with at most 64 tables.
+	 *
+	 * @param tableSet1	bit mask representing the first table set
+	 * @param tableSet2	bit mask representing the second table set
+	 * @return			true iff some table in the first set is a neighbor of a table in the second set
+	 */
+	public boolean adjacent(long tableSet1, long tableSet2) {
+		return (neighbors(tableSet1) & tableSet2) != 0;
+	}
+	/**
+	 * Checks whether the given non-empty table set is connected, meaning that its tables can
+	 * be joined without cross product. This method can only be used for queries with at most
+	 * 64 tables.
+	 *
+	 * @param tableSet	bit mask representing a non-empty table set
+	 * @return			true iff each table in the set can be reached from each other table
+	 * 					via join predicates between tables in the set
+	 */
+	public boolean connected(long tableSet) {
+		long reached = tableSet & -tableSet;
+		long newTables = reached;
+		while (newTables != 0) {
+			newTables = neighbors(newTables) & tableSet & ~reached;
+			reached |= newTables;
+		}
+		return reached == tableSet;
+	}
+	/**
+	 * Checks whether the two given table sets, each represented by two words, are connected
+	 * by at least one join predicate.
+	 *
+	 * @param lowWord1	first word of the first table set
+	 * @param highWord1	second word of the first table set
+	 * @param lowWord2	first word of the second table set
+	 * @param highWord2	second word of the second table set
+	 * @return			true iff some table in the first set is a neighbor of a table in the second set
+	 */
+	public boolean adjacent(long lowWord1, long highWord1, long lowWord2, long highWord2) {
+		for (long remaining = lowWord1; remaining != 0; remaining &= remaining - 1) {
+			int table = Long.numberOfTrailingZeros(remaining);
+			if ((lowNeighbors[table] & lowWord2) != 0 || (highNeighbors[table] & highWord2) != 0) {
+				return true;
+			}
+		}
+		for (long remaining = highWord1; remaining != 0; remaining &= remaining - 1) {
+			int table = TableSetUtil.WORD_SIZE + Long.numberOfTrailingZeros(remaining);
+			if ((lowNeighbors[table] & lowWord2) != 0 || (highNeighbors[table] & highWord2) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+	/**
+	 * Checks whether the join graph is connected, meaning that all tables can be joined
+	 * without cross product.
+	 *
+	 * @return	true iff each table can be reached from each other table via join predicates
+	 */
+	public boolean connected() {
+		if (nrTables == 0) {
+			return true;
+		}
+		// Expand set of reached tables, starting from the first table, until no new tables
+		long reachedLow = 1;
+		long reachedHigh = 0;
+		long newLow = reachedLow;
+		long newHigh = reachedHigh;
+		while (newLow != 0 || newHigh != 0) {
+			long expandedLow = reachedLow;
+			long expandedHigh = reachedHigh;
+			for (long remaining = newLow; remaining != 0; remaining &= remaining - 1) {
+				int table = Long.numberOfTrailingZeros(remaining);
+				expandedLow |= lowNeighbors[table];
+				expandedHigh |= highNeighbors[table];
+			}
+			for (long remaining = newHigh; remaining != 0; remaining &= remaining - 1) {
+				int table = TableSetUtil.WORD_SIZE + Long.numberOfTrailingZeros(remaining);
+				expandedLow |= lowNeighbors[table];
+				expandedHigh |= highNeighbors[table];
+			}
+			newLow = expandedLow & ~reachedLow;
+			newHigh = expandedHigh & ~reachedHigh;
+			reachedLow = expandedLow;
+			reachedHigh = expandedHigh;
+		}
+		int nrReached = Long.bitCount(reachedLow) + Long.bitCount(reachedHigh);
+		return nrReached == nrTables;
+	}
+	/**
+	 * Enumerates each unordered pair of disjoint table sets that are connected in the join
+	 * graph and connected to each other exactly once (algorithm DPccp). Pairs are enumerated
+	 * in an order that is suitable for dynamic programming: when a pair is treated, all
+	 * pairs whose union forms one of its two table sets have been treated before. This
+	 * method can only be used for queries with at most 64 tables.
+	 *
+	 * @param handler	treats the enumerated pairs of table sets
+	 * @return			true iff all pairs were enumerated (false if the handler aborted)
+	 */
+	public boolean enumerateConnectedPairs(PairHandler handler) {
+		assert(TableSetUtil.fitsInWord(nrTables));
+		for (int table=nrTables-1; table>=0; --table) {
+			long tableSet = TableSetUtil.singleton(table);
+			// Tables with smaller index are treated as start table later
+			long excluded = tableSet | (tableSet - 1);
+			if (!emitConnected(tableSet, handler) ||
+					!enumerateConnectedRec(tableSet, excluded, handler)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Extends the given connected table set by neighbors that are not excluded, treats
+	 * the resulting connected table sets and extends them recursively.
+	 *
+	 * @param tableSet	a connected table set
+	 * @param excluded	tables that must not be added to the table set
+	 * @param handler	treats pairs of table sets
+	 * @return			true iff the enumeration was not aborted
+	 */
+	boolean enumerateConnectedRec(long tableSet, long excluded, PairHandler handler) {
+		long newNeighbors = neighbors(tableSet) & ~excluded;
+		if (newNeighbors == 0) {
+			return true;
+		}
+		// Iterate over non-empty subsets of new neighbors in ascending order
+		for (long subset = newNeighbors & -newNeighbors; subset != 0;
+				subset = (subset - newNeighbors) & newNeighbors) {
+			if (!emitConnected(tableSet | subset, handler)) {
+				return false;
+			}
+		}
+		for (long subset = newNeighbors & -newNeighbors; subset != 0;
+				subset = (subset - newNeighbors) & newNeighbors) {
+			if (!enumerateConnectedRec(tableSet | subset, excluded | newNeighbors, handler)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Enumerates all connected complements of the given connected table set: each of them
+	 * forms a pair with the given set that is treated by the handler.
+	 *
+	 * @param tableSet	a connected table set
+	 * @param handler	treats pairs of table sets
+	 * @return			true iff the enumeration was not aborted
+	 */
+	boolean emitConnected(long tableSet, PairHandler handler) {
+		// Exclude tables with smaller index than the first table to avoid duplicates
+		long firstTable = tableSet & -tableSet;
+		long excluded = tableSet | (firstTable - 1);
+		long complementNeighbors = neighbors(tableSet) & ~excluded;
+		// Iterate over neighbors in descending order of their index
+		for (long remaining = complementNeighbors; remaining != 0;
+				remaining &= ~Long.highestOneBit(remaining)) {
+			long complement = Long.highestOneBit(remaining);
+			if (!handler.treat(tableSet, complement)) {
+				return false;
+			}
+			long complementExcluded = excluded | (complementNeighbors & (complement | (complement - 1)));
+			if (!enumerateComplementRec(tableSet, complement, complementExcluded, handler)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Extends the given complement by neighbors that are not excluded, treats the pairs
+	 * formed by the fixed table set and the extended complements, and extends those
+	 * complements recursively.
+	 *
+	 * @param tableSet		the fixed connected table set
+	 * @param complement	a connected table set that is connected to the fixed set
+	 * @param excluded		tables that must not be added to the complement
+	 * @param handler		treats pairs of table sets
+	 * @return				true iff the enumeration was not aborted
+	 */
+	boolean enumerateComplementRec(long tableSet, long complement,
+			long excluded, PairHandler handler) {
+		long newNeighbors = neighbors(complement) & ~excluded;
+		if (newNeighbors == 0) {
+			return true;
+		}
+		for (long subset = newNeighbors & -newNeighbors; subset != 0;
+				subset = (subset - newNeighbors) & newNeighbors) {
+			if (!handler.treat(tableSet, complement | subset)) {
+				return false;
+			}
+		}
+		for (long subset = newNeighbors & -newNeighbors; subset != 0;
+				subset = (subset - newNeighbors) & newNeighbors) {
+			if (!enumerateComplementRec(tableSet, complement | subset,
+					excluded | newNeighbors, handler)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
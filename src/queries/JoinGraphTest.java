@@ -0,0 +1,133 @@
+package queries;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import common.RandomNumbers;
+
+import org.junit.Test;
+
+public class JoinGraphTest {
+	/**
+	 * Checks by brute force whether the given table set is connected in the join graph.
+	 *
+	 * @param joinGraph	the join graph
+	 * @param tableSet	bit mask representing a non-empty table set
+	 * @return			true iff the table set is connected
+	 */
+	static boolean connectedBruteForce(JoinGraph joinGraph, long tableSet) {
+		long reached = tableSet & -tableSet;
+		long previous = 0;
+		while (reached != previous) {
+			previous = reached;
+			reached |= joinGraph.neighbors(reached) & tableSet;
+		}
+		return reached == tableSet;
+	}
+	/**
+	 * Enumerates pairs of table sets via the join graph and verifies that each expected
+	 * pair is enumerated exactly once, in an order that is suitable for dynamic programming.
+	 *
+	 * @param query	the query whose join graph is used
+	 * @return		the number of enumerated pairs
+	 */
+	static int verifyPairs(Query query) {
+		final JoinGraph joinGraph = new JoinGraph(query);
+		int nrTables = query.nrTables;
+		// Calculate expected pairs by brute force, counting pairs per union set
+		final Set<String> expectedPairs = new HashSet<String>();
+		final Map<Long, Integer> remainingPairs = new HashMap<Long, Integer>();
+		long allTables = (1L << nrTables) - 1;
+		for (long set1=1; set1<=allTables; ++set1) {
+			for (long set2=set1+1; set2<=allTables; ++set2) {
+				if ((set1 & set2) == 0 && connectedBruteForce(joinGraph, set1) &&
+						connectedBruteForce(joinGraph, set2) && joinGraph.adjacent(set1, set2)) {
+					expectedPairs.add(set1 + "-" + set2);
+					Integer nrPairs = remainingPairs.get(set1 | set2);
+					remainingPairs.put(set1 | set2, nrPairs == null ? 1 : nrPairs + 1);
+				}
+			}
+		}
+		final Set<String> enumeratedPairs = new HashSet<String>();
+		boolean complete = joinGraph.enumerateConnectedPairs(new JoinGraph.PairHandler() {
+			@Override
+			public boolean treat(long tableSet1, long tableSet2) {
+				long min = Math.min(tableSet1, tableSet2);
+				long max = Math.max(tableSet1, tableSet2);
+				// Each pair is enumerated once
+				assertTrue(enumeratedPairs.add(min + "-" + max));
+				// All pairs forming the operands have been enumerated before
+				assertFalse(remainingPairs.containsKey(tableSet1) &&
+						remainingPairs.get(tableSet1) > 0);
+				assertFalse(remainingPairs.containsKey(tableSet2) &&
+						remainingPairs.get(tableSet2) > 0);
+				long union = tableSet1 | tableSet2;
+				remainingPairs.put(union, remainingPairs.get(union) - 1);
+				return true;
+			}
+		});
+		assertTrue(complete);
+		assertEquals(expectedPairs, enumeratedPairs);
+		return enumeratedPairs.size();
+	}
+
+	@Test
+	public void test() {
+		// Neighbors, adjacency and connectivity
+		{
+			double[] cardinalities = new double[] {10, 10, 10, 10};
+			double[][] selectivities = new double[][] {
+				{1, 0.1, 1, 1}, {0.1, 1, 1, 1}, {1, 1, 1, 0.5}, {1, 1, 0.5, 1}};
+			Query query = new Query(4, cardinalities, selectivities);
+			JoinGraph joinGraph = new JoinGraph(query);
+			assertEquals(2, joinGraph.neighbors(1));
+			assertEquals(0, joinGraph.neighbors(3));
+			assertEquals(4, joinGraph.neighbors(1 | 2 | 8));
+			assertTrue(joinGraph.adjacent(1, 2));
+			assertFalse(joinGraph.adjacent(3, 12));
+			assertTrue(joinGraph.adjacent(3, 0, 2, 0));
+			assertFalse(joinGraph.adjacent(3, 0, 12, 0));
+			assertFalse(joinGraph.connected());
+			assertTrue(joinGraph.connected(1 | 2));
+			assertTrue(joinGraph.connected(4));
+			assertFalse(joinGraph.connected(1 | 4));
+			selectivities[1][2] = 0.2;
+			selectivities[2][1] = 0.2;
+			joinGraph = new JoinGraph(query);
+			assertTrue(joinGraph.connected());
+			assertTrue(joinGraph.adjacent(3, 12));
+			assertTrue(joinGraph.connected(2 | 4 | 8));
+			assertFalse(joinGraph.connected(1 | 4 | 8));
+		}
+		// Numbers of pairs for chain and star queries are known
+		for (int nrTables=2; nrTables<=8; ++nrTables) {
+			Query chain = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, nrTables, JoinType.RANDOM);
+			assertEquals((nrTables * nrTables * nrTables - nrTables) / 6, verifyPairs(chain));
+			Query star = QueryFactory.produceSteinbrunn(JoinGraphType.STAR, nrTables, JoinType.RANDOM);
+			assertEquals((nrTables - 1) * (1 << (nrTables - 2)), verifyPairs(star));
+			Query cycle = QueryFactory.produceSteinbrunn(JoinGraphType.CYCLE, nrTables, JoinType.RANDOM);
+			verifyPairs(cycle);
+		}
+		// Pairs are enumerated correctly for arbitrary join graphs
+		for (int queryCtr=0; queryCtr<20; ++queryCtr) {
+			int nrTables = 2 + queryCtr % 7;
+			double[] cardinalities = new double[nrTables];
+			double[][] selectivities = new double[nrTables][nrTables];
+			for (int table1=0; table1<nrTables; ++table1) {
+				cardinalities[table1] = 100;
+				for (int table2=0; table2<=table1; ++table2) {
+					boolean predicate = table1 != table2 &&
+							RandomNumbers.random.nextDouble() < 0.4;
+					selectivities[table1][table2] = predicate ? 0.1 : 1;
+					selectivities[table2][table1] = selectivities[table1][table2];
+				}
+			}
+			verifyPairs(new Query(nrTables, cardinalities, selectivities));
+		}
+	}
+
+}
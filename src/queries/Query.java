@@ -47,6 +47,28 @@ public class Query implements Serializable {
 		this.tableCardinalities = tableCardinalities;
 		this.selectivities = selectivities;
 	}
+	/**
+	 * Creates a new query that joins all tables of this query and one additional table
+	 * whose index is the number of tables of this query. This query is not changed.
+	 *
+	 * @param cardinality	the cardinality of the added table
+	 * @param selectivities	the selectivity between each table of this query and the added table
+	 * @return				a query with one additional table
+	 */
+	public Query addTable(double cardinality, double[] selectivities) {
+		assert(selectivities.length == nrTables);
+		int newNrTables = nrTables + 1;
+		double[] newCardinalities = Arrays.copyOf(tableCardinalities, newNrTables);
+		newCardinalities[nrTables] = cardinality;
+		double[][] newSelectivities = new double[newNrTables][];
+		for (int table=0; table<nrTables; ++table) {
+			newSelectivities[table] = Arrays.copyOf(this.selectivities[table], newNrTables);
+			newSelectivities[table][nrTables] = selectivities[table];
+		}
+		newSelectivities[nrTables] = Arrays.copyOf(selectivities, newNrTables);
+		newSelectivities[nrTables][nrTables] = 1;
+		return new Query(newNrTables, newCardinalities, newSelectivities);
+	}
 	@Override
 	public String toString() {
 		String output = "Cardinalities:";
@@ -1,8 +1,9 @@
 package queries;
 
-import static common.RandomNumbers.*;
-
 import java.util.Arrays;
+import java.util.Random;
+
+import common.RandomNumbers;
 
 /**
  * Produces queries whose cardinalities and selectivities are selected randomly.
@@ -17,10 +18,11 @@ public class QueryFactory {
 	 * Calculate selectivities between two tables based on the domain sizes of the join columns and the table cardinalities.
 	 * @param domain1Size	number of distinct values in join column 1
 	 * @param domain2Size	number of distinct values in join column 2
+	 * @param random		random number generator for randomly selected selectivities
 	 * @return				the estimated selectivity for an equality join
 	 */
 	static double calculateSelectivity(double domain1Size, double domain2Size, 
-			double cardinality1, double cardinality2, JoinType joinType) {
+			double cardinality1, double cardinality2, JoinType joinType, Random random) {
 		switch (joinType) {
 		case RANDOM:
 			return random.nextDouble();
@@ -60,6 +62,23 @@ public class QueryFactory {
 	 */
 	public static Query produce(JoinGraphType joinGraphType, 
 			int nrTables, double maxCardinality, JoinType joinType) {
+		return produce(joinGraphType, nrTables, maxCardinality, joinType, RandomNumbers.random);
+	}
+	/**
+	 * Produce queries as described above, drawing all random numbers from the given
+	 * generator. Passing a seeded stream makes query generation reproducible even if
+	 * queries are generated by multiple threads.
+	 * 
+	 * @param joinGraphType		structure of join graph
+	 * @param nrTables			number of joined tables
+	 * @param maxCardinality	maximal cardinality of base tables
+	 * @param joinType			determines how predicate selectivities are chosen
+	 * @param random			random number generator used for query generation
+	 * @return					a query object that was generated randomly 
+	 * 							under the given constraints 
+	 */
+	public static Query produce(JoinGraphType joinGraphType, int nrTables, 
+			double maxCardinality, JoinType joinType, Random random) {
 		assert(maxCardinality >= 1);
 		// calculate scaling factor
 		double scaling = maxCardinality / 100000.0;
@@ -143,7 +162,7 @@ public class QueryFactory {
 					double cardinality1 = cardinalities[0];
 					double cardinality2 = cardinalities[dimTableIndex];
 					double selectivity = calculateSelectivity(
-							domain1Size, domain2Size, cardinality1, cardinality2, joinType);
+							domain1Size, domain2Size, cardinality1, cardinality2, joinType, random);
 					selectivityMatrix[0][dimTableIndex] = selectivity;
 					selectivityMatrix[dimTableIndex][0] = selectivity;
 				}
@@ -157,7 +176,7 @@ public class QueryFactory {
 					double cardinality1 = cardinalities[table1Index];
 					double cardinality2 = cardinalities[table2Index];
 					double selectivity = calculateSelectivity(
-							domain1Size, domain2Size, cardinality1, cardinality2, joinType);
+							domain1Size, domain2Size, cardinality1, cardinality2, joinType, random);
 					selectivityMatrix[table1Index][table2Index] = selectivity;
 					selectivityMatrix[table2Index][table1Index] = selectivity;
 				}
@@ -171,7 +190,7 @@ public class QueryFactory {
 					double cardinality1 = cardinalities[table1Index];
 					double cardinality2 = cardinalities[table2Index];
 					double selectivity = calculateSelectivity(
-							domain1Size, domain2Size, cardinality1, cardinality2, joinType);
+							domain1Size, domain2Size, cardinality1, cardinality2, joinType, random);
 					selectivityMatrix[table1Index][table2Index] = selectivity;
 					selectivityMatrix[table2Index][table1Index] = selectivity;
 				}
@@ -181,7 +200,7 @@ public class QueryFactory {
 				double cardinality1 = cardinalities[0];
 				double cardinality2 = cardinalities[nrTables-1];
 				double selectivity = calculateSelectivity(
-						domain1Size, domain2Size, cardinality1, cardinality2, joinType);
+						domain1Size, domain2Size, cardinality1, cardinality2, joinType, random);
 				selectivityMatrix[0][nrTables-1] = selectivity;
 				selectivityMatrix[nrTables-1][0] = selectivity;
 				break;
@@ -202,4 +221,18 @@ public class QueryFactory {
 	public static Query produceSteinbrunn(JoinGraphType joinGraph, int nrTables, JoinType joinType) {
 		return produce(joinGraph, nrTables, 100000, joinType);
 	}
+	/**
+	 * Produces a query with default cardinality range as in the original Steinbrunn paper,
+	 * drawing all random numbers from the given generator.
+	 * 
+	 * @param joinGraph	join graph structure
+	 * @param nrTables	number of query tables
+	 * @param joinType	determines how predicate selectivities are chosen
+	 * @param random	random number generator used for query generation
+	 * @return			a randomly generated query under the given constraints
+	 */
+	public static Query produceSteinbrunn(JoinGraphType joinGraph, 
+			int nrTables, JoinType joinType, Random random) {
+		return produce(joinGraph, nrTables, 100000, joinType, random);
+	}
 }
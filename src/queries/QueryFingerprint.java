@@ -0,0 +1,318 @@
+package queries;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Canonical representation of a query that does not depend on the numbering of its tables.
+ * Cardinalities and selectivities are quantized on a logarithmic scale such that values that
+ * differ by less than a given relative precision are mapped to the same bucket. Tables are
+ * ordered canonically via color refinement: tables are initially colored by their cardinality
+ * and colors are repeatedly refined by the multiset of (selectivity, color) pairs connecting
+ * each table to the other tables. If several tables remain indistinguishable, the table with
+ * the lowest index among them is individualized and refinement continues.
+ * <p>
+ * Two fingerprints are equal iff the quantized cardinalities and selectivities of both
+ * queries are equal in canonical table order. Hence, equal fingerprints imply that both
+ * queries are equivalent up to table numbering (and quantization), while isomorphic queries
+ * might in rare cases (symmetric tables that are not interchangeable) obtain different
+ * fingerprints. Fingerprints can also be calculated for the sub-query induced by a subset
+ * of the query tables; table positions then refer to indices within that subset.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class QueryFingerprint implements Serializable {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The number of represented query tables.
+	 */
+	public final int nrTables;
+	/**
+	 * The quantized cardinality of each table in canonical order.
+	 */
+	final long[] cardinalities;
+	/**
+	 * The quantized selectivities between tables in canonical order: contains for each
+	 * table position the selectivities to all tables at higher positions.
+	 */
+	final long[] selectivities;
+	/**
+	 * Contains for each canonical position the index of the represented table at that
+	 * position (for sub-queries, the index within the table subset).
+	 */
+	final int[] tableAtPosition;
+	/**
+	 * Contains for each represented table its canonical position.
+	 */
+	final int[] positionOfTable;
+	/**
+	 * Hash code over the quantized cardinalities and selectivities.
+	 */
+	final int hashCode;
+	/**
+	 * Calculates the fingerprint of the given query.
+	 *
+	 * @param query		the query to represent
+	 * @param precision	relative difference below which values may share the same bucket
+	 */
+	public QueryFingerprint(Query query, double precision) {
+		this(query, allTables(query.nrTables), precision);
+	}
+	/**
+	 * Calculates the fingerprint of the sub-query that joins the given tables, taking into
+	 * account their cardinalities and the selectivities of predicates between them.
+	 *
+	 * @param query		the query containing the tables
+	 * @param tables	indices of the query tables to represent
+	 * @param precision	relative difference below which values may share the same bucket
+	 */
+	public QueryFingerprint(Query query, int[] tables, double precision) {
+		assert(precision > 0);
+		int nrTables = tables.length;
+		this.nrTables = nrTables;
+		// Quantize query properties
+		double bucketWidth = Math.log1p(precision);
+		long[] tableBuckets = new long[nrTables];
+		long[][] selectivityBuckets = new long[nrTables][nrTables];
+		for (int table1=0; table1<nrTables; ++table1) {
+			int queryTable1 = tables[table1];
+			tableBuckets[table1] = quantize(query.tableCardinalities[queryTable1], bucketWidth);
+			for (int table2=0; table2<nrTables; ++table2) {
+				selectivityBuckets[table1][table2] = quantize(
+						query.selectivities[queryTable1][tables[table2]], bucketWidth);
+			}
+		}
+		// Order tables canonically
+		int[] colors = ranks(tableBuckets);
+		int nrColors = refine(colors, selectivityBuckets);
+		while (nrColors < nrTables) {
+			individualize(colors);
+			nrColors = refine(colors, selectivityBuckets);
+		}
+		this.tableAtPosition = new int[nrTables];
+		this.positionOfTable = colors;
+		for (int table=0; table<nrTables; ++table) {
+			tableAtPosition[colors[table]] = table;
+		}
+		// Store quantized properties in canonical order
+		this.cardinalities = new long[nrTables];
+		this.selectivities = new long[nrTables * (nrTables - 1) / 2];
+		int selectivityCtr = 0;
+		for (int position1=0; position1<nrTables; ++position1) {
+			int table1 = tableAtPosition[position1];
+			cardinalities[position1] = tableBuckets[table1];
+			for (int position2=position1+1; position2<nrTables; ++position2) {
+				int table2 = tableAtPosition[position2];
+				selectivities[selectivityCtr] = selectivityBuckets[table1][table2];
+				++selectivityCtr;
+			}
+		}
+		this.hashCode = 31 * Arrays.hashCode(cardinalities) + Arrays.hashCode(selectivities);
+	}
+	/**
+	 * Returns the indices of all tables of a query with the given number of tables.
+	 *
+	 * @param nrTables	the number of query tables
+	 * @return			the table indices in ascending order
+	 */
+	static int[] allTables(int nrTables) {
+		int[] tables = new int[nrTables];
+		for (int table=0; table<nrTables; ++table) {
+			tables[table] = table;
+		}
+		return tables;
+	}
+	/**
+	 * Maps a positive value to the index of its bucket on a logarithmic scale.
+	 *
+	 * @param value			the value to quantize
+	 * @param bucketWidth	the width of one bucket on logarithmic scale
+	 * @return				the index of the bucket containing the value
+	 */
+	static long quantize(double value, double bucketWidth) {
+		if (value <= 0) {
+			return Long.MIN_VALUE;
+		}
+		return Math.round(Math.log(value) / bucketWidth);
+	}
+	/**
+	 * Assigns to each value the rank of that value among the distinct given values.
+	 *
+	 * @param values	a vector of values
+	 * @return			the rank of each value (equal values obtain equal ranks)
+	 */
+	static int[] ranks(long[] values) {
+		long[] sortedValues = Arrays.copyOf(values, values.length);
+		Arrays.sort(sortedValues);
+		int nrDistinct = 0;
+		for (int valueCtr=0; valueCtr<sortedValues.length; ++valueCtr) {
+			if (valueCtr == 0 || sortedValues[valueCtr] != sortedValues[valueCtr-1]) {
+				sortedValues[nrDistinct] = sortedValues[valueCtr];
+				++nrDistinct;
+			}
+		}
+		int[] ranks = new int[values.length];
+		for (int valueCtr=0; valueCtr<values.length; ++valueCtr) {
+			ranks[valueCtr] = Arrays.binarySearch(sortedValues, 0, nrDistinct, values[valueCtr]);
+		}
+		return ranks;
+	}
+	/**
+	 * Refines table colors until a fixpoint is reached. The new color of a table is
+	 * determined by its old color and by the sorted (selectivity, color) pairs of its
+	 * connections to all other tables. Colors are canonical ranks of those signatures.
+	 *
+	 * @param colors		the color of each table - refined in place
+	 * @param selectivities	quantized selectivity between each pair of tables
+	 * @return				the number of distinct colors after refinement
+	 */
+	static int refine(int[] colors, long[][] selectivities) {
+		final int nrTables = colors.length;
+		int nrColors = nrDistinct(colors);
+		while (true) {
+			// Calculate signature of each table
+			final long[][] signatures = new long[nrTables][];
+			for (int table=0; table<nrTables; ++table) {
+				long[][] connections = new long[nrTables - 1][];
+				int connectionCtr = 0;
+				for (int otherTable=0; otherTable<nrTables; ++otherTable) {
+					if (otherTable != table) {
+						connections[connectionCtr] = new long[] {
+								selectivities[table][otherTable], colors[otherTable]};
+						++connectionCtr;
+					}
+				}
+				Arrays.sort(connections, LEXICOGRAPHIC);
+				long[] signature = new long[2 * nrTables - 1];
+				signature[0] = colors[table];
+				for (int connectionIndex=0; connectionIndex<nrTables-1; ++connectionIndex) {
+					signature[1 + 2 * connectionIndex] = connections[connectionIndex][0];
+					signature[2 + 2 * connectionIndex] = connections[connectionIndex][1];
+				}
+				signatures[table] = signature;
+			}
+			// Replace colors by ranks of signatures
+			Integer[] order = new Integer[nrTables];
+			for (int table=0; table<nrTables; ++table) {
+				order[table] = table;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer table1, Integer table2) {
+					return LEXICOGRAPHIC.compare(signatures[table1], signatures[table2]);
+				}
+			});
+			int newNrColors = 0;
+			for (int orderCtr=0; orderCtr<nrTables; ++orderCtr) {
+				if (orderCtr > 0 && LEXICOGRAPHIC.compare(signatures[order[orderCtr]],
+						signatures[order[orderCtr-1]]) != 0) {
+					++newNrColors;
+				}
+				colors[order[orderCtr]] = newNrColors;
+			}
+			++newNrColors;
+			// Signatures start with the old color so refinement never merges colors
+			if (newNrColors == nrColors) {
+				return nrColors;
+			}
+			nrColors = newNrColors;
+		}
+	}
+	/**
+	 * Gives the table with the lowest index among the tables sharing the lowest shared
+	 * color a color of its own that precedes the color of the other tables.
+	 *
+	 * @param colors	the color of each table - changed in place
+	 */
+	static void individualize(int[] colors) {
+		int nrTables = colors.length;
+		int[] colorCount = new int[nrTables];
+		for (int table=0; table<nrTables; ++table) {
+			++colorCount[colors[table]];
+		}
+		int sharedColor = 0;
+		while (colorCount[sharedColor] < 2) {
+			++sharedColor;
+		}
+		boolean individualized = false;
+		for (int table=0; table<nrTables; ++table) {
+			boolean individualize = !individualized && colors[table] == sharedColor;
+			colors[table] = 2 * colors[table] + (individualize ? 0 : 1);
+			individualized |= individualize;
+		}
+	}
+	/**
+	 * Counts the number of distinct colors.
+	 *
+	 * @param colors	the color of each table
+	 * @return			the number of distinct values
+	 */
+	static int nrDistinct(int[] colors) {
+		int[] sortedColors = Arrays.copyOf(colors, colors.length);
+		Arrays.sort(sortedColors);
+		int nrDistinct = 0;
+		for (int colorCtr=0; colorCtr<sortedColors.length; ++colorCtr) {
+			if (colorCtr == 0 || sortedColors[colorCtr] != sortedColors[colorCtr-1]) {
+				++nrDistinct;
+			}
+		}
+		return nrDistinct;
+	}
+	/**
+	 * Compares vectors of the same length lexicographically.
+	 */
+	static final Comparator<long[]> LEXICOGRAPHIC = new Comparator<long[]>() {
+		@Override
+		public int compare(long[] vector1, long[] vector2) {
+			for (int index=0; index<vector1.length; ++index) {
+				int comparison = Long.compare(vector1[index], vector2[index]);
+				if (comparison != 0) {
+					return comparison;
+				}
+			}
+			return 0;
+		}
+	};
+	/**
+	 * Returns the index of the represented table at the given canonical position.
+	 *
+	 * @param position	a canonical table position
+	 * @return			the index of the table at that position
+	 */
+	public int tableAt(int position) {
+		return tableAtPosition[position];
+	}
+	/**
+	 * Returns the canonical position of the given represented table.
+	 *
+	 * @param tableIndex	the index of a represented table
+	 * @return				the canonical position of that table
+	 */
+	public int positionOf(int tableIndex) {
+		return positionOfTable[tableIndex];
+	}
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof QueryFingerprint)) {
+			return false;
+		}
+		QueryFingerprint otherFingerprint = (QueryFingerprint)other;
+		return hashCode == otherFingerprint.hashCode &&
+				Arrays.equals(cardinalities, otherFingerprint.cardinalities) &&
+				Arrays.equals(selectivities, otherFingerprint.selectivities);
+	}
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+	@Override
+	public String toString() {
+		return "Cardinalities: " + Arrays.toString(cardinalities) +
+				"; Selectivities: " + Arrays.toString(selectivities);
+	}
+}
@@ -0,0 +1,97 @@
+package queries;
+
+import static org.junit.Assert.*;
+import static common.RandomNumbers.*;
+import static util.TestUtil.*;
+
+import org.junit.Test;
+
+public class QueryFingerprintTest {
+	/**
+	 * Generates a random permutation of the given number of elements.
+	 *
+	 * @param nrElements	the number of elements to permute
+	 * @return				a random permutation
+	 */
+	static int[] randomPermutation(int nrElements) {
+		int[] permutation = new int[nrElements];
+		for (int element=0; element<nrElements; ++element) {
+			permutation[element] = element;
+		}
+		for (int element=nrElements-1; element>0; --element) {
+			int otherElement = random.nextInt(element + 1);
+			int tmp = permutation[element];
+			permutation[element] = permutation[otherElement];
+			permutation[otherElement] = tmp;
+		}
+		return permutation;
+	}
+
+	@Test
+	public void test() {
+		// Renumbering tables does not change the fingerprint
+		for (JoinGraphType graphType : JoinGraphType.values()) {
+			for (int queryCtr=0; queryCtr<20; ++queryCtr) {
+				int nrTables = 2 + random.nextInt(10);
+				Query query = QueryFactory.produceSteinbrunn(graphType, nrTables, JoinType.RANDOM);
+				int[] permutation = randomPermutation(nrTables);
+				Query permutedQuery = permute(query, permutation);
+				QueryFingerprint fingerprint = new QueryFingerprint(query, 1E-6);
+				QueryFingerprint permutedFingerprint = new QueryFingerprint(permutedQuery, 1E-6);
+				assertEquals(fingerprint, permutedFingerprint);
+				assertEquals(fingerprint.hashCode(), permutedFingerprint.hashCode());
+				// Tables at the same canonical position have the same properties
+				for (int position=0; position<nrTables; ++position) {
+					int table = fingerprint.tableAt(position);
+					int permutedTable = permutedFingerprint.tableAt(position);
+					assertEquals(position, fingerprint.positionOf(table));
+					assertEquals(query.tableCardinalities[table],
+							permutedQuery.tableCardinalities[permutedTable], 1E-9);
+					for (int position2=0; position2<nrTables; ++position2) {
+						assertEquals(query.selectivities[table][fingerprint.tableAt(position2)],
+								permutedQuery.selectivities[permutedTable]
+										[permutedFingerprint.tableAt(position2)], 1E-9);
+					}
+				}
+			}
+		}
+		// Tables that cannot be distinguished by refinement are individualized
+		{
+			int nrTables = 6;
+			double[] cardinalities = new double[nrTables];
+			double[][] selectivities = new double[nrTables][nrTables];
+			for (int table1=0; table1<nrTables; ++table1) {
+				cardinalities[table1] = 100;
+				for (int table2=0; table2<nrTables; ++table2) {
+					boolean adjacent = table1 != table2 && (Math.abs(table1 - table2) == 1 ||
+							Math.abs(table1 - table2) == nrTables - 1);
+					selectivities[table1][table2] = adjacent ? 0.1 : 1;
+				}
+			}
+			Query cycleQuery = new Query(nrTables, cardinalities, selectivities);
+			QueryFingerprint fingerprint = new QueryFingerprint(cycleQuery, 1E-6);
+			assertEquals(fingerprint, new QueryFingerprint(
+					permute(cycleQuery, randomPermutation(nrTables)), 1E-6));
+			for (int table=0; table<nrTables; ++table) {
+				assertEquals(table, fingerprint.tableAt(fingerprint.positionOf(table)));
+			}
+		}
+		// Changing cardinalities or selectivities changes the fingerprint
+		{
+			Query query = QueryFactory.produceSteinbrunn(JoinGraphType.CHAIN, 5, JoinType.MN);
+			QueryFingerprint fingerprint = new QueryFingerprint(query, 1E-6);
+			Query changedQuery = permute(query, new int[] {0, 1, 2, 3, 4});
+			changedQuery.tableCardinalities[2] *= 1.1;
+			assertFalse(fingerprint.equals(new QueryFingerprint(changedQuery, 1E-6)));
+			changedQuery = permute(query, new int[] {0, 1, 2, 3, 4});
+			changedQuery.selectivities[1][2] *= 0.5;
+			changedQuery.selectivities[2][1] *= 0.5;
+			assertFalse(fingerprint.equals(new QueryFingerprint(changedQuery, 1E-6)));
+			// Differences below the precision are tolerated
+			changedQuery = permute(query, new int[] {0, 1, 2, 3, 4});
+			changedQuery.tableCardinalities[2] *= 1 + 1E-12;
+			assertEquals(fingerprint, new QueryFingerprint(changedQuery, 1E-6));
+		}
+	}
+
+}
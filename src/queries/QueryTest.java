@@ -5,6 +5,7 @@ import static util.TestUtil.*;
 import plans.Plan;
 import plans.ScanPlan;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
 
@@ -31,6 +32,27 @@ public class QueryTest {
 		}
 		// Compare both sets
 		assertEquals(expectedScannedTables, scannedTables);
+		// Adding a table keeps previous tables and extends the selectivity matrix
+		{
+			double[] newSelectivities = new double[10];
+			Arrays.fill(newSelectivities, 1);
+			newSelectivities[3] = 0.25;
+			Query extendedQuery = query.addTable(500, newSelectivities);
+			assertEquals(11, extendedQuery.nrTables);
+			assertEquals(10, query.nrTables);
+			assertEquals(500, extendedQuery.tableCardinalities[10], EPSILON);
+			assertEquals(0.25, extendedQuery.selectivities[3][10], EPSILON);
+			assertEquals(0.25, extendedQuery.selectivities[10][3], EPSILON);
+			assertEquals(1, extendedQuery.selectivities[10][10], EPSILON);
+			for (int table1=0; table1<10; ++table1) {
+				assertEquals(query.tableCardinalities[table1],
+						extendedQuery.tableCardinalities[table1], EPSILON);
+				for (int table2=0; table2<10; ++table2) {
+					assertEquals(query.selectivities[table1][table2],
+							extendedQuery.selectivities[table1][table2], EPSILON);
+				}
+			}
+		}
 	}
 
 }
@@ -0,0 +1,104 @@
+package relations;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import util.TableSetUtil;
+
+/**
+ * Stores relations in a flat array that is directly indexed by the bit mask representing
+ * the joined table set. This store is meant for exhaustive dynamic programming over queries with
+ * few tables where all table subsets are eventually generated anyway: lookups then consist
+ * of a single array access without hashing, probing, or allocation.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public class DenseRelationTable extends RelationStore {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Maximal number of query tables for which a dense table is used. Each additional table
+	 * doubles the memory consumption; for 20 tables, the array takes about 8 MB.
+	 */
+	public final static int MAX_TABLES = 20;
+	/**
+	 * The number of query tables whose subsets index the array.
+	 */
+	public final int nrTables;
+	/**
+	 * Contains at position i the relation joining the tables in the set with bit mask i
+	 * or null if that relation was not yet inserted.
+	 */
+	public final Relation[] relations;
+	/**
+	 * The number of stored relations.
+	 */
+	int size = 0;
+	/**
+	 * Initializes an empty table with one slot per subset of the query tables.
+	 * 
+	 * @param nrTables	the number of query tables (at most MAX_TABLES)
+	 */
+	public DenseRelationTable(int nrTables) {
+		assert(nrTables <= MAX_TABLES) : "Too many tables for dense storage: " + nrTables;
+		this.nrTables = nrTables;
+		int nrSubsets = 1 << nrTables;
+		this.relations = new Relation[nrSubsets];
+	}
+	/**
+	 * Returns true iff queries with the given number of tables can be treated by a dense table.
+	 * 
+	 * @param nrTables	the number of query tables
+	 * @return			true iff dense storage is applicable
+	 */
+	public static boolean applicable(int nrTables) {
+		return nrTables <= MAX_TABLES;
+	}
+
+	@Override
+	public Relation get(long tableSet) {
+		return relations[(int)tableSet];
+	}
+
+	@Override
+	public Relation get(BitSet tableSet) {
+		assert(tableSet.length() <= nrTables);
+		return relations[(int)TableSetUtil.word(tableSet, 0)];
+	}
+
+	@Override
+	public void put(long tableSet, Relation relation) {
+		assert(relation != null);
+		int index = (int)tableSet;
+		if (relations[index] == null) {
+			++size;
+		}
+		relations[index] = relation;
+	}
+
+	@Override
+	public void put(Relation relation) {
+		assert(relation.highTableBits == 0);
+		put(relation.lowTableBits, relation);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<Relation> values() {
+		List<Relation> result = new ArrayList<Relation>(size);
+		for (Relation relation : relations) {
+			if (relation != null) {
+				result.add(relation);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,43 @@
+package relations;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import queries.Query;
+import util.TestUtil;
+
+public class DenseRelationTableTest {
+
+	@Test
+	public void test() {
+		double[] cardinalities = new double[] {10, 100, 500};
+		double[][] selectivities = TestUtil.defaultSelectivityMatrix(3);
+		TestUtil.setSelectivity(selectivities, 0, 1, 0.5);
+		Query query = new Query(3, cardinalities, selectivities);
+		DenseRelationTable table = new DenseRelationTable(3);
+		assertEquals(8, table.relations.length);
+		// Insert single tables and one join result
+		Relation rel0 = RelationFactory.createSingleTableRel(query, 0);
+		Relation rel1 = RelationFactory.createSingleTableRel(query, 1);
+		table.put(rel0);
+		table.put(rel1);
+		Relation rel01 = RelationFactory.createJoinRel(query, rel0, rel1);
+		table.put(3, rel01);
+		assertEquals(3, table.size());
+		// Look up relations
+		assertSame(rel1, table.get(2));
+		assertSame(rel01, table.get(3));
+		assertNull(table.get(4));
+		BitSet tableSet = new BitSet();
+		tableSet.set(0);
+		tableSet.set(1);
+		assertSame(rel01, table.get(tableSet));
+		assertEquals(3, table.values().size());
+		assertTrue(DenseRelationTable.applicable(DenseRelationTable.MAX_TABLES));
+		assertFalse(DenseRelationTable.applicable(DenseRelationTable.MAX_TABLES + 1));
+	}
+
+}
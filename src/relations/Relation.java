@@ -6,6 +6,7 @@ import java.util.List;
 
 import common.Constants;
 import plans.Plan;
+import util.TableSetUtil;
  
 /**
  * Represents a base table or a join between several tables.
@@ -22,6 +23,16 @@ public class Relation implements Serializable {
 	 * Indices of the tables that are joined in this relation.
 	 */
 	public final BitSet tableSet;
+	/**
+	 * Bits of the table set for the tables with index from 0 to 63. Together with the
+	 * high bits, this is used as primitive key when looking up relations. Both words
+	 * only represent the table set if it contains no table with index above 127.
+	 */
+	public final long lowTableBits;
+	/**
+	 * Bits of the table set for the tables with index from 64 to 127.
+	 */
+	public final long highTableBits;
 	/**
 	 * The number of rows of this relation.
 	 */
@@ -32,7 +43,8 @@ public class Relation implements Serializable {
 	public final double pages;
 	/**
 	 * The Pareto-optimal plans for creating this relation - this field
-	 * is not used by all optimization algorithms.
+	 * is not used by all optimization algorithms. When initialized by pruning,
+	 * this is a frontier storing plan cost values column-wise.
 	 */
 	public List<Plan> ParetoPlans;
 	/**
@@ -58,6 +70,8 @@ public class Relation implements Serializable {
 	
 	public Relation(BitSet tableSet, double cardinality) {
 		this.tableSet = tableSet;
+		this.lowTableBits = TableSetUtil.word(tableSet, 0);
+		this.highTableBits = TableSetUtil.word(tableSet, 1);
 		this.cardinality = cardinality;
 		this.pages = Math.ceil(cardinality * Constants.BYTES_PER_TUPLE/Constants.BYTES_PER_PAGE);
 	}
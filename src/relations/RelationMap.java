@@ -0,0 +1,211 @@
+package relations;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import util.TableSetUtil;
+
+/**
+ * Maps table sets to the relations joining them. Table sets are represented by two
+ * primitive <code>long</code> words (see {@link TableSetUtil}) and entries are stored
+ * in an open-addressing hash table with linear probing. Compared to a hash map with
+ * BitSet keys, lookups neither allocate nor compare key objects. For queries with at
+ * most 64 tables, the high word is always zero and the single word lookup methods
+ * can be used. Relations joining tables with index above 127 cannot be stored.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class RelationMap extends RelationStore {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Initial number of slots if no expected size is specified.
+	 */
+	final static int DEFAULT_CAPACITY = 64;
+	/**
+	 * The low words of the table sets stored in each slot.
+	 */
+	long[] lowKeys;
+	/**
+	 * The high words of the table sets stored in each slot.
+	 */
+	long[] highKeys;
+	/**
+	 * The relations stored in each slot - null marks an empty slot.
+	 */
+	Relation[] values;
+	/**
+	 * The number of stored relations.
+	 */
+	int size;
+	/**
+	 * Bit mask used to map hash values to slot indices (capacity minus one).
+	 */
+	int slotMask;
+	/**
+	 * Initializes an empty map with default capacity.
+	 */
+	public RelationMap() {
+		this(DEFAULT_CAPACITY);
+	}
+	/**
+	 * Initializes an empty map that can hold the given number of relations without resizing.
+	 *
+	 * @param expectedSize	the expected number of relations
+	 */
+	public RelationMap(int expectedSize) {
+		int capacity = 16;
+		while (capacity < 2 * expectedSize && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+	/**
+	 * Allocates empty arrays for the given number of slots.
+	 *
+	 * @param capacity	the number of slots (must be a power of two)
+	 */
+	void allocate(int capacity) {
+		lowKeys = new long[capacity];
+		highKeys = new long[capacity];
+		values = new Relation[capacity];
+		slotMask = capacity - 1;
+		size = 0;
+	}
+	/**
+	 * Calculates the hash value of a table set, mixing the bits of both words.
+	 *
+	 * @param lowWord	bits for the tables with index from 0 to 63
+	 * @param highWord	bits for the tables with index from 64 to 127
+	 * @return			a hash value for the table set
+	 */
+	static int hash(long lowWord, long highWord) {
+		long h = lowWord ^ (highWord * 0x9E3779B97F4A7C15L);
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int)h;
+	}
+	/**
+	 * Returns the slot containing the given table set or the empty slot at which the table
+	 * set would be inserted.
+	 *
+	 * @param lowWord	bits for the tables with index from 0 to 63
+	 * @param highWord	bits for the tables with index from 64 to 127
+	 * @return			index of the slot holding the key or of the first empty slot found
+	 */
+	int findSlot(long lowWord, long highWord) {
+		int slot = hash(lowWord, highWord) & slotMask;
+		while (values[slot] != null &&
+				(lowKeys[slot] != lowWord || highKeys[slot] != highWord)) {
+			slot = (slot + 1) & slotMask;
+		}
+		return slot;
+	}
+	/**
+	 * Returns the relation associated with the given table set or null if there is none.
+	 *
+	 * @param lowWord	bits for the tables with index from 0 to 63
+	 * @param highWord	bits for the tables with index from 64 to 127
+	 * @return			the relation joining the table set or null
+	 */
+	public Relation get(long lowWord, long highWord) {
+		return values[findSlot(lowWord, highWord)];
+	}
+	@Override
+	public Relation get(long tableSet) {
+		return values[findSlot(tableSet, 0)];
+	}
+	@Override
+	public Relation get(BitSet tableSet) {
+		TableSetUtil.checkNrTables(tableSet.length());
+		return get(TableSetUtil.word(tableSet, 0), TableSetUtil.word(tableSet, 1));
+	}
+	/**
+	 * Returns true iff a relation is associated with the given table set.
+	 *
+	 * @param tableSet	the table set represented as BitSet
+	 * @return			true iff a corresponding relation is stored
+	 */
+	public boolean containsKey(BitSet tableSet) {
+		return get(tableSet) != null;
+	}
+	/**
+	 * Associates the given table set with the given relation, replacing any relation
+	 * that was previously associated with the same table set.
+	 *
+	 * @param lowWord	bits for the tables with index from 0 to 63
+	 * @param highWord	bits for the tables with index from 64 to 127
+	 * @param relation	the relation to store (must not be null)
+	 */
+	public void put(long lowWord, long highWord, Relation relation) {
+		assert(relation != null);
+		int slot = findSlot(lowWord, highWord);
+		if (values[slot] == null) {
+			lowKeys[slot] = lowWord;
+			highKeys[slot] = highWord;
+			++size;
+		}
+		values[slot] = relation;
+		// Keep load factor below one half
+		if (2 * size > values.length) {
+			resize(2 * values.length);
+		}
+	}
+	@Override
+	public void put(long tableSet, Relation relation) {
+		put(tableSet, 0, relation);
+	}
+	@Override
+	public void put(Relation relation) {
+		TableSetUtil.checkNrTables(relation.tableSet.length());
+		put(relation.lowTableBits, relation.highTableBits, relation);
+	}
+	/**
+	 * Increases the number of slots and reinserts all stored relations.
+	 *
+	 * @param newCapacity	the new number of slots (must be a power of two)
+	 */
+	void resize(int newCapacity) {
+		long[] oldLowKeys = lowKeys;
+		long[] oldHighKeys = highKeys;
+		Relation[] oldValues = values;
+		allocate(newCapacity);
+		int oldCapacity = oldValues.length;
+		for (int slot=0; slot<oldCapacity; ++slot) {
+			if (oldValues[slot] != null) {
+				int newSlot = findSlot(oldLowKeys[slot], oldHighKeys[slot]);
+				lowKeys[newSlot] = oldLowKeys[slot];
+				highKeys[newSlot] = oldHighKeys[slot];
+				values[newSlot] = oldValues[slot];
+				++size;
+			}
+		}
+	}
+	@Override
+	public int size() {
+		return size;
+	}
+	/**
+	 * Removes all stored relations.
+	 */
+	public void clear() {
+		allocate(DEFAULT_CAPACITY);
+	}
+	@Override
+	public List<Relation> values() {
+		List<Relation> result = new ArrayList<Relation>(size);
+		for (Relation relation : values) {
+			if (relation != null) {
+				result.add(relation);
+			}
+		}
+		return result;
+	}
+}
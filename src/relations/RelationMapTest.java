@@ -0,0 +1,62 @@
+package relations;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class RelationMapTest {
+
+	@Test
+	public void test() {
+		RelationMap relations = new RelationMap();
+		// Insert relations for many table sets, forcing several resizes
+		for (int tableIndex=0; tableIndex<128; ++tableIndex) {
+			BitSet tableSet = new BitSet();
+			tableSet.set(tableIndex);
+			relations.put(new Relation(tableSet, tableIndex + 1));
+		}
+		for (long mask=1; mask<1000; ++mask) {
+			relations.put(mask, new Relation(BitSet.valueOf(new long[] {mask}), mask));
+		}
+		// Single tables below 1000 were inserted twice
+		assertEquals(128 - 10 + 999, relations.size());
+		// Look up relations by primitive keys and by BitSet
+		for (long mask=1; mask<1000; ++mask) {
+			assertEquals(mask, relations.get(mask).cardinality, 1E-10);
+		}
+		{
+			BitSet tableSet = new BitSet();
+			tableSet.set(100);
+			assertEquals(101, relations.get(tableSet).cardinality, 1E-10);
+			assertEquals(101, relations.get(0, 1L << 36).cardinality, 1E-10);
+			assertTrue(relations.containsKey(tableSet));
+			tableSet.set(101);
+			assertNull(relations.get(tableSet));
+		}
+		assertNull(relations.get(1000));
+		assertEquals(relations.size(), relations.values().size());
+		// Relations beyond the two-word representation are rejected
+		{
+			BitSet tableSet = new BitSet();
+			tableSet.set(128);
+			Relation relation = new Relation(tableSet, 1);
+			try {
+				relations.put(relation);
+				fail();
+			} catch (IllegalArgumentException e) {
+			}
+			try {
+				relations.get(tableSet);
+				fail();
+			} catch (IllegalArgumentException e) {
+			}
+		}
+		// Clearing removes all relations
+		relations.clear();
+		assertEquals(0, relations.size());
+		assertNull(relations.get(1));
+	}
+
+}
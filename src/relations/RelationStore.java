@@ -0,0 +1,62 @@
+package relations;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Associates table sets with the relations joining them. Table sets are passed as
+ * primitive bit masks (see {@link util.TableSetUtil}). Different implementations trade
+ * memory consumption for lookup speed: a hash-based store only holds the table sets that
+ * were inserted while a dense store reserves one slot for each subset of the query tables.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public abstract class RelationStore implements Serializable {
+	/**
+	 * Used to verify the class version.
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Returns the relation associated with the given table set or null if there is none.
+	 * This method can only be used for queries with at most 64 tables.
+	 * 
+	 * @param tableSet	bit mask representing the table set
+	 * @return			the relation joining the table set or null
+	 */
+	public abstract Relation get(long tableSet);
+	/**
+	 * Returns the relation associated with the given table set or null if there is none.
+	 * 
+	 * @param tableSet	the table set represented as BitSet
+	 * @return			the relation joining the table set or null
+	 */
+	public abstract Relation get(BitSet tableSet);
+	/**
+	 * Associates the given table set with the given relation. This method can only be used
+	 * for queries with at most 64 tables.
+	 * 
+	 * @param tableSet	bit mask representing the table set
+	 * @param relation	the relation to store
+	 */
+	public abstract void put(long tableSet, Relation relation);
+	/**
+	 * Stores the given relation under the table set it joins.
+	 * 
+	 * @param relation	the relation to store
+	 */
+	public abstract void put(Relation relation);
+	/**
+	 * Returns the number of stored relations.
+	 * 
+	 * @return	the number of table sets associated with a relation
+	 */
+	public abstract int size();
+	/**
+	 * Returns a list containing all stored relations in no particular order.
+	 * 
+	 * @return	a newly allocated list of all stored relations
+	 */
+	public abstract List<Relation> values();
+}
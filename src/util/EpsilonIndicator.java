@@ -0,0 +1,267 @@
+package util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import plans.Plan;
+
+/**
+ * Calculates the epsilon error with which tested plans approximate a fixed reference frontier.
+ * The reference cost vectors are indexed once by a k-d tree: each tree node covers a subset
+ * of reference vectors and stores their maximal cost for each metric, together with the
+ * maximal epsilon error with which the tested plans seen so far approximate them. When a
+ * new tested plan is added, subtrees are skipped if a lower bound on the error of the new
+ * plan for each reference vector in the subtree, derived from the maximal cost values, is
+ * not below the error that is already achieved for all of them. This allows to update the
+ * epsilon error incrementally when single plans are added to the tested frontier. The
+ * resulting errors are the same as the ones calculated by ParetoUtil.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class EpsilonIndicator {
+	/**
+	 * Tree nodes covering at most that many reference vectors are not split further.
+	 */
+	final static int LEAF_SIZE = 8;
+	/**
+	 * Boolean flags indicating for each cost metric if it is considered.
+	 */
+	final boolean[] consideredMetrics;
+	/**
+	 * The indices of the considered cost metrics.
+	 */
+	final int[] metrics;
+	/**
+	 * The cost vectors of the reference frontier, reordered such that each tree node
+	 * covers a contiguous range.
+	 */
+	final double[][] referenceCost;
+	/**
+	 * The minimal epsilon error for each reference vector over all tested plans so far.
+	 */
+	final double[] bestError;
+	/**
+	 * Contains for each considered metric the maximal reference cost in the range of each
+	 * tree node. The root has index one and the children of node i have indices 2i and 2i+1.
+	 */
+	final double[][] nodeMaxCost;
+	/**
+	 * The maximal value of the best error over all reference vectors in the range of each
+	 * tree node.
+	 */
+	final double[] nodeMaxError;
+	/**
+	 * Indexes the given reference frontier.
+	 *
+	 * @param referenceFrontier	the plans that should be approximated by tested plans
+	 * @param consideredMetrics	Boolean flags indicating for each cost metric if it is considered
+	 */
+	public EpsilonIndicator(List<Plan> referenceFrontier, boolean[] consideredMetrics) {
+		this.consideredMetrics = consideredMetrics;
+		int nrConsidered = 0;
+		for (boolean considered : consideredMetrics) {
+			if (considered) {
+				++nrConsidered;
+			}
+		}
+		this.metrics = new int[nrConsidered];
+		int consideredCtr = 0;
+		for (int metricCtr=0; metricCtr<consideredMetrics.length; ++metricCtr) {
+			if (consideredMetrics[metricCtr]) {
+				metrics[consideredCtr++] = metricCtr;
+			}
+		}
+		int nrReferences = referenceFrontier.size();
+		this.referenceCost = new double[nrReferences][];
+		int referenceCtr = 0;
+		for (Plan referencePlan : referenceFrontier) {
+			referenceCost[referenceCtr++] = referencePlan.getCostValues();
+		}
+		this.bestError = new double[nrReferences];
+		int nrNodes = 2;
+		while (nrNodes < 4 * (nrReferences / LEAF_SIZE + 1)) {
+			nrNodes *= 2;
+		}
+		this.nodeMaxCost = new double[nrConsidered][nrNodes];
+		this.nodeMaxError = new double[nrNodes];
+		if (nrReferences > 0) {
+			build(1, 0, nrReferences, 0);
+		}
+		reset();
+	}
+	/**
+	 * Creates an indicator for the reference frontier of the given indicator without tested
+	 * plans. The index of the reference frontier is shared and not rebuilt.
+	 *
+	 * @param indicator	an indicator whose reference frontier was indexed before
+	 */
+	public EpsilonIndicator(EpsilonIndicator indicator) {
+		this.consideredMetrics = indicator.consideredMetrics;
+		this.metrics = indicator.metrics;
+		this.referenceCost = indicator.referenceCost;
+		this.nodeMaxCost = indicator.nodeMaxCost;
+		this.bestError = new double[referenceCost.length];
+		this.nodeMaxError = new double[indicator.nodeMaxError.length];
+		reset();
+	}
+	/**
+	 * Builds the subtree covering the given range of reference vectors, splitting at the
+	 * median cost for the given metric.
+	 *
+	 * @param node				index of the subtree root
+	 * @param start				first reference vector covered by the subtree
+	 * @param end				index after the last reference vector covered by the subtree
+	 * @param consideredCtr		the index of the considered metric used for splitting
+	 */
+	void build(int node, int start, int end, int consideredCtr) {
+		for (int metricCtr=0; metricCtr<metrics.length; ++metricCtr) {
+			int metric = metrics[metricCtr];
+			double maxCost = Double.NEGATIVE_INFINITY;
+			for (int i=start; i<end; ++i) {
+				maxCost = Math.max(maxCost, referenceCost[i][metric]);
+			}
+			nodeMaxCost[metricCtr][node] = maxCost;
+		}
+		if (end - start > LEAF_SIZE && metrics.length > 0) {
+			int middle = (start + end) / 2;
+			select(start, end, middle, metrics[consideredCtr]);
+			int nextConsideredCtr = (consideredCtr + 1) % metrics.length;
+			build(2 * node, start, middle, nextConsideredCtr);
+			build(2 * node + 1, middle, end, nextConsideredCtr);
+		}
+	}
+	/**
+	 * Reorders the given range of reference vectors such that the vector at the given
+	 * position has the cost it would have after sorting by the given metric, vectors
+	 * before it have lower or equal cost, and vectors after it have higher or equal cost.
+	 *
+	 * @param start		first position of the range
+	 * @param end		position after the range
+	 * @param position	position whose vector is selected
+	 * @param metric	the cost metric by which vectors are compared
+	 */
+	void select(int start, int end, int position, int metric) {
+		int left = start;
+		int right = end - 1;
+		while (left < right) {
+			double pivot = referenceCost[(left + right) >>> 1][metric];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (referenceCost[i][metric] < pivot) {
+					++i;
+				}
+				while (referenceCost[j][metric] > pivot) {
+					--j;
+				}
+				if (i <= j) {
+					double[] tmp = referenceCost[i];
+					referenceCost[i] = referenceCost[j];
+					referenceCost[j] = tmp;
+					++i;
+					--j;
+				}
+			}
+			if (position <= j) {
+				right = j;
+			} else if (position >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+	/**
+	 * Forgets all tested plans seen so far.
+	 */
+	public void reset() {
+		Arrays.fill(bestError, Double.POSITIVE_INFINITY);
+		Arrays.fill(nodeMaxError, Double.POSITIVE_INFINITY);
+	}
+	/**
+	 * Calculates a lower bound on the epsilon error when approximating any reference vector
+	 * in the range of the given tree node by the given cost vector.
+	 *
+	 * @param testedCost	cost vector of a tested plan
+	 * @param node			index of a tree node
+	 * @return				lower bound on the epsilon error
+	 */
+	double errorBound(double[] testedCost, int node) {
+		double bound = 0;
+		for (int metricCtr=0; metricCtr<metrics.length; ++metricCtr) {
+			double testCost = testedCost[metrics[metricCtr]];
+			double maxRefCost = nodeMaxCost[metricCtr][node];
+			if (maxRefCost == 0) {
+				if (testCost != 0) {
+					return Double.POSITIVE_INFINITY;
+				}
+			} else {
+				bound = Math.max(bound, testCost / maxRefCost - 1);
+			}
+		}
+		return bound;
+	}
+	/**
+	 * Updates the best errors of the reference vectors in the subtree with the given root
+	 * when adding a tested cost vector.
+	 *
+	 * @param testedCost	cost vector of a tested plan
+	 * @param node			index of the subtree root
+	 * @param start			first reference vector covered by the subtree
+	 * @param end			index after the last reference vector covered by the subtree
+	 */
+	void update(double[] testedCost, int node, int start, int end) {
+		if (errorBound(testedCost, node) >= nodeMaxError[node]) {
+			return;
+		}
+		if (end - start > LEAF_SIZE && metrics.length > 0) {
+			int middle = (start + end) / 2;
+			update(testedCost, 2 * node, start, middle);
+			update(testedCost, 2 * node + 1, middle, end);
+			nodeMaxError[node] = Math.max(nodeMaxError[2 * node], nodeMaxError[2 * node + 1]);
+		} else {
+			double maxError = 0;
+			for (int i=start; i<end; ++i) {
+				double error = ParetoUtil.epsilonError(testedCost,
+						referenceCost[i], consideredMetrics);
+				bestError[i] = Math.min(bestError[i], error);
+				maxError = Math.max(maxError, bestError[i]);
+			}
+			nodeMaxError[node] = maxError;
+		}
+	}
+	/**
+	 * Adds one plan to the tested frontier.
+	 *
+	 * @param testedPlan	a plan that may approximate reference plans
+	 */
+	public void add(Plan testedPlan) {
+		if (referenceCost.length > 0) {
+			update(testedPlan.getCostValues(), 1, 0, referenceCost.length);
+		}
+	}
+	/**
+	 * Returns the epsilon error with which all tested plans added since the last reset
+	 * approximate the reference frontier.
+	 *
+	 * @return	the epsilon error of the tested frontier
+	 */
+	public double epsilonError() {
+		return referenceCost.length > 0 ? nodeMaxError[1] : 0;
+	}
+	/**
+	 * Calculates the epsilon error with which the given tested frontier approximates the
+	 * reference frontier. Forgets tested plans that were added before.
+	 *
+	 * @param testedFrontier	set of plans that should approximate the reference plans
+	 * @return					epsilon error capturing how well the reference set is approximated
+	 */
+	public double epsilonError(List<Plan> testedFrontier) {
+		reset();
+		for (Plan testedPlan : testedFrontier) {
+			add(testedPlan);
+		}
+		return epsilonError();
+	}
+}
@@ -0,0 +1,139 @@
+package util;
+
+import static org.junit.Assert.*;
+import static util.TestUtil.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import plans.ParetoPlanSet;
+import plans.Plan;
+import plans.ScanPlan;
+import plans.operators.local.LocalScan;
+import queries.Query;
+
+public class EpsilonIndicatorTest {
+	/**
+	 * Query used to create plans with given cost vectors.
+	 */
+	static final Query dummyQuery = new Query(1, new double[] {1}, new double[][]{{1}});
+	/**
+	 * Creates a plan with the given cost vector.
+	 * 
+	 * @param cost	cost vector of the plan
+	 * @return		a scan plan
+	 */
+	static Plan plan(double[] cost) {
+		Plan plan = new ScanPlan(dummyQuery, 0, new LocalScan());
+		plan.setCostValues(cost);
+		return plan;
+	}
+	/**
+	 * Generates a frontier with random cost vectors whose product is similar.
+	 * 
+	 * @param random	generates cost values
+	 * @param nrPlans	the number of plans to generate
+	 * @return			a list of plans
+	 */
+	static List<Plan> randomFrontier(Random random, int nrPlans) {
+		List<Plan> frontier = new ArrayList<Plan>();
+		for (int planCtr=0; planCtr<nrPlans; ++planCtr) {
+			double x = 5 * random.nextDouble();
+			double y = (5 - x) * random.nextDouble();
+			double noise = Math.exp(random.nextDouble());
+			frontier.add(plan(new double[] {Math.exp(x) * noise, 
+					Math.exp(y) * noise, Math.exp(5 - x - y) * noise}));
+		}
+		return frontier;
+	}
+	/**
+	 * Calculates the epsilon error between two frontiers by comparing all plan pairs.
+	 * 
+	 * @param testedFrontier	set of plans that should approximate the reference plans
+	 * @param referenceFrontier	set of plans that should be approximated
+	 * @param consideredMetrics	Boolean flags indicating for each metric if it is relevant
+	 * @return					epsilon error capturing how well the reference set is approximated
+	 */
+	static double pairwiseError(List<Plan> testedFrontier, 
+			List<Plan> referenceFrontier, boolean[] consideredMetrics) {
+		double setError = 0;
+		for (Plan referencePlan : referenceFrontier) {
+			double planError = Double.POSITIVE_INFINITY;
+			for (Plan testPlan : testedFrontier) {
+				planError = Math.min(planError, ParetoUtil.epsilonError(
+						testPlan, referencePlan, consideredMetrics));
+			}
+			setError = Math.max(setError, planError);
+		}
+		return setError;
+	}
+
+	@Test
+	public void test() {
+		boolean[] allMetrics = new boolean[] {true, true, true};
+		boolean[] twoMetrics = new boolean[] {true, false, true};
+		Random random = new Random(0);
+		// Same epsilon error as when comparing all pairs
+		for (boolean[] consideredMetrics : new boolean[][] {allMetrics, twoMetrics}) {
+			List<Plan> referenceFrontier = randomFrontier(random, 500);
+			EpsilonIndicator indicator = new EpsilonIndicator(referenceFrontier, consideredMetrics);
+			for (int nrTested : new int[] {1, 10, 200}) {
+				List<Plan> testedFrontier = randomFrontier(random, nrTested);
+				double expectedError = pairwiseError(
+						testedFrontier, referenceFrontier, consideredMetrics);
+				assertEquals(expectedError, indicator.epsilonError(testedFrontier), EPSILON);
+				assertEquals(expectedError, ParetoUtil.epsilonError(
+						testedFrontier, referenceFrontier, consideredMetrics), EPSILON);
+			}
+			// Incremental updates when adding tested plans
+			indicator.reset();
+			assertEquals(Double.POSITIVE_INFINITY, indicator.epsilonError(), EPSILON);
+			List<Plan> testedFrontier = new LinkedList<Plan>();
+			for (Plan testedPlan : randomFrontier(random, 50)) {
+				indicator.add(testedPlan);
+				testedFrontier.add(testedPlan);
+				assertEquals(pairwiseError(testedFrontier, referenceFrontier, consideredMetrics), 
+						indicator.epsilonError(), EPSILON);
+			}
+		}
+		// Indicators of a reference plan set share the index but not the tested plans
+		{
+			List<Plan> referenceFrontier = randomFrontier(random, 300);
+			ParetoPlanSet referenceSet = new ParetoPlanSet(referenceFrontier);
+			EpsilonIndicator first = referenceSet.epsilonIndicator(allMetrics);
+			EpsilonIndicator second = referenceSet.epsilonIndicator(allMetrics);
+			assertTrue(first != second);
+			assertSame(first.referenceCost, second.referenceCost);
+			assertTrue(first.referenceCost != 
+					referenceSet.epsilonIndicator(twoMetrics).referenceCost);
+			List<Plan> testedFrontier = randomFrontier(random, 20);
+			first.add(testedFrontier.get(0));
+			assertEquals(Double.POSITIVE_INFINITY, second.epsilonError(), EPSILON);
+			for (boolean[] consideredMetrics : new boolean[][] {allMetrics, twoMetrics}) {
+				assertEquals(pairwiseError(testedFrontier, referenceFrontier, consideredMetrics), 
+						referenceSet.epsilonIndicator(consideredMetrics).epsilonError(
+								testedFrontier), EPSILON);
+			}
+		}
+		// Special cases
+		{
+			List<Plan> emptyFrontier = new LinkedList<Plan>();
+			List<Plan> referenceFrontier = new LinkedList<Plan>();
+			referenceFrontier.add(plan(new double[] {0, 1, 2}));
+			referenceFrontier.add(plan(new double[] {1, 0, 2}));
+			EpsilonIndicator indicator = new EpsilonIndicator(referenceFrontier, allMetrics);
+			assertEquals(Double.POSITIVE_INFINITY, indicator.epsilonError(emptyFrontier), EPSILON);
+			indicator.add(plan(new double[] {0, 2, 2}));
+			assertEquals(Double.POSITIVE_INFINITY, indicator.epsilonError(), EPSILON);
+			indicator.add(plan(new double[] {1, 0, 1}));
+			assertEquals(1, indicator.epsilonError(), EPSILON);
+			EpsilonIndicator emptyIndicator = new EpsilonIndicator(emptyFrontier, allMetrics);
+			assertEquals(0, emptyIndicator.epsilonError(referenceFrontier), EPSILON);
+		}
+	}
+
+}
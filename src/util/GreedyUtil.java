@@ -4,6 +4,7 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import plans.JoinPlan;
 import plans.Plan;
@@ -58,7 +59,8 @@ public class GreedyUtil {
 	 */
 	static void performGreedyJoin(Query query, List<Plan> partialPlans, 
 			PlanSpace planSpace, MultiCostModel costModel, GreedyCriterion criterion) {
-		Collections.shuffle(partialPlans);
+		OptimizationContext context = OptimizationContext.current();
+		Collections.shuffle(partialPlans, context.random);
 		// Determine join leading to an intermediate result of minimal size.
 		// This is the best possible join according to the minSize heuristic.
 		JoinPlan bestJoin = null;
@@ -66,7 +68,8 @@ public class GreedyUtil {
 			for (Plan rightPlan : partialPlans) {
 				if (leftPlan != rightPlan) {
 					JoinOperator joinOperator = planSpace.randomJoinOperator(leftPlan, rightPlan);
-					JoinPlan joinPlan = new JoinPlan(query, leftPlan, rightPlan, joinOperator);
+					JoinPlan joinPlan = new JoinPlan(
+							query, leftPlan, rightPlan, joinOperator, context);
 					if (bestJoin == null) {
 						bestJoin = joinPlan;
 					} else if (better(joinPlan, bestJoin, criterion)) {
@@ -76,7 +79,7 @@ public class GreedyUtil {
 			}
 		}
 		// Calculate the cost of best plan
-		costModel.updateRoot(bestJoin);
+		costModel.updateRoot(bestJoin, context);
 		// Insert best join plan and remove its sub-plans from partial plans list
 		partialPlans.remove(bestJoin.getLeftPlan());
 		partialPlans.remove(bestJoin.getRightPlan());
@@ -93,14 +96,16 @@ public class GreedyUtil {
 	 */
 	public static Plan greedyPlan(Query query, PlanSpace planSpace, 
 			MultiCostModel costModel, GreedyCriterion criterion) {
+		OptimizationContext context = OptimizationContext.current();
 		int nrTables = query.nrTables;
 		// Generate scan plans for all query tables
 		List<Plan> partialPlans = new LinkedList<Plan>();
 		for (int tableIndex=0; tableIndex<nrTables; ++tableIndex) {
 			// We assume that there is only one default scan operator
 			assert(planSpace.consideredScanOps.size() == 1);
-			Plan scanPlan = new ScanPlan(query, tableIndex, planSpace.defaultScanOperator);
-			costModel.updateRoot(scanPlan);
+			Plan scanPlan = new ScanPlan(
+					query, tableIndex, planSpace.defaultScanOperator, context);
+			costModel.updateRoot(scanPlan, context);
 			partialPlans.add(scanPlan);
 		}
 		// Combine scan plans until we obtain a completed plan
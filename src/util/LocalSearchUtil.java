@@ -1,6 +1,5 @@
 package util;
 
-import static common.RandomNumbers.*;
 import static common.Constants.*;
 
 import java.util.ArrayList;
@@ -11,7 +10,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
-import common.RandomNumbers;
+import common.OptimizationContext;
 import cost.CostModel;
 import cost.MultiCostModel;
 import plans.JoinPlan;
@@ -32,18 +31,6 @@ import relations.RelationFactory;
  *
  */
 public class LocalSearchUtil {
-	/**
-	 * Counts the number of exhaustive hill climbing invocations.
-	 */
-	public static long nrExhaustiveClimbs = 0;
-	/**
-	 * Counts the number of steps taken during exhaustive hill climbing.
-	 */
-	public static long nrExhaustiveSteps = 0;
-	/**
-	 * Accumulated improvement measured by epsilon dominance on the climbing paths.
-	 */
-	public static double accEpsilonImprovement = 0;
 	/**
 	 * Selects random relation from relation list, deletes that relation
 	 * in the list and returns selected relation.
@@ -54,7 +41,7 @@ public class LocalSearchUtil {
 	public static Relation popRandomRel(List<Relation> rels) {
 		assert(rels.size()>0);
 		int nrRels = rels.size();
-		int selectedIndex = RandomNumbers.random.nextInt(nrRels);
+		int selectedIndex = OptimizationContext.current().random.nextInt(nrRels);
 		Relation selectedRel = rels.get(selectedIndex);
 		rels.remove(selectedIndex);
 		return selectedRel;
@@ -69,7 +56,7 @@ public class LocalSearchUtil {
 	public static Plan popRandomPlan(List<Plan> plans) {
 		assert(plans.size()>0);
 		int nrPlans = plans.size();
-		int selectedIndex = RandomNumbers.random.nextInt(nrPlans);
+		int selectedIndex = OptimizationContext.current().random.nextInt(nrPlans);
 		Plan selectedPlan = plans.get(selectedIndex);
 		plans.remove(selectedIndex);
 		return selectedPlan;
@@ -105,6 +92,7 @@ public class LocalSearchUtil {
 	 */
 	public static Plan randomLeftDeepPlan(Query query, PlanSpace planSpace) {
 		assert(query.nrTables>=1);
+		OptimizationContext context = OptimizationContext.current();
 		// Create single table relations for query
 		ArrayList<Relation> singleTableRels = new ArrayList<Relation>();
 		int nrTables = query.nrTables;
@@ -115,18 +103,19 @@ public class LocalSearchUtil {
 		// Select random relation to start with
 		Relation leftRel = popRandomRel(singleTableRels);
 		ScanOperator leftScanOp = planSpace.randomScanOperator(leftRel);
-		Plan leftPlan = new ScanPlan(leftRel, leftScanOp);
+		Plan leftPlan = new ScanPlan(leftRel, leftScanOp, context);
 		Plan resultPlan = leftPlan;
 		// Keep joining with other relations until all are used up
 		while (singleTableRels.size()>0) {
 			// create right scan plan
 			Relation rightRel = popRandomRel(singleTableRels);
 			ScanOperator rightScanOp = planSpace.randomScanOperator(rightRel);
-			Plan rightPlan = new ScanPlan(rightRel, rightScanOp);
+			Plan rightPlan = new ScanPlan(rightRel, rightScanOp, context);
 			// create result plan
 			Relation resultRel = RelationFactory.createJoinRel(query, leftRel, rightRel);
 			JoinOperator joinOp = planSpace.randomJoinOperator(leftPlan, rightPlan);
-			resultPlan = new JoinPlan(leftRel, rightRel, resultRel, leftPlan, rightPlan, joinOp);
+			resultPlan = new JoinPlan(leftRel, rightRel, resultRel, 
+					leftPlan, rightPlan, joinOp, context);
 			// make result plan the new left plan too
 			leftRel = resultRel;
 			leftPlan = resultPlan;
@@ -147,19 +136,20 @@ public class LocalSearchUtil {
 	 */
 	public static Plan randomBushyPlan(Query query, PlanSpace planSpace, Set<Integer> tableIndices) {
 		assert(query.nrTables>=1);
+		OptimizationContext context = OptimizationContext.current();
 		// Create plans for scanning each single table
 		ArrayList<Plan> partialPlans = new ArrayList<Plan>();
 		for (int tableIndex : tableIndices) {
 			Relation rel = RelationFactory.createSingleTableRel(query, tableIndex);
 			ScanOperator scanOp = planSpace.randomScanOperator(rel);
-			partialPlans.add(new ScanPlan(query, tableIndex, scanOp));
+			partialPlans.add(new ScanPlan(query, tableIndex, scanOp, context));
 		}
 		// Combine randomly selected plans with each other until we obtain a complete plan
 		while (partialPlans.size() > 1) {
 			Plan leftPlan = popRandomPlan(partialPlans);
 			Plan rightPlan = popRandomPlan(partialPlans);
 			JoinOperator joinOp = planSpace.randomJoinOperator(leftPlan, rightPlan);
-			Plan newPlan = new JoinPlan(query, leftPlan, rightPlan, joinOp);
+			Plan newPlan = new JoinPlan(query, leftPlan, rightPlan, joinOp, context);
 			partialPlans.add(newPlan);
 		}
 		Plan resultPlan = partialPlans.get(0);
@@ -196,6 +186,7 @@ public class LocalSearchUtil {
 	 */
 	public static List<Plan> mutatedPlans(
 			Query query, Plan originalPlan, PlanSpace planSpace, MultiCostModel costModel) {
+		OptimizationContext context = OptimizationContext.current();
 		Relation resultRel = originalPlan.resultRel;
 		// Try mutating plan
 		List<Plan> mutatedPlans = new LinkedList<Plan>();
@@ -203,8 +194,8 @@ public class LocalSearchUtil {
 		if (originalPlan instanceof ScanPlan) {
 			// Operator mutations
 			for (ScanOperator scanOperator : planSpace.scanOperatorsShuffled(resultRel)) {
-				Plan newPlan = new ScanPlan(resultRel, scanOperator);
-				costModel.updateRoot(newPlan);
+				Plan newPlan = new ScanPlan(resultRel, scanOperator, context);
+				costModel.updateRoot(newPlan, context);
 				mutatedPlans.add(newPlan);
 			}
 		} else {
@@ -239,14 +230,14 @@ public class LocalSearchUtil {
 			}
 			// Operator mutations
 			for (JoinOperator joinOperator : planSpace.joinOperatorsShuffled(leftPlan, rightPlan)) {
-				Plan newPlan = new JoinPlan(query, leftPlan, rightPlan, joinOperator);
-				costModel.updateRoot(newPlan);
+				Plan newPlan = new JoinPlan(query, leftPlan, rightPlan, joinOperator, context);
+				costModel.updateRoot(newPlan, context);
 				mutatedPlans.add(newPlan);
 			}
 			// Commutativity
 			{
-				Plan newPlan = new JoinPlan(query, rightPlan, leftPlan, joinOp);
-				costModel.updateRoot(newPlan);
+				Plan newPlan = new JoinPlan(query, rightPlan, leftPlan, joinOp, context);
+				costModel.updateRoot(newPlan, context);
 				mutatedPlans.add(newPlan);
 			}
 			// Associativity
@@ -256,12 +247,12 @@ public class LocalSearchUtil {
 				Plan C = rightPlan;
 				Plan newLeftPlan = A;
 				for (JoinOperator newRightJoinOp : planSpace.joinOperatorsShuffled(B, C)) {
-					Plan newRightPlan = new JoinPlan(query, B, C, newRightJoinOp);
-					costModel.updateRoot(newRightPlan);
+					Plan newRightPlan = new JoinPlan(query, B, C, newRightJoinOp, context);
+					costModel.updateRoot(newRightPlan, context);
 					for (JoinOperator newJoinOp : planSpace.joinOperatorsShuffled(
 							newLeftPlan, newRightPlan)) {
-						Plan newPlan = new JoinPlan(query, newLeftPlan, newRightPlan, newJoinOp);
-						costModel.updateRoot(newPlan);
+						Plan newPlan = new JoinPlan(query, newLeftPlan, newRightPlan, newJoinOp, context);
+						costModel.updateRoot(newPlan, context);
 						mutatedPlans.add(newPlan);											
 					}
 				}
@@ -272,12 +263,12 @@ public class LocalSearchUtil {
 				Plan B = leftRightPlan;
 				Plan C = rightPlan;
 				for (JoinOperator newLeftJoinOp : planSpace.joinOperatorsShuffled(A, C)) {
-					Plan newLeftPlan = new JoinPlan(query, A, C, newLeftJoinOp);
-					costModel.updateRoot(newLeftPlan);
+					Plan newLeftPlan = new JoinPlan(query, A, C, newLeftJoinOp, context);
+					costModel.updateRoot(newLeftPlan, context);
 					for (JoinOperator newJoinOp : planSpace.joinOperatorsShuffled(
 							newLeftPlan, B)) {
-						Plan newPlan = new JoinPlan(query, newLeftPlan, B, newJoinOp);
-						costModel.updateRoot(newPlan);
+						Plan newPlan = new JoinPlan(query, newLeftPlan, B, newJoinOp, context);
+						costModel.updateRoot(newPlan, context);
 						mutatedPlans.add(newPlan);											
 					}
 				}
@@ -288,11 +279,11 @@ public class LocalSearchUtil {
 				Plan B = rightLeftPlan;
 				Plan C = rightRightPlan;
 				for (JoinOperator newRightJoinOp : planSpace.joinOperatorsShuffled(A, C)) {
-					Plan newRightPlan = new JoinPlan(query, A, C, newRightJoinOp);
-					costModel.updateRoot(newRightPlan);
+					Plan newRightPlan = new JoinPlan(query, A, C, newRightJoinOp, context);
+					costModel.updateRoot(newRightPlan, context);
 					for (JoinOperator newJoinOp : planSpace.joinOperatorsShuffled(B, newRightPlan)) {
-						Plan newPlan = new JoinPlan(query, B, newRightPlan, newJoinOp);
-						costModel.updateRoot(newPlan);
+						Plan newPlan = new JoinPlan(query, B, newRightPlan, newJoinOp, context);
+						costModel.updateRoot(newPlan, context);
 						mutatedPlans.add(newPlan);											
 					}
 				}
@@ -316,6 +307,7 @@ public class LocalSearchUtil {
 	 */
 	public static List<Plan> mutatedJoinOrders(
 			Query query, Plan originalPlan, PlanSpace planSpace, MultiCostModel costModel) {
+		OptimizationContext context = OptimizationContext.current();
 		// Always use standard join operator
 		JoinOperator joinOp = planSpace.defaultJoinOperator;
 		// Try mutating plan
@@ -351,8 +343,8 @@ public class LocalSearchUtil {
 			}
 			// Commutativity
 			{
-				Plan newPlan = new JoinPlan(query, rightPlan, leftPlan, joinOp);
-				costModel.updateRoot(newPlan);
+				Plan newPlan = new JoinPlan(query, rightPlan, leftPlan, joinOp, context);
+				costModel.updateRoot(newPlan, context);
 				mutatedPlans.add(newPlan);
 			}
 			// Associativity
@@ -361,10 +353,10 @@ public class LocalSearchUtil {
 				Plan B = leftRightPlan;
 				Plan C = rightPlan;
 				Plan newLeftPlan = A;
-				Plan newRightPlan = new JoinPlan(query, B, C, joinOp);
-				costModel.updateRoot(newRightPlan);
-				Plan newPlan = new JoinPlan(query, newLeftPlan, newRightPlan, joinOp);
-				costModel.updateRoot(newPlan);
+				Plan newRightPlan = new JoinPlan(query, B, C, joinOp, context);
+				costModel.updateRoot(newRightPlan, context);
+				Plan newPlan = new JoinPlan(query, newLeftPlan, newRightPlan, joinOp, context);
+				costModel.updateRoot(newPlan, context);
 				mutatedPlans.add(newPlan);
 			}
 			// Left join exchange
@@ -372,10 +364,10 @@ public class LocalSearchUtil {
 				Plan A = leftLeftPlan;
 				Plan B = leftRightPlan;
 				Plan C = rightPlan;
-				Plan newLeftPlan = new JoinPlan(query, A, C, joinOp);
-				costModel.updateRoot(newLeftPlan);
-				Plan newPlan = new JoinPlan(query, newLeftPlan, B, joinOp);
-				costModel.updateRoot(newPlan);
+				Plan newLeftPlan = new JoinPlan(query, A, C, joinOp, context);
+				costModel.updateRoot(newLeftPlan, context);
+				Plan newPlan = new JoinPlan(query, newLeftPlan, B, joinOp, context);
+				costModel.updateRoot(newPlan, context);
 				mutatedPlans.add(newPlan);
 			}
 			// Right join exchange
@@ -383,10 +375,10 @@ public class LocalSearchUtil {
 				Plan A = leftPlan;
 				Plan B = rightLeftPlan;
 				Plan C = rightRightPlan;
-				Plan newRightPlan = new JoinPlan(query, A, C, joinOp);
-				costModel.updateRoot(newRightPlan);
-				Plan newPlan = new JoinPlan(query, B, newRightPlan, joinOp);
-				costModel.updateRoot(newPlan);
+				Plan newRightPlan = new JoinPlan(query, A, C, joinOp, context);
+				costModel.updateRoot(newRightPlan, context);
+				Plan newPlan = new JoinPlan(query, B, newRightPlan, joinOp, context);
+				costModel.updateRoot(newPlan, context);
 				mutatedPlans.add(newPlan);
 			}
 		}
@@ -405,7 +397,7 @@ public class LocalSearchUtil {
 	 * Returns a mutated plan that has lower cost in the input cost metrics for the relevant metrics
 	 * or a null pointer if no improvements are possible. The plan to improve might be partial and 
 	 * in that case we make sure that the improved plan produces output that is suitable for next 
-	 * join operator.
+	 * join operator. The given plan is not changed.
 	 * 
 	 * @param query				query for which to generate a plan
 	 * @param rootPlan			the plan to improve
@@ -429,12 +421,12 @@ public class LocalSearchUtil {
 				} else if (mutatedPlan instanceof ScanPlan) {
 					ScanPlan scanPlan = (ScanPlan)mutatedPlan;
 					ScanOperator scanOperator = scanPlan.scanOperator;
-					compatible = planSpace.scanOutputCompatible(scanOperator, nextJoinOperator);
+					compatible = planSpace.outputCompatible(scanOperator, nextJoinOperator);
 				} else {
 					assert(mutatedPlan instanceof JoinPlan);
 					JoinPlan joinPlan = (JoinPlan)mutatedPlan;
 					JoinOperator joinOperator = joinPlan.getJoinOperator();
-					compatible = planSpace.joinOutputComptatible(joinOperator, nextJoinOperator);
+					compatible = planSpace.outputCompatible(joinOperator, nextJoinOperator);
 				}
 				if (SAFE_MODE) {
 					TestUtil.validatePlan(mutatedPlan, planSpace, costModel, true);
@@ -444,60 +436,31 @@ public class LocalSearchUtil {
 				}
 			}
 		}
-		// Contains plan nodes where mutations need to be tried out
+		// Try mutations of the other plan nodes in place on a copy of the plan
 		if (rootPlan instanceof JoinPlan) {
-			JoinPlan originalJoinPlan = (JoinPlan)rootPlan;
-			Deque<PathNode> untreatedNodes = new LinkedList<PathNode>();
-			PathNode rootNode = new PathNode(rootPlan, null, false);
-			untreatedNodes.push(new PathNode(originalJoinPlan.getLeftPlan(), rootNode, true));
-			untreatedNodes.push(new PathNode(originalJoinPlan.getRightPlan(), rootNode, false));
-			while (!untreatedNodes.isEmpty()) {
-				PathNode mutatedNode = untreatedNodes.pop();
-				Plan plan = mutatedNode.plan;
-				PathNode parentNode = mutatedNode.parent;
-				JoinPlan parentPlan = (JoinPlan)parentNode.plan;
-				boolean isLeftChild = mutatedNode.isLeftChild;
-				// Add child nodes if there are any
-				if (plan instanceof JoinPlan) {
-					JoinPlan joinPlan = (JoinPlan)plan;
-					untreatedNodes.push(new PathNode(joinPlan.getLeftPlan(), mutatedNode, true));
-					untreatedNodes.push(new PathNode(joinPlan.getRightPlan(), mutatedNode, false));
-				}
-				// We will need to adapt child plan pointers of parent - store original values
-				// to restore them afterwards.
-				Plan originalLeftPlan = parentPlan.getLeftPlan();
-				Plan originalRightPlan = parentPlan.getRightPlan();
-				// Mutate nodes and compare cost of mutated plans
+			MoveEngine moveEngine = new MoveEngine(query, rootPlan, planSpace, costModel);
+			int nrNodes = MoveEngine.nrNodes(rootPlan);
+			for (int nodeIndex=1; nodeIndex<nrNodes; ++nodeIndex) {
+				Plan plan = moveEngine.select(nodeIndex);
 				List<Plan> mutatedPlans = mutatedPlans(query, plan, planSpace, costModel);
 				for (Plan mutatedPlan : mutatedPlans) {
-					// Adapt parent to point to mutated plan
-					if (isLeftChild) {
-						parentPlan.setLeftPlan(mutatedPlan);
-					} else {
-						parentPlan.setRightPlan(mutatedPlan);
-					}
-					// Make sure that mutation did not lead to inconsistent plan
+					// Make sure that mutation does not lead to inconsistent plan
 					// (new output properties might be unsuitable as parent join input)
-					if (planSpace.joinOperatorApplicable(
-							parentPlan.getJoinOperator(), parentPlan.getLeftPlan(), parentPlan.getRightPlan())) {
-						// Update cost values bottom-up
-						PathNode nodeToUpdate = parentNode;
-						while (nodeToUpdate != null) {
-							costModel.updateRoot(nodeToUpdate.plan);
-							nodeToUpdate = nodeToUpdate.parent;
-						}
+					if (moveEngine.consistent(mutatedPlan)) {
+						// Replace node and update cost values bottom-up
+						moveEngine.replace(mutatedPlan);
+						Plan changedPlan = moveEngine.getPlan();
 						// Check whether cost has improved
-						if (PruningUtil.ParetoDominates(rootPlan.cost, originalCost, consideredMetric)) {
+						if (PruningUtil.ParetoDominates(changedPlan.cost, originalCost, consideredMetric)) {
+							moveEngine.commit();
 							if (SAFE_MODE) {
-								TestUtil.validatePlan(rootPlan, planSpace, costModel, true);
+								TestUtil.validatePlan(changedPlan, planSpace, costModel, true);
 							}
-							return rootPlan;	// Return changed plan
+							return changedPlan;	// Return changed plan
 						}
+						moveEngine.rollback();
 					}
 				}
-				// Restore original child nodes
-				parentPlan.setLeftPlan(originalLeftPlan);
-				parentPlan.setRightPlan(originalRightPlan);
 			}
 		}
 		// If we arrive here then no improvement was possible
@@ -508,6 +471,7 @@ public class LocalSearchUtil {
 	 */
 	public static Plan fastImprovedPlan(Query query, Plan rootPlan, boolean[] consideredMetric, 
 			PlanSpace planSpace, MultiCostModel costModel, JoinOperator nextJoinOperator) {
+		OptimizationContext context = OptimizationContext.current();
 		double[] originalCost = rootPlan.cost;
 		// Try mutations of the root
 		List<Plan> mutatedRoot = mutatedPlans(query, rootPlan, planSpace, costModel);
@@ -519,12 +483,12 @@ public class LocalSearchUtil {
 				} else if (mutatedPlan instanceof ScanPlan) {
 					ScanPlan scanPlan = (ScanPlan)mutatedPlan;
 					ScanOperator scanOperator = scanPlan.scanOperator;
-					compatible = planSpace.scanOutputCompatible(scanOperator, nextJoinOperator);
+					compatible = planSpace.outputCompatible(scanOperator, nextJoinOperator);
 				} else {
 					assert(mutatedPlan instanceof JoinPlan);
 					JoinPlan joinPlan = (JoinPlan)mutatedPlan;
 					JoinOperator joinOperator = joinPlan.getJoinOperator();
-					compatible = planSpace.joinOutputComptatible(joinOperator, nextJoinOperator);
+					compatible = planSpace.outputCompatible(joinOperator, nextJoinOperator);
 				}
 				if (SAFE_MODE) {
 					TestUtil.validatePlan(mutatedPlan, planSpace, costModel, true);
@@ -568,7 +532,7 @@ public class LocalSearchUtil {
 					}
 					// Make sure that mutation did not lead to inconsistent plan
 					// (new output properties might be unsuitable as parent join input)
-					if (planSpace.joinOperatorApplicable(
+					if (planSpace.applicable(
 							parentPlan.getJoinOperator(), parentPlan.getLeftPlan(), parentPlan.getRightPlan())) {
 						// Due to the principle of optimality, the entire mutated plan can only dominate
 						// the old plan if the new sub-plan dominates the old sub-plan.
@@ -576,7 +540,7 @@ public class LocalSearchUtil {
 							// Update cost values bottom-up
 							PathNode nodeToUpdate = parentNode;
 							while (nodeToUpdate != null) {
-								costModel.updateRoot(nodeToUpdate.plan);
+								costModel.updateRoot(nodeToUpdate.plan, context);
 								nodeToUpdate = nodeToUpdate.parent;
 							}
 							// Check whether cost has improved
@@ -613,6 +577,7 @@ public class LocalSearchUtil {
 	 */
 	public static Plan improvedJoinOrder(Query query, Plan rootPlan, boolean[] consideredMetric, 
 			PlanSpace planSpace, MultiCostModel costModel) {
+		OptimizationContext context = OptimizationContext.current();
 		double[] originalCost = rootPlan.cost;
 		// Try mutations of the root
 		List<Plan> mutatedRoot = mutatedJoinOrders(query, rootPlan, planSpace, costModel);
@@ -661,7 +626,7 @@ public class LocalSearchUtil {
 					// Update cost values bottom-up
 					PathNode nodeToUpdate = parentNode;
 					while (nodeToUpdate != null) {
-						costModel.updateRoot(nodeToUpdate.plan);
+						costModel.updateRoot(nodeToUpdate.plan, context);
 						nodeToUpdate = nodeToUpdate.parent;
 					}
 					// Check whether cost has improved
@@ -696,11 +661,12 @@ public class LocalSearchUtil {
 	 */
 	public static Plan exhaustivePlanClimbing(Query query, Plan plan, PlanSpace planSpace, 
 			MultiCostModel costModel, boolean[] consideredMetric, JoinOperator nextJoinOperator) {
-		++nrExhaustiveClimbs;
+		OptimizationContext context = OptimizationContext.current();
+		++context.nrExhaustiveClimbs;
 		Plan improvedPlan = improvedPlan(query, plan, consideredMetric, planSpace, costModel, nextJoinOperator);
 		while (improvedPlan != null) {
-			++nrExhaustiveSteps;
-			accEpsilonImprovement += ParetoUtil.epsilonError(plan.cost, improvedPlan.cost, consideredMetric);
+			++context.nrExhaustiveSteps;
+			context.accEpsilonImprovement += ParetoUtil.epsilonError(plan.cost, improvedPlan.cost, consideredMetric);
 			plan = improvedPlan;
 			improvedPlan = improvedPlan(query, plan, consideredMetric, planSpace, costModel, nextJoinOperator);
 		}
@@ -720,11 +686,12 @@ public class LocalSearchUtil {
 	 */
 	public static Plan exhaustiveJoinOrderClimbing(Query query, Plan joinOrder, PlanSpace planSpace, 
 			MultiCostModel costModel, boolean[] consideredMetric) {
-		++nrExhaustiveClimbs;
+		OptimizationContext context = OptimizationContext.current();
+		++context.nrExhaustiveClimbs;
 		Plan improvedJoinOrder = improvedJoinOrder(query, joinOrder, consideredMetric, planSpace, costModel);
 		while (improvedJoinOrder != null) {
-			++nrExhaustiveSteps;
-			accEpsilonImprovement += ParetoUtil.epsilonError(
+			++context.nrExhaustiveSteps;
+			context.accEpsilonImprovement += ParetoUtil.epsilonError(
 					joinOrder.cost, improvedJoinOrder.cost, consideredMetric);
 			joinOrder = improvedJoinOrder;
 			improvedJoinOrder = improvedJoinOrder(query, joinOrder, consideredMetric, planSpace, costModel);
@@ -740,11 +707,11 @@ public class LocalSearchUtil {
 	 * @return					Maximal difference between test cost and reference cost
 	 */
 	static double maxCostDelta(double[] testCosts, double[] refCosts, boolean[] consideredMetric) {
-		assert(testCosts.length == NR_COST_METRICS);
-		assert(refCosts.length == NR_COST_METRICS);
-		assert(consideredMetric.length == NR_COST_METRICS);
+		assert(testCosts.length == refCosts.length);
+		assert(consideredMetric.length == testCosts.length);
+		int nrMetrics = testCosts.length;
 		double maxDelta = 0;
-		for (int metricCtr=0; metricCtr<NR_COST_METRICS; ++metricCtr) {
+		for (int metricCtr=0; metricCtr<nrMetrics; ++metricCtr) {
 			if (consideredMetric[metricCtr]) {
 				double testCost = testCosts[metricCtr];
 				double refCost = refCosts[metricCtr];
@@ -781,12 +748,29 @@ public class LocalSearchUtil {
 				// with a certain probability.
 				double maxCostDelta = maxCostDelta(costAfter, costBefore, consideredMetric);
 				double probability = Math.exp(-maxCostDelta/temperature);
-				return random.nextDouble() <= probability;
+				return OptimizationContext.current().random.nextDouble() <= probability;
 			}
 		} else {
 			return PruningUtil.ParetoDominates(costAfter, costBefore, consideredMetric);
 		}
 	}
+	/**
+	 * Decides whether to accept one move in the plan space by comparing the cost of the plans
+	 * before and after the move. Compares the cost vectors of both plans directly without
+	 * copying them.
+	 * 
+	 * @param planBefore		plan before move
+	 * @param planAfter			plan after move
+	 * @param consideredMetric	Boolean flags indicating considered cost metrics
+	 * @param allowWorsening	whether moves towards non-dominating plans may be accepted
+	 * @param temperature		decides probability of moving to non-dominating plans if enabled
+	 * @return					Boolean indicating if the plan space move is accepted
+	 */
+	public static boolean acceptMove(Plan planBefore, Plan planAfter, 
+			boolean[] consideredMetric, boolean allowWorsening, double temperature) {
+		return acceptMove(planBefore.getCostValues(), planAfter.getCostValues(), 
+				consideredMetric, allowWorsening, temperature);
+	}
 	/**
 	 * Perform local search starting from given plan. This variant only tries a specified number
 	 * of random moves to see whether they yield an improvement. If the corresponding parameters
@@ -810,30 +794,35 @@ public class LocalSearchUtil {
 			Query query, Plan plan, PlanSpace planSpace, MultiCostModel costModel, 
 			boolean[] consideredMetric, int nrTries, boolean allowWorsening, double temperature, 
 			long startMillis, int keepEachNth) {
+		long timeoutMillis = OptimizationContext.current().timeoutMillis;
 		List<Plan> newPlans = new LinkedList<Plan>();
-		Plan improvedPlan = plan;
+		MoveEngine moveEngine = new MoveEngine(query, plan, planSpace, costModel);
+		Plan improvedPlan = moveEngine.getPlan();
 		boolean improved;
 		long nrSteps = 0;
 		do {
 			improved = false;
 			for (int tryCtr=0; tryCtr<nrTries; ++tryCtr) {
 				++nrSteps;
-				Plan randomMove = randomMove(query, improvedPlan, planSpace, costModel);
+				moveEngine.randomMove();
+				Plan randomMove = moveEngine.getPlan();
 				if (nrSteps % keepEachNth == 0) {
 					newPlans.add(randomMove.deepMutableCopy());
 				}
 				if (SAFE_MODE) {
 					TestUtil.validatePlan(randomMove, planSpace, costModel, true);
 				}
-				if (acceptMove(improvedPlan.getCostValuesCopy(), randomMove.getCostValuesCopy()	, consideredMetric, 
-						allowWorsening, temperature)) {
+				if (acceptMove(moveEngine.getPreviousCost(), randomMove.getCostValues(), 
+						consideredMetric, allowWorsening, temperature)) {
+					moveEngine.commit();
 					improvedPlan = randomMove;
 					improved = true;
 					break;
 				}
+				moveEngine.rollback();
 			}
 			// Leave loop if timeout occurred
-			if (System.currentTimeMillis() - startMillis > TIMEOUT_MILLIS) {
+			if (System.currentTimeMillis() - startMillis > timeoutMillis) {
 				break;
 			}
 		} while (improved);
@@ -869,62 +858,11 @@ public class LocalSearchUtil {
 	 */
 	public static Plan randomMove(Query query, Plan inputPlan, 
 			PlanSpace planSpace, MultiCostModel costModel) {
-		// Applying moves will change the plan - therefore we make a deep copy.
-		Plan plan = inputPlan.deepMutableCopy();
-		List<PathNode> planNodes = planNodes(plan, null, false);
-		// Randomly select plan node to mutate
-		int nrPlanNodes = planNodes.size();
-		int nodeIndex = random.nextInt(nrPlanNodes);
-		PathNode selectedNode = planNodes.get(nodeIndex);
-		Plan selectedPlan = selectedNode.plan;
-		PathNode parentNode = selectedNode.parent;
-		JoinPlan parentPlan = parentNode != null ? (JoinPlan)parentNode.plan : null;
-		// Mutate and randomly select one mutation that keeps the parent node consistent!
-		List<Plan> localMutations = mutatedPlans(query, selectedPlan, planSpace, costModel);
-		if (SAFE_MODE) {
-			TestUtil.validatePlans(localMutations, planSpace, costModel, true);
-		}
-		// Only keep mutations that are consistent with parent if any
-		if (parentNode != null) {
-			JoinOperator parentOperator = parentPlan.getJoinOperator();
-			Iterator<Plan> localMutationIter = localMutations.iterator();
-			while (localMutationIter.hasNext()) {
-				Plan localMutation = localMutationIter.next();
-				// Check if local mutation keeps parent join operator choice consistent
-				Plan leftPlan = selectedNode.isLeftChild ? localMutation : parentPlan.getLeftPlan();
-				Plan rightPlan = !selectedNode.isLeftChild ? localMutation : parentPlan.getRightPlan();
-				// Only keep local mutations where parent remains consistent
-				if (!planSpace.joinOperatorApplicable(parentOperator, leftPlan, rightPlan)) {
-					localMutationIter.remove();
-				}
-			}			
-		}
-		int nrMutations = localMutations.size();
-		int selectedMutationIndex = random.nextInt(nrMutations);
-		Plan selectedMutation = localMutations.get(selectedMutationIndex);
-		// Include mutation into plan and update
-		// Check whether mutation occurred at the root
-		if (parentNode == null) {
-			return selectedMutation;
-		} else {
-			// Mutation occurred inside tree - need to update tree and cost values.
-			if (selectedNode.isLeftChild) {
-				parentPlan.setLeftPlan(selectedMutation);
-			} else {
-				parentPlan.setRightPlan(selectedMutation);
-			}
-			// Need to update all cost values on path from selected mutation to plan root.
-			PathNode nodeToUpdate = parentNode;
-			while (nodeToUpdate != null) {
-				costModel.updateRoot(nodeToUpdate.plan);
-				nodeToUpdate = nodeToUpdate.parent;
-			}
-			// Plan variable points now to mutated plan tree
-			if (SAFE_MODE) {
-				TestUtil.validatePlan(plan, planSpace, costModel, true);
-			}
-			return plan;
-		}
+		// The move engine applies moves to a deep copy of the input plan
+		MoveEngine moveEngine = new MoveEngine(query, inputPlan, planSpace, costModel);
+		moveEngine.randomMove();
+		moveEngine.commit();
+		return moveEngine.getPlan();
 	}
 	/**
 	 * Estimate standard deviation of cost distribution. Generates 20 sample plans, calculates
@@ -946,7 +884,7 @@ public class LocalSearchUtil {
 			Plan samplePlan = LocalSearchUtil.randomBushyPlan(query, planSpace);
 			costModel.updateAll(samplePlan);
 			double accumulatedCost = 0;
-			for (int metricCtr=0; metricCtr<NR_COST_METRICS; ++metricCtr) {
+			for (int metricCtr=0; metricCtr<consideredMetrics.length; ++metricCtr) {
 				if (consideredMetrics[metricCtr]) {
 					accumulatedCost += samplePlan.getCostValue(metricCtr);
 				}
@@ -989,6 +927,7 @@ public class LocalSearchUtil {
 	 */
 	public static List<Plan> ParetoClimbStep(Query query, Plan plan, PlanSpace planSpace, 
 			MultiCostModel costModel, boolean[] consideredMetric) {
+		OptimizationContext context = OptimizationContext.current();
 		List<Plan> resultPlans = new LinkedList<Plan>();
 		resultPlans.add(plan);
 		if (plan instanceof JoinPlan) {
@@ -1007,17 +946,17 @@ public class LocalSearchUtil {
 				for (Plan rightPlan : rightPlans) {
 					// Operator change
 					for (JoinOperator joinOperator : 
-						planSpace.joinOperatorsShuffled(leftPlan, rightPlan)) {
+						planSpace.applicableJoinOperators(leftPlan, rightPlan)) {
 						Plan newPlan = new JoinPlan(leftRel, rightRel, 
-								resultRel, leftPlan, rightPlan, joinOperator);
-						costModel.updateRoot(newPlan);
+								resultRel, leftPlan, rightPlan, joinOperator, context);
+						costModel.updateRoot(newPlan, context);
 						keepBest(resultPlans, newPlan, consideredMetric);
 					}
 					// Commutativity
 					{
 						Plan newPlan = new JoinPlan(rightRel, leftRel,
-								resultRel, rightPlan, leftPlan, originalJoinOperator);
-						costModel.updateRoot(newPlan);
+								resultRel, rightPlan, leftPlan, originalJoinOperator, context);
+						costModel.updateRoot(newPlan, context);
 						keepBest(resultPlans, newPlan, consideredMetric);
 					}
 					// extract second child level in query tree
@@ -1050,11 +989,11 @@ public class LocalSearchUtil {
 						Plan C = rightPlan;
 						Plan newLeftPlan = A;
 						JoinOperator rightJoinOp = planSpace.randomJoinOperator(B, C);
-						Plan newRightPlan = new JoinPlan(query, B, C, rightJoinOp);
-						costModel.updateRoot(newRightPlan);
+						Plan newRightPlan = new JoinPlan(query, B, C, rightJoinOp, context);
+						costModel.updateRoot(newRightPlan, context);
 						JoinOperator joinOp = planSpace.randomJoinOperator(newLeftPlan, newRightPlan);
-						Plan newPlan = new JoinPlan(query, newLeftPlan, newRightPlan, joinOp);
-						costModel.updateRoot(newPlan);
+						Plan newPlan = new JoinPlan(query, newLeftPlan, newRightPlan, joinOp, context);
+						costModel.updateRoot(newPlan, context);
 						keepBest(resultPlans, newPlan, consideredMetric);
 					}
 					// Left join exchange
@@ -1063,11 +1002,11 @@ public class LocalSearchUtil {
 						Plan B = leftRightPlan;
 						Plan C = rightPlan;
 						JoinOperator leftJoinOp = planSpace.randomJoinOperator(A, C);
-						Plan newLeftPlan = new JoinPlan(query, A, C, leftJoinOp);
-						costModel.updateRoot(newLeftPlan);
+						Plan newLeftPlan = new JoinPlan(query, A, C, leftJoinOp, context);
+						costModel.updateRoot(newLeftPlan, context);
 						JoinOperator joinOp = planSpace.randomJoinOperator(newLeftPlan, B);
-						Plan newPlan = new JoinPlan(query, newLeftPlan, B, joinOp);
-						costModel.updateRoot(newPlan);
+						Plan newPlan = new JoinPlan(query, newLeftPlan, B, joinOp, context);
+						costModel.updateRoot(newPlan, context);
 						keepBest(resultPlans, newPlan, consideredMetric);
 					}
 					// Right join exchange
@@ -1076,11 +1015,11 @@ public class LocalSearchUtil {
 						Plan B = rightLeftPlan;
 						Plan C = rightRightPlan;
 						JoinOperator rightJoinOp = planSpace.randomJoinOperator(A, C);
-						Plan newRightPlan = new JoinPlan(query, A, C, rightJoinOp);
-						costModel.updateRoot(newRightPlan);
+						Plan newRightPlan = new JoinPlan(query, A, C, rightJoinOp, context);
+						costModel.updateRoot(newRightPlan, context);
 						JoinOperator joinOp = planSpace.randomJoinOperator(B, newRightPlan);
-						Plan newPlan = new JoinPlan(query, B, newRightPlan, joinOp);
-						costModel.updateRoot(newPlan);
+						Plan newPlan = new JoinPlan(query, B, newRightPlan, joinOp, context);
+						costModel.updateRoot(newPlan, context);
 						keepBest(resultPlans, newPlan, consideredMetric);
 					}
 				}
@@ -1105,11 +1044,12 @@ public class LocalSearchUtil {
 	 */
 	public static Plan ParetoClimb(Query query, Plan plan, PlanSpace planSpace, 
 			MultiCostModel costModel, boolean[] consideredMetric) {
-		++nrExhaustiveClimbs;
+		OptimizationContext context = OptimizationContext.current();
+		++context.nrExhaustiveClimbs;
 		// Improve via fast Pareto climbing
 		boolean climbed = true;
 		while (climbed) {
-			++nrExhaustiveSteps;
+			++context.nrExhaustiveSteps;
 			climbed = false;
 			List<Plan> improvedPlans = LocalSearchUtil.ParetoClimbStep(
 					query, plan, planSpace, costModel, consideredMetric);
@@ -1137,6 +1077,7 @@ public class LocalSearchUtil {
 	public static Plan randomizedParetoClimb(Query query, Plan plan, PlanSpace planSpace, 
 			MultiCostModel costModel, boolean[] consideredMetric) {
 		int nrTables = query.nrTables;
+		MoveEngine moveEngine = new MoveEngine(query, plan, planSpace, costModel);
 		boolean improving = true;
 		// Iterate while the plan is still improving, i.e. a local Pareto-optimum was not reached
 		while (improving) {
@@ -1146,35 +1087,40 @@ public class LocalSearchUtil {
 			int remainingTries = nrTables;
 			// Iterate until we found a better plan or until all tries are used up
 			while (!improving && remainingTries > 0) {
-				// Select a random neighbor of the current plan
-				Plan neighbor = randomMove(query, plan, planSpace, costModel);
+				// Move in place to a random neighbor of the current plan
+				moveEngine.randomMove();
+				Plan neighbor = moveEngine.getPlan();
 				// Check whether the neighbor has lower cost than the current plan
-				if (PruningUtil.ParetoDominates(neighbor.cost, plan.cost, consideredMetric)) {
+				if (PruningUtil.ParetoDominates(neighbor.cost, 
+						moveEngine.getPreviousCost(), consideredMetric)) {
 					// If the neighbor dominates the current plan then the neighbor becomes the
 					// new current plan and we have not found a local Pareto-opimum yet.
-					plan = neighbor;
+					moveEngine.commit();
 					improving = true;
+				} else {
+					moveEngine.rollback();
 				}
 				remainingTries--;
 			}
 		}
-		return plan;
+		return moveEngine.getPlan();
 	}
 	
 	public static Plan constrainedParetoClimb(Query query, Plan plan, PlanSpace planSpace, 
 			MultiCostModel costModel, boolean[] consideredMetric, JoinOperator nextJoinOperator) {
-		++nrExhaustiveClimbs;
+		OptimizationContext context = OptimizationContext.current();
+		++context.nrExhaustiveClimbs;
 		// Improve via fast Pareto climbing
 		boolean climbed = true;
 		while (climbed) {
-			++nrExhaustiveSteps;
+			++context.nrExhaustiveSteps;
 			climbed = false;
 			List<Plan> improvedPlans = LocalSearchUtil.ParetoClimbStep(
 					query, plan, planSpace, costModel, consideredMetric);
 			for (Plan improvedPlan : improvedPlans) {
 				JoinPlan joinPlan = (JoinPlan)improvedPlan;
 				JoinOperator joinOperator = joinPlan.getJoinOperator();
-				if (planSpace.joinOutputComptatible(joinOperator, nextJoinOperator) &&
+				if (planSpace.outputCompatible(joinOperator, nextJoinOperator) &&
 						PruningUtil.ParetoDominates(
 								improvedPlan.cost, plan.cost, consideredMetric)) {
 						plan = improvedPlan;
@@ -0,0 +1,264 @@
+package util;
+
+import static common.Constants.*;
+
+import java.util.Iterator;
+import java.util.List;
+
+import common.OptimizationContext;
+import cost.MultiCostModel;
+import plans.JoinPlan;
+import plans.Plan;
+import plans.spaces.PlanSpace;
+import queries.Query;
+
+/**
+ * Applies moves in the plan space in place on a mutable plan tree. A move replaces one plan
+ * node by a mutation of the corresponding sub-plan and re-calculates cost only for the nodes
+ * on the path from the replaced node to the plan root. The replaced node and the previous cost
+ * of the nodes on that path are recorded in an undo log such that the move can be rolled back
+ * without copying the plan. Each move must be either committed or rolled back before the
+ * next move is applied.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class MoveEngine {
+	/**
+	 * The query for which plans are mutated.
+	 */
+	final Query query;
+	/**
+	 * Determines the applicable scan and join operators.
+	 */
+	final PlanSpace planSpace;
+	/**
+	 * Used to calculate the cost of mutated plans.
+	 */
+	final MultiCostModel costModel;
+	/**
+	 * The root of the current plan tree - this plan is changed by moves.
+	 */
+	Plan plan;
+	/**
+	 * The join plans on the path from the plan root to the parent of the selected node.
+	 */
+	final JoinPlan[] path;
+	/**
+	 * Whether the next node on the path is the left child of the plan at the same position.
+	 */
+	final boolean[] pathLeft;
+	/**
+	 * The number of join plans on the path from the root to the selected node.
+	 */
+	int pathLength = 0;
+	/**
+	 * Contains the cost of each plan on the path before the last move (undo log).
+	 */
+	final double[][] savedCost;
+	/**
+	 * The cost of the plan root before the last move.
+	 */
+	final double[] previousCost;
+	/**
+	 * The node replaced by the last move (undo log).
+	 */
+	Plan replacedPlan = null;
+	/**
+	 * Whether the last move was neither committed nor rolled back yet.
+	 */
+	boolean uncommitted = false;
+	/**
+	 * Initializes the move engine with a mutable copy of the given plan whose cost must
+	 * be calculated. The given plan is not changed by moves.
+	 *
+	 * @param query		the query for which plans are mutated
+	 * @param plan		the plan from which moves start
+	 * @param planSpace	determines the applicable scan and join operators
+	 * @param costModel	used to calculate the cost of mutated plans
+	 */
+	public MoveEngine(Query query, Plan plan, PlanSpace planSpace, MultiCostModel costModel) {
+		this.query = query;
+		this.planSpace = planSpace;
+		this.costModel = costModel;
+		this.plan = plan.deepMutableCopy();
+		int nrMetrics = plan.getCostValues().length;
+		// A plan joining n tables has at most n-1 join plans above each node
+		int maxPathLength = Math.max(query.nrTables, 1);
+		this.path = new JoinPlan[maxPathLength];
+		this.pathLeft = new boolean[maxPathLength];
+		this.savedCost = new double[maxPathLength][nrMetrics];
+		this.previousCost = new double[nrMetrics];
+	}
+	/**
+	 * Returns the current plan which reflects the last move if it was not rolled back.
+	 * The returned plan is changed by later moves and must be copied to keep it.
+	 *
+	 * @return	the root of the current plan tree
+	 */
+	public Plan getPlan() {
+		return plan;
+	}
+	/**
+	 * Returns the cost vector of the plan before the last move.
+	 *
+	 * @return	the plan cost before the last move
+	 */
+	public double[] getPreviousCost() {
+		return previousCost;
+	}
+	/**
+	 * Calculates the number of nodes in the given plan tree.
+	 *
+	 * @param plan	a query plan
+	 * @return		the number of scan and join plans in the tree
+	 */
+	static int nrNodes(Plan plan) {
+		if (plan.resultRel != null) {
+			return 2 * plan.resultRel.tableSet.cardinality() - 1;
+		} else if (plan instanceof JoinPlan) {
+			JoinPlan joinPlan = (JoinPlan)plan;
+			return 1 + nrNodes(joinPlan.getLeftPlan()) + nrNodes(joinPlan.getRightPlan());
+		} else {
+			return 1;
+		}
+	}
+	/**
+	 * Selects the plan node with the given index when enumerating nodes in pre-order
+	 * (the order used by <code>LocalSearchUtil.planNodes</code>) and stores the path
+	 * from the root to that node.
+	 *
+	 * @param nodeIndex	index of the node to select in pre-order
+	 * @return			the sub-plan rooted at the selected node
+	 */
+	Plan select(int nodeIndex) {
+		assert(!uncommitted);
+		pathLength = 0;
+		Plan current = plan;
+		while (nodeIndex > 0) {
+			JoinPlan joinPlan = (JoinPlan)current;
+			--nodeIndex;
+			Plan leftPlan = joinPlan.getLeftPlan();
+			int nrLeftNodes = nrNodes(leftPlan);
+			path[pathLength] = joinPlan;
+			if (nodeIndex < nrLeftNodes) {
+				pathLeft[pathLength] = true;
+				current = leftPlan;
+			} else {
+				nodeIndex -= nrLeftNodes;
+				pathLeft[pathLength] = false;
+				current = joinPlan.getRightPlan();
+			}
+			++pathLength;
+		}
+		return current;
+	}
+	/**
+	 * Checks whether the parent of the selected node remains consistent if the selected
+	 * node is replaced by the given plan (i.e., whether the parent join operator can still
+	 * process the output of the replacing plan).
+	 *
+	 * @param newPlan	the plan that would replace the selected node
+	 * @return			true iff the selected node can be replaced by the given plan
+	 */
+	boolean consistent(Plan newPlan) {
+		if (pathLength == 0) {
+			return true;
+		}
+		JoinPlan parentPlan = path[pathLength - 1];
+		boolean isLeftChild = pathLeft[pathLength - 1];
+		Plan leftPlan = isLeftChild ? newPlan : parentPlan.getLeftPlan();
+		Plan rightPlan = !isLeftChild ? newPlan : parentPlan.getRightPlan();
+		return planSpace.applicable(parentPlan.getJoinOperator(), leftPlan, rightPlan);
+	}
+	/**
+	 * Replaces the selected node by the given plan whose cost must be calculated and
+	 * updates the cost of all nodes on the path to the root. Records the information
+	 * required to roll back the move.
+	 *
+	 * @param newPlan	a consistent plan that replaces the selected node
+	 */
+	void replace(Plan newPlan) {
+		assert(!uncommitted);
+		assert(consistent(newPlan));
+		System.arraycopy(plan.getCostValues(), 0, previousCost, 0, previousCost.length);
+		if (pathLength == 0) {
+			replacedPlan = plan;
+			plan = newPlan;
+		} else {
+			JoinPlan parentPlan = path[pathLength - 1];
+			if (pathLeft[pathLength - 1]) {
+				replacedPlan = parentPlan.getLeftPlan();
+				parentPlan.setLeftPlan(newPlan);
+			} else {
+				replacedPlan = parentPlan.getRightPlan();
+				parentPlan.setRightPlan(newPlan);
+			}
+			// Update cost values bottom-up and keep old values in the undo log
+			OptimizationContext context = OptimizationContext.current();
+			for (int pathCtr=pathLength-1; pathCtr>=0; --pathCtr) {
+				JoinPlan pathPlan = path[pathCtr];
+				double[] pathCost = pathPlan.getCostValues();
+				System.arraycopy(pathCost, 0, savedCost[pathCtr], 0, pathCost.length);
+				costModel.updateRoot(pathPlan, context);
+			}
+		}
+		uncommitted = true;
+	}
+	/**
+	 * Replaces a randomly selected plan node by a random mutation that keeps the parent
+	 * node consistent. Random numbers are drawn in the same order as by the original
+	 * implementation of <code>LocalSearchUtil.randomMove</code>.
+	 */
+	public void randomMove() {
+		assert(!uncommitted);
+		OptimizationContext context = OptimizationContext.current();
+		// Randomly select plan node to mutate
+		int nodeIndex = context.random.nextInt(nrNodes(plan));
+		Plan selectedPlan = select(nodeIndex);
+		// Mutate and randomly select one mutation that keeps the parent node consistent
+		List<Plan> localMutations = LocalSearchUtil.mutatedPlans(
+				query, selectedPlan, planSpace, costModel);
+		Iterator<Plan> localMutationIter = localMutations.iterator();
+		while (localMutationIter.hasNext()) {
+			if (!consistent(localMutationIter.next())) {
+				localMutationIter.remove();
+			}
+		}
+		int nrMutations = localMutations.size();
+		int selectedMutationIndex = context.random.nextInt(nrMutations);
+		replace(localMutations.get(selectedMutationIndex));
+		if (SAFE_MODE) {
+			TestUtil.validatePlan(plan, planSpace, costModel, true);
+		}
+	}
+	/**
+	 * Keeps the changes made by the last move.
+	 */
+	public void commit() {
+		assert(uncommitted);
+		replacedPlan = null;
+		uncommitted = false;
+	}
+	/**
+	 * Restores the plan tree and the cost values as they were before the last move.
+	 */
+	public void rollback() {
+		assert(uncommitted);
+		if (pathLength == 0) {
+			plan = replacedPlan;
+		} else {
+			JoinPlan parentPlan = path[pathLength - 1];
+			if (pathLeft[pathLength - 1]) {
+				parentPlan.setLeftPlan(replacedPlan);
+			} else {
+				parentPlan.setRightPlan(replacedPlan);
+			}
+			for (int pathCtr=0; pathCtr<pathLength; ++pathCtr) {
+				path[pathCtr].setCostValues(savedCost[pathCtr]);
+			}
+		}
+		replacedPlan = null;
+		uncommitted = false;
+	}
+}
@@ -0,0 +1,67 @@
+package util;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import cost.MultiCostModel;
+import cost.SingleCostModel;
+import cost.local.BufferCostModel;
+import cost.local.DiscCostModel;
+import cost.local.TimeCostModel;
+import plans.PathNode;
+import plans.Plan;
+import plans.spaces.LocalPlanSpace;
+import plans.spaces.PlanSpace;
+import queries.JoinGraphType;
+import queries.JoinType;
+import queries.Query;
+import queries.QueryFactory;
+
+import org.junit.Test;
+
+public class MoveEngineTest {
+
+	@Test
+	public void test() {
+		PlanSpace planSpace = new LocalPlanSpace();
+		MultiCostModel costModel = new MultiCostModel(Arrays.asList(new SingleCostModel[] {
+				new TimeCostModel(0), new BufferCostModel(1), new DiscCostModel(2)
+		}));
+		for (JoinGraphType graphType : JoinGraphType.values()) {
+			Query query = QueryFactory.produceSteinbrunn(graphType, 8, JoinType.MN);
+			Plan plan = LocalSearchUtil.randomBushyPlan(query, planSpace);
+			costModel.updateAll(plan);
+			String originalString = plan.toString();
+			MoveEngine moveEngine = new MoveEngine(query, plan, planSpace, costModel);
+			// Nodes are selected in the same order as by plan node enumeration
+			{
+				List<PathNode> planNodes = LocalSearchUtil.planNodes(
+						moveEngine.getPlan(), null, false);
+				assertEquals(planNodes.size(), MoveEngine.nrNodes(moveEngine.getPlan()));
+				for (int nodeIndex=0; nodeIndex<planNodes.size(); ++nodeIndex) {
+					assertSame(planNodes.get(nodeIndex).plan, moveEngine.select(nodeIndex));
+				}
+			}
+			// Rolled back moves restore the plan and its cost values
+			for (int moveCtr=0; moveCtr<100; ++moveCtr) {
+				String planBefore = moveEngine.getPlan().toString();
+				double[] costBefore = moveEngine.getPlan().getCostValues().clone();
+				moveEngine.randomMove();
+				assertArrayEquals(costBefore, moveEngine.getPreviousCost(), TestUtil.EPSILON);
+				TestUtil.validatePlan(moveEngine.getPlan(), planSpace, costModel, true);
+				if (moveCtr % 2 == 0) {
+					moveEngine.commit();
+				} else {
+					moveEngine.rollback();
+					assertEquals(planBefore, moveEngine.getPlan().toString());
+				}
+				TestUtil.validatePlan(moveEngine.getPlan(), planSpace, costModel, true);
+			}
+			// The input plan is not changed
+			assertEquals(originalString, plan.toString());
+		}
+	}
+
+}
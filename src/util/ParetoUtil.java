@@ -11,6 +11,11 @@ import java.util.List;
  *
  */
 public class ParetoUtil {
+	/**
+	 * Frontiers are compared via an epsilon indicator if the number of plan pairs reaches
+	 * that threshold - for fewer pairs, comparing all pairs is faster than indexing.
+	 */
+	final static int MIN_INDICATOR_PAIRS = 1024;
 	/**
 	 * Calculates the epsilon error when trying to approximate the reference vector by the
 	 * tested vector. The epsilon error is the minimal value such that scaling the reference
@@ -49,13 +54,28 @@ public class ParetoUtil {
 		}
 		return maxError;
 	}
+	/**
+	 * Calculates the epsilon error when trying to approximate the reference plan by the tested
+	 * plan. Works directly on the cost vectors of both plans without copying them.
+	 * 
+	 * @param testedPlan		epsilon error captures how well this plan approximates reference
+	 * @param referencePlan		the reference plan that must be approximated
+	 * @param consideredMetrics	Boolean flags indicating for each cost metric if it is considered
+	 * @return					the relative error when approximating reference by test plan
+	 */
+	public static double epsilonError(Plan testedPlan, 
+			Plan referencePlan, boolean[] consideredMetrics) {
+		return epsilonError(testedPlan.getCostValues(), 
+				referencePlan.getCostValues(), consideredMetrics);
+	}
 	/**
 	 * Calculates the epsilon error when trying to approximate the reference frontier by the
 	 * tested frontier. We find for each reference vector the test vector that approximates it
 	 * best. Then we use the approximation error for the reference vector whose approximation
 	 * is the worst as measure for the overall quality of the tested frontier. This corresponds
 	 * to the metric recommended in "Performance assessment of multiobjective optimizers: 
-	 * An analysis and review" by Zitzler and Thiele, 2003.
+	 * An analysis and review" by Zitzler and Thiele, 2003. Large frontiers are compared via
+	 * an epsilon indicator that avoids comparing most plan pairs.
 	 * 
 	 * @param testedFrontier	set of cost vectors that should approximate the reference vectors
 	 * @param referenceFrontier	set of cost vectors that should be approximated
@@ -64,14 +84,18 @@ public class ParetoUtil {
 	 */
 	public static double epsilonError(List<Plan> testedFrontier, 
 			List<Plan> referenceFrontier, boolean[] consideredMetrics) {
+		if ((long)testedFrontier.size() * referenceFrontier.size() >= MIN_INDICATOR_PAIRS) {
+			return new EpsilonIndicator(referenceFrontier, 
+					consideredMetrics).epsilonError(testedFrontier);
+		}
 		// Calculate total error as maximum over all plans in the reference set
 		double setError = 0;
 		for (Plan referencePlan : referenceFrontier) {
 			// Calculate reference plan error as minimum over all plans in the tested set
 			double planError = Double.POSITIVE_INFINITY;
 			for (Plan testPlan : testedFrontier) {
-				double planPairError = epsilonError(testPlan.getCostValuesCopy(), 
-						referencePlan.getCostValuesCopy(), consideredMetrics);
+				double planPairError = epsilonError(testPlan, 
+						referencePlan, consideredMetrics);
 				planError = Math.min(planError, planPairError);
 			}
 			setError = Math.max(setError, planError);
@@ -46,6 +46,9 @@ public class ParetoUtilTest {
 			testedPlan2.setCostValues(new double[] {2, 3, 6});
 			referencePlan1.setCostValues(new double[] {1, 4, 4});
 			referencePlan2.setCostValues(new double[] {2, 1, 6});
+			// Epsilon error between two plans equals the one between their cost vectors
+			assertEquals(2, ParetoUtil.epsilonError(testedPlan1, referencePlan1, allMetrics), EPSILON);
+			assertEquals(1.0/3, ParetoUtil.epsilonError(referencePlan1, testedPlan1, allMetrics), EPSILON);
 			List<Plan> testedFrontier = new LinkedList<Plan>();
 			List<Plan> referenceFrontier = new LinkedList<Plan>();
 			referenceFrontier.add(referencePlan1);
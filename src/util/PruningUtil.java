@@ -3,9 +3,10 @@ package util;
 import static common.Constants.*;
 
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
+import plans.GridFrontier;
+import plans.ParetoFrontier;
 import plans.Plan;
 import queries.Query;
 import relations.Relation;
@@ -45,10 +46,10 @@ public class PruningUtil {
 	 */
 	public static boolean approximatelyDominates(
 			double[] v1, double[] v2, double alpha, boolean[] consideredMetric) {
-		assert(v1.length == NR_COST_METRICS);
-		assert(v2.length == NR_COST_METRICS);
-		assert(consideredMetric.length == NR_COST_METRICS);
-		for (int metricCtr=0; metricCtr<NR_COST_METRICS; ++metricCtr) {
+		assert(v1.length == v2.length);
+		assert(consideredMetric.length == v1.length);
+		int nrMetrics = v1.length;
+		for (int metricCtr=0; metricCtr<nrMetrics; ++metricCtr) {
 			if (consideredMetric[metricCtr]) {
 				// If first vector does not approximately dominate second vector even
 				// for one relevant cost metric then it cannot approximate the second.
@@ -61,6 +62,21 @@ public class PruningUtil {
 		// for all relevant metrics.
 		return true;
 	}
+	/**
+	 * Checks if the first plan approximately dominates the second for given approximation
+	 * factor and set of cost metrics to consider. Compares the cost vectors of both plans
+	 * directly without copying them.
+	 * 
+	 * @param p1				first query plan
+	 * @param p2				second query plan
+	 * @param alpha				approximation factor
+	 * @param consideredMetric	Boolean flag for each metric indicating whether it is used
+	 * @return					Boolean indicating whether first plan approximates second
+	 */
+	public static boolean approximatelyDominates(
+			Plan p1, Plan p2, double alpha, boolean[] consideredMetric) {
+		return approximatelyDominates(p1.getCostValues(), p2.getCostValues(), alpha, consideredMetric);
+	}
 	/**
 	 * Checks if the first cost vector is at least as good as the second one in each cost metric
 	 * and better in at least one, considering only the specified cost metrics.
@@ -71,12 +87,12 @@ public class PruningUtil {
 	 * @return					Boolean indicating if first vector strictly dominates second
 	 */
 	public static boolean ParetoDominates(double[] v1, double[] v2, boolean[] consideredMetric) {
-		assert(v1.length == NR_COST_METRICS);
-		assert(v2.length == NR_COST_METRICS);
-		assert(consideredMetric.length == NR_COST_METRICS);
+		assert(v1.length == v2.length);
+		assert(consideredMetric.length == v1.length);
+		int nrMetrics = v1.length;
 		boolean betterInOne = false;
 		boolean worseInOne = false;
-		for (int metricCtr=0; metricCtr<NR_COST_METRICS; ++metricCtr) {
+		for (int metricCtr=0; metricCtr<nrMetrics; ++metricCtr) {
 			if (consideredMetric[metricCtr]) {
 				if (v1[metricCtr] < v2[metricCtr]) {
 					betterInOne = true;
@@ -87,6 +103,18 @@ public class PruningUtil {
 		}
 		return betterInOne && !worseInOne;
 	}
+	/**
+	 * Checks if the first plan Pareto-dominates the second, considering only the specified
+	 * cost metrics. Compares the cost vectors of both plans directly without copying them.
+	 * 
+	 * @param p1				first query plan
+	 * @param p2				second query plan
+	 * @param consideredMetric	Boolean flag for each metric indicating whether it is used
+	 * @return					Boolean indicating if first plan strictly dominates second
+	 */
+	public static boolean ParetoDominates(Plan p1, Plan p2, boolean[] consideredMetric) {
+		return ParetoDominates(p1.getCostValues(), p2.getCostValues(), consideredMetric);
+	}
 	/**
 	 * Check if two plans producing the same intermediate result 
 	 * generate the output in the same form.
@@ -118,7 +146,7 @@ public class PruningUtil {
 			List<Plan> oldPlans, Plan newPlan, boolean[] consideredMetric) {
 		// Check if new plan dominated
 		for (Plan oldPlan : oldPlans) {
-			if (approximatelyDominates(oldPlan.getCostValuesCopy(), newPlan.getCostValuesCopy(), 1, consideredMetric)) {
+			if (approximatelyDominates(oldPlan, newPlan, 1, consideredMetric)) {
 				//return oldPlans;
 				return;
 			}
@@ -128,7 +156,7 @@ public class PruningUtil {
 		Iterator<Plan> oldPlansIter = oldPlans.iterator();
 		while (oldPlansIter.hasNext()) {
 			Plan oldPlan = oldPlansIter.next();
-			if (approximatelyDominates(newPlan.getCostValuesCopy(), oldPlan.getCostValuesCopy(), 1, consideredMetric)) {
+			if (approximatelyDominates(newPlan, oldPlan, 1, consideredMetric)) {
 				oldPlansIter.remove();
 			}
 		}
@@ -149,9 +177,24 @@ public class PruningUtil {
 	 */
 	public static void prune(Query query, Relation rel, Plan newPlan, double alpha,
 			boolean[] consideredMetric, boolean insertCopy) {
-		// Make sure that Pareto plan list is initialized
+		// Make sure that Pareto plan list is initialized - approximate pruning uses a grid index
 		if (rel.ParetoPlans == null) {
-			rel.ParetoPlans = new LinkedList<Plan>();
+			rel.ParetoPlans = alpha > 1 ? new GridFrontier(alpha, consideredMetric) :
+				new ParetoFrontier();
+		}
+		// Grid-indexed frontiers look up dominating plans in grid cells before scanning
+		if (rel.ParetoPlans instanceof GridFrontier) {
+			GridFrontier frontier = (GridFrontier)rel.ParetoPlans;
+			if (frontier.gridApplicable(alpha, consideredMetric)) {
+				frontier.pruneGrid(newPlan, insertCopy);
+				return;
+			}
+		}
+		// Plans stored column-wise are compared without accessing plan objects
+		if (rel.ParetoPlans instanceof ParetoFrontier) {
+			pruneFrontier((ParetoFrontier)rel.ParetoPlans, newPlan, 
+					alpha, consideredMetric, insertCopy);
+			return;
 		}
 		// Check if there are similar plans to the new plan and return in that case
 		double[] newCost = newPlan.cost;
@@ -180,4 +223,34 @@ public class PruningUtil {
 		}
 		rel.ParetoPlans.add(newPlan);
 	}
+	/**
+	 * Prunes a new plan within a frontier whose plans produce the same relation, taking into
+	 * account cost and output properties. Has the same semantics as the list-based pruning.
+	 * 
+	 * @param frontier			(near-)Pareto-optimal plans producing the same relation as the new plan
+	 * @param newPlan			a new plan
+	 * @param alpha				approximation factor; less plans are kept with a higher alpha
+	 * @param consideredMetric	Boolean flags indicating which metrics to consider
+	 * @param insertCopy		whether to insert the given plan or a copy of it
+	 * @return					true iff the new plan was inserted
+	 */
+	public static boolean pruneFrontier(ParetoFrontier frontier, Plan newPlan, double alpha,
+			boolean[] consideredMetric, boolean insertCopy) {
+		// Check if there are similar plans to the new plan and return in that case
+		double[] newCost = newPlan.cost;
+		boolean materializes = newPlan.materializes;
+		if (frontier.approximatelyDominated(newCost, materializes, alpha, consideredMetric)) {
+			return false;
+		}
+		// New plan will be inserted - prune prior plans with precise comparisons
+		frontier.removeDominated(newCost, materializes, consideredMetric);
+		if (insertCopy) {
+			newPlan = newPlan.deepMutableCopy();
+		}
+		if (SAFE_MODE) {
+			newPlan.makeImmutable();			
+		}
+		frontier.add(newPlan);
+		return true;
+	}
 }
@@ -108,6 +108,13 @@ public class PruningUtilTest {
 				plan3.setCostValues(new double[] {1, 1, 0});
 				plan4.setCostValues(new double[] {3, 0.5, 0});
 				boolean[] consideredMetric = new boolean[] {true, true, true};
+				// Plan-based comparisons work on the original cost vectors
+				assertTrue(plan1.getCostValues() == plan1.cost);
+				assertTrue(PruningUtil.ParetoDominates(plan3, plan1, consideredMetric));
+				assertFalse(PruningUtil.ParetoDominates(plan1, plan1, consideredMetric));
+				assertTrue(PruningUtil.approximatelyDominates(plan1, plan2, 1, consideredMetric));
+				assertFalse(PruningUtil.approximatelyDominates(plan2, plan1, 1, consideredMetric));
+				assertTrue(PruningUtil.approximatelyDominates(plan2, plan1, 3, consideredMetric));
 				List<Plan> plans = new LinkedList<Plan>();
 				plans.add(plan1);
 				assertEquals(1, plans.size());
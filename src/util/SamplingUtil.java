@@ -3,6 +3,7 @@ package util;
 import java.util.Collections;
 import java.util.List;
 
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import plans.JoinPlan;
 import plans.Plan;
@@ -14,7 +15,7 @@ public class SamplingUtil {
 
 	public static void performJoin(Query query, PlanSpace planSpace, 
 			MultiCostModel costModel, List<Plan> partialPlans, double maxHeightCutoff) {
-		Collections.shuffle(partialPlans);
+		Collections.shuffle(partialPlans, OptimizationContext.current().random);
 		// Find out what is the highest plan among the partial plans
 		int maxHeight = 0;
 		for (Plan partialPlan : partialPlans) {
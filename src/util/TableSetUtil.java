@@ -0,0 +1,199 @@
+package util;
+
+import java.util.BitSet;
+
+/**
+ * Utility functions for representing sets of query tables by primitive bit masks. Table
+ * sets of queries with at most 64 tables are represented by one <code>long</code> value
+ * where the i-th bit is set if the table with index i is contained. Table sets of larger
+ * queries are represented by two <code>long</code> words: the low word covers the tables
+ * with indices from 0 to 63 and the high word the tables with indices from 64 to 127.
+ * Working on primitive masks avoids allocating, hashing, and comparing BitSet objects
+ * in the inner loops of dynamic programming based optimizers.
+ *
+ * @author immanueltrummer
+ *
+ */
+public class TableSetUtil {
+	/**
+	 * The number of tables that can be represented by one long word.
+	 */
+	public final static int WORD_SIZE = 64;
+	/**
+	 * The maximal number of tables that can be represented by the two-word representation.
+	 */
+	public final static int MAX_TABLES = 2 * WORD_SIZE;
+	/**
+	 * Returns true iff table sets of the given query size can be represented by one long.
+	 *
+	 * @param nrTables	the number of query tables
+	 * @return			true iff one word suffices to represent all table sets
+	 */
+	public static boolean fitsInWord(int nrTables) {
+		return nrTables <= WORD_SIZE;
+	}
+	/**
+	 * Checks that table sets of the given query size can be represented by two words.
+	 * Table sets of larger queries would collide in the two-word representation, so they
+	 * are rejected even if assertions are disabled.
+	 *
+	 * @param nrTables	the number of query tables
+	 * @throws IllegalArgumentException if the query has more than {@link #MAX_TABLES} tables
+	 */
+	public static void checkNrTables(int nrTables) throws IllegalArgumentException {
+		if (nrTables > MAX_TABLES) {
+			throw new IllegalArgumentException("At most " + MAX_TABLES +
+					" tables supported but query has " + nrTables + " tables");
+		}
+	}
+	/**
+	 * Returns the bit mask representing a table set that contains only the given table.
+	 *
+	 * @param tableIndex	the index of the table (must be smaller than 64)
+	 * @return				a bit mask where only the bit for the given table is set
+	 */
+	public static long singleton(int tableIndex) {
+		assert(tableIndex >= 0 && tableIndex < WORD_SIZE);
+		return 1L << tableIndex;
+	}
+	/**
+	 * Returns the bit mask containing all tables whose index is below the given number.
+	 *
+	 * @param nrTables	the number of tables to include (at most 64)
+	 * @return			a bit mask where the lowest nrTables bits are set
+	 */
+	public static long allTables(int nrTables) {
+		assert(nrTables >= 0 && nrTables <= WORD_SIZE);
+		return nrTables == WORD_SIZE ? -1L : (1L << nrTables) - 1;
+	}
+	/**
+	 * Returns the number of tables in the table set represented by the given mask.
+	 *
+	 * @param tableSet	a bit mask representing a table set
+	 * @return			the number of tables in the set
+	 */
+	public static int cardinality(long tableSet) {
+		return Long.bitCount(tableSet);
+	}
+	/**
+	 * Returns the index of the table with minimal index in the given table set.
+	 *
+	 * @param tableSet	a non-empty bit mask representing a table set
+	 * @return			the index of the lowest table in the set
+	 */
+	public static int firstTable(long tableSet) {
+		assert(tableSet != 0);
+		return Long.numberOfTrailingZeros(tableSet);
+	}
+	/**
+	 * Returns the indices of the tables in the given table set in ascending order.
+	 *
+	 * @param tableSet	a bit mask representing a table set
+	 * @return			the indices of the tables in the set
+	 */
+	public static int[] tables(long tableSet) {
+		int[] tables = new int[cardinality(tableSet)];
+		int tableCtr = 0;
+		for (long remaining = tableSet; remaining != 0; remaining &= remaining - 1) {
+			tables[tableCtr] = Long.numberOfTrailingZeros(remaining);
+			++tableCtr;
+		}
+		return tables;
+	}
+	/**
+	 * Returns true iff the given table set contains the table with the given index.
+	 *
+	 * @param tableSet		a bit mask representing a table set
+	 * @param tableIndex	the index of a table (smaller than 64)
+	 * @return				true iff the table is in the set
+	 */
+	public static boolean contains(long tableSet, int tableIndex) {
+		return (tableSet & (1L << tableIndex)) != 0;
+	}
+	/**
+	 * Returns the next table set with the same number of tables as the given one in
+	 * ascending numerical order of the bit masks (Gosper's hack). This allows to iterate
+	 * over all table sets of a given cardinality without allocation.
+	 *
+	 * @param tableSet	a non-empty bit mask representing a table set
+	 * @return			the next bit mask with the same number of set bits
+	 */
+	public static long nextSameCardinality(long tableSet) {
+		assert(tableSet != 0);
+		long lowestBit = tableSet & -tableSet;
+		long ripple = tableSet + lowestBit;
+		return (((ripple ^ tableSet) >>> 2) / lowestBit) | ripple;
+	}
+	/**
+	 * Returns the next smaller non-empty subset of the given superset (in numerical order
+	 * of the bit masks). Starting from the superset itself and iterating until the result
+	 * is zero enumerates all non-empty strict subsets in descending order.
+	 *
+	 * @param subset	the current subset
+	 * @param superset	the set whose subsets are enumerated
+	 * @return			the next smaller subset or zero if there is none
+	 */
+	public static long nextSubset(long subset, long superset) {
+		return (subset - 1) & superset;
+	}
+	/**
+	 * Distributes the lowest bits of the given value over the tables of the given superset:
+	 * the i-th lowest bit of the value determines whether the i-th table of the superset
+	 * (in ascending order of table indices) is contained in the result. Mapping the numbers
+	 * from one to 2^k-2 where k is the superset cardinality yields all non-empty strict
+	 * subsets, which allows to divide the subsets into ranges of consecutive numbers.
+	 *
+	 * @param bits		the bits to distribute
+	 * @param superset	the set whose subset is selected
+	 * @return			the subset of the superset selected by the given bits
+	 */
+	public static long deposit(long bits, long superset) {
+		long subset = 0;
+		for (long remaining = superset; remaining != 0 && bits != 0; 
+				remaining &= remaining - 1, bits >>>= 1) {
+			if ((bits & 1) != 0) {
+				subset |= remaining & -remaining;
+			}
+		}
+		return subset;
+	}
+	/**
+	 * Returns the word with the given index of a table set represented as BitSet.
+	 * Tables with index above 127 are not represented by any word, callers that use
+	 * words as keys must check the number of tables (see {@link #checkNrTables(int)}).
+	 *
+	 * @param tableSet	a table set represented as BitSet
+	 * @param wordIndex	zero for the low word and one for the high word
+	 * @return			the bits of the requested word
+	 */
+	public static long word(BitSet tableSet, int wordIndex) {
+		assert(wordIndex == 0 || wordIndex == 1);
+		int offset = wordIndex * WORD_SIZE;
+		long word = 0;
+		for (int tableIndex = tableSet.nextSetBit(offset);
+				tableIndex >= 0 && tableIndex < offset + WORD_SIZE;
+				tableIndex = tableSet.nextSetBit(tableIndex+1)) {
+			word |= 1L << (tableIndex - offset);
+		}
+		return word;
+	}
+	/**
+	 * Transforms a table set represented by two words into a BitSet.
+	 *
+	 * @param lowWord	bits for the tables with index from 0 to 63
+	 * @param highWord	bits for the tables with index from 64 to 127
+	 * @return			a BitSet containing the same tables
+	 */
+	public static BitSet toBitSet(long lowWord, long highWord) {
+		return BitSet.valueOf(new long[] {lowWord, highWord});
+	}
+	/**
+	 * Transforms a table set represented by one word into a BitSet.
+	 *
+	 * @param tableSet	a bit mask representing a table set
+	 * @return			a BitSet containing the same tables
+	 */
+	public static BitSet toBitSet(long tableSet) {
+		return BitSet.valueOf(new long[] {tableSet});
+	}
+}
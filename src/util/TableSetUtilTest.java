@@ -0,0 +1,85 @@
+package util;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TableSetUtilTest {
+
+	@Test
+	public void test() {
+		// Basic operations on single words
+		{
+			assertEquals(7, TableSetUtil.allTables(3));
+			assertEquals(-1L, TableSetUtil.allTables(64));
+			assertEquals(4, TableSetUtil.singleton(2));
+			assertEquals(2, TableSetUtil.firstTable(12));
+			assertEquals(3, TableSetUtil.cardinality(13));
+			assertTrue(TableSetUtil.contains(13, 2));
+			assertFalse(TableSetUtil.contains(13, 1));
+		}
+		// Enumerating all table sets of fixed cardinality
+		{
+			Set<Long> tableSets = new HashSet<Long>();
+			long lastSet = TableSetUtil.allTables(2) << 3;
+			for (long tableSet = TableSetUtil.allTables(2); ; 
+					tableSet = TableSetUtil.nextSameCardinality(tableSet)) {
+				assertEquals(2, TableSetUtil.cardinality(tableSet));
+				assertEquals(0, tableSet & ~TableSetUtil.allTables(5));
+				tableSets.add(tableSet);
+				if (tableSet == lastSet) {
+					break;
+				}
+			}
+			assertEquals(10, tableSets.size());
+		}
+		// Enumerating all non-empty strict subsets
+		{
+			long superset = 13;
+			Set<Long> subsets = new HashSet<Long>();
+			for (long subset = TableSetUtil.nextSubset(superset, superset); subset != 0; 
+					subset = TableSetUtil.nextSubset(subset, superset)) {
+				assertEquals(0, subset & ~superset);
+				subsets.add(subset);
+			}
+			assertEquals(6, subsets.size());
+			Set<Long> depositedSubsets = new HashSet<Long>();
+			for (long bits=1; bits<7; ++bits) {
+				depositedSubsets.add(TableSetUtil.deposit(bits, superset));
+			}
+			assertEquals(subsets, depositedSubsets);
+			assertEquals(8, TableSetUtil.deposit(4, superset));
+			assertEquals(5, TableSetUtil.deposit(3, superset));
+		}
+		// Transforming between BitSet and two-word representation
+		{
+			BitSet tableSet = new BitSet();
+			tableSet.set(1);
+			tableSet.set(63);
+			tableSet.set(64);
+			tableSet.set(100);
+			long lowWord = TableSetUtil.word(tableSet, 0);
+			long highWord = TableSetUtil.word(tableSet, 1);
+			assertEquals((1L << 1) | (1L << 63), lowWord);
+			assertEquals(1L | (1L << 36), highWord);
+			assertEquals(tableSet, TableSetUtil.toBitSet(lowWord, highWord));
+		}
+		// Table sets beyond the two-word representation are rejected
+		{
+			TableSetUtil.checkNrTables(TableSetUtil.MAX_TABLES);
+			try {
+				TableSetUtil.checkNrTables(TableSetUtil.MAX_TABLES + 1);
+				fail();
+			} catch (IllegalArgumentException e) {
+			}
+			BitSet tableSet = new BitSet();
+			tableSet.set(TableSetUtil.MAX_TABLES);
+			assertEquals(0, TableSetUtil.word(tableSet, 1));
+		}
+	}
+
+}
@@ -1,6 +1,7 @@
 package util;
 
 import static common.Constants.*;
+import common.OptimizationContext;
 import cost.MultiCostModel;
 import cost.SingleCostModel;
 import cost.local.BufferCostModel;
@@ -12,6 +13,7 @@ import plans.ScanPlan;
 import plans.operators.JoinOperator;
 import plans.spaces.LocalPlanSpace;
 import plans.spaces.PlanSpace;
+import queries.Query;
 
 import java.util.Arrays;
 import java.util.BitSet;
@@ -47,6 +49,20 @@ public class TestUtil {
 		selectivityMatrix[table1][table2] = selectivity;
 		selectivityMatrix[table2][table1] = selectivity;
 	}
+	// Creates a query equivalent to the given one where new table i is old table permutation[i].
+	public static Query permute(Query query, int[] permutation) {
+		int nrTables = query.nrTables;
+		double[] cardinalities = new double[nrTables];
+		double[][] selectivities = new double[nrTables][nrTables];
+		for (int table1=0; table1<nrTables; ++table1) {
+			cardinalities[table1] = query.tableCardinalities[permutation[table1]];
+			for (int table2=0; table2<nrTables; ++table2) {
+				selectivities[table1][table2] =
+						query.selectivities[permutation[table1]][permutation[table2]];
+			}
+		}
+		return new Query(nrTables, cardinalities, selectivities);
+	}
 	// Outputs reference set and shows approximation error for each entry.
 	public static void showApproximation(List<Plan> testedFrontier, 
 			List<Plan> referenceFrontier, boolean[] consideredMetric) {
@@ -69,13 +85,14 @@ public class TestUtil {
 	}
 	// Recalculate cost of query plan and assert that it is the same as before.
 	public static void validateCost(Plan plan, MultiCostModel costModel) {
-		assert(plan.getCostValuesCopy().length == NR_COST_METRICS);
+		int nrCostMetrics = OptimizationContext.current().nrCostMetrics;
+		assert(plan.getCostValuesCopy().length == nrCostMetrics);
 		Plan planCopy = plan.deepMutableCopy();
 		costModel.updateAll(planCopy);
 		double[] originalCost = plan.getCostValuesCopy();
 		double[] recalculatedCost = planCopy.getCostValuesCopy();
 		boolean consistentCost = true;
-		for (int metricCtr=0; metricCtr<NR_COST_METRICS; ++metricCtr) {
+		for (int metricCtr=0; metricCtr<nrCostMetrics; ++metricCtr) {
 			if (originalCost[metricCtr] > recalculatedCost[metricCtr] + recalculatedCost[metricCtr] * LARGE_EPSILON ||
 					originalCost[metricCtr] < recalculatedCost[metricCtr] - recalculatedCost[metricCtr] * LARGE_EPSILON) {
 				consistentCost = false;